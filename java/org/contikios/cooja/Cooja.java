@@ -67,6 +67,8 @@ import org.contikios.cooja.RadioMedium;
 import org.contikios.cooja.VisPlugin.PluginRequiresVisualizationException;
 import org.contikios.cooja.contikimote.ContikiMoteType;
 import org.contikios.cooja.dialogs.MessageListUI;
+import org.contikios.cooja.metrics.MetricsServer;
+import org.contikios.cooja.metrics.SimulationMetrics;
 import org.contikios.cooja.motes.DisturberMoteType;
 import org.contikios.cooja.motes.ImportAppMoteType;
 import org.contikios.cooja.mspmote.SkyMoteType;
@@ -206,6 +208,9 @@ public class Cooja {
   /** The Cooja startup configuration. */
   public static Config configuration;
 
+  /** Metrics server, or null if metrics are not served. */
+  private static MetricsServer metricsServer;
+
   /** Used mote type IDs. Used by mote types to ensure uniqueness during Cooja lifetime. */
   public static final Set<String> usedMoteTypeIDs = new HashSet<>();
 
@@ -987,6 +992,9 @@ public class Cooja {
   void setSimulation(Simulation sim) {
     mySimulation = sim;
     updateGUIComponentState();
+    if (metricsServer != null) {
+      SimulationMetrics.start(sim, metricsServer.getRegistry());
+    }
 
     // Set frame title
     if (gui != null) {
@@ -1432,6 +1440,15 @@ public class Cooja {
       }
     }
 
+    if (config.metricsPort != null) {
+      try {
+        metricsServer = new MetricsServer(config.metricsPort);
+      } catch (IOException e) {
+        logger.error("Failed to serve metrics on port " + config.metricsPort + ": " + e.getMessage());
+        System.exit(1);
+      }
+    }
+
     Cooja gui = null;
     try {
       gui = makeCooja();
@@ -2022,9 +2039,10 @@ public class Cooja {
       public final String    contikiPath;
       public final String    coojaPath;
       public       String    javac;
+      public final Integer   metricsPort;
       
       Config(LogbackColors logColors, boolean   vis, String externalToolsConfig, 
-              String logDir, String contikiPath, String coojaPath, String javac) 
+              String logDir, String contikiPath, String coojaPath, String javac, Integer metricsPort) 
       {
           this.logColors            = logColors;
           this.vis                  = vis;
@@ -2033,6 +2051,7 @@ public class Cooja {
           this.contikiPath          = contikiPath;
           this.coojaPath            = coojaPath;
           this.javac                = javac;
+          this.metricsPort          = metricsPort;
       }
 
       public LogbackColors   logColors()    { return this.logColors; };
@@ -2042,6 +2061,7 @@ public class Cooja {
       public String    contikiPath()        { return this.contikiPath;};
       public String    coojaPath()          { return this.coojaPath;};
       public String    javac()              { return this.javac;};
+      public Integer   metricsPort()        { return this.metricsPort;};
   }
 
   public record LogbackColors(String error, String warn, String info, String fallback) {}
@@ -30,10 +30,17 @@
 
 package org.contikios.cooja;
 
-import java.util.PriorityQueue;
+import java.util.Arrays;
 import java.util.function.Predicate;
 
 /**
+ * Simulation event queue.
+ * <p>
+ * The queue is a binary heap kept in primitive arrays, ordered by time and
+ * by insertion order for events with the same time, so scheduling an
+ * event does not allocate anything once the arrays have grown. Each event
+ * knows its position in the heap, so it can be removed in O(log n).
+ *
  * @author Joakim Eriksson (ported to COOJA by Fredrik Osterlind)
  *         Matthew Bradbury <matt-bradbury@live.co.uk>
  */
@@ -41,48 +48,15 @@ final class EventQueue {
 
   private long count;
 
-  public static final class Pair implements Comparable<Pair> {
-    public final TimeEvent event;
-    public final long time;
-
-    private final long uuid;
+  private TimeEvent[] events = new TimeEvent[256];
+  private long[] times = new long[256];
+  private long[] uuids = new long[256];
+  private int size;
 
-    public Pair(TimeEvent event, long time, long uuid) {
-      this.event = event;
-      this.time = time;
-      this.uuid = uuid;
-    }
-
-    @Override
-    public int compareTo(Pair other) {
-      if (time < other.time)
-      {
-        return -1;
-      }
-      else if (time > other.time)
-      {
-        return +1;
-      }
-      else
-      {
-        // Tiebreaker, to prioritise events based on insertion order
-        if (uuid < other.uuid)
-        {
-          return -1;
-        }
-        else if (uuid > other.uuid)
-        {
-          return +1;
-        }
-        else
-        {
-          throw new RuntimeException("Bad compare");
-        }
-      }
-    }
-  }
-
-  private final PriorityQueue<Pair> queue = new PriorityQueue<>();
+  /** Time of the event last returned by popFirst() or peekFirst(). */
+  private long firstTime;
+  /** Insertion order of the event last returned by peekFirst(). */
+  private long firstId;
 
   /**
    * Should only be called from simulation thread!
@@ -98,10 +72,21 @@ final class EventQueue {
       removeFromQueue(event);
     }
 
+    if (size == events.length) {
+      int capacity = size * 2;
+      events = Arrays.copyOf(events, capacity);
+      times = Arrays.copyOf(times, capacity);
+      uuids = Arrays.copyOf(uuids, capacity);
+    }
     // Each event is given a monotonically increasing unique id.
     // This is used in a tiebreaker in the queue, so events that are
     // inserted earlier are executed first.
-    queue.add(new Pair(event, time, count++));
+    int pos = size++;
+    events[pos] = event;
+    times[pos] = time;
+    uuids[pos] = count++;
+    event.queueIndex = pos;
+    siftUp(pos);
 
     event.setScheduled(true);
   }
@@ -113,7 +98,7 @@ final class EventQueue {
    * @return True if event was removed
    */
   private boolean removeFromQueue(TimeEvent event) {
-    boolean removed = queue.removeIf((Pair p) -> p.event == event);
+    boolean removed = remove(event);
 
     assert removed == event.isQueued();
 
@@ -126,54 +111,190 @@ final class EventQueue {
   }
 
   public void clear() {
-    queue.clear();
+    for (int i = 0; i < size; i++) {
+      events[i].setScheduled(false);
+      events[i].queueIndex = -1;
+      events[i] = null;
+    }
+    size = 0;
   }
 
   /**
    * Should only be called from simulation thread!
    *
-   * @return Event
+   * @return Event, the time of the event is returned by getFirstTime()
    */
-  public Pair popFirst() {
-    Pair tmp;
+  public TimeEvent popFirst() {
+    TimeEvent tmp;
 
     while (true)
     {
-      tmp = queue.poll();
-
-      if (tmp == null) {
+      if (size == 0) {
         return null;
       }
+      tmp = events[0];
+      firstTime = times[0];
+      removeAt(0);
 
-      boolean scheduled = tmp.event.isScheduled();
+      boolean scheduled = tmp.isScheduled();
 
+      // No longer scheduled or queued
+      tmp.setScheduled(false);
       if (scheduled)
       {
-        // No longer scheduled or queued
-        tmp.event.setScheduled(false);
         break;
       }
 
       // If not scheduled, then find the next scheduled event
     }
 
-    if (tmp.event.isQueued() || tmp.event.isScheduled() ) {
-          throw new IllegalStateException("Event is already scheduled: " + tmp.event);
+    return tmp;
+  }
+
+  /**
+   * Returns the first scheduled event without removing it. Events that are
+   * no longer scheduled are dropped from the queue on the way.
+   *
+   * @return Event or null, the time of the event is returned by getFirstTime()
+   */
+  public TimeEvent peekFirst() {
+    while (size > 0) {
+      TimeEvent tmp = events[0];
+      if (tmp.isScheduled()) {
+        firstTime = times[0];
+        firstId = uuids[0];
+        return tmp;
+      }
+      removeAt(0);
+      tmp.setScheduled(false);
     }
+    return null;
+  }
 
-    return tmp;
+  /**
+   * @return Time of the event last returned by popFirst() or peekFirst()
+   */
+  public long getFirstTime() {
+    return firstTime;
+  }
+
+  /**
+   * @return Insertion order of the event last returned by peekFirst()
+   */
+  public long getFirstId() {
+    return firstId;
+  }
+
+  /**
+   * Drops the queue entry of an event without touching its scheduling state.
+   * Used when the event was rescheduled outside the queue.
+   *
+   * @param event Event
+   */
+  void discard(TimeEvent event) {
+    remove(event);
+  }
+
+  private boolean remove(TimeEvent event) {
+    int i = event.queueIndex;
+    if (i < 0 || i >= size || events[i] != event) {
+      return false;
+    }
+    removeAt(i);
+    return true;
   }
 
   public boolean isEmpty() {
-    return queue.isEmpty();
+    return size == 0;
   }
 
   public boolean removeIf(final Predicate<TimeEvent> pred) {
-    return queue.removeIf((Pair p) -> pred.test(p.event));
+    int kept = 0;
+    for (int i = 0; i < size; i++) {
+      TimeEvent event = events[i];
+      if (pred.test(event)) {
+        event.setScheduled(false);
+        event.queueIndex = -1;
+      } else {
+        move(i, kept++);
+      }
+    }
+    if (kept == size) {
+      return false;
+    }
+    Arrays.fill(events, kept, size, null);
+    size = kept;
+    for (int i = size / 2 - 1; i >= 0; i--) {
+      siftDown(i);
+    }
+    return true;
+  }
+
+  private void removeAt(int pos) {
+    events[pos].queueIndex = -1;
+    int last = --size;
+    if (pos != last) {
+      move(last, pos);
+      events[last] = null;
+      siftDown(pos);
+      siftUp(pos);
+    } else {
+      events[last] = null;
+    }
+  }
+
+  private boolean less(int a, int b) {
+    return times[a] < times[b] || (times[a] == times[b] && uuids[a] < uuids[b]);
+  }
+
+  private void move(int from, int to) {
+    events[to] = events[from];
+    times[to] = times[from];
+    uuids[to] = uuids[from];
+    events[to].queueIndex = to;
+  }
+
+  private void swap(int a, int b) {
+    TimeEvent event = events[a];
+    long time = times[a];
+    long uuid = uuids[a];
+    move(b, a);
+    events[b] = event;
+    times[b] = time;
+    uuids[b] = uuid;
+    event.queueIndex = b;
+  }
+
+  private void siftUp(int pos) {
+    while (pos > 0) {
+      int parent = (pos - 1) >>> 1;
+      if (!less(pos, parent)) {
+        break;
+      }
+      swap(pos, parent);
+      pos = parent;
+    }
+  }
+
+  private void siftDown(int pos) {
+    while (true) {
+      int child = 2 * pos + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && less(child + 1, child)) {
+        child++;
+      }
+      if (!less(child, pos)) {
+        break;
+      }
+      swap(pos, child);
+      pos = child;
+    }
   }
 
   @Override
   public String toString() {
-    return "EventQueue with " + queue.size() + " events";
+    return "EventQueue with " + size + " events";
   }
 }
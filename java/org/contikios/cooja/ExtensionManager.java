@@ -62,6 +62,7 @@ import org.contikios.cooja.radiomediums.LogisticLoss;
 import org.contikios.cooja.radiomediums.SilentRadioMedium;
 import org.contikios.cooja.radiomediums.UDGM;
 import org.contikios.cooja.radiomediums.UDGMConstantLoss;
+import org.contikios.cooja.serialsocket.SerialGatewayPlugin;
 import org.contikios.cooja.serialsocket.SerialSocketClient;
 import org.contikios.cooja.serialsocket.SerialSocketServer;
 import org.contikios.mrm.MRM;
@@ -91,6 +92,7 @@ public class ExtensionManager {
     registerBuiltinPlugin(PowerTracker.class);
     registerBuiltinPlugin(SerialSocketClient.class);
     registerBuiltinPlugin(SerialSocketServer.class);
+    registerBuiltinPlugin(SerialGatewayPlugin.class);
     registerBuiltinPlugin(MspCLI.class);
     registerBuiltinPlugin(MspCodeWatcher.class);
     registerBuiltinPlugin(MspStackWatcher.class);
@@ -31,8 +31,6 @@
 package org.contikios.cooja;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.nio.file.StandardOpenOption.APPEND;
-import static java.nio.file.StandardOpenOption.CREATE;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
@@ -40,6 +38,7 @@ import java.lang.reflect.UndeclaredThrowableException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Semaphore;
 import javax.script.CompiledScript;
@@ -48,6 +47,8 @@ import javax.swing.JTextArea;
 import org.contikios.cooja.SimEventCentral.LogOutputEvent;
 import org.contikios.cooja.SimEventCentral.LogOutputListener;
 import org.contikios.cooja.plugins.ScriptRunner;
+import org.contikios.cooja.script.FileSinkPool;
+import org.contikios.cooja.script.LogFilter;
 import org.contikios.cooja.script.ScriptLog;
 import org.contikios.cooja.script.ScriptMote;
 import org.contikios.cooja.script.ScriptParser;
@@ -75,12 +76,19 @@ public class LogScriptEngine {
   private final LogOutputListener logOutputListener = new LogOutputListener() {
     @Override
     public void newLogOutput(LogOutputEvent ev) {
-      if (scriptThread == null || !scriptThread.isAlive()) {
+      if (!isScriptActive()) {
         return;
       }
 
       // Only called from the simulation loop.
       final var mote = ev.getMote();
+      final var filter = waitFilter;
+      if (filter != null && !filter.matches(mote.getID(), ev.getTime(), ev.msg)) {
+        // The script is waiting for something else.
+        skippedOutput = true;
+        return;
+      }
+      skippedOutput = false;
       try {
         // Update script variables.
         engine.put("mote", mote);
@@ -103,8 +111,16 @@ public class LogScriptEngine {
   private Semaphore semaphoreScript; /* Semaphores blocking script/simulation */
   private Semaphore semaphoreSim;
   private Thread scriptThread; /* Script thread */
+  private CompiledScript stateMachineScript; /* Last compiled script, if it can run on the simulation thread */
+  private boolean inline; /* Script is stepped on the simulation thread */
+  private boolean inlineActive;
   private final Simulation simulation;
 
+  private List<LogFilter> logFilters = List.of();
+  private LogFilter waitFilter; /* Condition of the WAIT_UNTIL the script waits in, if known */
+  private boolean skippedOutput; /* Last log output was not passed to the script */
+  private final FileSinkPool fileSinks = new FileSinkPool(); /* Files written by log.append() and log.writeFile() */
+
   private long timeout;
   private long startTime;
   private long startRealTime;
@@ -130,8 +146,36 @@ public class LogScriptEngine {
     logWriter = null;
   }
 
+  private boolean isScriptActive() {
+    if (inline) {
+      return inlineActive;
+    }
+    return scriptThread != null && scriptThread.isAlive();
+  }
+
   /* Only called from the simulation loop */
   private void stepScript() {
+    waitFilter = null;
+    if (inline) {
+      if (!inlineActive) {
+        return;
+      }
+      Object rv;
+      try {
+        rv = engine.invokeFunction("__resume");
+      } catch (Exception e) {
+        logger.error("Script error:", e);
+        if (Cooja.isVisualized()) {
+          Cooja.showErrorDialog("Script error", e, false);
+        }
+        rv = 1;
+      }
+      if (rv != null) {
+        scriptEnded(((Number) rv).intValue());
+      }
+      return;
+    }
+
     /* Release script - halt simulation */
     Semaphore semScript = semaphoreScript;
     Semaphore semSim = semaphoreSim;
@@ -170,6 +214,7 @@ public class LogScriptEngine {
 
   protected void closeLog() {
     simulation.getEventCentral().removeLogOutputListener(logOutputListener);
+    fileSinks.close();
     if (Cooja.isVisualized()) {
       return;
     }
@@ -189,6 +234,14 @@ public class LogScriptEngine {
     timeoutProgressEvent.remove();
 
     engine.put("SHUTDOWN", true);
+    waitFilter = null;
+    skippedOutput = false;
+
+    if (inline) {
+      inlineActive = false;
+      fileSinks.close();
+      return;
+    }
 
     try {
       if (semaphoreScript != null) {
@@ -217,6 +270,7 @@ public class LogScriptEngine {
       }
     }
     scriptThread = null;
+    fileSinks.close();
   }
 
   /** Take a user script and return a compiled script that can be activated.
@@ -228,11 +282,40 @@ public class LogScriptEngine {
       timeout = DEFAULT_TIMEOUT;
     }
     logger.info("Script timeout in " + (timeout/Simulation.MILLISECOND) + " ms");
+    logFilters = parser.getLogFilters();
+    /* Opt-in: the translation makes all var declarations global */
+    if ("true".equals(simulation.getCfg().opts().get("script-inline"))) {
+      String stateMachine = parser.getJSStateMachineCode();
+      if (stateMachine != null) {
+        stateMachineScript = engine.compile(stateMachine);
+        return stateMachineScript;
+      }
+      logger.info("Script uses YIELD() in ways that need a script thread");
+    }
+    stateMachineScript = null;
     return engine.compile(parser.getJSCode());
   }
 
-  /** Allocate semaphores, set up the internal state of the engine, and start the script thread. */
+  /** Set up the internal state of the engine, and start the script: on the simulation thread
+   *  if it was compiled as a state machine, otherwise on a new script thread. */
   public boolean activateScript(final CompiledScript script) {
+    inline = script == stateMachineScript;
+    if (inline) {
+      putScriptVariables();
+      try {
+        script.eval();
+      } catch (ScriptException e) {
+        logger.error("Script error:", e);
+        if (Cooja.isVisualized()) {
+          Cooja.showErrorDialog("Script error", e, false);
+        }
+        return false;
+      }
+      inlineActive = true;
+      scheduleTimeout();
+      return true;
+    }
+
     semaphoreScript = new Semaphore(1);
     semaphoreSim = new Semaphore(0);
     try {
@@ -241,18 +324,9 @@ public class LogScriptEngine {
       logger.error("Error when creating engine: " + e.getMessage(), e);
       return false;
     }
-    // Setup script variables.
-    engine.put("TIMEOUT", false);
-    engine.put("SHUTDOWN", false);
     engine.put("SEMAPHORE_SCRIPT", semaphoreScript);
     engine.put("SEMAPHORE_SIM", semaphoreSim);
-    engine.put("log", scriptLog);
-    engine.put("global", new HashMap<>());
-    engine.put("sim", simulation);
-    engine.put("gui", simulation.getCooja());
-    engine.put("mote", null);
-    engine.put("msg", "");
-    engine.put("node", new ScriptMote());
+    putScriptVariables();
     scriptThread = new Thread(() -> {
       int rv = 1;
       try {
@@ -263,12 +337,7 @@ public class LogScriptEngine {
           Cooja.showErrorDialog("Script error", e, false);
         }
       }
-      // rv == -1 means something else is shutting down Cooja, for example the SerialSocket commands in 17-tun-rpl-br.
-      if (rv != -1) {
-        scriptLog(rv == 0 ? "TEST OK\n" : "TEST FAILED\n");
-      }
-      deactivateScript();
-      simulation.stopSimulation(rv > 0 ? rv : null);
+      scriptEnded(rv);
     }, "script");
     scriptThread.start();
     try {
@@ -278,19 +347,53 @@ public class LogScriptEngine {
       deactivateScript();
       return false;
     }
+    scheduleTimeout();
+    return true;
+  }
+
+  private void putScriptVariables() {
+    engine.put("TIMEOUT", false);
+    engine.put("SHUTDOWN", false);
+    engine.put("log", scriptLog);
+    engine.put("global", new HashMap<>());
+    engine.put("sim", simulation);
+    engine.put("gui", simulation.getCooja());
+    engine.put("mote", null);
+    engine.put("msg", "");
+    engine.put("node", new ScriptMote());
+  }
+
+  private void scriptEnded(int rv) {
+    // rv == -1 means something else is shutting down Cooja, for example the SerialSocket commands in 17-tun-rpl-br.
+    if (rv != -1) {
+      scriptLog(rv == 0 ? "TEST OK\n" : "TEST FAILED\n");
+    }
+    deactivateScript();
+    simulation.stopSimulation(rv > 0 ? rv : null);
+  }
+
+  private void scheduleTimeout() {
     startRealTime = System.currentTimeMillis();
     startTime = simulation.getSimulationTime();
     simulation.invokeSimulationThread(() -> {
       simulation.scheduleEvent(timeoutProgressEvent, startTime + Math.max(1000, timeout / 20));
       simulation.scheduleEvent(timeoutEvent, startTime + timeout);
     });
-    return true;
   }
 
   private final TimeEvent timeoutEvent = new TimeEvent() {
     @Override
     public void execute(long t) {
       logger.info("Timeout event @ " + t);
+      var ev = skippedOutput ? simulation.getEventCentral().getLogStore().getLast() : null;
+      if (ev != null) {
+        // Let the timeout handler see the last log output.
+        engine.put("mote", ev.getMote());
+        engine.put("id", ev.getMote().getID());
+        engine.put("time", ev.getTime());
+        engine.put("msg", ev.msg);
+      }
+      skippedOutput = false;
       engine.put("TIMEOUT", true);
       stepScript();
       deactivateScript();
@@ -328,27 +431,32 @@ public class LogScriptEngine {
     }
     @Override
     public void append(String filename, String msg) {
-      try (var out = Files.newBufferedWriter(Path.of(filename), UTF_8, CREATE, APPEND)) {
-        out.write(msg);
+      try {
+        fileSinks.append(filename, msg);
       } catch (Exception e) {
         logger.warn("Test append failed: " + filename + ": " + e.getMessage());
       }
     }
     @Override
     public void writeFile(String filename, String msg) {
-      try (var out = Files.newBufferedWriter(Path.of(filename), UTF_8)) {
-        out.write(msg);
+      try {
+        fileSinks.writeFile(filename, msg);
       } catch (Exception e) {
         logger.warn("Write file failed: " + filename + ": " + e.getMessage());
       }
     }
 
+    @Override
+    public void setWaitFilter(int index) {
+      waitFilter = logFilters.get(index);
+    }
+
     @Override
     public void generateMsg(final Mote currentMote, final long delay, final String msg) {
       final TimeEvent generateEvent = new TimeEvent() {
         @Override
         public void execute(long t) {
-          if (scriptThread == null || !scriptThread.isAlive()) {
+          if (!isScriptActive()) {
             logger.info("script thread not alive. try deactivating script.");
             return;
           }
@@ -0,0 +1,527 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import org.contikios.cooja.SimEventCentral.LogOutputEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only store of mote log output.
+ * <p>
+ * Messages are kept UTF-8 encoded in fixed-size byte pages, and indexed by
+ * sequence number in primitive arrays holding time, mote and message
+ * position. The oldest messages are evicted when the store grows beyond its
+ * capacity. Full pages can optionally be spilled to a file, so that only
+ * the index and the page being written stay on the heap. Spilled pages are
+ * read back with positional reads, and the file slots of evicted pages are
+ * reused, so the file is no larger than the pages still in the store.
+ * <p>
+ * Messages are read through {@link Query}, which remembers how far it has
+ * read, so repeated polls only look at messages appended since the last
+ * poll. Appending is done by the simulation thread, queries may be run
+ * from any thread.
+ */
+public class LogStore {
+  private static final Logger logger = LoggerFactory.getLogger(LogStore.class);
+
+  private static final int CHUNK_BITS = 12;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int PAGE_BITS = 20;
+  private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+  /** Index of CHUNK_SIZE consecutive messages. */
+  private static final class IndexChunk {
+    final long[] times = new long[CHUNK_SIZE];
+    final int[] motes = new int[CHUNK_SIZE];
+    final long[] offsets = new long[CHUNK_SIZE];
+    final int[] lengths = new int[CHUNK_SIZE];
+  }
+
+  private final ArrayList<IndexChunk> chunks = new ArrayList<>();
+  private long chunkBase; /* Chunk number of chunks.get(0) */
+  /** Page of message bytes, either on the heap or in a spill file slot. */
+  private static final class Page {
+    ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE); /* null when spilled */
+    int slot = -1; /* Spill file slot, -1 when on the heap */
+  }
+
+  private final ArrayList<Page> pages = new ArrayList<>();
+  private long pageBase; /* Page number of pages.get(0) */
+
+  private long first; /* Sequence number of the oldest message */
+  private long next; /* Sequence number of the next message */
+  private long writeOffset; /* Byte offset of the next message */
+  private int capacity;
+
+  /* Motes seen in the log, indexed by slot, null for removed motes */
+  private final ArrayList<Mote> motes = new ArrayList<>();
+  private final IdentityHashMap<Mote, Integer> moteSlots = new IdentityHashMap<>();
+  /* Sequence number of the last message of each slot */
+  private long[] lastSeqs = new long[16];
+  /* Slots of removed motes, reused once their messages are evicted */
+  private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+
+  private FileChannel spill;
+  private int spillSlots; /* Number of slots in the spill file */
+  /* Spill file slots of evicted pages */
+  private final ArrayDeque<Integer> freeSpillSlots = new ArrayDeque<>();
+
+  /**
+   * @param capacity Maximum number of messages kept
+   */
+  public LogStore(int capacity) {
+    this.capacity = Math.max(1, capacity);
+  }
+
+  /**
+   * Spills full pages to a file. The file is deleted when the store is
+   * closed.
+   *
+   * @param file Spill file
+   * @throws IOException If the file could not be created
+   */
+  public synchronized void spillTo(Path file) throws IOException {
+    close();
+    spill = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    logger.info("Spilling log output to " + file);
+  }
+
+  /**
+   * Stops spilling to disk and deletes the spill file. Pages already
+   * spilled are read back to the heap first.
+   */
+  public synchronized void close() {
+    if (spill == null) {
+      return;
+    }
+    for (var page : pages) {
+      if (page.slot >= 0) {
+        var buffer = ByteBuffer.allocate(PAGE_SIZE);
+        read(page.slot, 0, buffer.array(), 0, PAGE_SIZE);
+        page.buffer = buffer;
+        page.slot = -1;
+      }
+    }
+    closeSpill();
+  }
+
+  private void closeSpill() {
+    try {
+      spill.close();
+    } catch (IOException e) {
+      logger.warn("Failed to close log spill file: " + e.getMessage());
+    }
+    spill = null;
+    spillSlots = 0;
+    freeSpillSlots.clear();
+  }
+
+  /**
+   * Appends a message.
+   *
+   * @param mote Mote
+   * @param time Simulation time
+   * @param msg Message
+   * @return Sequence number of the message
+   */
+  public synchronized long append(Mote mote, long time, String msg) {
+    var slot = moteSlots.get(mote);
+    if (slot == null) {
+      slot = newSlot(mote);
+    }
+    var bytes = msg.getBytes(UTF_8);
+    var seq = next;
+    lastSeqs[slot] = seq;
+    if ((seq >> CHUNK_BITS) - chunkBase == chunks.size()) {
+      chunks.add(new IndexChunk());
+    }
+    var chunk = chunks.get((int) ((seq >> CHUNK_BITS) - chunkBase));
+    var i = (int) seq & (CHUNK_SIZE - 1);
+    chunk.times[i] = time;
+    chunk.motes[i] = slot;
+    chunk.offsets[i] = writeOffset;
+    chunk.lengths[i] = bytes.length;
+    write(bytes);
+    next++;
+    if (next - first > capacity) {
+      first = next - capacity;
+      trim();
+    }
+    return seq;
+  }
+
+  private int newSlot(Mote mote) {
+    int slot;
+    var free = freeSlots.peekFirst();
+    if (free != null && lastSeqs[free] < first) {
+      freeSlots.removeFirst();
+      slot = free;
+      motes.set(slot, mote);
+    } else {
+      slot = motes.size();
+      motes.add(mote);
+      if (slot == lastSeqs.length) {
+        lastSeqs = Arrays.copyOf(lastSeqs, 2 * slot);
+      }
+    }
+    moteSlots.put(mote, slot);
+    return slot;
+  }
+
+  /**
+   * Releases a mote that was removed from the simulation. Its messages are
+   * no longer returned, and its slot is reused once they are evicted.
+   *
+   * @param mote Mote
+   */
+  public synchronized void removeMote(Mote mote) {
+    var slot = moteSlots.remove(mote);
+    if (slot != null) {
+      motes.set(slot, null);
+      freeSlots.addLast(slot);
+    }
+  }
+
+  private void write(byte[] bytes) {
+    int pos = 0;
+    while (pos < bytes.length) {
+      var pageNo = writeOffset >> PAGE_BITS;
+      if (pageNo - pageBase == pages.size()) {
+        pages.add(new Page());
+      }
+      var page = pages.get((int) (pageNo - pageBase));
+      var at = (int) writeOffset & (PAGE_SIZE - 1);
+      var n = Math.min(bytes.length - pos, PAGE_SIZE - at);
+      page.buffer.put(at, bytes, pos, n);
+      pos += n;
+      writeOffset += n;
+      if (at + n == PAGE_SIZE && spill != null) {
+        spillPage(pages.get((int) (pageNo - pageBase)));
+      }
+    }
+  }
+
+  private void spillPage(Page page) {
+    var free = freeSpillSlots.pollFirst();
+    var slot = free != null ? free : spillSlots;
+    var position = (long) slot << PAGE_BITS;
+    try {
+      var src = page.buffer.duplicate().clear();
+      while (src.hasRemaining()) {
+        spill.write(src, position + src.position());
+      }
+    } catch (IOException e) {
+      logger.error("Failed to spill log output, keeping it in memory: " + e.getMessage());
+      close();
+      return;
+    }
+    if (free == null) {
+      spillSlots++;
+    }
+    page.buffer = null;
+    page.slot = slot;
+  }
+
+  private void read(int slot, int at, byte[] bytes, int pos, int n) {
+    var dst = ByteBuffer.wrap(bytes, pos, n);
+    var position = ((long) slot << PAGE_BITS) + at;
+    try {
+      while (dst.hasRemaining()) {
+        if (spill.read(dst, position + dst.position() - pos) < 0) {
+          throw new IOException("Unexpected end of file");
+        }
+      }
+    } catch (IOException e) {
+      logger.error("Failed to read spilled log output: " + e.getMessage());
+    }
+  }
+
+  /** Drops chunks and pages that only hold evicted messages. */
+  private void trim() {
+    var firstChunk = first >> CHUNK_BITS;
+    while (chunkBase < firstChunk && !chunks.isEmpty()) {
+      chunks.remove(0);
+      chunkBase++;
+    }
+    var firstPage = (first == next ? writeOffset : offset(first)) >> PAGE_BITS;
+    while (pageBase < firstPage && !pages.isEmpty()) {
+      var page = pages.remove(0);
+      if (page.slot >= 0) {
+        freeSpillSlots.addLast(page.slot);
+      }
+      pageBase++;
+    }
+  }
+
+  /** Removes all messages. Sequence numbers are not reused. */
+  public synchronized void clear() {
+    first = next;
+    trim();
+  }
+
+  public synchronized int getCapacity() {
+    return capacity;
+  }
+
+  public synchronized void setCapacity(int capacity) {
+    this.capacity = Math.max(1, capacity);
+    if (next - first > this.capacity) {
+      first = next - this.capacity;
+      trim();
+    }
+  }
+
+  /** @return Number of messages in the store */
+  public synchronized int size() {
+    return (int) (next - first);
+  }
+
+  /** @return Sequence number of the oldest message in the store */
+  public synchronized long getFirst() {
+    return first;
+  }
+
+  /** @return Sequence number the next appended message will get */
+  public synchronized long getNext() {
+    return next;
+  }
+
+  /**
+   * @param time Simulation time
+   * @return Sequence number of the first message at or after time
+   */
+  public synchronized long find(long time) {
+    long lo = first;
+    long hi = next;
+    while (lo < hi) {
+      long mid = (lo + hi) >>> 1;
+      if (time(mid) < time) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * @param seq Sequence number
+   * @return Message, or null if it is not in the store or its mote was removed
+   */
+  public synchronized LogOutputEvent getEvent(long seq) {
+    if (seq < first || seq >= next) {
+      return null;
+    }
+    return event(seq);
+  }
+
+  /** @return Most recent message, or null if the store is empty or its mote was removed */
+  public synchronized LogOutputEvent getLast() {
+    return getEvent(next - 1);
+  }
+
+  /** @return New query over all messages in the store */
+  public Query query() {
+    return new Query();
+  }
+
+  private IndexChunk chunk(long seq) {
+    return chunks.get((int) ((seq >> CHUNK_BITS) - chunkBase));
+  }
+
+  private long time(long seq) {
+    return chunk(seq).times[(int) seq & (CHUNK_SIZE - 1)];
+  }
+
+  private long offset(long seq) {
+    return chunk(seq).offsets[(int) seq & (CHUNK_SIZE - 1)];
+  }
+
+  private String message(long seq) {
+    var chunk = chunk(seq);
+    var i = (int) seq & (CHUNK_SIZE - 1);
+    var offset = chunk.offsets[i];
+    var bytes = new byte[chunk.lengths[i]];
+    int pos = 0;
+    while (pos < bytes.length) {
+      var page = pages.get((int) ((offset >> PAGE_BITS) - pageBase));
+      var at = (int) offset & (PAGE_SIZE - 1);
+      var n = Math.min(bytes.length - pos, PAGE_SIZE - at);
+      if (page.slot >= 0) {
+        read(page.slot, at, bytes, pos, n);
+      } else {
+        page.buffer.get(at, bytes, pos, n);
+      }
+      pos += n;
+      offset += n;
+    }
+    return new String(bytes, UTF_8);
+  }
+
+  private LogOutputEvent event(long seq) {
+    var chunk = chunk(seq);
+    var i = (int) seq & (CHUNK_SIZE - 1);
+    var mote = motes.get(chunk.motes[i]);
+    return mote == null ? null : new LogOutputEvent(mote, chunk.times[i], message(seq));
+  }
+
+  /**
+   * Filtered view of the store that reads incrementally. Each poll returns
+   * the matching messages appended since the previous poll; the filters are
+   * applied once per message. Messages evicted before they were polled are
+   * skipped.
+   */
+  public final class Query {
+    private long cursor = -1;
+    private long from = Long.MIN_VALUE;
+    private long to = Long.MAX_VALUE;
+    private int[] moteIds;
+    private Mote mote;
+    private Pattern pattern;
+
+    private Query() {
+    }
+
+    /** Only match messages from motes with the given IDs. */
+    public Query motes(int... ids) {
+      moteIds = ids.clone();
+      Arrays.sort(moteIds);
+      return this;
+    }
+
+    /** Only match messages from the given mote. */
+    public Query mote(Mote mote) {
+      this.mote = mote;
+      return this;
+    }
+
+    /** Only match messages at or after the given simulation time. */
+    public Query from(long time) {
+      from = time;
+      return this;
+    }
+
+    /** Only match messages at or before the given simulation time. */
+    public Query to(long time) {
+      to = time;
+      return this;
+    }
+
+    /** Only match messages in which the pattern is found. */
+    public Query matching(Pattern pattern) {
+      this.pattern = pattern;
+      return this;
+    }
+
+    /** Skips all messages currently in the store. */
+    public Query newOnly() {
+      synchronized (LogStore.this) {
+        cursor = next;
+      }
+      return this;
+    }
+
+    /** Reads the store from the start again on the next poll. */
+    public Query rewind() {
+      cursor = -1;
+      return this;
+    }
+
+    /**
+     * Passes the matching messages appended since the last poll to the
+     * consumer. The consumer is called without holding the store lock.
+     *
+     * @param consumer Consumer
+     * @return Number of messages passed to the consumer
+     */
+    public int poll(Consumer<LogOutputEvent> consumer) {
+      var matches = new ArrayList<LogOutputEvent>();
+      synchronized (LogStore.this) {
+        long seq = cursor < 0 && from != Long.MIN_VALUE ? find(from) : Math.max(cursor, first);
+        var slot = -1;
+        if (mote != null) {
+          var s = moteSlots.get(mote);
+          slot = s == null ? Integer.MAX_VALUE : s;
+        }
+        for (; seq < next; seq++) {
+          var chunk = chunk(seq);
+          var i = (int) seq & (CHUNK_SIZE - 1);
+          var time = chunk.times[i];
+          if (time > to) {
+            /* Time is monotonic, nothing more will match. */
+            seq = Long.MAX_VALUE;
+            break;
+          }
+          if (time < from) {
+            continue;
+          }
+          var s = chunk.motes[i];
+          if (slot >= 0 && s != slot) {
+            continue;
+          }
+          var m = motes.get(s);
+          if (m == null) {
+            /* Removed mote */
+            continue;
+          }
+          if (moteIds != null && Arrays.binarySearch(moteIds, m.getID()) < 0) {
+            continue;
+          }
+          var msg = message(seq);
+          if (pattern != null && !pattern.matcher(msg).find()) {
+            continue;
+          }
+          matches.add(new LogOutputEvent(m, time, msg));
+        }
+        cursor = seq;
+      }
+      for (var ev : matches) {
+        consumer.accept(ev);
+      }
+      return matches.size();
+    }
+  }
+}
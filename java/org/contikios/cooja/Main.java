@@ -119,6 +119,24 @@ class Main {
   @Option(names = "--autostart", description = "automatically start simulations")
   boolean autoStart;
 
+  /**
+   * Option for serving metrics over HTTP.
+   */
+  @Option(names = "--metrics-port", paramLabel = "PORT", description = "serve metrics on http://localhost:PORT/metrics")
+  Integer metricsPort;
+
+  /**
+   * Option for sampling the program counter of MSP430 motes.
+   */
+  @Option(names = "--profile-out", paramLabel = "FILE", description = "write a sampling profile of MSP430 motes to FILE")
+  String profileOut;
+
+  /**
+   * Option for debugging MSP430 motes with GDB.
+   */
+  @Option(names = "--gdb-port", paramLabel = "PORT", description = "serve GDB remote debugging of MSP430 motes on PORT")
+  Integer gdbPort;
+
   /**
    * Option for specifying simulation files to load.
    */
@@ -263,6 +281,12 @@ class Main {
       var autoStart = map.getOrDefault("autostart", Boolean.toString(options.autoStart || !options.gui));
       var updateSim = map.getOrDefault("update-simulation", Boolean.toString(options.updateSimulation));
       var logDir = map.getOrDefault("logdir", options.logDir);
+      if (options.profileOut != null) {
+        map.putIfAbsent("profile-out", options.profileOut);
+      }
+      if (options.gdbPort != null) {
+        map.putIfAbsent("gdb-port", options.gdbPort.toString());
+      }
       simConfigs.add(new Simulation.SimConfig(file, randomSeed == null ? options.randomSeed : Long.decode(randomSeed),
               Boolean.parseBoolean(autoStart), Boolean.parseBoolean(updateSim), logDir, map));
     }
@@ -306,7 +330,7 @@ class Main {
       var colors = new LogbackColors(ANSIConstants.BOLD + "91", "96",
               ANSIConstants.GREEN_FG, ANSIConstants.DEFAULT_FG);
       var cfg = new Config(colors, options.gui, options.externalUserConfig,
-                options.logDir, options.contikiPath, options.coojaPath, options.javac);
+                options.logDir, options.contikiPath, options.coojaPath, options.javac, options.metricsPort);
       Cooja.go(cfg, simConfigs);
     } else { // Start MSPSim.
       var config = new ArgumentManager(options.simulationFiles.toArray(new String[0]));
@@ -51,6 +51,19 @@ public abstract class MoteTimeEvent extends TimeEvent {
     return mote;
   }
 
+  /**
+   * Returns true if the event only changes the state of its own mote, and
+   * reaches the rest of the simulation only through event triggers, the
+   * random generator and event scheduling. Such events may be executed in
+   * parallel with the events of other motes.
+   *
+   * @see ParallelExecutor
+   * @return True if the event is local to its mote
+   */
+  public boolean isMoteLocal() {
+    return false;
+  }
+
   /**
    * there always used MoteTimeEvent(, 0), this constructor now useless
    *
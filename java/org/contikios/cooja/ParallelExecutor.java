@@ -0,0 +1,506 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Conservative parallel execution of mote events.
+ * <p>
+ * Events are executed in time windows. A window starts at the first queued
+ * event and ends at the lookahead of the radio medium, the shortest time
+ * before a radio operation of one mote can affect another mote. It also ends
+ * at the first event that is not local to a mote, and at a maximum window
+ * length. Within a window the events of each mote are executed in order, and
+ * different motes run in parallel on a pool of worker threads.
+ * <p>
+ * Mote-local events reach the rest of the simulation only through event
+ * triggers, the random generator and event scheduling. A worker only calls
+ * triggers or draws random numbers when every other mote has executed past
+ * the same point in sequential event order, so observers see the same
+ * sequence as in sequential execution. Events scheduled by workers are
+ * ordered by the event that scheduled them, and are added to the event queue
+ * in that order at the end of the window. The outcome therefore matches
+ * sequential execution exactly, whatever the number of threads and the
+ * window length.
+ * <p>
+ * If an event fails, for example on a breakpoint, the other motes still
+ * complete the window before the error is passed on.
+ */
+public final class ParallelExecutor {
+  private final EventQueue eventQueue;
+  private final int threads;
+  private final long maxWindow;
+
+  private final ConcurrentLinkedQueue<Worker> idleWorkers = new ConcurrentLinkedQueue<>();
+  private int workerCount;
+  private volatile boolean isShutdown;
+
+  /* Current window */
+  private Task[] tasks;
+  private Order boundary;
+  private final AtomicInteger next = new AtomicInteger();
+  private final AtomicInteger finished = new AtomicInteger();
+  private final AtomicInteger busy = new AtomicInteger();
+  private final AtomicInteger blocked = new AtomicInteger();
+  private Thread waiter;
+
+  /* Result of the last window */
+  private long executed;
+  private long lastTime;
+
+  /**
+   * @param eventQueue Event queue of the simulation
+   * @param threads Number of worker threads
+   * @param maxWindow Maximum window length (us)
+   */
+  ParallelExecutor(EventQueue eventQueue, int threads, long maxWindow) {
+    if (threads < 1 || maxWindow < 1) {
+      throw new IllegalArgumentException("Bad parallel execution parameters: " + threads + " threads, window " + maxWindow);
+    }
+    this.eventQueue = eventQueue;
+    this.threads = threads;
+    this.maxWindow = maxWindow;
+  }
+
+  private static boolean isLocal(TimeEvent event) {
+    return event instanceof MoteTimeEvent moteEvent && moteEvent.isMoteLocal();
+  }
+
+  /**
+   * Executes one window of events, starting with the first event in the queue.
+   * May only be called from the simulation thread.
+   *
+   * @param lookahead Radio medium lookahead (us)
+   * @return False if the first event is not local to a mote, and nothing was executed
+   */
+  boolean executeWindow(long lookahead) {
+    executed = 0;
+    TimeEvent first = eventQueue.peekFirst();
+    if (!isLocal(first)) {
+      return false;
+    }
+    long start = eventQueue.getFirstTime();
+    long length = Math.min(lookahead, maxWindow);
+    long end = start > Long.MAX_VALUE - length ? Long.MAX_VALUE : start + length;
+    boundary = new Order(end, -1, null, 0);
+
+    /* Hand out the events of the window to their motes */
+    var motes = new IdentityHashMap<Mote, Task>();
+    var windowTasks = new ArrayList<Task>();
+    for (TimeEvent event = first; event != null; event = eventQueue.peekFirst()) {
+      long time = eventQueue.getFirstTime();
+      if (time >= end) {
+        break;
+      }
+      if (!isLocal(event)) {
+        boundary = new Order(time, eventQueue.getFirstId(), null, 0);
+        break;
+      }
+      var order = new Order(time, eventQueue.getFirstId(), null, 0);
+      eventQueue.popFirst();
+      var mote = ((MoteTimeEvent) event).getMote();
+      var task = motes.get(mote);
+      if (task == null) {
+        task = new Task(mote, order);
+        motes.put(mote, task);
+        windowTasks.add(task);
+      }
+      var entry = new Entry(event, order);
+      event.setScheduled(true);
+      task.entries.put(event, entry);
+      task.queue.add(entry);
+    }
+
+    /* Tasks are claimed in order of their first event */
+    tasks = windowTasks.toArray(new Task[0]);
+    next.set(0);
+    finished.set(0);
+    blocked.set(0);
+    waiter = Thread.currentThread();
+    int workers = Math.min(threads, tasks.length);
+    busy.set(workers);
+    for (int i = 0; i < workers; i++) {
+      startWorker();
+    }
+    while (finished.get() < tasks.length || busy.get() > 0) {
+      LockSupport.park(this);
+    }
+    commit();
+    return true;
+  }
+
+  /**
+   * Adds the events scheduled by the workers to the event queue, in
+   * sequential order, and passes on the first error of the window.
+   */
+  private void commit() {
+    var scheduled = new ArrayList<Entry>();
+    Throwable error = null;
+    Order errorOrder = null;
+    lastTime = 0;
+    for (Task task : tasks) {
+      executed += task.executed;
+      lastTime = Math.max(lastTime, task.lastTime);
+      for (TimeEvent event : task.queuedElsewhere) {
+        eventQueue.discard(event);
+      }
+      for (Entry entry : task.outbox) {
+        if (task.entries.get(entry.event) == entry) {
+          scheduled.add(entry);
+        }
+      }
+      if (task.error != null && (errorOrder == null || task.errorOrder.compareTo(errorOrder) < 0)) {
+        error = task.error;
+        errorOrder = task.errorOrder;
+      }
+    }
+    scheduled.sort(null);
+    /* An event shared by motes keeps its last schedule only */
+    var last = new IdentityHashMap<TimeEvent, Entry>();
+    for (Entry entry : scheduled) {
+      last.put(entry.event, entry);
+    }
+    for (Entry entry : scheduled) {
+      if (last.get(entry.event) != entry) {
+        continue;
+      }
+      boolean isScheduled = entry.event.isScheduled();
+      entry.event.setScheduled(false);
+      if (isScheduled) {
+        eventQueue.addEvent(entry.event, entry.order.time);
+      }
+    }
+    tasks = null;
+
+    if (error instanceof RuntimeException e) {
+      throw e;
+    }
+    if (error instanceof Error e) {
+      throw e;
+    }
+    if (error != null) {
+      throw new RuntimeException(error);
+    }
+  }
+
+  /**
+   * @return Number of events executed in the last window
+   */
+  long getExecuted() {
+    return executed;
+  }
+
+  /**
+   * @return Time of the last event executed in the last window
+   */
+  long getLastTime() {
+    return lastTime;
+  }
+
+  /**
+   * Stops the worker threads.
+   */
+  void shutdown() {
+    isShutdown = true;
+    for (Worker worker : idleWorkers) {
+      LockSupport.unpark(worker);
+    }
+  }
+
+  private void startWorker() {
+    Worker worker = idleWorkers.poll();
+    if (worker == null) {
+      worker = new Worker(this, "sim-worker-" + workerCount++);
+      worker.start();
+    }
+    worker.run = true;
+    LockSupport.unpark(worker);
+  }
+
+  private void runTasks(Worker worker) {
+    int i;
+    while ((i = next.getAndIncrement()) < tasks.length) {
+      runTask(worker, tasks[i]);
+      if (finished.incrementAndGet() == tasks.length) {
+        LockSupport.unpark(waiter);
+      }
+    }
+    idleWorkers.add(worker);
+    if (busy.decrementAndGet() == 0) {
+      LockSupport.unpark(waiter);
+    }
+  }
+
+  private void runTask(Worker worker, Task task) {
+    worker.task = task;
+    Entry entry;
+    while ((entry = task.queue.poll()) != null) {
+      TimeEvent event = entry.event;
+      if (task.entries.get(event) != entry) {
+        /* Rescheduled */
+        continue;
+      }
+      task.entries.remove(event);
+      if (!event.isScheduled()) {
+        /* Removed */
+        event.setScheduled(false);
+        continue;
+      }
+      event.setScheduled(false);
+      worker.current = entry.order;
+      task.setPosition(entry.order);
+      try {
+        event.execute(entry.order.time);
+      } catch (Throwable e) {
+        task.error = e;
+        task.errorOrder = entry.order;
+        /* Keep the remaining events for when the simulation continues */
+        for (Entry remaining : task.queue) {
+          if (task.entries.get(remaining.event) == remaining) {
+            task.outbox.add(remaining);
+          }
+        }
+        task.queue.clear();
+        break;
+      }
+      task.executed++;
+      task.lastTime = entry.order.time;
+    }
+    worker.current = null;
+    worker.task = null;
+    task.setPosition(Order.END);
+  }
+
+  /**
+   * Schedules an event from a worker thread.
+   *
+   * @return False if the current thread is not executing a window
+   */
+  boolean schedule(TimeEvent event, long time) {
+    if (!(Thread.currentThread() instanceof Worker worker) || worker.executor != this || worker.current == null) {
+      return false;
+    }
+    if (event.isScheduled()) {
+      throw new IllegalStateException("Event is already scheduled: " + event);
+    }
+    Task task = worker.task;
+    if (event.isQueued() && !task.entries.containsKey(event)) {
+      task.queuedElsewhere.add(event);
+    }
+    var entry = new Entry(event, worker.current.child(time));
+    task.entries.put(event, entry);
+    event.setScheduled(true);
+    if (entry.order.compareTo(boundary) >= 0) {
+      task.outbox.add(entry);
+    } else if (event instanceof MoteTimeEvent moteEvent && moteEvent.getMote() == task.mote && moteEvent.isMoteLocal()) {
+      task.queue.add(entry);
+    } else {
+      throw new IllegalStateException("Event scheduled inside a parallel window: " + event);
+    }
+    return true;
+  }
+
+  /**
+   * @return True if the current thread is a worker executing a window
+   */
+  boolean isWorker() {
+    return Thread.currentThread() instanceof Worker worker && worker.executor == this && worker.current != null;
+  }
+
+  /**
+   * @return Time of the event executed by the current worker thread, or -1
+   */
+  long getWorkerTime() {
+    if (Thread.currentThread() instanceof Worker worker && worker.executor == this && worker.current != null) {
+      return worker.current.time;
+    }
+    return -1;
+  }
+
+  /**
+   * Waits until every other mote has executed past the event executed by
+   * the current thread, if it is a worker thread. Called before anything
+   * that is shared between motes.
+   */
+  public static void awaitTurn() {
+    if (Thread.currentThread() instanceof Worker worker && worker.current != null) {
+      worker.executor.awaitTurn(worker);
+    }
+  }
+
+  private void awaitTurn(Worker worker) {
+    Order order = worker.current;
+    /* Positions only move forward, tasks that were past us stay past us */
+    for (Task task : tasks) {
+      if (task == worker.task || task.position.compareTo(order) > 0) {
+        continue;
+      }
+      if (blocked.incrementAndGet() == busy.get() && next.get() < tasks.length) {
+        /* Everybody waits for a mote that has not started yet */
+        busy.incrementAndGet();
+        startWorker();
+      }
+      task.waiters.add(worker);
+      while (task.position.compareTo(order) <= 0) {
+        LockSupport.park(this);
+      }
+      task.waiters.remove(worker);
+      blocked.decrementAndGet();
+    }
+  }
+
+  /**
+   * Position of an event in sequential execution order. Events that were
+   * queued before the window are ordered by time and insertion order.
+   * Events scheduled during the window come after those, ordered by the
+   * event that scheduled them, as in the event queue.
+   */
+  private static final class Order implements Comparable<Order> {
+    static final Order END = new Order(Long.MAX_VALUE, Long.MAX_VALUE, null, 0);
+
+    final long time;
+    final long id;
+    final Order parent;
+    final int index;
+    /* Events scheduled by this event, only used by the executing worker */
+    int children;
+
+    Order(long time, long id, Order parent, int index) {
+      this.time = time;
+      this.id = id;
+      this.parent = parent;
+      this.index = index;
+    }
+
+    Order child(long time) {
+      return new Order(time, -1, this, children++);
+    }
+
+    @Override
+    public int compareTo(Order o) {
+      if (this == o) {
+        return 0;
+      }
+      if (time != o.time) {
+        return Long.compare(time, o.time);
+      }
+      if (parent == null || o.parent == null) {
+        if (parent == o.parent) {
+          return Long.compare(id, o.id);
+        }
+        return parent == null ? -1 : 1;
+      }
+      int c = parent.compareTo(o.parent);
+      return c != 0 ? c : Integer.compare(index, o.index);
+    }
+  }
+
+  private static final class Entry implements Comparable<Entry> {
+    final TimeEvent event;
+    final Order order;
+
+    Entry(TimeEvent event, Order order) {
+      this.event = event;
+      this.order = order;
+    }
+
+    @Override
+    public int compareTo(Entry o) {
+      return order.compareTo(o.order);
+    }
+  }
+
+  /**
+   * The events of one mote in the current window.
+   */
+  private static final class Task {
+    final Mote mote;
+    final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    /* Latest entry of each event scheduled in the window */
+    final IdentityHashMap<TimeEvent, Entry> entries = new IdentityHashMap<>();
+    /* Events to be added to the event queue after the window */
+    final ArrayList<Entry> outbox = new ArrayList<>();
+    /* Rescheduled events that are still in the event queue */
+    final ArrayList<TimeEvent> queuedElsewhere = new ArrayList<>();
+    final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    /* No event of the mote comes before this position */
+    volatile Order position;
+    Throwable error;
+    Order errorOrder;
+    long executed;
+    long lastTime;
+
+    Task(Mote mote, Order first) {
+      this.mote = mote;
+      position = first;
+    }
+
+    void setPosition(Order order) {
+      position = order;
+      if (!waiters.isEmpty()) {
+        for (Thread thread : waiters) {
+          LockSupport.unpark(thread);
+        }
+      }
+    }
+  }
+
+  static final class Worker extends Thread {
+    final ParallelExecutor executor;
+    volatile boolean run;
+    Task task;
+    Order current;
+
+    Worker(ParallelExecutor executor, String name) {
+      super(name);
+      this.executor = executor;
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      while (!executor.isShutdown) {
+        if (!run) {
+          LockSupport.park(this);
+          continue;
+        }
+        run = false;
+        executor.runTasks(this);
+      }
+    }
+  }
+}
@@ -226,6 +226,55 @@ public class RadioConnection {
     return allDestinations.toArray(new Radio[0]);
   }
 
+  /**
+   * @see #getAllDestinations()
+   * @return Number of destination radios, including interfered destinations
+   */
+  public int getAllDestinationsCount() {
+    return allDestinations.size();
+  }
+
+  /**
+   * @param index Index in all destinations
+   * @return Destination radio
+   * @see #getAllDestinations()
+   */
+  public Radio getAllDestination(int index) {
+    return allDestinations.get(index);
+  }
+
+  /**
+   * @param index Index in all destinations
+   * @return Radio propagation delay (us)
+   * @see #getAllDestinations()
+   */
+  public long getAllDestinationDelay(int index) {
+    return allDestinationDelays.get(index);
+  }
+
+  /**
+   * @return Number of non-interfered destinations
+   */
+  public int getDestinationsCount() {
+    return destinationsNonInterfered.size();
+  }
+
+  /**
+   * @param index Index in non-interfered destinations
+   * @return Non-interfered destination radio
+   * @see #getDestinations()
+   */
+  public Radio getDestination(int index) {
+    return destinationsNonInterfered.get(index);
+  }
+
+  /**
+   * @return Number of interfered radios, including destinations
+   */
+  public int getInterferedCount() {
+    return allInterfered.size();
+  }
+
   /**
    * @return All radios interfered by this connection, including destinations
    */
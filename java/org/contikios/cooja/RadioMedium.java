@@ -116,6 +116,18 @@ public interface RadioMedium {
    */
   boolean setConfigXML(Collection<Element> configXML, boolean visAvailable);
 
+  /**
+   * Returns the shortest simulated time between a radio operation of one
+   * mote and its first effect on any other mote. Mote events within this
+   * time of each other may be executed in parallel.
+   *
+   * @see ParallelExecutor
+   * @return Lookahead (us), or 0 if radio operations affect other motes immediately
+   */
+  default long getLookahead() {
+    return 0;
+  }
+
   /**
    * Called when radio medium is removed. 
    */
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Paces simulation time against real time for speed limited simulations.
+ * <p>
+ * The pacer keeps an anchor, a pair of simulation time and System.nanoTime(),
+ * and computes the real deadline of every simulation time from it, so waits
+ * do not accumulate rounding errors. Waits park the thread until shortly
+ * before the deadline and spin for the rest. The spin time adapts to how
+ * late parkNanos() returns on this system. Waits shorter than the spin time
+ * only spin. Callers keep the CPU idle by not waiting for every closely
+ * spaced event, see {@link #hasParked()}.
+ * <p>
+ * Statistics are kept on how late the simulation reaches its deadlines:
+ * the wake error of completed waits, and the lag when the simulation is
+ * slower than real time. If the lag exceeds a second the pacer restarts from
+ * the current time instead of running at full speed to catch up.
+ */
+public final class RealTimePacer {
+  private static final long MIN_SPIN = TimeUnit.MICROSECONDS.toNanos(10);
+  private static final long MAX_SPIN = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long MAX_LAG = TimeUnit.SECONDS.toNanos(1);
+
+  private double speed = 1.0;
+  private long anchorSimTime;
+  private long anchorNanos;
+  /* Time before a deadline when parking stops */
+  private long spinNanos = TimeUnit.MICROSECONDS.toNanos(100);
+  /* True if the last wait parked the thread */
+  private boolean parked;
+
+  /* Statistics, written by the simulation thread */
+  private volatile long waits;
+  private volatile long wakeErrorSum;
+  private volatile long maxWakeError;
+  private volatile long lag;
+  private volatile long maxLag;
+  private volatile long resyncs;
+
+  /**
+   * Restarts pacing from the current real time.
+   *
+   * @param speed Simulation speed relative to real time
+   * @param simTime Current simulation time (us)
+   */
+  public void reset(double speed, long simTime) {
+    this.speed = speed;
+    anchorSimTime = simTime;
+    anchorNanos = System.nanoTime();
+  }
+
+  /**
+   * Waits until real time catches up with simulation time.
+   *
+   * @param simTime Simulation time to wait for (us)
+   * @param isInterrupted Checked after every park, the wait ends early if true
+   * @return Simulation time reached, less than simTime if the wait ended early
+   */
+  public long await(long simTime, BooleanSupplier isInterrupted) {
+    long deadline = anchorNanos + (long) ((simTime - anchorSimTime) * 1000 / speed);
+    long now = System.nanoTime();
+    parked = false;
+    if (deadline - now <= 0) {
+      lag = Math.max(0, now - deadline);
+      if (lag > maxLag) {
+        maxLag = lag;
+      }
+      if (lag > MAX_LAG) {
+        resyncs++;
+        reset(speed, simTime);
+      }
+      return simTime;
+    }
+    while (deadline - now > spinNanos) {
+      long park = deadline - now - spinNanos;
+      LockSupport.parkNanos(this, park);
+      parked = true;
+      long woken = System.nanoTime();
+      long overshoot = woken - now - park;
+      if (overshoot > 0) {
+        /* Spin for twice the average overshoot */
+        spinNanos = Math.max(MIN_SPIN, Math.min(MAX_SPIN, spinNanos - spinNanos / 8 + overshoot / 4));
+      }
+      now = woken;
+      if (isInterrupted.getAsBoolean() && now < deadline) {
+        lag = 0;
+        return Math.min(simTime, anchorSimTime + (long) ((now - anchorNanos) * speed / 1000));
+      }
+    }
+    while (now < deadline) {
+      Thread.onSpinWait();
+      now = System.nanoTime();
+    }
+    long error = now - deadline;
+    waits++;
+    wakeErrorSum += error;
+    if (error > maxWakeError) {
+      maxWakeError = error;
+    }
+    lag = 0;
+    return simTime;
+  }
+
+  /**
+   * @return True if the last wait parked the thread, that is the simulation
+   *         was ahead of real time by more than the spin time
+   */
+  public boolean hasParked() {
+    return parked;
+  }
+
+  /** @return Number of completed waits */
+  public long getWaits() {
+    return waits;
+  }
+
+  /** @return Mean time completed waits returned after their deadline (ns) */
+  public long getMeanWakeError() {
+    long n = waits;
+    return n == 0 ? 0 : wakeErrorSum / n;
+  }
+
+  /** @return Max time a completed wait returned after its deadline (ns) */
+  public long getMaxWakeError() {
+    return maxWakeError;
+  }
+
+  /** @return Time the simulation was behind real time at the last deadline (ns) */
+  public long getLag() {
+    return lag;
+  }
+
+  /** @return Max time the simulation has been behind real time (ns) */
+  public long getMaxLag() {
+    return maxLag;
+  }
+
+  /** @return Number of times the pacer gave up catching up */
+  public long getResyncs() {
+    return resyncs;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d waits, wake error mean %d us, max %d us, lag max %d us, %d resyncs",
+            waits, getMeanWakeError() / 1000, maxWakeError / 1000, maxLag / 1000, resyncs);
+  }
+}
@@ -97,6 +97,7 @@ class SafeRandom extends Random {
   @Override
   protected int next(int bits) {
     assertSimThread();
+    ParallelExecutor.awaitTurn();
     return super.next(bits);
   }
   
@@ -28,7 +28,6 @@
 
 package org.contikios.cooja;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Optional;
@@ -66,19 +65,10 @@ public class SimEventCentral {
         msg = msg.substring(0, msg.length() - 1);
       }
 
-      // Evict the oldest event if the buffer will get full by the current message.
-      if (logOutputEvents.size() > logOutputBufferSize - 1) {
-        synchronized (logOutputEvents) {
-          // Use pollFirst since it does not throw exceptions like removeFirst when the queue is empty.
-          logOutputEvents.pollFirst();
-        }
-      }
-
       // Store log output, and notify listeners.
-      var ev = new LogOutputEvent(data.mote(), simulation.getSimulationTime(), msg);
-      synchronized (logOutputEvents) {
-        logOutputEvents.add(ev);
-      }
+      var time = simulation.getSimulationTime();
+      logOutputStore.append(data.mote(), time, msg);
+      var ev = new LogOutputEvent(data.mote(), time, msg);
       int sz = logOutputListeners.length;
       for (int i = 0 ; i < sz; ++i) {
           logOutputListeners[i].newLogOutput(ev);
@@ -149,6 +139,7 @@ public class SimEventCentral {
         moteObservations.remove(o);
       }
     }
+    logOutputStore.removeMote(mote);
   }
 
   /* LOG OUTPUT */
@@ -163,8 +154,8 @@ public class SimEventCentral {
     }
   }
   /** Default buffer sizes. */
-  private int logOutputBufferSize = Integer.parseInt(Cooja.getExternalToolsSetting("BUFFERSIZE_LOGOUTPUT", "" + 40000));
-  private final ArrayDeque<LogOutputEvent> logOutputEvents = new ArrayDeque<>();
+  private final LogStore logOutputStore =
+          new LogStore(Integer.parseInt(Cooja.getExternalToolsSetting("BUFFERSIZE_LOGOUTPUT", "" + 40000)));
   public interface LogOutputListener {
     void newLogOutput(LogOutputEvent ev);
   }
@@ -199,28 +190,29 @@ public class SimEventCentral {
       }
 
       /* Clear logs (TODO config) */
-      logOutputEvents.clear();
+      logOutputStore.clear();
     }
   }
 
+  /**
+   * Returns the log output store. The store only receives log output while
+   * there are log output listeners.
+   *
+   * @return Log output store
+   */
+  public LogStore getLogStore() {
+    return logOutputStore;
+  }
   public LogOutputEvent[] getLogOutputHistory() {
-    synchronized (logOutputEvents) {
-      return logOutputEvents.toArray(new LogOutputEvent[0]);
-    }
+    var history = new ArrayList<LogOutputEvent>(logOutputStore.size());
+    logOutputStore.query().poll(history::add);
+    return history.toArray(new LogOutputEvent[0]);
   }
   public int getLogOutputBufferSize() {
-    return logOutputBufferSize;
+    return logOutputStore.getCapacity();
   }
   public void setLogOutputBufferSize(int size) {
-    logOutputBufferSize = size;
-    
-    /* We may have to remove some events now */
-    while (logOutputEvents.size() > logOutputBufferSize) {
-      LogOutputEvent removed = logOutputEvents.pollFirst();
-      if (removed == null) {
-        break;
-      }
-    }
+    logOutputStore.setCapacity(size);
   }
   public int getLogOutputObservationsCount() {
     int count=0;
@@ -233,13 +225,18 @@ public class SimEventCentral {
     return count;
   }
 
+  /** Called when the simulation is removed. */
+  void removed() {
+    logOutputStore.close();
+  }
+
   @Override
   public String toString() {
     return 
     "\nActive mote observations: " + moteObservations.size() +
     "\n" +
     "\nLog output listeners: " + logOutputListeners.length +
-    "\nLog output history: " + logOutputEvents.size()
+    "\nLog output history: " + logOutputStore.size()
     ;
   }
   
@@ -249,7 +246,7 @@ public class SimEventCentral {
 
     /* Log output buffer size */
     var element = new Element("logoutput");
-    element.setText(String.valueOf(logOutputBufferSize));
+    element.setText(String.valueOf(logOutputStore.getCapacity()));
     config.add(element);
 
     return config;
@@ -259,7 +256,7 @@ public class SimEventCentral {
     for (Element element : configXML) {
       String name = element.getName();
       if (name.equals("logoutput")) {
-        logOutputBufferSize = Integer.parseInt(element.getText());
+        logOutputStore.setCapacity(Integer.parseInt(element.getText()));
       }
     }
   }
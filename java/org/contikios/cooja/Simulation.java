@@ -30,6 +30,8 @@ package org.contikios.cooja;
 import java.awt.Color;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -37,9 +39,15 @@ import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
 import javax.swing.JTextArea;
 import org.contikios.cooja.Cooja.PluginConstructionException;
 import org.contikios.cooja.Cooja.SimulationCreationException;
+import org.contikios.cooja.energy.EnergyModel;
+import org.contikios.cooja.energy.EnergyTracker;
+import org.contikios.cooja.serialsocket.SerialGateway;
+import org.contikios.cooja.trace.SimulationTrace;
 import org.contikios.cooja.util.EventTriggers;
 import org.contikios.cooja.util.EventTriggers.AddRemove;
 import org.jdom2.Element;
@@ -89,13 +97,15 @@ public final class Simulation {
   /* Limit simulation speed to maxSpeed; if maxSpeed is 1.0 simulation is run at real-time speed */
   private double speedLimit;
   /* Used to restrict simulation speed */
-  private long speedLimitLastSimtime;
-  private long speedLimitLastRealtime;
+  private static final long MIN_PACING_STEP = MILLISECOND;
+  private static final long MAX_PACING_STEP = 100 * MILLISECOND;
+  private final RealTimePacer pacer = new RealTimePacer();
   
   private long lastStartRealTime;
   private long lastStartSimulationTime;
   private long currentSimulationTime;
   private TimeEvent currentSimulationEvent = null;
+  private long eventCount; /* Number of executed events */
 
   private String title;
 
@@ -119,6 +129,9 @@ public final class Simulation {
   /* Event queue */
   private final EventQueue eventQueue = new EventQueue();
 
+  /* Parallel execution of mote events, null if disabled */
+  private final ParallelExecutor parallel;
+
   /** Simulation state change triggers */
   private final EventTriggers<EventTriggers.Operation, Simulation> simulationStateTriggers = new EventTriggers<>();
 
@@ -149,6 +162,8 @@ public final class Simulation {
   private final SimConfig cfg;
 
   private final TimeEvent delayEvent = new TimeEvent() {
+    private final BooleanSupplier hasCommands = () -> !commandQueue.isEmpty();
+
     @Override
     public void execute(long t) {
       if (speedLimitNone) {
@@ -156,26 +171,21 @@ public final class Simulation {
         return;
       }
 
-      long diffSimtime = getSimulationTimeMillis() - speedLimitLastSimtime; /* ms */
-      long diffRealtime = System.currentTimeMillis() - speedLimitLastRealtime; /* ms */
-      long expectedDiffRealtime = (long) (diffSimtime/speedLimit);
-      long sleep = expectedDiffRealtime - diffRealtime;
-      if (sleep > 0) { // Slow down simulation.
-        scheduleEvent(this, t+MILLISECOND);
-        try {
-          Thread.sleep(sleep);
-        } catch (InterruptedException e) {
-          Thread.currentThread().interrupt(); // Restore interrupted status.
-        }
-      } else { // Speed up simulation.
-        scheduleEvent(this, t - Math.min(-1, sleep) * MILLISECOND);
+      /* Sleep until the next event is due, or until a command arrives.
+         Unless the last wait parked, events closer than MIN_PACING_STEP
+         run in a batch, so dense simulations do not wait per event. */
+      long next = t + MAX_PACING_STEP;
+      if (eventQueue.peekFirst() != null) {
+        long first = eventQueue.getFirstTime();
+        next = Math.min(next, pacer.hasParked() ? first : Math.max(first, t + MIN_PACING_STEP));
       }
-
-      /* Update counters every second */
-      if (diffRealtime > 1000) {
-        speedLimitLastRealtime = System.currentTimeMillis();
-        speedLimitLastSimtime = getSimulationTimeMillis();
+      long reached = Math.max(t, pacer.await(next, hasCommands));
+      if (reached < next) {
+        /* Woken by a command, let it run at the current real time.
+           No event is scheduled before next, so time can move forward. */
+        currentSimulationTime = reached;
       }
+      scheduleEvent(this, reached);
     }
     @Override
     public String toString() {
@@ -198,13 +208,16 @@ public final class Simulation {
     randomGenerator = new SafeRandom(seed, this);
     currentRadioMedium = ExtensionManager.createRadioMedium(cooja, this, radioMediumClass);
     maxMoteStartupDelay = Math.max(0, moteStartDelay);
+    int parallelThreads = Integer.parseInt(cfg.opts().getOrDefault("parallel-threads", "1"));
+    long parallelWindow = Long.parseLong(cfg.opts().getOrDefault("parallel-window", "1000"));
+    parallel = parallelThreads > 1 ? new ParallelExecutor(eventQueue, parallelThreads, parallelWindow) : null;
     simulationThread = new Thread(() -> {
       boolean isAlive = true;
       do {
         boolean isSimulationRunning = false;
         boolean sheduled;
         boolean qued;
-        EventQueue.Pair nextEvent = null;
+        TimeEvent nextEvent = null;
         try {
           while (isAlive) {
             Object cmd;
@@ -220,15 +233,30 @@ public final class Simulation {
               }
             } while (cmd != null && isAlive);
 
+            if (isSimulationRunning && parallel != null) {
+              // Handle a window of mote events in parallel, if the radio medium allows it.
+              long lookahead = currentRadioMedium.getLookahead();
+              if (lookahead > 0 && scriptEngines.isEmpty()) {
+                try {
+                  if (parallel.executeWindow(lookahead)) {
+                    continue;
+                  }
+                } finally {
+                  eventCount += parallel.getExecuted();
+                  currentSimulationTime = Math.max(currentSimulationTime, parallel.getLastTime());
+                }
+              }
+            }
             if (isSimulationRunning) {
               // Handle one simulation event, and update simulation time.
               nextEvent = eventQueue.popFirst();
               assert nextEvent != null : "Ran out of events in eventQueue";
-              assert nextEvent.time >= currentSimulationTime : "Event from the past";
-        currentSimulationEvent= nextEvent.event;
-              currentSimulationTime = nextEvent.time;
-              nextEvent.event.execute(currentSimulationTime);
+              assert eventQueue.getFirstTime() >= currentSimulationTime : "Event from the past";
+        currentSimulationEvent= nextEvent;
+              currentSimulationTime = eventQueue.getFirstTime();
+              nextEvent.execute(currentSimulationTime);
         currentSimulationEvent       = null;
+              eventCount++;
             }
           }
         } catch (SimulationStop e) {
@@ -237,7 +265,7 @@ public final class Simulation {
           logger.error("Simulation stopped due to error: " + e.getMessage(), e);
           if (Cooja.isVisualized()) {
             String errorTitle = "Simulation error";
-            if (nextEvent != null && nextEvent.event instanceof MoteTimeEvent moteTimeEvent) {
+            if (nextEvent instanceof MoteTimeEvent moteTimeEvent) {
               errorTitle += ": " + moteTimeEvent.getMote();
             }
             Cooja.showErrorDialog(errorTitle, e, false);
@@ -258,6 +286,9 @@ public final class Simulation {
       isShutdown = true;
       commandQueue.clear();
       eventQueue.clear();
+      if (parallel != null) {
+        parallel.shutdown();
+      }
 
       // Deactivate all script engines
       for (var engine : scriptEngines) {
@@ -284,6 +315,7 @@ public final class Simulation {
 
       // Remove the radio medium
       currentRadioMedium.removed();
+      eventCentral.removed();
 
       simulationStateTriggers.trigger(EventTriggers.Operation.REMOVE, this);
     }, "sim");
@@ -416,6 +448,37 @@ public final class Simulation {
         ret = new SimulationCreationException("No plugin controlling simulation, aborting", null);
       }
     }
+    var gatewayPort = cfg.opts().get("serial-gateway-port");
+    if (ret == null && gatewayPort != null && !SerialGateway.get(this).listen(Integer.parseInt(gatewayPort))) {
+      ret = new SimulationCreationException("Failed to listen on serial gateway port " + gatewayPort, null);
+    }
+    var logSpill = cfg.opts().get("log-spill");
+    if (ret == null && logSpill != null) {
+      try {
+        eventCentral.getLogStore().spillTo(Path.of(logSpill));
+      } catch (IOException e) {
+        ret = new SimulationCreationException("Failed to create log spill file " + logSpill, e);
+      }
+    }
+    var trace = cfg.opts().get("trace");
+    if (ret == null && trace != null) {
+      try {
+        SimulationTrace.start(this, Path.of(cfg.logDir()).resolve(trace));
+      } catch (IOException e) {
+        ret = new SimulationCreationException("Failed to create simulation trace " + trace, e);
+      }
+    }
+    var energyLog = cfg.opts().get("energy-log");
+    if (ret == null && energyLog != null) {
+      var energyModel = cfg.opts().get("energy-model");
+      try {
+        var model = energyModel == null ? EnergyModel.defaultModel() : EnergyModel.load(Path.of(energyModel));
+        var interval = Long.parseLong(cfg.opts().getOrDefault("energy-interval", "1000")) * MILLISECOND;
+        EnergyTracker.start(this, model, interval, Path.of(cfg.logDir()).resolve(energyLog));
+      } catch (IOException | IllegalArgumentException e) {
+        ret = new SimulationCreationException("Failed to start energy accounting: " + e.getMessage(), e);
+      }
+    }
     if (ret != null) {
       removed();
       throw ret;
@@ -459,8 +522,9 @@ public final class Simulation {
 
     if (isRunning) {
       // Simulation starting
-      speedLimitLastRealtime = lastStartRealTime = System.currentTimeMillis();
-      speedLimitLastSimtime = lastStartSimulationTime = getSimulationTimeMillis();
+      lastStartRealTime = System.currentTimeMillis();
+      lastStartSimulationTime = getSimulationTimeMillis();
+      pacer.reset(speedLimit, currentSimulationTime);
     } else {
       // Simulation stopped
       var realTimeDuration = System.currentTimeMillis() - lastStartRealTime;
@@ -468,6 +532,9 @@ public final class Simulation {
       logger.info("Runtime: {} ms. Simulated time: {} ms. Speedup: {}",
                   realTimeDuration, simulationDuration,
                   ((double) simulationDuration / Math.max(1, realTimeDuration)));
+      if (!speedLimitNone) {
+        logger.info("Real-time pacing: {}", pacer);
+      }
     }
 
     synchronized (stateLock) {
@@ -489,6 +556,7 @@ public final class Simulation {
   public void invokeSimulationThread(Runnable r) {
     if (!isShutdown) {
       commandQueue.add(r);
+      LockSupport.unpark(simulationThread);
     }
   }
 
@@ -496,7 +564,7 @@ public final class Simulation {
    * @return True iff current thread is the simulation thread
    */
   public boolean isSimulationThread() {
-    return simulationThread == Thread.currentThread();
+    return simulationThread == Thread.currentThread() || parallel != null && parallel.isWorker();
   }
 
   /**
@@ -512,6 +580,9 @@ public final class Simulation {
    */
   public void scheduleEvent(final TimeEvent e, final long time) {
     assert isSimulationThread() : "Scheduling event from non-simulation thread: " + e;
+    if (parallel != null && parallel.schedule(e, time)) {
+      return;
+    }
     eventQueue.addEvent(e, time);
   }
 
@@ -576,6 +647,7 @@ public final class Simulation {
       returnValue = rv;
     }
     commandQueue.add(Cooja.isVisualized() ? Command.STOP : Command.QUIT);
+    LockSupport.unpark(simulationThread);
     return true;
   }
 
@@ -778,6 +850,7 @@ public final class Simulation {
     
     if (!isShutdown) {
       commandQueue.add(Command.QUIT);
+      LockSupport.unpark(simulationThread);
     }
   }
 
@@ -954,9 +1027,8 @@ public final class Simulation {
         }
         return;
       }
-      speedLimitLastRealtime = System.currentTimeMillis();
-      speedLimitLastSimtime = getSimulationTimeMillis();
       speedLimit = newSpeedLimit;
+      pacer.reset(speedLimit, currentSimulationTime);
 
       if (delayEvent.isScheduled()) {
         delayEvent.remove();
@@ -973,15 +1045,38 @@ public final class Simulation {
     return speedLimitNone ? null : speedLimit;
   }
 
+  /**
+   * @return Real-time pacer used when the simulation speed is limited
+   */
+  public RealTimePacer getPacer() {
+    return pacer;
+  }
+
   /**
    * Returns current simulation time.
    *
    * @return Simulation time (microseconds)
    */
   public long getSimulationTime() {
+    if (parallel != null && simulationThread != Thread.currentThread()) {
+      long time = parallel.getWorkerTime();
+      if (time >= 0) {
+        return time;
+      }
+    }
     return currentSimulationTime;
   }
 
+  /**
+   * Returns the number of events executed. May be called from any thread,
+   * the value may then lag slightly behind.
+   *
+   * @return Number of executed events
+   */
+  public long getEventCount() {
+    return eventCount;
+  }
+
   /**
    * Returns current simulation time rounded to milliseconds.
    *
@@ -989,7 +1084,7 @@ public final class Simulation {
    * @return Time rounded to milliseconds
    */
   public long getSimulationTimeMillis() {
-    return currentSimulationTime / MILLISECOND;
+    return getSimulationTime() / MILLISECOND;
   }
 
   /**
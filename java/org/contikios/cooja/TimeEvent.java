@@ -38,6 +38,8 @@ public abstract class TimeEvent {
 
   private boolean isQueued;
   private boolean isScheduled;
+  /* Position in the event queue heap, or -1 */
+  int queueIndex = -1;
 
   public TimeEvent() {
   }
@@ -84,6 +84,9 @@ public class ContikiMote extends AbstractWakeupMote<ContikiMoteType, SectionMote
   private final ArrayList<PolledBeforeAllTicks> polledBeforePassive = new ArrayList<>();
   private final ArrayList<PolledAfterAllTicks> polledAfterPassive = new ArrayList<>();
 
+  /** Library instance holding the native state while ticking this mote */
+  private final ContikiMoteType.CoreInstance instance;
+
   /**
    * Creates a new mote of given type.
    * Both the initial mote memory and the interface handler
@@ -93,7 +96,13 @@ public class ContikiMote extends AbstractWakeupMote<ContikiMoteType, SectionMote
    * @param sim Mote's simulation
    */
   protected ContikiMote(ContikiMoteType moteType, Simulation sim) throws MoteType.MoteTypeCreationException {
-    super(moteType, moteType.createInitialMemory(), sim);
+    this(moteType, moteType.allocateInstance(), sim);
+  }
+
+  private ContikiMote(ContikiMoteType moteType, ContikiMoteType.CoreInstance instance, Simulation sim)
+          throws MoteType.MoteTypeCreationException {
+    super(moteType, instance.createInitialMemory(), sim);
+    this.instance = instance;
     moteInterfaces = new MoteInterfaceHandler(this);
     for (var intf : moteInterfaces.getInterfaces()) {
       if (intf instanceof PolledBeforeActiveTicks) {
@@ -154,45 +163,48 @@ public class ContikiMote extends AbstractWakeupMote<ContikiMoteType, SectionMote
       return;
     }
 
-    /* Copy mote memory to Contiki */
-    moteType.setCoreMemory(moteMemory);
+    /* Motes sharing the library instance can run on other worker threads */
+    synchronized (instance) {
+      /* Copy mote memory to Contiki */
+      instance.setCoreMemory(moteMemory);
 
-    /* Handle a single Contiki events */
-    try {
-        execute_state = MoteState.STATE_EXEC;
-        moteType.tick();
-        execute_state = MoteState.STATE_OK;
-    } 
-    catch (RuntimeException e) {
-        execute_state = MoteState.STATE_HANG;
-        //coffeecatch_throw_exception rises Error
-        String dump = StringUtils.dumpStackTrace(e);
-        logger.error( "mote" + getID() 
-                      + "crashed with:" + e.toString()
-                      + dump 
-                    );
-    }
-    catch (Exception e) {
-        execute_state = MoteState.STATE_HANG;
-        //coffeecatch_throw_exception rises Error
-        String dump = StringUtils.dumpStackTrace(e);
-        logger.error( "mote" + getID() 
-                      + "crashed with:" + e.toString()
-                      + dump 
-                    );
-    }
-    catch (Error e) {
-        execute_state = MoteState.STATE_HANG;
-        //coffeecatch_throw_exception rises Error
-        String dump = StringUtils.dumpStackTrace(e);
-        logger.error( "mote" + getID() 
-                      + "crashed with:" + e.toString()
-                      + dump 
-                    );
-    }
+      /* Handle a single Contiki events */
+      try {
+          execute_state = MoteState.STATE_EXEC;
+          instance.tick();
+          execute_state = MoteState.STATE_OK;
+      } 
+      catch (RuntimeException e) {
+          execute_state = MoteState.STATE_HANG;
+          //coffeecatch_throw_exception rises Error
+          String dump = StringUtils.dumpStackTrace(e);
+          logger.error( "mote" + getID() 
+                        + "crashed with:" + e.toString()
+                        + dump 
+                      );
+      }
+      catch (Exception e) {
+          execute_state = MoteState.STATE_HANG;
+          //coffeecatch_throw_exception rises Error
+          String dump = StringUtils.dumpStackTrace(e);
+          logger.error( "mote" + getID() 
+                        + "crashed with:" + e.toString()
+                        + dump 
+                      );
+      }
+      catch (Error e) {
+          execute_state = MoteState.STATE_HANG;
+          //coffeecatch_throw_exception rises Error
+          String dump = StringUtils.dumpStackTrace(e);
+          logger.error( "mote" + getID() 
+                        + "crashed with:" + e.toString()
+                        + dump 
+                      );
+      }
 
-    /* Copy mote memory from Contiki */
-    moteType.getCoreMemory(moteMemory);
+      /* Copy mote memory from Contiki */
+      instance.getCoreMemory(moteMemory);
+    }
 
     moteMemory.pollForMemoryChanges();
     int sz = polledAfterActive.size();
@@ -224,10 +236,17 @@ public class ContikiMote extends AbstractWakeupMote<ContikiMoteType, SectionMote
   public void kill() {
       if (execute_state == MoteState.STATE_EXEC) {
           logger.warn( "killing mote"+getID() );
-          moteType.kill();
+          instance.kill();
       }
   }
 
+  @Override
+  protected boolean isExecutionLocal() {
+    /* The whole Contiki state is swapped in and out of the library instance on every tick,
+     * but motes sharing the only instance would just wait for each other. */
+    return moteType.getInstanceCount() > 1;
+  }
+
   @Override
   public boolean setConfigXML(Simulation sim, Collection<Element> configXML, boolean vis) 
           throws MoteType.MoteTypeCreationException 
@@ -31,6 +31,7 @@ package org.contikios.cooja.contikimote;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.awt.Container;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
@@ -112,6 +113,11 @@ import org.contikios.cooja.contikimote.interfaces.ContikiRS232;
  * Contiki system in order to create the initial memory. When a new mote is
  * created the createInitialMemory() method should be called to get this initial
  * memory for the mote.
+ * <p>
+ * The library can be loaded several times ("contiki-instances" simulation
+ * option, defaulting to 1). Every copy has its own data and bss, so motes
+ * pinned to different copies can be ticked concurrently by the parallel
+ * executor. With a single copy the motes are ticked sequentially.
  *
  * @author Fredrik Osterlind
  */
@@ -172,13 +178,10 @@ public class ContikiMoteType extends BaseContikiMoteType {
 
   // Type specific class configuration
 
-  private CoreComm myCoreComm;
-
-  // Initial memory for all motes of this type
-  private SectionMoteMemory initialMemory;
-
-  /** Offset between native (cooja) and contiki address space */
-  long offset;
+  /** Loaded copies of the Contiki library, motes are assigned round-robin */
+  private CoreInstance[] instances;
+  private int nextInstance;
+  private int instanceCount = 1;
 
   /**
    * Creates a new uninitialized Cooja mote type. This mote type needs to load
@@ -263,11 +266,18 @@ public class ContikiMoteType extends BaseContikiMoteType {
     return new ArrayMemory(addr, MemoryLayout.getNative(), new byte[size], variables);
   }
 
+  @Override
+  public boolean configureAndInit(Container top, Simulation sim, boolean vis) throws MoteTypeCreationException {
+    var opts = sim.getCfg().opts();
+    instanceCount = Math.max(1, Integer.parseInt(opts.getOrDefault("contiki-instances", "1")));
+    return super.configureAndInit(top, sim, vis);
+  }
+
   /** Load LibN.java and the corresponding .cooja file into memory. */
   @Override
   public boolean loadMoteFirmware(boolean vis) throws MoteTypeCreationException {
-    if (myCoreComm != null) {
-      throw new MoteTypeCreationException("Core communicator already used: " + myCoreComm.getClass().getName());
+    if (instances != null) {
+      throw new MoteTypeCreationException("Core communicator already used: " + instances[0].coreComm.getClass().getName());
     }
     Path tmpDir;
     try {
@@ -278,11 +288,7 @@ public class ContikiMoteType extends BaseContikiMoteType {
     }
     tmpDir.toFile().deleteOnExit();
 
-    // Create, compile, and load the Java wrapper that loads the C library.
-
-    // Allocate core communicator class
     final var firmwareFile = getContikiFirmwareFile();
-    myCoreComm = createCoreComm(tmpDir, firmwareFile);
 
     /* Parse addresses using map file
      * or output of command specified in external tools settings (e.g. nm -a )
@@ -375,48 +381,10 @@ public class ContikiMoteType extends BaseContikiMoteType {
       bssSecParser  = bss;
     }
 
-    /* We first need the value of Contiki's referenceVar, which tells us the
-     * memory offset between Contiki's variable and the relative addresses that
-     * were calculated directly from the library file.
-     *
-     * This offset will be used in Cooja in the memory abstraction to match
-     * Contiki's and Cooja's address spaces */
-    HashMap<String, Symbol> variables = new HashMap<>();
-    {
-      SectionMoteMemory tmp = new SectionMoteMemory(variables);
-      tmp.addMemorySection("tmp.data", dataSecParser.parse(0));
-      tmp.addMemorySection("tmp.bss", bssSecParser.parse(0));
-      if (commonSecParser != null) {
-        tmp.addMemorySection("tmp.common", commonSecParser.parse(0));
-      }
-
-      try {
-          VarMemory varMem = new VarMemory(tmp);
-          long referenceVar = varMem.getVariable("referenceVar").addr;
-          myCoreComm.setReferenceAddress(referenceVar);
-          offset = varMem.getAddrValueOf("referenceVar");
-          //offset = myCoreComm.getReferenceAddress() - variables.get("referenceVar").addr;
-      } catch (RuntimeException e) {
-        throw new MoteTypeCreationException("Error setting reference variable: " + e.getMessage(), e);
-      }
-
-      getCoreMemory(tmp);
-
-      logger.debug(firmwareFile.getName()
-              + ": offsetting Cooja mote address space: 0x" + Long.toHexString(offset));
-    }
-
-    /* Create initial memory: data+bss+optional common */
-    initialMemory = new SectionMoteMemory(variables);
-
-    initialMemory.addMemorySection("data", dataSecParser.parse(offset));
-
-    initialMemory.addMemorySection("bss", bssSecParser.parse(offset));
-
-    if (commonSecParser != null) {
-      initialMemory.addMemorySection("common", commonSecParser.parse(offset));
-    }
-    getCoreMemory(initialMemory);
+    // Create, compile, and load the Java wrapper that loads the C library.
+    instances = loadInstances(tmpDir, firmwareFile, instanceCount, dataSecParser, bssSecParser, commonSecParser);
+    logger.debug(firmwareFile.getName() + ": offsetting Cooja mote address space: 0x"
+            + Long.toHexString(instances[0].offset));
     return true;
   }
 
@@ -1178,64 +1146,128 @@ public class ContikiMoteType extends BaseContikiMoteType {
     }
   }
 
-  /**
-   * Ticks the currently loaded mote. This should not be used directly, but
-   * rather via {@link ContikiMote#execute(long)}.
-   */
-  protected void tick() {
-    myCoreComm.tick();
-  }
-
-  /**
-   * try abort mote executing thread
-   * */
-  public void kill() {
-      myCoreComm.kill();
-  }
-
   /**
    * Get the class name of next free core communicator class. If null is
    * returned, no classes are available.
    *
    * @return Class name
    */
-  private static String getAvailableClassName() {
+  static String getAvailableClassName() {
     return "Lib" + fileCounter;
   }
 
   /**
-   * Creates and returns a copy of this mote type's initial memory (just after
-   * the init function has been run). When a new mote is created it should get
-   * its memory from here.
-   *
-   * @return Initial memory of a mote type
+   * @return Number of loaded copies of the library
    */
-  public SectionMoteMemory createInitialMemory() {
-    return initialMemory.clone();
+  int getInstanceCount() {
+    return instances.length;
   }
 
   /**
-   * Copy core memory to given memory. This should not be used directly, but
-   * instead via ContikiMote.getMemory().
+   * Assigns a library instance to a new mote. The mote must use that instance,
+   * and the memory it creates, for its lifetime.
    *
-   * @param mem
-   *          Memory to set
+   * @return Library instance
    */
-  public void getCoreMemory(SectionMoteMemory mem) {
-    for (var sec : mem.getSections().values()) {
-      myCoreComm.getMemory(sec.getStartAddr() - offset, sec.getTotalSize(), sec.getMemory());
-    }
+  synchronized CoreInstance allocateInstance() {
+    var instance = instances[nextInstance];
+    nextInstance = (nextInstance + 1) % instances.length;
+    return instance;
   }
 
   /**
-   * Copy given memory to the Contiki system.
-   *
-   * @param mem
-   * New memory
+   * A loaded copy of the Contiki library. Motes sharing an instance must not
+   * tick concurrently, lock the instance around setCoreMemory, tick and
+   * getCoreMemory.
    */
-  public void setCoreMemory(SectionMoteMemory mem) {
-    for (var sec : mem.getSections().values()) {
-      myCoreComm.setMemory(sec.getStartAddr() - offset, sec.getTotalSize(), sec.getMemory());
+  static final class CoreInstance {
+    private final CoreComm coreComm;
+
+    /** Offset between native (cooja) and contiki address space */
+    private final long offset;
+
+    // Initial memory for all motes using this instance
+    private final SectionMoteMemory initialMemory;
+
+    CoreInstance(CoreComm coreComm, SingleSectionParser dataSecParser, SingleSectionParser bssSecParser,
+                 SingleSectionParser commonSecParser) throws MoteTypeCreationException {
+      this.coreComm = coreComm;
+      /* We first need the value of Contiki's referenceVar, which tells us the
+       * memory offset between Contiki's variable and the relative addresses that
+       * were calculated directly from the library file.
+       *
+       * This offset will be used in Cooja in the memory abstraction to match
+       * Contiki's and Cooja's address spaces */
+      HashMap<String, Symbol> variables = new HashMap<>();
+      SectionMoteMemory tmp = new SectionMoteMemory(variables);
+      tmp.addMemorySection("tmp.data", dataSecParser.parse(0));
+      tmp.addMemorySection("tmp.bss", bssSecParser.parse(0));
+      if (commonSecParser != null) {
+        tmp.addMemorySection("tmp.common", commonSecParser.parse(0));
+      }
+      try {
+        VarMemory varMem = new VarMemory(tmp);
+        long referenceVar = varMem.getVariable("referenceVar").addr;
+        coreComm.setReferenceAddress(referenceVar);
+        offset = varMem.getAddrValueOf("referenceVar");
+      } catch (RuntimeException e) {
+        throw new MoteTypeCreationException("Error setting reference variable: " + e.getMessage(), e);
+      }
+      getCoreMemory(tmp);
+
+      /* Create initial memory: data+bss+optional common */
+      initialMemory = new SectionMoteMemory(variables);
+      initialMemory.addMemorySection("data", dataSecParser.parse(offset));
+      initialMemory.addMemorySection("bss", bssSecParser.parse(offset));
+      if (commonSecParser != null) {
+        initialMemory.addMemorySection("common", commonSecParser.parse(offset));
+      }
+      getCoreMemory(initialMemory);
+    }
+
+    /**
+     * Creates and returns a copy of the initial memory (just after the init
+     * function has been run).
+     *
+     * @return Initial memory of a mote
+     */
+    SectionMoteMemory createInitialMemory() {
+      return initialMemory.clone();
+    }
+
+    /**
+     * Ticks the currently loaded mote. This should not be used directly, but
+     * rather via {@link ContikiMote#execute(long)}.
+     */
+    void tick() {
+      coreComm.tick();
+    }
+
+    /** Try to abort the mote executing thread. */
+    void kill() {
+      coreComm.kill();
+    }
+
+    /**
+     * Copy core memory to given memory.
+     *
+     * @param mem Memory to set
+     */
+    void getCoreMemory(SectionMoteMemory mem) {
+      for (var sec : mem.getSections().values()) {
+        coreComm.getMemory(sec.getStartAddr() - offset, sec.getTotalSize(), sec.getMemory());
+      }
+    }
+
+    /**
+     * Copy given memory to the Contiki system.
+     *
+     * @param mem New memory
+     */
+    void setCoreMemory(SectionMoteMemory mem) {
+      for (var sec : mem.getSections().values()) {
+        coreComm.setMemory(sec.getStartAddr() - offset, sec.getTotalSize(), sec.getMemory());
+      }
     }
   }
 
@@ -1475,6 +1507,49 @@ public class ContikiMoteType extends BaseContikiMoteType {
     classFile.deleteOnExit();
  }
 
+  /**
+   * Loads the native library count times. The first copy is loaded from
+   * libFile, the others from temporary copies that are deleted once loaded.
+   * Every copy is unloaded when its class loader is collected, after the
+   * mote type and its motes are gone.
+   *
+   * @param tempDir Directory for temporary files
+   * @param libFile Native library file
+   * @param count Number of copies
+   * @param dataSecParser Parser for the data section
+   * @param bssSecParser Parser for the bss section
+   * @param commonSecParser Parser for the common section, or null
+   * @return Loaded copies
+   */
+  static CoreInstance[] loadInstances(Path tempDir, File libFile, int count, SingleSectionParser dataSecParser,
+                                      SingleSectionParser bssSecParser, SingleSectionParser commonSecParser)
+          throws MoteTypeCreationException {
+    final var className = getAvailableClassName();
+    var instances = new CoreInstance[count];
+    instances[0] = new CoreInstance(createCoreComm(tempDir, libFile), dataSecParser, bssSecParser, commonSecParser);
+    for (int i = 1; i < count; i++) {
+      // The dynamic linker shares a library loaded twice from the same path, so copy it.
+      var copy = tempDir.resolve(i + "-" + libFile.getName());
+      try {
+        Files.copy(libFile.toPath(), copy);
+      } catch (IOException e) {
+        throw new MoteTypeCreationException("Could not copy library file: " + libFile, e);
+      }
+      try {
+        instances[i] = new CoreInstance(loadCoreComm(tempDir, className, copy.toFile()),
+                dataSecParser, bssSecParser, commonSecParser);
+      } finally {
+        // The loaded library stays mapped without the file, except on Windows.
+        try {
+          Files.delete(copy);
+        } catch (IOException e) {
+          copy.toFile().deleteOnExit();
+        }
+      }
+    }
+    return instances;
+  }
+
   /**
    * Create and return an instance of the core communicator identified by
    * className. This core communicator will load the native library libFile.
@@ -1488,8 +1563,22 @@ public class ContikiMoteType extends BaseContikiMoteType {
     final var className = getAvailableClassName();
     generateLibSourceFile(tempDir, className);
     compileSourceFile(tempDir, className);
-    Class<? extends CoreComm> newCoreCommClass;
     ++fileCounter;
+    return loadCoreComm(tempDir, className, libFile);
+  }
+
+  /**
+   * Load an already compiled core communicator class in a new class loader and
+   * create an instance of it. A native library can only be bound to one class
+   * loader, so every copy of the library gets its own loader.
+   *
+   * @param tempDir Directory with the compiled class
+   * @param className Core communicator class name
+   * @param libFile Native library file
+   * @return Core Communicator
+   */
+  private static CoreComm loadCoreComm(Path tempDir, String className, File libFile) throws MoteTypeCreationException {
+    Class<? extends CoreComm> newCoreCommClass;
     try (var loader = URLClassLoader.newInstance(new URL[]{tempDir.toUri().toURL()})) {
       newCoreCommClass = loader.loadClass("org.contikios.cooja.corecomm." + className).asSubclass(CoreComm.class);
     } catch (IOException | NullPointerException | ClassNotFoundException e1) {
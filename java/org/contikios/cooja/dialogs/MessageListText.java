@@ -1,5 +1,7 @@
 package org.contikios.cooja.dialogs;
 
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 
 public class MessageListText implements MessageList {
@@ -35,8 +37,18 @@ public class MessageListText implements MessageList {
 
     @Override
     public OutputStream getInputStream(int type) {
-        // TODO Auto-generated method stub
-        return System.out;
+        // Callers close the stream when done, which must not close System.out.
+        return new FilterOutputStream(System.out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
     }
 
     
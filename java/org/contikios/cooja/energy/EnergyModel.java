@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.energy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Properties;
+import org.contikios.cooja.MoteType;
+
+/**
+ * Current draw of each tracked state, per mote type.
+ * <p>
+ * A model file is a properties file with the supply voltage and currents
+ * in mA, keyed by mote type identifier or "default", and state name:
+ * <pre>
+ * voltage=3.0
+ * default.radio_tx=17.4
+ * sky1.cpu_active=1.8
+ * </pre>
+ * States missing for a mote type use the default values.
+ */
+public class EnergyModel {
+  /** Approximate Tmote Sky (MSP430F1611 and CC2420) currents in mA. */
+  private static final double[] SKY = {
+    1.8, /* cpu_active */
+    0.0545, /* cpu_lpm */
+    17.4, /* radio_tx */
+    18.8, /* radio_rx */
+    18.8, /* radio_idle */
+    0.0, /* radio_off */
+    4.0, 4.0, 4.0 /* leds */
+  };
+
+  private final double voltage;
+  private final double[] defaults;
+  private final HashMap<String, double[]> types = new HashMap<>();
+
+  private EnergyModel(double voltage, double[] defaults) {
+    this.voltage = voltage;
+    this.defaults = defaults;
+  }
+
+  /** @return Model with Tmote Sky currents for all mote types, at 3 V */
+  public static EnergyModel defaultModel() {
+    return new EnergyModel(3.0, SKY);
+  }
+
+  /**
+   * @param file Model file
+   * @return Model
+   * @throws IOException If the file could not be read or has an invalid value
+   */
+  public static EnergyModel load(Path file) throws IOException {
+    var properties = new Properties();
+    try (Reader in = Files.newBufferedReader(file)) {
+      properties.load(in);
+    }
+    try {
+      var model = new EnergyModel(Double.parseDouble(properties.getProperty("voltage", "3.0")), SKY.clone());
+      for (var key : properties.stringPropertyNames()) {
+        var dot = key.lastIndexOf('.');
+        if (dot < 0) {
+          continue;
+        }
+        var state = EnergyTracker.stateOf(key.substring(dot + 1));
+        if (state < 0) {
+          throw new IOException("Unknown state in " + key);
+        }
+        var type = key.substring(0, dot);
+        var currents = type.equals("default") ? model.defaults : model.types.get(type);
+        if (currents == null) {
+          currents = new double[EnergyTracker.STATES];
+          Arrays.fill(currents, Double.NaN);
+          model.types.put(type, currents);
+        }
+        currents[state] = Double.parseDouble(properties.getProperty(key));
+      }
+      /* Fill in the states not given for a mote type */
+      for (var currents : model.types.values()) {
+        for (int i = 0; i < currents.length; i++) {
+          if (Double.isNaN(currents[i])) {
+            currents[i] = model.defaults[i];
+          }
+        }
+      }
+      return model;
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid value in energy model " + file + ": " + e.getMessage());
+    }
+  }
+
+  public double getVoltage() {
+    return voltage;
+  }
+
+  /**
+   * @param type Mote type
+   * @return Current in mA of each state, indexed by the EnergyTracker state constants
+   */
+  public double[] getCurrents(MoteType type) {
+    return types.getOrDefault(type.getIdentifier(), defaults);
+  }
+}
@@ -0,0 +1,438 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.energy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import org.contikios.cooja.Mote;
+import org.contikios.cooja.Simulation;
+import org.contikios.cooja.TimeEvent;
+import org.contikios.cooja.interfaces.LED;
+import org.contikios.cooja.interfaces.Radio;
+import org.contikios.cooja.mspmote.MspMote;
+import org.contikios.cooja.util.EventTriggers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.sics.mspsim.core.MSP430;
+import se.sics.mspsim.core.MSP430Constants;
+import se.sics.mspsim.core.OperatingModeListener;
+
+/**
+ * Accounts the time each mote spends in each power state, and the energy
+ * used according to an {@link EnergyModel}. Runs without visualization.
+ * <p>
+ * Tracked states are CPU active and low power mode (emulated MSP430 motes
+ * only), radio transmit, receive, idle listening and off, and each LED.
+ * Cumulative times are kept in primitive arrays indexed by mote slot, and
+ * a state change only adds the time since the previous change of that
+ * component. At a fixed simulated interval, the time and energy of each
+ * mote during the interval are written as a row of a CSV file.
+ * <p>
+ * Enabled with the simulation options energy-log=FILE (relative to the log
+ * directory), energy-interval=MS (default 1000), and energy-model=FILE.
+ * All methods must be called from the simulation thread.
+ */
+public class EnergyTracker {
+  private static final Logger logger = LoggerFactory.getLogger(EnergyTracker.class);
+
+  public static final int CPU_ACTIVE = 0;
+  public static final int CPU_LPM = 1;
+  public static final int RADIO_TX = 2;
+  public static final int RADIO_RX = 3;
+  public static final int RADIO_IDLE = 4;
+  public static final int RADIO_OFF = 5;
+  public static final int LED_RED = 6;
+  public static final int LED_GREEN = 7;
+  public static final int LED_YELLOW = 8;
+  public static final int STATES = 9;
+
+  private static final String[] STATE_NAMES = {
+    "cpu_active", "cpu_lpm", "radio_tx", "radio_rx", "radio_idle", "radio_off", "led_red", "led_green", "led_yellow"
+  };
+
+  private final Simulation simulation;
+  private final EnergyModel model;
+  private final long interval;
+  private final BufferedWriter out;
+
+  private final IdentityHashMap<Mote, Integer> slots = new IdentityHashMap<>();
+  private int[] freeSlots = new int[0];
+  private int freeCount;
+  private int slotCount;
+
+  /* Per slot */
+  private Mote[] motes = new Mote[0];
+  private double[][] currents = new double[0][];
+  private MSP430[] cpus = new MSP430[0];
+  private OperatingModeListener[] cpuListeners = new OperatingModeListener[0];
+  private int[] cpuState = new int[0];
+  private long[] cpuSince = new long[0]; /* CPU clock, us */
+  private int[] radioState = new int[0];
+  private long[] radioSince = new long[0];
+  private int[] leds = new int[0];
+  private long[] ledSince = new long[0];
+  private double[] energy = new double[0]; /* mJ until the last snapshot */
+
+  /* Per slot and state, at index slot * STATES + state */
+  private long[] total = new long[0]; /* us */
+  private long[] reported = new long[0]; /* us, at the last snapshot */
+
+  private final TimeEvent snapshotEvent = new TimeEvent() {
+    @Override
+    public void execute(long t) {
+      snapshot(t);
+      simulation.scheduleEvent(this, t + interval);
+    }
+  };
+
+  private EnergyTracker(Simulation simulation, EnergyModel model, long interval, Path file) throws IOException {
+    this.simulation = simulation;
+    this.model = model;
+    this.interval = interval;
+    out = file == null ? null : Files.newBufferedWriter(file, UTF_8);
+    if (out != null) {
+      out.write("time_ms,mote");
+      for (var name : STATE_NAMES) {
+        out.write(',');
+        out.write(name);
+        out.write("_us");
+      }
+      out.write(",energy_mj,total_energy_mj\n");
+    }
+  }
+
+  /**
+   * Starts energy accounting of a simulation. It stops when the simulation is removed.
+   *
+   * @param simulation Simulation
+   * @param model Energy model
+   * @param interval Snapshot interval (us)
+   * @param file CSV file for snapshots, or null
+   * @return Tracker
+   * @throws IOException If the file could not be created
+   */
+  public static EnergyTracker start(Simulation simulation, EnergyModel model, long interval, Path file)
+          throws IOException {
+    if (interval <= 0) {
+      throw new IllegalArgumentException("Energy snapshot interval must be positive");
+    }
+    var tracker = new EnergyTracker(simulation, model, interval, file);
+    simulation.invokeSimulationThread(tracker::start);
+    if (file != null) {
+      logger.info("Writing energy snapshots to " + file);
+    }
+    return tracker;
+  }
+
+  private void start() {
+    simulation.getMoteTriggers().addTrigger(this, (op, mote) -> {
+      if (op == EventTriggers.AddRemove.ADD) {
+        addMote(mote);
+      } else {
+        removeMote(mote);
+      }
+    });
+    for (var mote : simulation.getMotes()) {
+      addMote(mote);
+    }
+    simulation.getSimulationStateTriggers().addTrigger(this, (op, sim) -> {
+      if (op == EventTriggers.Operation.STOP) {
+        flush();
+      } else if (op == EventTriggers.Operation.REMOVE) {
+        stop();
+      }
+    });
+    simulation.scheduleEvent(snapshotEvent, simulation.getSimulationTime() + interval);
+  }
+
+  /** Stops energy accounting and closes the CSV file. */
+  public void stop() {
+    simulation.getSimulationStateTriggers().deleteTriggers(this);
+    simulation.getMoteTriggers().deleteTriggers(this);
+    snapshotEvent.remove();
+    for (var mote : slots.keySet().toArray(new Mote[0])) {
+      removeMote(mote);
+    }
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        logger.error("Failed to write energy log: " + e.getMessage());
+      }
+    }
+  }
+
+  private void flush() {
+    if (out != null) {
+      try {
+        out.flush();
+      } catch (IOException e) {
+        logger.error("Failed to write energy log: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * @param name State name, such as "radio_tx"
+   * @return State constant, or -1 if unknown
+   */
+  public static int stateOf(String name) {
+    for (int i = 0; i < STATE_NAMES.length; i++) {
+      if (STATE_NAMES[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param mote Mote
+   * @param state State constant
+   * @return Time the mote has spent in the state (us)
+   */
+  public long getTime(Mote mote, int state) {
+    var slot = slots.get(mote);
+    if (slot == null) {
+      return 0;
+    }
+    close(slot, simulation.getSimulationTime());
+    return total[slot * STATES + state];
+  }
+
+  /**
+   * @param mote Mote
+   * @return Energy the mote has used (mJ)
+   */
+  public double getEnergy(Mote mote) {
+    var slot = slots.get(mote);
+    if (slot == null) {
+      return 0;
+    }
+    close(slot, simulation.getSimulationTime());
+    return energy[slot] + energySince(slot);
+  }
+
+  private void addMote(Mote mote) {
+    if (slots.containsKey(mote)) {
+      return;
+    }
+    int slot = freeCount > 0 ? freeSlots[--freeCount] : slotCount++;
+    if (slot == motes.length) {
+      grow(Math.max(16, 2 * motes.length));
+    }
+    slots.put(mote, slot);
+    motes[slot] = mote;
+    currents[slot] = model.getCurrents(mote.getType());
+    Arrays.fill(total, slot * STATES, (slot + 1) * STATES, 0);
+    Arrays.fill(reported, slot * STATES, (slot + 1) * STATES, 0);
+    energy[slot] = 0;
+    long now = simulation.getSimulationTime();
+
+    cpuState[slot] = -1;
+    if (mote instanceof MspMote mspMote) {
+      var cpu = mspMote.getCPU();
+      cpus[slot] = cpu;
+      cpuState[slot] = cpu.getMode() == MSP430Constants.MODE_ACTIVE ? CPU_ACTIVE : CPU_LPM;
+      cpuSince[slot] = cpuMicros(cpu);
+      cpuListeners[slot] = (source, mode) -> {
+        var state = mode == MSP430Constants.MODE_ACTIVE ? CPU_ACTIVE : CPU_LPM;
+        if (state != cpuState[slot]) {
+          var t = cpuMicros(cpu);
+          total[slot * STATES + cpuState[slot]] += t - cpuSince[slot];
+          cpuState[slot] = state;
+          cpuSince[slot] = t;
+        }
+      };
+      cpu.addOperatingModeListener(cpuListeners[slot]);
+    }
+
+    radioState[slot] = -1;
+    var radio = mote.getInterfaces().getRadio();
+    if (radio != null) {
+      radioState[slot] = radioState(radio);
+      radioSince[slot] = now;
+      radio.getRadioEventTriggers().addTrigger(this, (event, r) -> {
+        var state = radioState(radio);
+        if (state != radioState[slot]) {
+          var t = simulation.getSimulationTime();
+          total[slot * STATES + radioState[slot]] += t - radioSince[slot];
+          radioState[slot] = state;
+          radioSince[slot] = t;
+        }
+      });
+    }
+
+    leds[slot] = 0;
+    var led = mote.getInterfaces().getLED();
+    if (led != null) {
+      leds[slot] = ledMask(led);
+      ledSince[slot] = now;
+      led.getTriggers().addTrigger(this, (event, m) -> {
+        var mask = ledMask(led);
+        if (mask != leds[slot]) {
+          closeLeds(slot, simulation.getSimulationTime());
+          leds[slot] = mask;
+        }
+      });
+    }
+  }
+
+  private void removeMote(Mote mote) {
+    var slot = slots.remove(mote);
+    if (slot == null) {
+      return;
+    }
+    if (cpus[slot] != null) {
+      cpus[slot].removeOperatingModeListener(cpuListeners[slot]);
+    }
+    var radio = mote.getInterfaces().getRadio();
+    if (radio != null) {
+      radio.getRadioEventTriggers().deleteTriggers(this);
+    }
+    var led = mote.getInterfaces().getLED();
+    if (led != null) {
+      led.getTriggers().deleteTriggers(this);
+    }
+    motes[slot] = null;
+    cpus[slot] = null;
+    cpuListeners[slot] = null;
+    currents[slot] = null;
+    if (freeCount == freeSlots.length) {
+      freeSlots = Arrays.copyOf(freeSlots, Math.max(16, 2 * freeCount));
+    }
+    freeSlots[freeCount++] = slot;
+  }
+
+  private void grow(int n) {
+    motes = Arrays.copyOf(motes, n);
+    currents = Arrays.copyOf(currents, n);
+    cpus = Arrays.copyOf(cpus, n);
+    cpuListeners = Arrays.copyOf(cpuListeners, n);
+    cpuState = Arrays.copyOf(cpuState, n);
+    cpuSince = Arrays.copyOf(cpuSince, n);
+    radioState = Arrays.copyOf(radioState, n);
+    radioSince = Arrays.copyOf(radioSince, n);
+    leds = Arrays.copyOf(leds, n);
+    ledSince = Arrays.copyOf(ledSince, n);
+    energy = Arrays.copyOf(energy, n);
+    total = Arrays.copyOf(total, n * STATES);
+    reported = Arrays.copyOf(reported, n * STATES);
+  }
+
+  /** Adds the time since the last change of each component. */
+  private void close(int slot, long now) {
+    var cpu = cpus[slot];
+    if (cpu != null) {
+      var t = cpuMicros(cpu);
+      total[slot * STATES + cpuState[slot]] += t - cpuSince[slot];
+      cpuSince[slot] = t;
+    }
+    if (radioState[slot] >= 0) {
+      total[slot * STATES + radioState[slot]] += now - radioSince[slot];
+      radioSince[slot] = now;
+    }
+    closeLeds(slot, now);
+  }
+
+  private void closeLeds(int slot, long now) {
+    var elapsed = now - ledSince[slot];
+    var mask = leds[slot];
+    for (int i = 0; i < 3; i++) {
+      if ((mask & (1 << i)) != 0) {
+        total[slot * STATES + LED_RED + i] += elapsed;
+      }
+    }
+    ledSince[slot] = now;
+  }
+
+  /** @return Energy used since the last snapshot (mJ) */
+  private double energySince(int slot) {
+    double e = 0;
+    var c = currents[slot];
+    for (int i = 0; i < STATES; i++) {
+      e += (total[slot * STATES + i] - reported[slot * STATES + i]) * c[i];
+    }
+    /* us * mA * V = nJ */
+    return e * model.getVoltage() / 1e6;
+  }
+
+  private void snapshot(long now) {
+    var sb = new StringBuilder(256);
+    var timeMs = now / Simulation.MILLISECOND;
+    for (int slot = 0; slot < slotCount; slot++) {
+      if (motes[slot] == null) {
+        continue;
+      }
+      close(slot, now);
+      var e = energySince(slot);
+      energy[slot] += e;
+      if (out != null) {
+        sb.setLength(0);
+        sb.append(timeMs).append(',').append(motes[slot].getID());
+        for (int i = slot * STATES; i < (slot + 1) * STATES; i++) {
+          sb.append(',').append(total[i] - reported[i]);
+        }
+        sb.append(',').append(e).append(',').append(energy[slot]).append('\n');
+        try {
+          out.append(sb);
+        } catch (IOException ex) {
+          logger.error("Failed to write energy log: " + ex.getMessage());
+        }
+      }
+      System.arraycopy(total, slot * STATES, reported, slot * STATES, STATES);
+    }
+  }
+
+  private static long cpuMicros(MSP430 cpu) {
+    return (long) (cpu.getTimeMillis() * 1000);
+  }
+
+  private static int radioState(Radio radio) {
+    if (!radio.isRadioOn()) {
+      return RADIO_OFF;
+    } else if (radio.isTransmitting()) {
+      return RADIO_TX;
+    } else if (radio.isReceiving() || radio.isInterfered()) {
+      return RADIO_RX;
+    }
+    return RADIO_IDLE;
+  }
+
+  private static int ledMask(LED led) {
+    return (led.isRedOn() ? 1 : 0) | (led.isGreenOn() ? 2 : 0) | (led.isYellowOn() ? 4 : 0);
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of counters and gauges, written in the Prometheus text format.
+ * <p>
+ * Counters are {@link LongAdder}s, so updates from the simulation thread
+ * never contend with a scrape. Gauges are functions evaluated when the
+ * registry is written; they must not block. Every series has an owner, and
+ * all series of an owner are removed together.
+ */
+public class MetricsRegistry {
+  private enum Type {
+    COUNTER, GAUGE;
+
+    @Override
+    public String toString() {
+      return name().toLowerCase();
+    }
+  }
+
+  private record Series(Object owner, String labels, DoubleSupplier value) {}
+
+  private record Family(Type type, String help, CopyOnWriteArrayList<Series> series) {}
+
+  private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+  /**
+   * Adds a counter.
+   *
+   * @param owner Owner of the series
+   * @param name Metric name
+   * @param help Help text
+   * @param labels Label pairs, such as <code>mote="1"</code>, or null
+   * @return Counter
+   */
+  public LongAdder counter(Object owner, String name, String help, String labels) {
+    var counter = new LongAdder();
+    add(owner, Type.COUNTER, name, help, labels, counter::sum);
+    return counter;
+  }
+
+  /**
+   * Adds a counter whose value is computed when the registry is written.
+   * The value must never decrease.
+   */
+  public void counter(Object owner, String name, String help, String labels, DoubleSupplier value) {
+    add(owner, Type.COUNTER, name, help, labels, value);
+  }
+
+  /** Adds a gauge whose value is computed when the registry is written. */
+  public void gauge(Object owner, String name, String help, String labels, DoubleSupplier value) {
+    add(owner, Type.GAUGE, name, help, labels, value);
+  }
+
+  private void add(Object owner, Type type, String name, String help, String labels, DoubleSupplier value) {
+    var family = families.computeIfAbsent(name, n -> new Family(type, help, new CopyOnWriteArrayList<>()));
+    if (family.type() != type) {
+      throw new IllegalArgumentException("Metric " + name + " is a " + family.type());
+    }
+    family.series().add(new Series(owner, labels, value));
+  }
+
+  /** Removes all series of an owner. */
+  public void remove(Object owner) {
+    for (var family : families.values()) {
+      family.series().removeIf(s -> s.owner() == owner);
+    }
+  }
+
+  /** Writes all metrics in the Prometheus text exposition format. */
+  public void write(StringBuilder sb) {
+    for (var entry : families.entrySet()) {
+      var name = entry.getKey();
+      var family = entry.getValue();
+      if (family.series().isEmpty()) {
+        continue;
+      }
+      sb.append("# HELP ").append(name).append(' ').append(family.help()).append('\n');
+      sb.append("# TYPE ").append(name).append(' ').append(family.type()).append('\n');
+      for (var series : family.series()) {
+        sb.append(name);
+        if (series.labels() != null) {
+          sb.append('{').append(series.labels()).append('}');
+        }
+        var value = series.value().getAsDouble();
+        sb.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+          sb.append((long) value);
+        } else {
+          sb.append(value);
+        }
+        sb.append('\n');
+      }
+    }
+  }
+}
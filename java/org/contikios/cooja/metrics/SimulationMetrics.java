@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.metrics;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.contikios.cooja.Mote;
+import org.contikios.cooja.Simulation;
+import org.contikios.cooja.interfaces.Radio;
+import org.contikios.cooja.util.EventTriggers;
+
+/**
+ * Publishes counters of a simulation in a {@link MetricsRegistry}: speed,
+ * executed events, radio traffic, and per mote radio usage, serial output
+ * and log lines. The counters are updated from the simulation and mote
+ * interface triggers; the metrics are removed with the simulation.
+ */
+public class SimulationMetrics {
+  private static final double SECOND = Simulation.MILLISECOND * 1000.0;
+
+  private final Simulation simulation;
+  private final MetricsRegistry registry;
+  private final HashMap<Mote, MoteMetrics> motes = new HashMap<>();
+
+  private final LongAdder transmissions;
+  private final LongAdder receptions;
+  private final LongAdder interfered;
+
+  /* Last sample for the rate gauges, guarded by this */
+  private long sampleNanos;
+  private long sampleTime;
+  private long sampleEvents;
+  private double speedRatio;
+  private double eventRate;
+
+  private SimulationMetrics(Simulation simulation, MetricsRegistry registry) {
+    this.simulation = simulation;
+    this.registry = registry;
+    registry.gauge(this, "cooja_simulation_time_seconds", "Simulated time.", null,
+            () -> simulation.getSimulationTime() / SECOND);
+    registry.gauge(this, "cooja_simulation_running", "Whether the simulation is running.", null,
+            () -> simulation.isRunning() ? 1 : 0);
+    registry.gauge(this, "cooja_simulation_motes", "Number of motes.", null, simulation::getMotesCount);
+    registry.counter(this, "cooja_simulation_events_total", "Executed simulation events.", null,
+            simulation::getEventCount);
+    registry.gauge(this, "cooja_simulation_events_per_second", "Executed events per real second since the last scrape.",
+            null, () -> sample(false));
+    registry.gauge(this, "cooja_simulation_speed_ratio", "Simulated time per real time since the last scrape.",
+            null, () -> sample(true));
+    var pacer = simulation.getPacer();
+    registry.gauge(this, "cooja_pacing_lag_seconds", "Time behind real time at the last pacing deadline.", null,
+            () -> pacer.getLag() / 1e9);
+    registry.gauge(this, "cooja_pacing_max_lag_seconds", "Max time behind real time.", null,
+            () -> pacer.getMaxLag() / 1e9);
+    registry.gauge(this, "cooja_pacing_wake_error_seconds", "Mean time pacing waits overshoot their deadline.", null,
+            () -> pacer.getMeanWakeError() / 1e9);
+    transmissions = registry.counter(this, "cooja_radio_transmissions_total", "Finished radio transmissions.", null);
+    receptions = registry.counter(this, "cooja_radio_receptions_total", "Radio receptions.", null);
+    interfered = registry.counter(this, "cooja_radio_interfered_total", "Interfered radio receptions.", null);
+  }
+
+  /**
+   * Starts publishing metrics of a simulation.
+   *
+   * @param simulation Simulation
+   * @param registry Registry
+   * @return Simulation metrics
+   */
+  public static SimulationMetrics start(Simulation simulation, MetricsRegistry registry) {
+    var metrics = new SimulationMetrics(simulation, registry);
+    metrics.start();
+    return metrics;
+  }
+
+  private void start() {
+    var radioMedium = simulation.getRadioMedium();
+    if (radioMedium != null) {
+      radioMedium.getRadioTransmissionTriggers().addTrigger(this, (event, obj) -> {
+        if (event != Radio.RadioEvent.TRANSMISSION_FINISHED) {
+          return;
+        }
+        var conn = radioMedium.getLastConnection();
+        if (conn == null) {
+          return;
+        }
+        transmissions.increment();
+        receptions.add(conn.getDestinationsCount());
+        interfered.add(conn.getInterferedCount());
+        var source = motes.get(conn.getSource().getMote());
+        if (source != null) {
+          source.transmissions.increment();
+        }
+      });
+    }
+    simulation.getMoteTriggers().addTrigger(this, (op, mote) -> {
+      if (op == EventTriggers.AddRemove.ADD) {
+        addMote(mote);
+      } else {
+        removeMote(mote);
+      }
+    });
+    simulation.invokeSimulationThread(() -> {
+      for (var mote : simulation.getMotes()) {
+        addMote(mote);
+      }
+    });
+    simulation.getSimulationStateTriggers().addTrigger(this, (op, sim) -> {
+      if (op == EventTriggers.Operation.REMOVE) {
+        stop();
+      }
+    });
+  }
+
+  /** Stops publishing metrics of the simulation. */
+  public void stop() {
+    simulation.getSimulationStateTriggers().deleteTriggers(this);
+    simulation.getMoteTriggers().deleteTriggers(this);
+    var radioMedium = simulation.getRadioMedium();
+    if (radioMedium != null) {
+      radioMedium.getRadioTransmissionTriggers().deleteTriggers(this);
+    }
+    for (var mote : motes.keySet().toArray(new Mote[0])) {
+      removeMote(mote);
+    }
+    registry.remove(this);
+  }
+
+  private synchronized double sample(boolean speed) {
+    long now = System.nanoTime();
+    if (now - sampleNanos >= 100_000_000L) {
+      long time = simulation.getSimulationTime();
+      long events = simulation.getEventCount();
+      if (sampleNanos != 0) {
+        double seconds = (now - sampleNanos) / 1e9;
+        speedRatio = (time - sampleTime) / SECOND / seconds;
+        eventRate = (events - sampleEvents) / seconds;
+      }
+      sampleNanos = now;
+      sampleTime = time;
+      sampleEvents = events;
+    }
+    return speed ? speedRatio : eventRate;
+  }
+
+  private void addMote(Mote mote) {
+    if (motes.containsKey(mote)) {
+      return;
+    }
+    var m = new MoteMetrics(mote);
+    motes.put(mote, m);
+  }
+
+  private void removeMote(Mote mote) {
+    var m = motes.remove(mote);
+    if (m != null) {
+      m.remove();
+    }
+  }
+
+  /** Metrics of a mote, updated on the simulation thread. */
+  private class MoteMetrics {
+    private final Mote mote;
+    private final LongAdder transmissions;
+    private final LongAdder logLines;
+    private final LongAdder serialBytes;
+    private final LongAdder radioOn = new LongAdder(); /* us */
+    private final LongAdder radioTx = new LongAdder(); /* us */
+    private final LongAdder radioRx = new LongAdder(); /* us */
+    private final long added;
+    private volatile boolean on;
+    private boolean tx;
+    private boolean rx;
+    private volatile long since;
+
+    MoteMetrics(Mote mote) {
+      this.mote = mote;
+      added = since = simulation.getSimulationTime();
+      var labels = "mote=\"" + mote.getID() + "\"";
+      transmissions = registry.counter(this, "cooja_mote_radio_transmissions_total",
+              "Radio transmissions of the mote.", labels);
+      logLines = registry.counter(this, "cooja_mote_log_lines_total", "Log lines printed by the mote.", labels);
+      serialBytes = registry.counter(this, "cooja_mote_serial_bytes_total", "Bytes written to the serial port by the mote.",
+              labels);
+      registry.counter(this, "cooja_mote_radio_on_seconds_total", "Time the radio has been on.", labels,
+              () -> radioOn.sum() / SECOND);
+      registry.counter(this, "cooja_mote_radio_tx_seconds_total", "Time the radio has been transmitting.", labels,
+              () -> radioTx.sum() / SECOND);
+      registry.counter(this, "cooja_mote_radio_rx_seconds_total", "Time the radio has been receiving.", labels,
+              () -> radioRx.sum() / SECOND);
+      registry.gauge(this, "cooja_mote_radio_duty_cycle", "Fraction of time the radio has been on.", labels,
+              this::dutyCycle);
+
+      var log = mote.getInterfaces().getLog();
+      if (log != null) {
+        log.getLogDataTriggers().addTrigger(this, (event, data) -> logLines.increment());
+      }
+      var serial = mote.getInterfaces().getSerial();
+      if (serial != null) {
+        serial.getSerialDataTriggers().addTrigger(this, (event, data) -> serialBytes.increment());
+      }
+      var radio = mote.getInterfaces().getRadio();
+      if (radio != null) {
+        on = radio.isRadioOn();
+        radio.getRadioEventTriggers().addTrigger(this, (event, r) -> {
+          long now = simulation.getSimulationTime();
+          long elapsed = now - since;
+          if (on) {
+            radioOn.add(elapsed);
+          }
+          if (tx) {
+            radioTx.add(elapsed);
+          } else if (rx) {
+            radioRx.add(elapsed);
+          }
+          tx = radio.isTransmitting();
+          rx = radio.isReceiving() || radio.isInterfered();
+          on = radio.isRadioOn();
+          since = now;
+        });
+      }
+    }
+
+    private double dutyCycle() {
+      long now = simulation.getSimulationTime();
+      if (now <= added) {
+        return 0;
+      }
+      long total = radioOn.sum();
+      long last = since;
+      if (on && now > last) {
+        total += now - last;
+      }
+      return Math.min(1.0, (double) total / (now - added));
+    }
+
+    void remove() {
+      var log = mote.getInterfaces().getLog();
+      if (log != null) {
+        log.getLogDataTriggers().deleteTriggers(this);
+      }
+      var serial = mote.getInterfaces().getSerial();
+      if (serial != null) {
+        serial.getSerialDataTriggers().deleteTriggers(this);
+      }
+      var radio = mote.getInterfaces().getRadio();
+      if (radio != null) {
+        radio.getRadioEventTriggers().deleteTriggers(this);
+      }
+      registry.remove(this);
+    }
+  }
+}
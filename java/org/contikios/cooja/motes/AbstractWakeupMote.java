@@ -70,6 +70,10 @@ public abstract class AbstractWakeupMote<T extends MoteType, M extends MemoryInt
     public void kill() {
         AbstractWakeupMote.this.kill();
     }
+    @Override
+    public boolean isMoteLocal() {
+      return AbstractWakeupMote.this.isExecutionLocal();
+    }
     public String toString() {
       return "EXECUTE " + AbstractWakeupMote.this.getClass().getName();
     }
@@ -235,6 +239,17 @@ public abstract class AbstractWakeupMote<T extends MoteType, M extends MemoryInt
    * */
   public void kill() {}
 
+  /**
+   * Returns true if executing the mote only changes the state of the mote
+   * itself, so it may be executed in parallel with other motes.
+   *
+   * @see MoteTimeEvent#isMoteLocal()
+   * @return True if mote execution is local to the mote
+   */
+  protected boolean isExecutionLocal() {
+    return false;
+  }
+
   /**
    * Execute mote software as soon as possible.
    * <p>
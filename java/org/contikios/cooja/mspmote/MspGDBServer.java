@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.mspmote;
+
+import java.io.IOException;
+import java.util.HashMap;
+import org.contikios.cooja.Mote;
+import org.contikios.cooja.Simulation;
+import org.contikios.cooja.util.EventTriggers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.sics.mspsim.util.GDBStubs;
+
+/**
+ * Serves the GDB remote protocol for all MSP430 motes in a simulation on a
+ * single port. Each mote is a process with the mote ID as process id:
+ * connect with "target extended-remote :PORT", list the motes with
+ * "info os processes" and attach with "attach ID". The attached mote is
+ * halted while the rest of the simulation keeps running.
+ */
+public class MspGDBServer {
+  private static final Logger logger = LoggerFactory.getLogger(MspGDBServer.class);
+
+  /* Servers started from simulation options */
+  private static final HashMap<Simulation, MspGDBServer> servers = new HashMap<>();
+
+  private final Simulation simulation;
+  private final GDBStubs stubs;
+
+  private MspGDBServer(Simulation simulation, GDBStubs stubs) {
+    this.simulation = simulation;
+    this.stubs = stubs;
+  }
+
+  /**
+   * Starts serving a simulation. The server is closed when the simulation
+   * is removed.
+   *
+   * @param simulation Simulation
+   * @param port TCP port
+   * @return Server
+   * @throws IOException If the port could not be opened
+   */
+  public static MspGDBServer start(Simulation simulation, int port) throws IOException {
+    var server = new MspGDBServer(simulation, new GDBStubs(port));
+    simulation.invokeSimulationThread(server::start);
+    logger.info("Serving GDB remote protocol on port " + port);
+    return server;
+  }
+
+  /**
+   * Starts serving on the port given by the gdb-port simulation option,
+   * unless the simulation is already served. Called when an MSP mote type
+   * is loaded into the simulation.
+   *
+   * @param simulation Simulation
+   * @throws IOException If the port could not be opened
+   */
+  static void startFromOptions(Simulation simulation) throws IOException {
+    var gdbPort = simulation.getCfg().opts().get("gdb-port");
+    if (gdbPort == null) {
+      return;
+    }
+    synchronized (servers) {
+      if (!servers.containsKey(simulation)) {
+        servers.put(simulation, start(simulation, Integer.parseInt(gdbPort)));
+      }
+    }
+  }
+
+  private void start() {
+    simulation.getMoteTriggers().addTrigger(this, (op, mote) -> {
+      if (op == EventTriggers.AddRemove.ADD) {
+        add(mote);
+      } else if (mote instanceof MspMote mspMote) {
+        stubs.removeTarget(mspMote.getGDBTarget());
+      }
+    });
+    for (var mote : simulation.getMotes()) {
+      add(mote);
+    }
+    simulation.getSimulationStateTriggers().addTrigger(this, (op, sim) -> {
+      if (op == EventTriggers.Operation.REMOVE) {
+        stop();
+      }
+    });
+  }
+
+  private void add(Mote mote) {
+    if (!(mote instanceof MspMote mspMote)) {
+      return;
+    }
+    if (mote.getID() <= 0) {
+      logger.warn("Mote " + mote.getID() + " can not be debugged, GDB needs a positive mote ID");
+      return;
+    }
+    stubs.addTarget(mote.getID(), mspMote.getGDBTarget());
+  }
+
+  /** Closes the server and resumes all debugged motes. */
+  public void stop() {
+    synchronized (servers) {
+      servers.remove(simulation, this);
+    }
+    simulation.getSimulationStateTriggers().deleteTriggers(this);
+    simulation.getMoteTriggers().deleteTriggers(this);
+    stubs.close();
+  }
+}
@@ -47,6 +47,7 @@ import org.contikios.cooja.mspmote.plugins.MspBreakpoint;
 import org.contikios.cooja.plugins.Visualizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.sics.mspsim.cli.BasicCommand;
 import se.sics.mspsim.cli.CommandContext;
 import se.sics.mspsim.cli.CommandHandler;
 import se.sics.mspsim.cli.LineListener;
@@ -63,7 +64,9 @@ import se.sics.mspsim.util.ComponentRegistry;
 import se.sics.mspsim.util.ConfigManager;
 import se.sics.mspsim.util.DebugInfo;
 import se.sics.mspsim.util.ELF;
+import se.sics.mspsim.util.GDBStubs;
 import se.sics.mspsim.util.MapEntry;
+import se.sics.mspsim.profiler.SampleProfiler;
 import se.sics.mspsim.profiler.SimpleProfiler;
 
 /**
@@ -87,11 +90,58 @@ public abstract class MspMote extends AbstractEmulatedMote<MspMoteType, MspMoteM
   /* Stack monitoring variables */
   private boolean stopNextInstruction;
 
+  /* Stopped by a debugger while the simulation runs */
+  private volatile boolean halted;
+  private final GDBStubs.Target gdbTarget = new GDBTarget();
+
   public MspMote(MspMoteType moteType, Simulation sim, GenericNode node) throws MoteType.MoteTypeCreationException {
     super(moteType, new MspMoteMemory(moteType.getEntries(node), node.getCPU()), sim);
     registry = node.getRegistry();
     node.setCommandHandler(commandHandler);
     node.setup(new ConfigManager());
+    commandHandler.registerCommand("typeprofile", new BasicCommand(
+        "print call stacks of all motes of this type for flame graphs", "") {
+      @Override
+      public int executeCommand(CommandContext context) {
+        moteType.printCollapsedStacks(getSimulation(), context.out);
+        return 0;
+      }
+    });
+    commandHandler.registerCommand("typesamples", new BasicCommand(
+        "sample the program counter of all motes of this type",
+        "<start [cycles]|stop|report|collapsed>") {
+      @Override
+      public int executeCommand(CommandContext context) {
+        String cmd = context.getArgument(0);
+        switch (cmd) {
+          case "start", "stop" -> {
+            int period = "start".equals(cmd) ? context.getArgumentAsInt(1, SampleProfiler.DEFAULT_PERIOD) : 0;
+            if ("start".equals(cmd) && period <= 0) {
+              context.err.println("Sample period must be positive.");
+              return 1;
+            }
+            getSimulation().invokeSimulationThread(() -> moteType.setSampling(getSimulation(), period));
+          }
+          case "report", "collapsed" -> {
+            var report = moteType.createSampleReport(getSimulation());
+            if (report == null) {
+              context.err.println("No samples, start sampling first.");
+              return 1;
+            }
+            if ("report".equals(cmd)) {
+              report.printReport(context.out);
+            } else {
+              report.printCollapsedStacks(context.out, null);
+            }
+          }
+          default -> {
+            context.err.println("Unknown command: " + cmd);
+            return 1;
+          }
+        }
+        return 0;
+      }
+    });
     myCpu = node.getCPU();
     myCpu.setMonitorExec(true);
     myCpu.setTrace(0); /* TODO Enable */
@@ -191,6 +241,14 @@ public abstract class MspMote extends AbstractEmulatedMote<MspMoteType, MspMoteM
     return commandHandler;
   }
 
+  /**
+   * @return Target for debugging this mote with GDB while the rest of the
+   * simulation keeps running
+   */
+  public GDBStubs.Target getGDBTarget() {
+    return gdbTarget;
+  }
+
   /* called when moteID is updated */
   public void idUpdated(int newID) {
   }
@@ -206,7 +264,18 @@ public abstract class MspMote extends AbstractEmulatedMote<MspMoteType, MspMoteM
     execute(time, EXECUTE_DURATION_US);
   }
 
+  @Override
+  protected boolean isExecutionLocal() {
+    /* Each mote has its own emulated CPU and peripherals */
+    return true;
+  }
+
   public void execute(long t, int duration) {
+    if (halted) {
+      /* Resume without catching up on the time spent halted */
+      lastExecute = -1;
+      return;
+    }
     var clock = moteInterfaces.getClock();
     // Wait until mote boots.
     if (!booted && clock.getTime() < 0) {
@@ -269,6 +338,54 @@ public abstract class MspMote extends AbstractEmulatedMote<MspMoteType, MspMoteM
     return executeDelta + t;
   }
 
+  /**
+   * Halts the mote without stopping the simulation. A halted mote does not
+   * execute, and its clock falls behind by the time it is halted.
+   */
+  private class GDBTarget implements GDBStubs.Target {
+    @Override
+    public MSP430 getCPU() {
+      return myCpu;
+    }
+
+    @Override
+    public String getName() {
+      return getType().getIdentifier() + " mote " + getID();
+    }
+
+    @Override
+    public void stop(Runnable stopped) {
+      if (simulation.isSimulationThread()) {
+        /* Breakpoint hit during execution */
+        myCpu.stop();
+        halted = true;
+        stopped.run();
+        return;
+      }
+      simulation.invokeSimulationThread(() -> {
+        halted = true;
+        stopped.run();
+      });
+    }
+
+    @Override
+    public void resume(boolean step, Runnable stopped) {
+      simulation.invokeSimulationThread(() -> {
+        if (step) {
+          try {
+            myCpu.stepInstructions(1);
+          } catch (EmulationException e) {
+            logger.error("Failed to step mote " + getID() + ": " + e.getMessage());
+          }
+          stopped.run();
+        } else if (halted) {
+          halted = false;
+          requestImmediateWakeup();
+        }
+      });
+    }
+  }
+
   @Override
   public String getStackTrace() {
     return executeCLICommand("stacktrace");
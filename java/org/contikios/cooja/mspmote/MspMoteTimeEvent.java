@@ -49,4 +49,9 @@ public abstract class MspMoteTimeEvent extends MoteTimeEvent {
   public void execute(long t) {
     mote.execute(t, 0);
   }
+
+  @Override
+  public boolean isMoteLocal() {
+    return true;
+  }
 }
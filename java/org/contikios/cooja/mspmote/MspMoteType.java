@@ -32,17 +32,24 @@ package org.contikios.cooja.mspmote;
 import java.awt.EventQueue;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
 import org.contikios.cooja.dialogs.AbstractCompileDialog;
 import org.contikios.cooja.mote.BaseContikiMoteType;
 import org.contikios.cooja.mote.memory.MemoryInterface.Symbol;
 import org.contikios.cooja.ClassDescription;
 import org.contikios.cooja.Cooja;
+import org.contikios.cooja.Mote;
 import org.contikios.cooja.Simulation;
 import org.jdom2.Element;
 import se.sics.mspsim.platform.GenericNode;
+import se.sics.mspsim.profiler.SampleProfiler;
+import se.sics.mspsim.profiler.SampleReport;
+import se.sics.mspsim.profiler.SimpleProfiler;
 import se.sics.mspsim.util.DebugInfo;
 import se.sics.mspsim.util.ELF;
 import se.sics.mspsim.util.MapEntry;
@@ -60,6 +67,10 @@ import org.slf4j.LoggerFactory;
 public abstract class MspMoteType extends BaseContikiMoteType {
   private static final Logger logger = LoggerFactory.getLogger(MspMoteType.class);
 
+  /* Line tables by firmware, shared by the mote types using the same ELF */
+  private static final WeakHashMap<ELF, HashMap<File, HashMap<Integer, Integer>>> firmwareDebugInfo =
+          new WeakHashMap<>();
+
   private boolean loadedDebugInfo;
   private HashMap<File, HashMap<Integer, Integer>> debuggingInfo; /* cached */
   private ELF elf; /* cached */
@@ -80,6 +91,13 @@ public abstract class MspMoteType extends BaseContikiMoteType {
     if (!setBaseConfigXML(simulation, configXML)) {
       return false;
     }
+    /* Profiling and debugging requested by simulation options */
+    try {
+      MspSampleProfiler.startFromOptions(simulation);
+      MspGDBServer.startFromOptions(simulation);
+    } catch (IOException | IllegalArgumentException e) {
+      throw new MoteTypeCreationException("Failed to start MSP430 profiling or debugging: " + e.getMessage(), e);
+    }
 
     if (fileFirmware == null && fileSource == null) {
       throw new MoteTypeCreationException("Neither source or firmware specified");
@@ -131,15 +149,8 @@ public abstract class MspMoteType extends BaseContikiMoteType {
     }
 
     // Match line number.
-    if (lineTable.get(lineNr) != null) {
-      for (var entry : lineTable.entrySet()) {
-        var l = entry.getKey();
-        if (l != null && l == lineNr) { // Found line address.
-          return entry.getValue();
-        }
-      }
-    }
-    return -1;
+    var address = lineTable.get(lineNr);
+    return address == null ? -1 : address;
   }
 
   protected Map<String, Symbol> getEntries(GenericNode node) throws MoteTypeCreationException {
@@ -166,15 +177,81 @@ public abstract class MspMoteType extends BaseContikiMoteType {
 
   public ELF getELF() throws IOException {
     if (elf == null) {
-      elf = ELF.readELF(getContikiFirmwareFile().getPath());
+      elf = ELF.getSharedELF(getContikiFirmwareFile().getPath());
     }
     return elf;
   }
 
+  /**
+   * Prints the call stacks of all motes of this type in the collapsed
+   * stack format used by flame graph tools, aggregated over the motes.
+   */
+  public void printCollapsedStacks(Simulation simulation, PrintStream out) {
+    var stacks = new TreeMap<String, Long>();
+    for (Mote mote : simulation.getMotes()) {
+      if (mote.getType() == this && mote instanceof MspMote mspMote
+          && mspMote.getCPU().getProfiler() instanceof SimpleProfiler profiler) {
+        profiler.addCollapsedStacks(stacks);
+      }
+    }
+    SimpleProfiler.printCollapsedStacks(out, stacks);
+  }
+
+  /**
+   * Starts or stops sampling the program counter of all motes of this type.
+   * Must be called from the simulation thread.
+   *
+   * @param period Cycles between samples, or 0 to stop sampling
+   */
+  public void setSampling(Simulation simulation, int period) {
+    for (Mote mote : simulation.getMotes()) {
+      if (mote.getType() == this && mote instanceof MspMote mspMote) {
+        var sampler = SampleProfiler.getSampleProfiler(mspMote.getCPU());
+        if (period > 0) {
+          sampler.start(period);
+        } else {
+          sampler.stop();
+        }
+      }
+    }
+  }
+
+  /**
+   * Aggregates the samples of all motes of this type.
+   *
+   * @return Report, or null if no mote of this type has been sampled
+   */
+  public SampleReport createSampleReport(Simulation simulation) {
+    SampleReport report = null;
+    for (Mote mote : simulation.getMotes()) {
+      if (mote.getType() != this || !(mote instanceof MspMote mspMote)) {
+        continue;
+      }
+      var sampler = mspMote.registry.getComponent(SampleProfiler.class);
+      if (sampler == null) {
+        continue;
+      }
+      if (report == null) {
+        ELF elf;
+        try {
+          elf = getELF();
+        } catch (IOException e) {
+          elf = null;
+        }
+        report = new SampleReport(mspMote.getCPU().getDisAsm().getMap(), elf);
+      }
+      report.add(sampler);
+    }
+    return report;
+  }
+
   public HashMap<File, HashMap<Integer, Integer>> getFirmwareDebugInfo()
   throws IOException {
     if (debuggingInfo == null) {
-      debuggingInfo = getFirmwareDebugInfo(getELF());
+      var elf = getELF();
+      synchronized (firmwareDebugInfo) {
+        debuggingInfo = firmwareDebugInfo.computeIfAbsent(elf, MspMoteType::getFirmwareDebugInfo);
+      }
     }
     return debuggingInfo;
   }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.mspmote;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import org.contikios.cooja.Simulation;
+import org.contikios.cooja.util.EventTriggers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.sics.mspsim.profiler.SampleProfiler;
+
+/**
+ * Samples the program counter of all MSP430 motes in a simulation and
+ * writes a report per mote type when the simulation stops. Collapsed
+ * stacks for flame graphs are written next to the report, with a ".folded"
+ * suffix and the mote type as root frame.
+ */
+public class MspSampleProfiler {
+  private static final Logger logger = LoggerFactory.getLogger(MspSampleProfiler.class);
+
+  /* Profilers started from simulation options */
+  private static final HashMap<Simulation, MspSampleProfiler> profilers = new HashMap<>();
+
+  private final Simulation simulation;
+  private final int period;
+  private final Path file;
+
+  private MspSampleProfiler(Simulation simulation, int period, Path file) {
+    this.simulation = simulation;
+    this.period = period;
+    this.file = file;
+  }
+
+  /**
+   * Starts sampling a simulation. It stops when the simulation is removed.
+   *
+   * @param simulation Simulation
+   * @param period Cycles between samples
+   * @param file Report file
+   * @return Profiler
+   */
+  public static MspSampleProfiler start(Simulation simulation, int period, Path file) {
+    if (period <= 0) {
+      throw new IllegalArgumentException("Sample period must be positive");
+    }
+    var profiler = new MspSampleProfiler(simulation, period, file);
+    simulation.invokeSimulationThread(profiler::start);
+    logger.info("Writing sample profile to " + file);
+    return profiler;
+  }
+
+  /**
+   * Starts sampling as requested by the profile-out and profile-period
+   * simulation options, unless the simulation is already sampled. Called
+   * when an MSP mote type is loaded into the simulation.
+   *
+   * @param simulation Simulation
+   */
+  static void startFromOptions(Simulation simulation) {
+    var cfg = simulation.getCfg();
+    var profileOut = cfg.opts().get("profile-out");
+    if (profileOut == null) {
+      return;
+    }
+    synchronized (profilers) {
+      if (profilers.containsKey(simulation)) {
+        return;
+      }
+      var period = Integer.parseInt(cfg.opts().getOrDefault("profile-period",
+              Integer.toString(SampleProfiler.DEFAULT_PERIOD)));
+      profilers.put(simulation, start(simulation, period, Path.of(cfg.logDir()).resolve(profileOut)));
+    }
+  }
+
+  private void start() {
+    simulation.getMoteTriggers().addTrigger(this, (op, mote) -> {
+      if (op == EventTriggers.AddRemove.ADD && mote instanceof MspMote mspMote) {
+        SampleProfiler.getSampleProfiler(mspMote.getCPU()).start(period);
+      }
+    });
+    for (var mote : simulation.getMotes()) {
+      if (mote instanceof MspMote mspMote) {
+        SampleProfiler.getSampleProfiler(mspMote.getCPU()).start(period);
+      }
+    }
+    simulation.getSimulationStateTriggers().addTrigger(this, (op, sim) -> {
+      if (op == EventTriggers.Operation.STOP) {
+        write();
+      } else if (op == EventTriggers.Operation.REMOVE) {
+        stop();
+      }
+    });
+  }
+
+  /** Stops sampling. */
+  public void stop() {
+    synchronized (profilers) {
+      profilers.remove(simulation, this);
+    }
+    simulation.getSimulationStateTriggers().deleteTriggers(this);
+    simulation.getMoteTriggers().deleteTriggers(this);
+    for (var mote : simulation.getMotes()) {
+      if (mote instanceof MspMote mspMote) {
+        SampleProfiler.getSampleProfiler(mspMote.getCPU()).stop();
+      }
+    }
+  }
+
+  /** Writes the report and collapsed stacks of all samples so far. */
+  public void write() {
+    var folded = file.resolveSibling(file.getFileName() + ".folded");
+    try (var out = new PrintStream(Files.newOutputStream(file), false, UTF_8);
+         var foldedOut = new PrintStream(Files.newOutputStream(folded), false, UTF_8)) {
+      for (var type : simulation.getMoteTypes()) {
+        if (!(type instanceof MspMoteType mspType)) {
+          continue;
+        }
+        var report = mspType.createSampleReport(simulation);
+        if (report == null) {
+          continue;
+        }
+        out.println("Mote type " + type.getIdentifier() + ": " + type.getDescription());
+        report.printReport(out);
+        out.println();
+        report.printCollapsedStacks(foldedOut, type.getIdentifier());
+      }
+    } catch (IOException e) {
+      logger.error("Failed to write sample profile: " + e.getMessage());
+    }
+  }
+}
@@ -37,7 +37,6 @@ import org.contikios.cooja.ClassDescription;
 import org.contikios.cooja.Mote;
 import org.contikios.cooja.radiomediums.AbstractRadioMedium;
 
-import org.contikios.cooja.mspmote.MspMoteTimeEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -330,6 +329,10 @@ public class Msp802154BitErrorRadio extends Msp802154Radio {
 
   @Override
   public void receiveCustomData(Object data) {
+    if (data instanceof byte[]) {
+      super.receiveCustomData(data);
+      return;
+    }
     if (!(data instanceof Byte)) {
       logger.error("Bad custom data: " + data);
       return;
@@ -340,32 +343,42 @@ public class Msp802154BitErrorRadio extends Msp802154Radio {
     if (isInterfered()) {
       inputByte = (byte)0xFF;
     } else {
-      double bitErrorRate = getBitErrorRate(currentSignalStrength);
-      if (bitErrorRate == 0.0) {
-        inputByte = lastIncomingByte;
-      } else if (bitErrorRate >= 0.5) {
-        inputByte = (byte) 0xFF;
-      } else {
-        /* convert to an unsigned int in order to prettify subsequent operations with bits */
-        int incomingByteAsInt = lastIncomingByte;
-        if (incomingByteAsInt < 0) incomingByteAsInt += 256;
+      inputByte = transceiveByteWithErrors(lastIncomingByte, getBitErrorRate(currentSignalStrength));
+    }
 
-        /* a byte consists of 2 symbols; independently transceive each of them */
-        int firstSymbol = transceiveSymbolWithErrors(incomingByteAsInt >> 4, bitErrorRate);
-        int secondSymbol = transceiveSymbolWithErrors(incomingByteAsInt & 0xf, bitErrorRate);
+    deliverByte(inputByte);
+  }
 
-        inputByte = (byte)((firstSymbol << 4) + secondSymbol);
-      }
+  /* Frame delivery: all bytes get the bit error rate of the signal strength at the start of the frame */
+  @Override
+  protected void applyFrameErrors(byte[] frame) {
+    if (isInterfered()) {
+      super.applyFrameErrors(frame);
+      return;
     }
+    double bitErrorRate = getBitErrorRate(currentSignalStrength);
+    if (bitErrorRate == 0.0) {
+      return;
+    }
+    for (int i = 0; i < frame.length; i++) {
+      frame[i] = transceiveByteWithErrors(frame[i], bitErrorRate);
+    }
+  }
 
-    mote.getSimulation().scheduleEvent(new MspMoteTimeEvent(mote) {
-      @Override
-      public void execute(long t) {
-        super.execute(t);
-        radio.receivedByte(inputByte);
-        mote.requestImmediateWakeup();
-      }
-    }, mote.getSimulation().getSimulationTime());
+  private byte transceiveByteWithErrors(byte data, double bitErrorRate) {
+    if (bitErrorRate == 0.0) {
+      return data;
+    } else if (bitErrorRate >= 0.5) {
+      return (byte) 0xFF;
+    }
+    /* convert to an unsigned int in order to prettify subsequent operations with bits */
+    int incomingByteAsInt = data;
+    if (incomingByteAsInt < 0) incomingByteAsInt += 256;
+
+    /* a byte consists of 2 symbols; independently transceive each of them */
+    int firstSymbol = transceiveSymbolWithErrors(incomingByteAsInt >> 4, bitErrorRate);
+    int secondSymbol = transceiveSymbolWithErrors(incomingByteAsInt & 0xf, bitErrorRate);
 
+    return (byte)((firstSymbol << 4) + secondSymbol);
   }
 }
@@ -30,6 +30,7 @@
 
 package org.contikios.cooja.mspmote.interfaces;
 
+import java.util.Arrays;
 
 import org.contikios.cooja.ClassDescription;
 import org.contikios.cooja.Mote;
@@ -62,11 +63,24 @@ public class Msp802154Radio extends Radio implements CustomDataRadio {
   public static final long DELAY_BETWEEN_BYTES =
     (long) (1000.0*Simulation.MILLISECOND/(250000.0/8.0)); /* us. Corresponds to 250kbit/s */
 
+  /**
+   * Cross-level:
+   * Length of the synchronization header (preamble + SFD) in bytes.
+   */
+  private static final int SHR_LENGTH = 5;
+
   private RadioEvent lastEvent = RadioEvent.UNKNOWN;
 
   protected final MspMote mote;
   protected final Radio802154 radio;
 
+  /**
+   * Frame delivery: whole frames cross the radio medium once, and are
+   * received by the radio chip without one simulation event per byte.
+   * Enabled with the simulation option radio-frames=true.
+   */
+  private final boolean frameDelivery;
+
   private boolean isInterfered;
   private boolean isTransmitting;
   private boolean isReceiving;
@@ -74,20 +88,28 @@ public class Msp802154Radio extends Radio implements CustomDataRadio {
 
   protected byte lastOutgoingByte;
   protected byte lastIncomingByte;
+  private Object lastOutgoingData;
 
   private RadioPacket lastOutgoingPacket;
   private RadioPacket lastIncomingPacket;
 
+  private final RxByteEvent rxByteEvent;
+  private final RssiEvent rssiEvent;
+
   public Msp802154Radio(Mote m) {
     this.mote = (MspMote)m;
     this.radio = this.mote.getCPU().getChip(Radio802154.class);
     if (radio == null) {
       throw new IllegalStateException("Mote is not equipped with an IEEE 802.15.4 radio");
     }
+    rxByteEvent = new RxByteEvent();
+    rssiEvent = new RssiEvent();
+    frameDelivery = Boolean.parseBoolean(mote.getSimulation().getCfg().opts().get("radio-frames"));
 
     radio.addRFListener(new RFListener() {
       int len;
       int expMpduLen;
+      boolean forwardBytes;
       final byte[] buffer = new byte[127 + 6];
       final private byte[] syncSeq = {0,0,0,0,0x7A};
       
@@ -99,19 +121,37 @@ public class Msp802154Radio extends Radio implements CustomDataRadio {
           isTransmitting = true;
           len = 0;
           expMpduLen = 0;
+          forwardBytes = !frameDelivery;
           radioEventTriggers.trigger(RadioEvent.TRANSMISSION_STARTED, Msp802154Radio.this);
         }
 
         /* send this byte to all nodes */
         lastOutgoingByte = data;
-        lastEvent = RadioEvent.CUSTOM_DATA_TRANSMITTED;
-        radioEventTriggers.trigger(RadioEvent.CUSTOM_DATA_TRANSMITTED, Msp802154Radio.this);
+        if (forwardBytes) {
+          forwardByte(data);
+        }
 
         if (len < buffer.length)
           buffer[len] = data;
 
         len ++;
 
+        if (!forwardBytes && len == SHR_LENGTH) {
+          /* Send the whole frame when the SFD is on the air, or fall back
+           * to bytes if the radio chip can not tell the frame in advance. */
+          byte[] frame = radio.getTransmittedFrame();
+          if (frame != null) {
+            lastOutgoingData = frame;
+            lastEvent = RadioEvent.CUSTOM_DATA_TRANSMITTED;
+            radioEventTriggers.trigger(RadioEvent.CUSTOM_DATA_TRANSMITTED, Msp802154Radio.this);
+          } else {
+            forwardBytes = true;
+            for (int i = 0; i < SHR_LENGTH; i++) {
+              forwardByte(buffer[i]);
+            }
+          }
+        }
+
         if (len == 5) {
           isSynchronized = true;
           for (int i=0; i<5; i++) {
@@ -158,6 +198,12 @@ public class Msp802154Radio extends Radio implements CustomDataRadio {
   }
 
 
+  private void forwardByte(byte data) {
+    lastOutgoingData = data;
+    lastEvent = RadioEvent.CUSTOM_DATA_TRANSMITTED;
+    radioEventTriggers.trigger(RadioEvent.CUSTOM_DATA_TRANSMITTED, this);
+  }
+
   private void finishTransmission()
   {
     if (isTransmitting()) {
@@ -202,21 +248,17 @@ public class Msp802154Radio extends Radio implements CustomDataRadio {
 
     /* Delivering packet bytes with delays */
     byte[] packetData = CC2420RadioPacketConverter.fromCoojaToCC2420(packet);
+    if (frameDelivery) {
+      scheduleFrame(packetData, 0);
+      return;
+    }
     long deliveryTime = getMote().getSimulation().getSimulationTime();
     for (byte b: packetData) {
       if (isInterfered()) {
         b = (byte) 0xFF;
       }
 
-      final byte byteToDeliver = b;
-      getMote().getSimulation().scheduleEvent(new MspMoteTimeEvent(mote) {
-        @Override
-        public void execute(long t) {
-          super.execute(t);
-          radio.receivedByte(byteToDeliver);
-          mote.requestImmediateWakeup();
-        }
-      }, deliveryTime);
+      rxByteEvent.add(deliveryTime, b);
       deliveryTime += DELAY_BETWEEN_BYTES;
     }
   }
@@ -224,7 +266,7 @@ public class Msp802154Radio extends Radio implements CustomDataRadio {
   /* Custom data radio support */
   @Override
   public Object getLastCustomDataTransmitted() {
-    return lastOutgoingByte;
+    return lastOutgoingData;
   }
 
   @Override
@@ -234,6 +276,11 @@ public class Msp802154Radio extends Radio implements CustomDataRadio {
 
   @Override
   public void receiveCustomData(Object data) {
+    if (data instanceof byte[] frame) {
+      /* The SFD of the frame is on the air now */
+      scheduleFrame(frame.clone(), SHR_LENGTH - 1);
+      return;
+    }
     if (!(data instanceof Byte)) {
       logger.error("Bad custom data: " + data);
       return;
@@ -246,15 +293,119 @@ public class Msp802154Radio extends Radio implements CustomDataRadio {
     } else {
       inputByte = lastIncomingByte;
     }
+    deliverByte(inputByte);
+  }
+
+  /**
+   * Deliver a received byte to the radio chip at the current simulation time.
+   *
+   * @param data Byte
+   */
+  protected void deliverByte(byte data) {
+    rxByteEvent.add(mote.getSimulation().getSimulationTime(), data);
+  }
+
+  /**
+   * Bytes waiting to be delivered to the radio chip, kept in time order in a
+   * ring buffer and delivered by one reusable mote time event.
+   */
+  private final class RxByteEvent extends MspMoteTimeEvent {
+    private long[] times = new long[128];
+    private byte[] bytes = new byte[128];
+    private int first;
+    private int size;
+    private boolean isExecuting;
+
+    RxByteEvent() {
+      super(Msp802154Radio.this.mote);
+    }
+
+    private int pos(int index) {
+      return (first + index) & (times.length - 1);
+    }
+
+    void add(long time, byte data) {
+      if (size == times.length) {
+        long[] newTimes = new long[times.length * 2];
+        byte[] newBytes = new byte[times.length * 2];
+        for (int i = 0; i < size; i++) {
+          newTimes[i] = times[pos(i)];
+          newBytes[i] = bytes[pos(i)];
+        }
+        times = newTimes;
+        bytes = newBytes;
+        first = 0;
+      }
+      /* Ordered by time, and by arrival order for the same time */
+      int i = size;
+      while (i > 0 && times[pos(i - 1)] > time) {
+        times[pos(i)] = times[pos(i - 1)];
+        bytes[pos(i)] = bytes[pos(i - 1)];
+        i--;
+      }
+      times[pos(i)] = time;
+      bytes[pos(i)] = data;
+      size++;
+      if (i == 0 && !isExecuting) {
+        if (isScheduled()) {
+          remove();
+        }
+        mote.getSimulation().scheduleEvent(this, time);
+      }
+    }
+
+    @Override
+    public void execute(long t) {
+      super.execute(t);
+      isExecuting = true;
+      try {
+        while (size > 0 && times[first] <= t) {
+          byte data = bytes[first];
+          first = pos(1);
+          size--;
+          radio.receivedByte(data);
+        }
+      } finally {
+        isExecuting = false;
+      }
+      mote.requestImmediateWakeup();
+      if (size > 0 && !isScheduled()) {
+        mote.getSimulation().scheduleEvent(this, times[first]);
+      }
+    }
+  }
+
+  /**
+   * Hand a whole frame to the radio chip.
+   *
+   * @param frame  Frame bytes, will be modified by reception errors
+   * @param offset Index of the byte arriving now
+   */
+  private void scheduleFrame(byte[] frame, int offset) {
+    if (frame.length > 0) {
+      lastIncomingByte = frame[frame.length - 1];
+    }
+    applyFrameErrors(frame);
     mote.getSimulation().scheduleEvent(new MspMoteTimeEvent(mote) {
       @Override
       public void execute(long t) {
         super.execute(t);
-        radio.receivedByte(inputByte);
+        radio.receivedFrame(frame, offset);
         mote.requestImmediateWakeup();
       }
     }, mote.getSimulation().getSimulationTime());
+  }
 
+  /**
+   * Apply reception errors to a received frame before it is delivered to the radio chip.
+   * Interference later during the frame is handled by the radio chip.
+   *
+   * @param frame Frame bytes
+   */
+  protected void applyFrameErrors(byte[] frame) {
+    if (isInterfered()) {
+      Arrays.fill(frame, (byte) 0xFF);
+    }
   }
 
   /* General radio support */
@@ -310,6 +461,16 @@ public class Msp802154Radio extends Radio implements CustomDataRadio {
     isInterfered = true;
     isReceiving = false;
     lastIncomingPacket = null;
+    if (radio.isReceivingFrame()) {
+      mote.getSimulation().scheduleEvent(new MspMoteTimeEvent(mote) {
+        @Override
+        public void execute(long t) {
+          super.execute(t);
+          radio.interfereReceivedFrame();
+          mote.requestImmediateWakeup();
+        }
+      }, mote.getSimulation().getSimulationTime());
+    }
 
     lastEvent = RadioEvent.RECEPTION_INTERFERED;
     radioEventTriggers.trigger(RadioEvent.RECEPTION_INTERFERED, this);
@@ -354,30 +515,36 @@ public class Msp802154Radio extends Radio implements CustomDataRadio {
     }
     currentSignalStrength = signalStrength;
     if (rssiLastCounter == 0) {
-      getMote().getSimulation().scheduleEvent(new MspMoteTimeEvent(mote) {
-        @Override
-        public void execute(long t) {
-          super.execute(t);
+      getMote().getSimulation().scheduleEvent(rssiEvent, mote.getSimulation().getSimulationTime());
+    }
+    rssiLastCounter = 8;
+  }
 
-          /* Update average */
-          System.arraycopy(rssiLast, 1, rssiLast, 0, 7);
-          rssiLast[7] = currentSignalStrength;
-          double avg = 0;
-          for (double v: rssiLast) {
-            avg += v;
-          }
-          avg /= rssiLast.length;
+  private final class RssiEvent extends MspMoteTimeEvent {
+    RssiEvent() {
+      super(Msp802154Radio.this.mote);
+    }
 
-          radio.setRSSI((int) avg);
+    @Override
+    public void execute(long t) {
+      super.execute(t);
 
-          rssiLastCounter--;
-          if (rssiLastCounter > 0) {
-            mote.getSimulation().scheduleEvent(this, t+DELAY_BETWEEN_BYTES/2);
-          }
-        }
-      }, mote.getSimulation().getSimulationTime());
+      /* Update average */
+      System.arraycopy(rssiLast, 1, rssiLast, 0, 7);
+      rssiLast[7] = currentSignalStrength;
+      double avg = 0;
+      for (double v: rssiLast) {
+        avg += v;
+      }
+      avg /= rssiLast.length;
+
+      radio.setRSSI((int) avg);
+
+      rssiLastCounter--;
+      if (rssiLastCounter > 0) {
+        mote.getSimulation().scheduleEvent(this, t+DELAY_BETWEEN_BYTES/2);
+      }
     }
-    rssiLastCounter = 8;
   }
   
   
@@ -59,7 +59,7 @@ public class CodeVisualizerSkin implements VisualizerSkin {
 
   private final Timer repaintTimer = new Timer(100, e -> {
     if (simulation.isRunning()) {
-      visualizer.repaint();
+      visualizer.repaintFrame();
     }
   });
 
@@ -67,7 +67,7 @@ public class CodeVisualizerSkin implements VisualizerSkin {
   public void setActive(Simulation simulation, Visualizer vis) {
     this.simulation = simulation;
     this.visualizer = vis;
-    simulation.getSimulationStateTriggers().addTrigger(this, (obs, obj) -> visualizer.repaint());
+    simulation.getSimulationStateTriggers().addTrigger(this, (obs, obj) -> visualizer.repaintFrame());
     repaintTimer.start();
   }
 
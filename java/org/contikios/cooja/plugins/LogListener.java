@@ -561,16 +561,14 @@ public class LogListener extends VisPlugin implements HasQuickHelp, TimeSelect
     focusMenu.add(new JMenuItem(radioLoggerAction));
     popupMenu.add(focusMenu);
     /* Fetch log output history */
-    LogOutputEvent[] history = simulation.getEventCentral().getLogOutputHistory();
-    if (history.length > 0) {
-      for (LogOutputEvent historyEv: history) {
-      	if (!hasHours && historyEv.getTime() > TIME_HOUR) {
-      		hasHours = true;
-      		repaintTimeColumn();
-      	}
-        LogData data = new LogData(historyEv);
-        logs.add(data);
+    int history = simulation.getEventCentral().getLogStore().query().poll(historyEv -> {
+      if (!hasHours && historyEv.getTime() > TIME_HOUR) {
+        hasHours = true;
+        repaintTimeColumn();
       }
+      logs.add(new LogData(historyEv));
+    });
+    if (history > 0) {
       java.awt.EventQueue.invokeLater(() -> {
         model.fireTableDataChanged();
         logTable.scrollRectToVisible(new Rectangle(0, logTable.getHeight() - 2, 1, logTable.getHeight()));
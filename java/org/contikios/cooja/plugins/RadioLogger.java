@@ -45,6 +45,7 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Files;
@@ -52,6 +53,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.regex.PatternSyntaxException;
@@ -78,8 +80,8 @@ import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableModel;
 import javax.swing.table.TableRowSorter;
 import org.contikios.cooja.ClassDescription;
-import org.contikios.cooja.ConvertedRadioPacket;
 import org.contikios.cooja.Cooja;
+import org.contikios.cooja.Mote;
 import org.contikios.cooja.PluginType;
 import org.contikios.cooja.RadioConnection;
 import org.contikios.cooja.RadioMedium;
@@ -87,7 +89,6 @@ import org.contikios.cooja.RadioPacket;
 import org.contikios.cooja.Simulation;
 import org.contikios.cooja.VisPlugin;
 import org.contikios.cooja.dialogs.TableColumnAdjuster;
-import org.contikios.cooja.interfaces.Radio;
 import org.contikios.cooja.interfaces.TimeSelect;
 import org.contikios.cooja.plugins.analyzers.FragHeadPacketAnalyzer;
 import org.contikios.cooja.plugins.analyzers.ICMPv6Analyzer;
@@ -96,6 +97,8 @@ import org.contikios.cooja.plugins.analyzers.IPHCPacketAnalyzer;
 import org.contikios.cooja.plugins.analyzers.IPv6PacketAnalyzer;
 import org.contikios.cooja.plugins.analyzers.PacketAnalyzer;
 import org.contikios.cooja.plugins.analyzers.RadioLoggerAnalyzerSuite;
+import org.contikios.cooja.radiomediums.RadioCaptureStore;
+import org.contikios.cooja.util.EventTriggers;
 import org.contikios.cooja.util.StringUtils;
 import org.jdom2.Element;
 import org.slf4j.Logger;
@@ -137,7 +140,22 @@ public class RadioLogger extends VisPlugin
   private final Simulation simulation;
   private final JTable dataTable;
   private final TableRowSorter<TableModel> logFilter;
-  private final ArrayList<RadioConnectionLog> connections = new ArrayList<RadioConnectionLog>();
+  /* Logged packets are kept on disk, only decoded rows of the table are cached */
+  private static final int ROW_CACHE_SIZE = 1024;
+  private final RadioCaptureStore captures;
+  private final LinkedHashMap<Integer, RadioConnectionLog> rowCache =
+          new LinkedHashMap<>(ROW_CACHE_SIZE, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, RadioConnectionLog> eldest) {
+      return size() > ROW_CACHE_SIZE;
+    }
+  };
+  /* Number of rows in the table, updated on the event dispatch thread */
+  private int rowCount;
+  /* Number of duplicates hidden by a row, and the row hiding each duplicate */
+  /* By packet number: duplicates hidden behind the packet, and the packet hiding it or -1 */
+  private int[] hiddenCount = new int[0];
+  private int[] hiddenBy = new int[0];
   private final RadioMedium radioMedium;
   private final AbstractTableModel model;
 
@@ -155,6 +173,11 @@ public class RadioLogger extends VisPlugin
 
     simulation = simulationToControl;
     radioMedium = simulation.getRadioMedium();
+    try {
+      captures = RadioCaptureStore.createTemporary();
+    } catch (IOException e) {
+      throw new RuntimeException("Could not create radio capture files", e);
+    }
 
     /* Menus */
     JMenuBar menuBar = new JMenuBar();
@@ -196,7 +219,7 @@ public class RadioLogger extends VisPlugin
 
       @Override
       public int getRowCount() {
-        return connections.size();
+        return rowCount;
       }
 
       @Override
@@ -206,13 +229,14 @@ public class RadioLogger extends VisPlugin
 
       @Override
       public Object getValueAt(int row, int col) {
-        if (row < 0 || row >= connections.size()) {
+        if (row < 0 || row >= rowCount) {
           return "";
         }
-        RadioConnectionLog conn = connections.get(row);
+        RadioConnectionLog conn = getConnection(row);
         if (col == COLUMN_NO) {
-          if (!showDuplicates && conn.hides > 0) {
-            return (row + 1) + "+" + conn.hides;
+          int hides = row < hiddenCount.length ? hiddenCount[row] : 0;
+          if (!showDuplicates && hides > 0) {
+            return (row + 1) + "+" + hides;
           }
           return String.valueOf(row + 1);
         } else if (col == COLUMN_TIME) {
@@ -221,22 +245,22 @@ public class RadioLogger extends VisPlugin
           }
           return Long.toString(conn.startTime / Simulation.MILLISECOND);
         } else if (col == COLUMN_FROM) {
-          return String.valueOf(conn.connection.getSource().getMote().getID());
+          return String.valueOf(conn.packet.sourceID);
         } else if (col == COLUMN_TO) {
-          Radio[] dests = conn.connection.getDestinations();
-          if (dests.length == 0) {
+          int dests = conn.packet.destinationIDs.length;
+          if (dests == 0) {
             return "-";
           }
-          if (dests.length == 1) {
+          if (dests == 1) {
             return conn.labelMoteRSSI(0);
           }
-          if (dests.length == 2) {
+          if (dests == 2) {
             return conn.labelMote(0) + ',' + conn.labelMote(1);
           }
-          return "[" + dests.length + " d]";
+          return "[" + dests + " d]";
         } else if (col == COLUMN_DATA) {
           if (conn.data == null) {
-            prepareDataString(connections.get(row));
+            prepareDataString(conn);
           }
           if (aliases != null) {
             /* Check if alias exists */
@@ -254,15 +278,20 @@ public class RadioLogger extends VisPlugin
       public boolean isCellEditable(int row, int col) {
         if (col == COLUMN_FROM) {
           /* Highlight source */
-          gui.signalMoteHighlight(connections.get(row).connection.getSource().getMote());
+          Mote source = simulation.getMoteWithID(getConnection(row).packet.sourceID);
+          if (source != null) {
+            gui.signalMoteHighlight(source);
+          }
           return false;
         }
 
         if (col == COLUMN_TO) {
           /* Highlight all destinations */
-          Radio[] dests = connections.get(row).connection.getDestinations();
-          for (Radio dest: dests) {
-            gui.signalMoteHighlight(dest.getMote());
+          for (int id: getConnection(row).packet.destinationIDs) {
+            Mote dest = simulation.getMoteWithID(id);
+            if (dest != null) {
+              gui.signalMoteHighlight(dest);
+            }
           }
           return false;
         }
@@ -291,7 +320,7 @@ public class RadioLogger extends VisPlugin
         }
 
         /* TODO This entry may represent several hidden connections */
-        RadioConnectionLog conn = connections.get(modelRowIndex);
+        RadioConnectionLog conn = getConnection(modelRowIndex);
         if (modelColumnIndex == COLUMN_TIME) {
           return "<html>"
                   + "Start time (us): " + conn.startTime
@@ -301,9 +330,9 @@ public class RadioLogger extends VisPlugin
                   + "Duration (us): " + (conn.endTime - conn.startTime)
                   + "</html>";
         } else if (modelColumnIndex == COLUMN_FROM) {
-          return conn.connection.getSource().getMote().toString();
+          return moteString(conn.packet.sourceID);
         } else if (modelColumnIndex == COLUMN_TO) {
-          Radio[] dests = conn.connection.getDestinations();
+          int[] dests = conn.packet.destinationIDs;
           if (dests.length == 0) {
             return "No destinations";
           }
@@ -315,8 +344,8 @@ public class RadioLogger extends VisPlugin
             tip.append(dests.length).append(" destinations:<br>");
           }
           for (int i =0; i < dests.length; ++i) {
-            tip.append(dests[i].getMote());
-            tip.append( labelRSSI(conn.conn_rssi[i]) );
+            tip.append(moteString(dests[i]));
+            tip.append( labelRSSI(conn.packet.destinationSignals[i]) );
             tip.append("<br>");
           }
           tip.append("</html>");
@@ -396,7 +425,7 @@ public class RadioLogger extends VisPlugin
       }
       int modelRowIndex = dataTable.convertRowIndexToModel(row);
       if (modelRowIndex >= 0) {
-        RadioConnectionLog conn = connections.get(modelRowIndex);
+        RadioConnectionLog conn = getConnection(modelRowIndex);
         if (conn.tooltip == null) {
           prepareTooltipString(conn);
         }
@@ -415,8 +444,8 @@ public class RadioLogger extends VisPlugin
         Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
 
         StringBuilder sb = new StringBuilder();
-        for (RadioConnectionLog connection : connections) {
-          sb.append(connection.toString()).append("\n");
+        for (int i = 0; i < rowCount; i++) {
+          sb.append(getConnection(i).toString()).append("\n");
         }
 
         StringSelection stringSelection = new StringSelection(sb.toString());
@@ -434,7 +463,7 @@ public class RadioLogger extends VisPlugin
         StringBuilder sb = new StringBuilder();
         for (int i : selectedRows) {
           int iModel = dataTable.convertRowIndexToModel(i);
-          sb.append(connections.get(iModel).toString()).append("\n");
+          sb.append(getConnection(iModel).toString()).append("\n");
         }
 
         StringSelection stringSelection = new StringSelection(sb.toString());
@@ -446,11 +475,18 @@ public class RadioLogger extends VisPlugin
     Action clearAction = new AbstractAction("Clear") {
       @Override
       public void actionPerformed(ActionEvent e) {
-        int size = connections.size();
+        int size = rowCount;
         if (size > 0) {
-          connections.clear();
+          try {
+            captures.clear();
+          } catch (IOException ex) {
+            logger.error("Could not clear radio capture files: " + ex.getMessage());
+          }
+          rowCount = 0;
+          rowCache.clear();
+          clearHidden();
           model.fireTableRowsDeleted(0, size - 1);
-          setTitle("Radio messages: showing " + dataTable.getRowCount() + "/" + connections.size() + " packets");
+          setTitle("Radio messages: showing " + dataTable.getRowCount() + "/" + rowCount + " packets");
         }
       }
     };
@@ -464,16 +500,20 @@ public class RadioLogger extends VisPlugin
         selectedRow = dataTable.convertRowIndexToModel(selectedRow);
         if (selectedRow < 0) return;
 
+        RadioConnectionLog conn = getConnection(selectedRow);
+        if (conn.data == null) {
+          prepareDataString(conn);
+        }
         String current = "";
-        if (aliases != null && aliases.getProperty(connections.get(selectedRow).data) != null) {
-          current = aliases.getProperty(connections.get(selectedRow).data);
+        if (aliases != null && aliases.getProperty(conn.data) != null) {
+          current = aliases.getProperty(conn.data);
         }
 
         String alias = (String) JOptionPane.showInputDialog(
                 Cooja.getTopParentContainer(),
                 "Enter alias for all packets with identical payload.\n"
                         + "An empty string removes the current alias.\n\n"
-                        + connections.get(selectedRow).data + "\n",
+                        + conn.data + "\n",
                 "Create packet payload alias",
                 JOptionPane.QUESTION_MESSAGE,
                 null,
@@ -491,7 +531,7 @@ public class RadioLogger extends VisPlugin
 
         // Remove current alias
         if (alias.isEmpty()) {
-          aliases.remove(connections.get(selectedRow).data);
+          aliases.remove(conn.data);
 
           // Should be null if empty
           if (aliases.isEmpty()) {
@@ -502,7 +542,7 @@ public class RadioLogger extends VisPlugin
         }
 
         // (Re)define alias
-        aliases.put(connections.get(selectedRow).data, alias);
+        aliases.put(conn.data, alias);
         repaint();
       }
     };
@@ -551,8 +591,8 @@ public class RadioLogger extends VisPlugin
 
         try {
           PrintWriter outStream = new PrintWriter(Files.newBufferedWriter(saveFile.toPath(), UTF_8));
-          for (RadioConnectionLog connection : connections) {
-            outStream.print(connection.toString() + "\n");
+          for (int i = 0; i < rowCount; i++) {
+            outStream.print(getConnection(i).toString() + "\n");
           }
           outStream.close();
         } catch (Exception ex) {
@@ -652,36 +692,46 @@ public class RadioLogger extends VisPlugin
       if (conn == null) {
         return;
       }
-      final RadioConnectionLog loggedConn = new RadioConnectionLog();
-      loggedConn.packet = conn.getSource().getLastPacketTransmitted();
-      if (loggedConn.packet == null)
+      RadioPacket packet = conn.getSource().getLastPacketTransmitted();
+      if (packet == null)
         return;
-      loggedConn.startTime = conn.getStartTime();
-      loggedConn.endTime = simulation.getSimulationTime();
-        loggedConn.connection   = conn;
-        loggedConn.conn_rssi    = conn.getDestinationsStrengths();
-        
+      final int size;
+      try {
+        captures.add(conn, packet, conn.getStartTime(), simulation.getSimulationTime());
+        size = captures.size();
+      } catch (IOException e) {
+        logger.error("Could not record radio packet: " + e.getMessage());
+        return;
+      }
+
       EventQueue.invokeLater(() -> {
-        int lastSize = connections.size();
+        int lastSize = rowCount;
         // Check if the last row is visible.
         boolean isVisible = false;
-        int rowCount = dataTable.getRowCount();
-        if (rowCount > 0) {
-          Rectangle lastRow = dataTable.getCellRect(rowCount - 1, 0, true);
+        int tableRows = dataTable.getRowCount();
+        if (tableRows > 0) {
+          Rectangle lastRow = dataTable.getCellRect(tableRows - 1, 0, true);
           Rectangle visible = dataTable.getVisibleRect();
           isVisible = visible.y <= lastRow.y && visible.y + visible.height >= lastRow.y + lastRow.height;
         }
-        connections.add(loggedConn);
-        if (connections.size() > lastSize) {
-          model.fireTableRowsInserted(lastSize, connections.size() - 1);
+        rowCount = Math.max(lastSize, Math.min(size, captures.size()));
+        if (rowCount > lastSize) {
+          model.fireTableRowsInserted(lastSize, rowCount - 1);
         }
         if (isVisible) {
           dataTable.scrollRectToVisible(dataTable.getCellRect(dataTable.getRowCount() - 1, 0, true));
         }
-        setTitle("Radio messages: showing " + dataTable.getRowCount() + "/" + connections.size() + " packets");
+        setTitle("Radio messages: showing " + dataTable.getRowCount() + "/" + rowCount + " packets");
       });
     });
 
+    /* Exported pcap packets are written in the background, flush them when stopped */
+    simulation.getSimulationStateTriggers().addTrigger(this, (op, sim) -> {
+      if (op == EventTriggers.Operation.STOP) {
+        analyzerWithPcap.flushPcap();
+      }
+    });
+
     setSize(500, 300);
   }
 
@@ -741,9 +791,17 @@ public class RadioLogger extends VisPlugin
     if (dataTable.getRowCount() == 0) {
       return;
     }
-    for (int ai = 0; ai < model.getRowCount(); ai++) {
-      int index = dataTable.convertRowIndexToModel(ai);
-      if (connections.get(index).endTime < time) {
+    int index;
+    try {
+      index = captures.indexOfEndTime(time);
+    } catch (IOException e) {
+      logger.warn("Could not read radio capture: " + e.getMessage());
+      return;
+    }
+    for (; index < rowCount; index++) {
+      int ai = dataTable.convertRowIndexToView(index);
+      if (ai < 0) {
+        /* Filtered */
         continue;
       }
       dataTable.scrollRectToVisible(dataTable.getCellRect(ai, 0, true));
@@ -754,13 +812,28 @@ public class RadioLogger extends VisPlugin
     dataTable.setRowSelectionInterval(dataTable.getRowCount() - 1, dataTable.getRowCount() - 1);
   }
 
-  private void applyFilter() {
-    for (RadioConnectionLog conn: connections) {
-      conn.data = null;
-      conn.tooltip = null;
-      conn.hides = 0;
-      conn.hiddenBy = null;
+  private void clearHidden() {
+    Arrays.fill(hiddenCount, 0);
+    Arrays.fill(hiddenBy, -1);
+  }
+
+  /* Hides a duplicate of the previous packet behind the first packet of its run */
+  private void hide(int row) {
+    if (row >= hiddenBy.length) {
+      int n = Math.max(row + 1, Math.max(64, 2 * hiddenBy.length));
+      int old = hiddenBy.length;
+      hiddenCount = Arrays.copyOf(hiddenCount, n);
+      hiddenBy = Arrays.copyOf(hiddenBy, n);
+      Arrays.fill(hiddenBy, old, n, -1);
     }
+    int owner = hiddenBy[row - 1] >= 0 ? hiddenBy[row - 1] : row - 1;
+    hiddenCount[owner]++;
+    hiddenBy[row] = owner;
+  }
+
+  private void applyFilter() {
+    rowCache.clear();
+    clearHidden();
 
     try {
       logFilter.setRowFilter(null);
@@ -768,29 +841,17 @@ public class RadioLogger extends VisPlugin
         @Override
         public boolean include(RowFilter.Entry<? extends Object, ? extends Object> entry) {
           int row = (Integer) entry.getIdentifier();
-          RadioConnectionLog current = connections.get(row);
-          byte[] currentData = current.packet.getPacketData();
-
-          if (!showDuplicates && row > 0) {
-            RadioConnectionLog previous = connections.get(row - 1);
-            byte[] previousData = previous.packet.getPacketData();
-            if (!showDuplicates
-                    && Arrays.equals(previousData, currentData)
-                    && previous.connection.getSource() == current.connection.getSource()
-                    && Arrays.equals(previous.connection.getAllDestinations(), current.connection.getAllDestinations())) {
-              if (connections.get(row - 1).hiddenBy == null) {
-                connections.get(row - 1).hides++;
-                connections.get(row).hiddenBy = connections.get(row - 1);
-              } else {
-                connections.get(row - 1).hiddenBy.hides++;
-                connections.get(row).hiddenBy = connections.get(row - 1).hiddenBy;
-              }
+          try {
+            if (!showDuplicates && row > 0 && captures.isDuplicateOfPrevious(row)) {
+              hide(row);
               return false;
             }
-          }
 
-          if (hideNoDestinationPackets) {
-            return current.connection.getDestinations().length != 0;
+            if (hideNoDestinationPackets) {
+              return captures.getDestinationsCount(row) != 0;
+            }
+          } catch (IOException e) {
+            logger.warn("Could not read radio capture: " + e.getMessage());
           }
 
           return true;
@@ -804,25 +865,15 @@ public class RadioLogger extends VisPlugin
   }
 
   private void prepareDataString(RadioConnectionLog conn) {
-    byte[] data;
-    if (conn.packet == null) {
-      data = null;
-    } else if (conn.packet instanceof ConvertedRadioPacket) {
-      data = ((ConvertedRadioPacket) conn.packet).getOriginalPacketData();
-    } else {
-      data = conn.packet.getPacketData();
-    }
-    if (data == null) {
-      conn.data = "[unknown data]";
-      return;
-    }
+    byte[] data = conn.packet.data;
 
     StringBuilder brief = new StringBuilder();
     StringBuilder verbose = new StringBuilder();
 
     /* default analyzer */
     PacketAnalyzer.Packet packet = new PacketAnalyzer.Packet(data, PacketAnalyzer.MAC_LEVEL,
-                                                             simulation.convertSimTimeToActualTime(conn.startTime));
+                                                             simulation.convertSimTimeToActualTime(conn.startTime),
+                                                             conn.packet.channel);
     if (analyzePacket(packet, brief, verbose)) {
       if (packet.hasMoreData()) {
         byte[] payload = packet.getPayload();
@@ -876,15 +927,10 @@ public class RadioLogger extends VisPlugin
   }
 
   private void prepareTooltipString(RadioConnectionLog conn) {
-    RadioPacket packet = conn.packet;
-    if (packet == null) {
-      conn.tooltip = "";
-      return;
-    }
-
-    if (packet instanceof ConvertedRadioPacket && packet.getPacketData().length > 0) {
-      byte[] original = ((ConvertedRadioPacket) packet).getOriginalPacketData();
-      byte[] converted = packet.getPacketData();
+    RadioCaptureStore.Packet packet = conn.packet;
+    if (packet.converted && packet.convertedData.length > 0) {
+      byte[] original = packet.data;
+      byte[] converted = packet.convertedData;
       conn.tooltip = "<html><font face=\"Monospaced\">"
               + "<b>Packet data (" + original.length + " bytes)</b><br>"
               + "<pre>" + StringUtils.hexDump(original) + "</pre>"
@@ -892,8 +938,8 @@ public class RadioLogger extends VisPlugin
               + "<b>Cross-level packet data (" + converted.length + " bytes)</b><br>"
               + "<pre>" + StringUtils.hexDump(converted) + "</pre>"
               + "</font></html>";
-    } else if (packet instanceof ConvertedRadioPacket) {
-      byte[] original = ((ConvertedRadioPacket) packet).getOriginalPacketData();
+    } else if (packet.converted) {
+      byte[] original = packet.data;
       conn.tooltip = "<html><font face=\"Monospaced\">"
               + "<b>Packet data (" + original.length + " bytes)</b><br>"
               + "<pre>" + StringUtils.hexDump(original) + "</pre>"
@@ -901,7 +947,7 @@ public class RadioLogger extends VisPlugin
               + "<b>No cross-level conversion available</b><br>"
               + "</font></html>";
     } else {
-      byte[] data = packet.getPacketData();
+      byte[] data = packet.data;
       conn.tooltip = "<html><font face=\"Monospaced\">"
               + "<b>Packet data (" + data.length + " bytes)</b><br>"
               + "<pre>" + StringUtils.hexDump(data) + "</pre>"
@@ -912,6 +958,13 @@ public class RadioLogger extends VisPlugin
   @Override
   public void closePlugin() {
     radioMedium.getRadioTransmissionTriggers().deleteTriggers(this);
+    simulation.getSimulationStateTriggers().deleteTriggers(this);
+    analyzerWithPcap.closePcap();
+    try {
+      captures.close();
+    } catch (IOException e) {
+      logger.warn("Could not close radio capture files: " + e.getMessage());
+    }
   }
 
   @Override
@@ -999,64 +1052,72 @@ public class RadioLogger extends VisPlugin
     return true;
   }
 
-  private class RadioConnectionLog {
+  private RadioConnectionLog getConnection(int row) {
+    RadioConnectionLog conn = rowCache.get(row);
+    if (conn == null) {
+      try {
+        conn = new RadioConnectionLog(captures.read(row));
+      } catch (IOException e) {
+        throw new RuntimeException("Could not read radio capture", e);
+      }
+      rowCache.put(row, conn);
+    }
+    return conn;
+  }
 
-    long startTime;
-    long endTime;
-    RadioConnection connection;
-    RadioPacket packet;
+  private String moteString(int id) {
+    Mote mote = simulation.getMoteWithID(id);
+    return mote != null ? mote.toString() : "ID:" + id;
+  }
+
+  private class RadioConnectionLog {
 
-    RadioConnectionLog hiddenBy;
-    int hides;
+    final RadioCaptureStore.Packet packet;
+    final long startTime;
+    final long endTime;
 
     String data;
     String tooltip;
 
+    RadioConnectionLog(RadioCaptureStore.Packet packet) {
+      this.packet = packet;
+      startTime = packet.startTime;
+      endTime = packet.endTime;
+    }
+
     @Override
     public String toString() {
       if (data == null) {
         RadioLogger.this.prepareDataString(this);
       }
       return startTime / Simulation.MILLISECOND + "\t"
-              + connection.getSource().getMote().getID() + "\t"
+              + packet.sourceID + "\t"
               + getDestString(this) + "\t"
               + data;
     }
 
-    
-    double[]        conn_rssi;
-    private 
-    Radio[]         dests_cache;
-    
-    Radio	dest(int idx) {
-        if (dests_cache == null) {
-            dests_cache = connection.getDestinations();
-        }
-        return dests_cache[idx];
-    }
-
     public 
     String labelMote( int idx ) {
-        return  String.valueOf(dest(idx).getMote().getID());
+        return  String.valueOf(packet.destinationIDs[idx]);
     }
 
     public 
     String labelMoteRSSI( int idx ) {
-        return String.valueOf(dest(idx).getMote().getID()) + labelRSSI(conn_rssi[idx]);
+        return labelMote(idx) + labelRSSI(packet.destinationSignals[idx]);
     }
   }
 
 
   private static String getDestString(RadioConnectionLog c) {
-    Radio[] dests = c.connection.getDestinations();
-    if (dests.length == 0) {
+    int dests = c.packet.destinationIDs.length;
+    if (dests == 0) {
       return "-";
     }
-    if (dests.length == 1) {
+    if (dests == 1) {
       return c.labelMoteRSSI(0);
     }
     StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < c.conn_rssi.length ; ++i) {
+    for (int i = 0; i < dests; ++i) {
       sb.append(c.labelMoteRSSI(i)).append(',');
     }
     sb.setLength(sb.length() - 1);
@@ -1066,12 +1127,12 @@ public class RadioLogger extends VisPlugin
   private void rebuildAllEntries() {
     applyFilter();
 
-    if (!connections.isEmpty()) {
-      model.fireTableRowsUpdated(0, connections.size() - 1);
+    if (rowCount > 0) {
+      model.fireTableRowsUpdated(0, rowCount - 1);
     }
     verboseBox.setText("");
 
-    setTitle("Radio messages: showing " + dataTable.getRowCount() + "/" + connections.size() + " packets");
+    setTitle("Radio messages: showing " + dataTable.getRowCount() + "/" + rowCount + " packets");
     Cooja.getDesktopPane().repaint();
   }
 
@@ -1100,7 +1161,7 @@ public class RadioLogger extends VisPlugin
       selectedRow = dataTable.convertRowIndexToModel(selectedRow);
       if (selectedRow < 0) return;
 
-      long time = connections.get(selectedRow).startTime;
+      long time = getConnection(selectedRow).startTime;
       performTimePlugins(simulation, time, TimeLine.class);
     }
   };
@@ -1113,7 +1174,7 @@ public class RadioLogger extends VisPlugin
       selectedRow = dataTable.convertRowIndexToModel(selectedRow);
       if (selectedRow < 0) return;
 
-      long time = connections.get(selectedRow).startTime;
+      long time = getConnection(selectedRow).startTime;
       performTimePlugins(simulation, time, LogListener.class);
     }
   };
@@ -1131,7 +1192,7 @@ public class RadioLogger extends VisPlugin
         selectedRow = dataTable.convertRowIndexToModel(selectedRow);
         if (selectedRow < 0) return;
 
-        long time = connections.get(selectedRow).startTime;
+        long time = getConnection(selectedRow).startTime;
         performTimePlugins(simulation, time);
     }
   };
@@ -1158,8 +1219,14 @@ public class RadioLogger extends VisPlugin
 
   public String getConnectionsString() {
     StringBuilder sb = new StringBuilder();
-    RadioConnectionLog[] cs = connections.toArray(new RadioConnectionLog[0]);
-    for (RadioConnectionLog c : cs) {
+    for (int i = 0, n = captures.size(); i < n; i++) {
+      RadioConnectionLog c;
+      try {
+        c = new RadioConnectionLog(captures.read(i));
+      } catch (IOException e) {
+        logger.error("Could not read radio capture: " + e.getMessage());
+        break;
+      }
       sb.append(c.toString()).append("\n");
     }
     return sb.toString();
@@ -51,7 +51,10 @@ import java.io.File;
 import java.nio.file.Files;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.function.BiConsumer;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -153,6 +156,11 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
 
   private ArrayList<MoteEvents> allMoteEvents = new ArrayList<>();
 
+  /* Events kept in memory by all timeline lines together, older events are spilled to file */
+  private static final int DEFAULT_EVENT_BUDGET = 1 << 20;
+  private final EventBudget eventBudget;
+  private final TimeLineSpillFile spillFile = new TimeLineSpillFile();
+
   private boolean showRadioRXTX = true;
   private boolean showRadioChannels;
   private boolean showRadioOnoff = true;
@@ -177,6 +185,8 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
     super("Timeline", gui);
     this.simulation = simulation;
     currentPixelDivisor = 500;
+    String window = simulation.getCfg().opts().get("timeline-window");
+    eventBudget = new EventBudget(window == null ? DEFAULT_EVENT_BUDGET : Integer.parseInt(window));
 
     /* Menus */
     JMenuBar menuBar = new JMenuBar();
@@ -649,6 +659,8 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
     for (MoteEvents me : allMoteEvents) {
       me.clear();
     }
+    /* No spilled events are left, start over with an empty file */
+    spillFile.close();
     repaint();
   }
 
@@ -993,18 +1005,16 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
             lastChannel = nowChannel;
             RadioChannelEvent ev = new RadioChannelEvent(
                 simulation.getSimulationTime(), nowChannel, moteRadio.isRadioOn());
-            moteEvents.addRadioChannel(ev);
-
             ev.details = details;
+            moteEvents.addRadioChannel(ev);
           }
           
           if (radioEv == RadioEvent.HW_ON ||
               radioEv == RadioEvent.HW_OFF) {
             RadioHWEvent ev = new RadioHWEvent(
                 simulation.getSimulationTime(), moteRadio.isRadioOn());
-            moteEvents.addRadioHW(ev);
-
             ev.details = details;
+            moteEvents.addRadioHW(ev);
 
             /* Also create another channel event here */
             lastChannel = nowChannel;
@@ -1048,9 +1058,8 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
                   simulation.getSimulationTime(), RXTXRadioEvent.IDLE);
             }
 
-            moteEvents.addRadioRXTX(ev);
-
             ev.details = details;
+            moteEvents.addRadioRXTX(ev);
           }
 
         }
@@ -1098,7 +1107,10 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
       }
     }
 
-    MoteEvents newMoteLog = new MoteEvents(newMote);
+    eventBudget.setLines(MoteEvents.LINES * (allMoteEvents.size() + 1));
+    MoteEvents newMoteLog = new MoteEvents(newMote, spillFile, eventBudget);
+    /* Log output from before the mote was added to the timeline */
+    simulation.getEventCentral().getLogStore().query().mote(newMote).poll(ev -> newMoteLog.addLog(new LogEvent(ev)));
     allMoteEvents.add(newMoteLog);
     addMoteObservers(newMote, newMoteLog);
 
@@ -1118,6 +1130,7 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
       return;
     }
     allMoteEvents.remove(remove);
+    eventBudget.setLines(MoteEvents.LINES * allMoteEvents.size());
 
     /* Remove mote observers */
     MoteObservation[] moteObservers = activeMoteObservers.toArray(new MoteObservation[0]);
@@ -1171,6 +1184,12 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
       o.dispose();
     }
     activeMoteObservers.clear();
+
+    /* Release spilled events */
+    for (MoteEvents moteEvents: allMoteEvents) {
+      moteEvents.clear();
+    }
+    spillFile.close();
   }
 
   @Override
@@ -1532,7 +1551,7 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
       drawMouseTime(g, intervalStart, intervalEnd);
     }
 
-    private void paintEvents(Graphics g, ArrayList<MoteEvent> events, long intervalStart, long intervalEnd,
+    private void paintEvents(Graphics g, EventsList events, long intervalStart, long intervalEnd,
                              int lineHeightOffset) {
       if (events.isEmpty()) {
         return;
@@ -1540,21 +1559,22 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
 
       int lastPosition = -1;
       for (int i = getIndexOfFirstIntervalEvent(events, intervalStart), n = events.size(); i < n; i++) {
-        MoteEvent event = events.get(i);
-        if (event.time >= intervalEnd) {
+        long time = events.timeAt(i);
+        if (time >= intervalEnd) {
           break;
         }
 
-        int x = (int) (event.time / currentPixelDivisor);
-        if (event.collapseOverlapping && x < lastPosition + 1) {
+        int x = (int) (time / currentPixelDivisor);
+        if (x < lastPosition + 1 && events.collapsesOverlapping(i)) {
           continue;
         }
 
+        MoteEvent event = events.get(i);
+
         /* Calculate event width */
         int width;
         if (event.fixedWidth == 0) {
-          MoteEvent nextEvent = i + 1 < n ? events.get(i + 1) : null;
-          long endTime = (nextEvent != null ? nextEvent.time : intervalEnd) - event.time;
+          long endTime = (i + 1 < n ? events.timeAt(i + 1) : intervalEnd) - event.time;
           width = (int) (endTime / currentPixelDivisor);
           /* Handle zero pixel width events */
           if (width == 0) {
@@ -1585,18 +1605,11 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
       }
     }
 
-    private static <T extends MoteEvent> int getIndexOfFirstIntervalEvent(ArrayList<T> events, long time) {
-      /* TODO IMPLEMENT ME: Binary search */
-      int nrEvents = events.size();
-      if (nrEvents == 0) {
+    private static int getIndexOfFirstIntervalEvent(EventsList events, long time) {
+      if (events.isEmpty()) {
         return -1;
       }
-
-      int ev = 0;
-      while (ev < nrEvents && events.get(ev).time < time) {
-        ev++;
-      }
-      return Math.max(ev - 1, 0);
+      return events.indexBefore(time);
     }
 
     private void drawTimeRule(Graphics g, long start, long end) {
@@ -1675,7 +1688,7 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
       tooltip += "Time (ms): " + (double)time/Simulation.MILLISECOND + "<br>";
 
       /* Event */
-      ArrayList<? extends MoteEvent> events = null;
+      EventsList events = null;
       int evMatched = 0;
       int evMouse = ((event.getPoint().y-FIRST_MOTE_PIXEL_OFFSET) % paintedMoteHeight) / EVENT_PIXEL_HEIGHT;
       if (showRadioRXTX) {
@@ -1891,7 +1904,7 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
      */
     public abstract Color getEventColor(TimeLine timeLine);
 
-    public Color getEventColor(TimeLine timeLine, ArrayList<MoteEvent> events, int x)
+    public Color getEventColor(TimeLine timeLine, EventsList events, int x)
     {
         return getEventColor(timeLine);
     }
@@ -1901,7 +1914,7 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
       g.fillRect(x, lineHeightOffset, width, EVENT_PIXEL_HEIGHT);
     }
     
-    public MoteEvent next_event(ArrayList<MoteEvent> events, int x) {
+    public MoteEvent next_event(EventsList events, int x) {
         ++x;
         if (x < events.size())
             return events.get(x);
@@ -1934,15 +1947,285 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
       return -1;
   }
 
+  /**
+   * Number of events kept in memory, shared by all timeline lines. Each line
+   * keeps an equal part of the budget, but at least {@link #MIN_WINDOW}
+   * events.
+   */
+  static final class EventBudget {
+    static final int MIN_WINDOW = 64;
+
+    private final int total;
+    private volatile int window;
+
+    EventBudget(int total) {
+      this.total = Math.max(total, MIN_WINDOW);
+      window = this.total;
+    }
+
+    /** @param lines Number of timeline lines sharing the budget */
+    void setLines(int lines) {
+      window = Math.max(MIN_WINDOW, total / Math.max(lines, 1));
+    }
+
+    /** @return Number of events each line keeps in memory */
+    int window() {
+      return window;
+    }
+  }
+
+  /**
+   * Events of one timeline line, stored by column. The newest events are kept
+   * in primitive arrays, bounded by the line's share of the event budget, and older events are
+   * spilled in segments to a memory-mapped file. If the file cannot be
+   * written, all later events are kept in memory. Events are materialized
+   * as {@link MoteEvent} objects only when read.
+   */
   public static
-  class EventsList extends ArrayList<MoteEvent> {
-      public
-      MoteEvent first() {
-          if (!isEmpty())
-              return get(0);
-          else
-              return null;
+  class EventsList implements Iterable<MoteEvent> {
+    private static final byte TYPE_NO_HISTORY = 0;
+    private static final byte TYPE_RXTX = 1;
+    private static final byte TYPE_CHANNEL = 2;
+    private static final byte TYPE_HW = 3;
+    private static final byte TYPE_LED = 4;
+    private static final byte TYPE_LOG = 5;
+    private static final byte TYPE_WATCHPOINT = 6;
+
+    private final Mote mote;
+    private final TimeLineSpillFile spillFile;
+    private final EventBudget budget;
+
+    private long[] times = new long[16];
+    private byte[] types = new byte[16];
+    private int[] states = new int[16];
+    private long[] values = new long[16];
+    /* Log and watchpoint events, or execution details of other events */
+    private Object[] refs = new Object[16];
+    private int count;
+
+    /* Spilled segments, oldest first, and the index of their first event */
+    private final ArrayList<TimeLineSpillFile.Segment> segments = new ArrayList<>();
+    private int[] segmentStarts = new int[8];
+    private int spilled;
+
+    EventsList(Mote mote, TimeLineSpillFile spillFile, EventBudget budget) {
+      this.mote = mote;
+      this.spillFile = spillFile;
+      this.budget = budget;
+    }
+
+    public synchronized int size() {
+      return spilled + count;
+    }
+
+    public synchronized boolean isEmpty() {
+      return size() == 0;
+    }
+
+    public synchronized MoteEvent first() {
+      return isEmpty() ? null : get(0);
+    }
+
+    /**
+     * Removes all events. The file space of spilled events is only
+     * released when the spill file is closed.
+     */
+    public synchronized void clear() {
+      Arrays.fill(refs, 0, count, null);
+      count = 0;
+      segments.clear();
+      spilled = 0;
+    }
+
+    public synchronized void add(MoteEvent ev) {
+      int window = budget.window();
+      if (count >= window && !spillFile.isFailed()) {
+        /* Keep half the window, the window may have shrunk since the last spill */
+        spill(count - window / 2);
+        if (times.length > window && !spillFile.isFailed()) {
+          resize(Math.max(window, count + 1));
+        }
+      }
+      if (count == times.length) {
+        resize(spillFile.isFailed() ? 2 * count : Math.max(count + 1, Math.min(2 * count, window)));
+      }
+      times[count] = ev.time;
+      values[count] = 0;
+      states[count] = 0;
+      refs[count] = ev.details;
+      if (ev instanceof RadioRXTXEvent e) {
+        types[count] = TYPE_RXTX;
+        states[count] = e.state.ordinal();
+        values[count] = Double.doubleToRawLongBits(e.rssi);
+      } else if (ev instanceof RadioChannelEvent e) {
+        types[count] = TYPE_CHANNEL;
+        states[count] = e.channel;
+        values[count] = e.radioOn ? 1 : 0;
+      } else if (ev instanceof RadioHWEvent e) {
+        types[count] = TYPE_HW;
+        states[count] = e.on ? 1 : 0;
+      } else if (ev instanceof LEDEvent e) {
+        types[count] = TYPE_LED;
+        states[count] = (e.red ? 1 : 0) | (e.green ? 2 : 0) | (e.blue ? 4 : 0);
+      } else if (ev instanceof LogEvent) {
+        types[count] = TYPE_LOG;
+        refs[count] = ev;
+      } else if (ev instanceof WatchpointEvent) {
+        types[count] = TYPE_WATCHPOINT;
+        refs[count] = ev;
+      } else {
+        types[count] = TYPE_NO_HISTORY;
       }
+      count++;
+    }
+
+    private void resize(int n) {
+      times = Arrays.copyOf(times, n);
+      types = Arrays.copyOf(types, n);
+      states = Arrays.copyOf(states, n);
+      values = Arrays.copyOf(values, n);
+      refs = Arrays.copyOf(refs, n);
+    }
+
+    /* Moves the n oldest in-memory events to the spill file */
+    private void spill(int n) {
+      String[] texts = new String[2 * n];
+      for (int i = 0; i < n; i++) {
+        if (refs[i] instanceof LogEvent e) {
+          texts[2 * i] = e.logEvent.getMessage();
+          texts[2 * i + 1] = e.details;
+        } else if (refs[i] instanceof WatchpointEvent e) {
+          values[i] = spillFile.intern(e.watchpoint);
+          texts[2 * i + 1] = e.details;
+        } else {
+          texts[2 * i + 1] = (String) refs[i];
+        }
+      }
+      try {
+        TimeLineSpillFile.Segment segment = spillFile.write(times, types, states, values, texts, n);
+        if (segments.size() == segmentStarts.length) {
+          segmentStarts = Arrays.copyOf(segmentStarts, 2 * segmentStarts.length);
+        }
+        segmentStarts[segments.size()] = spilled;
+        segments.add(segment);
+        spilled += n;
+      } catch (IOException e) {
+        /* Stop spilling and keep the events in memory */
+        logger.warn("Could not spill timeline events, keeping new events in memory: " + e.getMessage());
+        return;
+      }
+      System.arraycopy(times, n, times, 0, count - n);
+      System.arraycopy(types, n, types, 0, count - n);
+      System.arraycopy(states, n, states, 0, count - n);
+      System.arraycopy(values, n, values, 0, count - n);
+      System.arraycopy(refs, n, refs, 0, count - n);
+      Arrays.fill(refs, count - n, count, null);
+      count -= n;
+    }
+
+    private int segmentOf(int index) {
+      int idx = Arrays.binarySearch(segmentStarts, 0, segments.size(), index);
+      return idx >= 0 ? idx : -idx - 2;
+    }
+
+    /**
+     * @param index Event index
+     * @return Event time
+     */
+    public synchronized long timeAt(int index) {
+      if (index >= spilled) {
+        return times[index - spilled];
+      }
+      int s = segmentOf(index);
+      return segments.get(s).time(index - segmentStarts[s]);
+    }
+
+    public synchronized MoteEvent get(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException(index);
+      }
+      if (index >= spilled) {
+        int i = index - spilled;
+        if (refs[i] instanceof MoteEvent ev) {
+          return ev;
+        }
+        return decode(times[i], types[i], states[i], values[i], null, (String) refs[i]);
+      }
+      int s = segmentOf(index);
+      TimeLineSpillFile.Segment segment = segments.get(s);
+      int i = index - segmentStarts[s];
+      return decode(segment.time(i), segment.type(i), segment.state(i), segment.value(i),
+              segment.text(i, 0), segment.text(i, 1));
+    }
+
+    private MoteEvent decode(long time, byte type, int state, long value, String text, String details) {
+      MoteEvent ev = switch (type) {
+        case TYPE_RXTX -> {
+          RadioRXTXEvent e = new RadioRXTXEvent(time, RXTXRadioEvent.values()[state]);
+          e.rssi = Double.longBitsToDouble(value);
+          yield e;
+        }
+        case TYPE_CHANNEL -> new RadioChannelEvent(time, state, value != 0);
+        case TYPE_HW -> new RadioHWEvent(time, state != 0);
+        case TYPE_LED -> new LEDEvent(time, (state & 1) != 0, (state & 2) != 0, (state & 4) != 0);
+        case TYPE_LOG -> new LogEvent(new LogOutputEvent(mote, time, text));
+        case TYPE_WATCHPOINT -> new WatchpointEvent(time, (Watchpoint) spillFile.object((int) value));
+        default -> new NoHistoryEvent(time);
+      };
+      ev.details = details;
+      return ev;
+    }
+
+    /**
+     * @param time Time
+     * @return Index of the last event before time, or 0
+     */
+    public synchronized int indexBefore(long time) {
+      int low = 0;
+      int high = size();
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (timeAt(mid) < time) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return Math.max(low - 1, 0);
+    }
+
+    /**
+     * @param index Event index
+     * @return True if the event is not painted over a previous event
+     */
+    public synchronized boolean collapsesOverlapping(int index) {
+      byte type;
+      if (index >= spilled) {
+        type = types[index - spilled];
+      } else {
+        int s = segmentOf(index);
+        type = segments.get(s).type(index - segmentStarts[s]);
+      }
+      return type == TYPE_LOG || type == TYPE_WATCHPOINT;
+    }
+
+    @Override
+    public Iterator<MoteEvent> iterator() {
+      return new Iterator<>() {
+        private int next;
+        @Override
+        public boolean hasNext() {
+          return next < size();
+        }
+        @Override
+        public MoteEvent next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          return get(next++);
+        }
+      };
+    }
   }
 
   static class NoHistoryEvent extends MoteEvent {
@@ -1987,7 +2270,7 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
     }
 
     @Override
-    public Color getEventColor(TimeLine timeLine, ArrayList<MoteEvent> events, int x) {
+    public Color getEventColor(TimeLine timeLine, EventsList events, int x) {
       if ( (state != RXTXRadioEvent.TRANSMITTING) && (state != RXTXRadioEvent.RECEIVING) )
           return getEventColor(timeLine);
 
@@ -2279,16 +2562,25 @@ public class TimeLine extends VisPlugin implements HasQuickHelp, TimeSelect
   }
 
   static class MoteEvents {
+    /* Number of timeline lines per mote */
+    static final int LINES = 6;
+
     final Mote mote;
-    final EventsList radioRXTXEvents        = new EventsList();
-    final EventsList radioChannelEvents     = new EventsList();
-    final EventsList radioHWEvents          = new EventsList();
-    final EventsList ledEvents              = new EventsList();
-    final EventsList logEvents              = new EventsList();
-    final EventsList watchpointEvents       = new EventsList();
-
-    public MoteEvents(Mote mote) {
+    final EventsList radioRXTXEvents;
+    final EventsList radioChannelEvents;
+    final EventsList radioHWEvents;
+    final EventsList ledEvents;
+    final EventsList logEvents;
+    final EventsList watchpointEvents;
+
+    public MoteEvents(Mote mote, TimeLineSpillFile spillFile, EventBudget budget) {
       this.mote = mote;
+      radioRXTXEvents    = new EventsList(mote, spillFile, budget);
+      radioChannelEvents = new EventsList(mote, spillFile, budget);
+      radioHWEvents      = new EventsList(mote, spillFile, budget);
+      ledEvents          = new EventsList(mote, spillFile, budget);
+      logEvents          = new EventsList(mote, spillFile, budget);
+      watchpointEvents   = new EventsList(mote, spillFile, budget);
       clear();
     }
 
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.plugins;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * Memory-mapped temporary file holding timeline events that were evicted
+ * from memory.
+ * <p>
+ * Events are written in segments. Each segment is stored column by column
+ * (times, types, states, values, text offsets) followed by a text area,
+ * so time lookups only touch the time column. Segments are packed into
+ * a few large mapped regions to keep the number of mappings low.
+ */
+class TimeLineSpillFile implements Closeable {
+  private static final int FIXED_RECORD_SIZE = 8 + 1 + 4 + 8 + 4;
+  private static final int REGION_SIZE = 64 * 1024 * 1024;
+
+  private File file;
+  private FileChannel channel;
+  private long end;
+  /* Region being filled, and the write position in it */
+  private MappedByteBuffer region;
+  private int regionPosition;
+  private boolean failed;
+
+  /* Objects referenced by spilled events, such as watchpoints */
+  private final ArrayList<Object> objects = new ArrayList<>();
+  private final IdentityHashMap<Object, Integer> objectIds = new IdentityHashMap<>();
+
+  /**
+   * @param o Object
+   * @return Identifier of object, valid for the lifetime of this file
+   */
+  synchronized int intern(Object o) {
+    Integer id = objectIds.get(o);
+    if (id == null) {
+      id = objects.size();
+      objects.add(o);
+      objectIds.put(o, id);
+    }
+    return id;
+  }
+
+  synchronized Object object(int id) {
+    return objects.get(id);
+  }
+
+  /**
+   * @return True if a write has failed, no more segments should be written
+   */
+  synchronized boolean isFailed() {
+    return failed;
+  }
+
+  /**
+   * Writes events to a new segment.
+   *
+   * @param times Event times
+   * @param types Event types
+   * @param states Event states
+   * @param values Event values
+   * @param texts Event texts, two per event, may be null
+   * @param count Number of events, starting at index 0
+   * @return Segment
+   * @throws IOException On write error, after which the file is marked as failed
+   */
+  synchronized Segment write(long[] times, byte[] types, int[] states, long[] values,
+                             String[] texts, int count) throws IOException {
+    try {
+      return writeSegment(times, types, states, values, texts, count);
+    } catch (IOException e) {
+      failed = true;
+      throw e;
+    }
+  }
+
+  private Segment writeSegment(long[] times, byte[] types, int[] states, long[] values,
+                               String[] texts, int count) throws IOException {
+    if (channel == null) {
+      file = File.createTempFile("cooja-timeline", ".bin");
+      file.deleteOnExit();
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /* Encode texts first to know the segment size */
+    byte[][] encoded = new byte[2 * count][];
+    int textSize = 0;
+    for (int i = 0; i < count; i++) {
+      if (texts[2 * i] == null && texts[2 * i + 1] == null) {
+        continue;
+      }
+      for (int t = 2 * i; t < 2 * i + 2; t++) {
+        if (texts[t] != null) {
+          encoded[t] = texts[t].getBytes(UTF_8);
+          textSize += encoded[t].length;
+        }
+        textSize += 4;
+      }
+    }
+
+    long size = (long) count * FIXED_RECORD_SIZE + textSize;
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Segment too large: " + size + " bytes");
+    }
+    if (region == null || region.capacity() - regionPosition < size) {
+      /* Start a new region, larger than usual if the segment needs it */
+      long regionSize = Math.max(REGION_SIZE, size);
+      region = channel.map(FileChannel.MapMode.READ_WRITE, end, regionSize);
+      regionPosition = 0;
+      end += regionSize;
+    }
+    ByteBuffer buffer = region.slice(regionPosition, (int) size);
+    for (int i = 0; i < count; i++) {
+      buffer.putLong(times[i]);
+    }
+    buffer.put(types, 0, count);
+    for (int i = 0; i < count; i++) {
+      buffer.putInt(states[i]);
+    }
+    for (int i = 0; i < count; i++) {
+      buffer.putLong(values[i]);
+    }
+    int textOffset = 0;
+    for (int i = 0; i < count; i++) {
+      if (texts[2 * i] == null && texts[2 * i + 1] == null) {
+        buffer.putInt(-1);
+        continue;
+      }
+      buffer.putInt(textOffset);
+      textOffset += 8 + lengthOf(encoded[2 * i]) + lengthOf(encoded[2 * i + 1]);
+    }
+    for (int i = 0; i < count; i++) {
+      if (texts[2 * i] == null && texts[2 * i + 1] == null) {
+        continue;
+      }
+      for (int t = 2 * i; t < 2 * i + 2; t++) {
+        if (encoded[t] == null) {
+          buffer.putInt(-1);
+        } else {
+          buffer.putInt(encoded[t].length);
+          buffer.put(encoded[t]);
+        }
+      }
+    }
+    regionPosition += buffer.position();
+    return new Segment(buffer, count);
+  }
+
+  private static int lengthOf(byte[] text) {
+    return text == null ? 0 : text.length;
+  }
+
+  @Override
+  public synchronized void close() {
+    objects.clear();
+    objectIds.clear();
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      /* Ignored, the file is deleted below */
+    }
+    channel = null;
+    region = null;
+    regionPosition = 0;
+    if (!file.delete()) {
+      file.deleteOnExit();
+    }
+    end = 0;
+    failed = false;
+  }
+
+  /** Spilled events, read through a view of the mapped region. */
+  static class Segment {
+    private final ByteBuffer buffer;
+    final int count;
+
+    Segment(ByteBuffer buffer, int count) {
+      this.buffer = buffer;
+      this.count = count;
+    }
+
+    long time(int i) {
+      return buffer.getLong(8 * i);
+    }
+
+    byte type(int i) {
+      return buffer.get(8 * count + i);
+    }
+
+    int state(int i) {
+      return buffer.getInt(9 * count + 4 * i);
+    }
+
+    long value(int i) {
+      return buffer.getLong(13 * count + 8 * i);
+    }
+
+    /**
+     * @param i Event index
+     * @param which Text index, 0 or 1
+     * @return Text or null
+     */
+    String text(int i, int which) {
+      int offset = buffer.getInt(21 * count + 4 * i);
+      if (offset < 0) {
+        return null;
+      }
+      int pos = FIXED_RECORD_SIZE * count + offset;
+      for (int t = 0; t < which; t++) {
+        int len = buffer.getInt(pos);
+        pos += 4 + Math.max(len, 0);
+      }
+      int len = buffer.getInt(pos);
+      if (len < 0) {
+        return null;
+      }
+      byte[] bytes = new byte[len];
+      buffer.get(pos + 4, bytes);
+      return new String(bytes, UTF_8);
+    }
+  }
+}
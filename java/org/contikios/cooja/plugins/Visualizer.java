@@ -39,6 +39,7 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Polygon;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
@@ -70,12 +71,14 @@ import java.util.Map;
 import java.util.Set;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
+import javax.swing.ButtonGroup;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JSeparator;
 import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
@@ -202,6 +205,27 @@ public class Visualizer extends VisPlugin implements HasQuickHelp {
   private final ArrayList<Mote> highlightedMotes = new ArrayList<>();
   private final static Color HIGHLIGHT_COLOR = Color.CYAN;
   private final static Color MOVE_COLOR = Color.WHITE;
+  private final static Color SELECTED_COLOR = new Color(51, 102, 255);
+  private final static Color SELECTED_OVERLAY_COLOR = new Color(128, 128, 128, 128);
+  private static final int STATE_MOVED = 1;
+  private static final int STATE_HIGHLIGHTED = 2;
+  private static final int STATE_SELECTED = 4;
+
+  /* Cached mote layer, and what it was last painted from */
+  private static final MoteRelation[] NO_RELATIONS = new MoteRelation[0];
+  private final VisualizerLayer moteLayer = new VisualizerLayer();
+  private Mote[] layerMotes = new Mote[0];
+  private MoteRelation[] layerRelations = NO_RELATIONS;
+  private int[] layerX = new int[0];
+  private int[] layerY = new int[0];
+  private Color[][] layerColors = new Color[0][];
+  private int[] layerStates = new int[0];
+
+  /* Repaints after simulation changes are coalesced to at most this many frames per second */
+  public static final int DEFAULT_FRAME_RATE = 25;
+  private int frameRate = DEFAULT_FRAME_RATE;
+  private final Timer frameTimer;
+  private volatile boolean repaintPending;
 
   /* Popup menu */
   public interface SimulationMenuAction {
@@ -258,6 +282,15 @@ public class Visualizer extends VisPlugin implements HasQuickHelp {
           repaint();
         });
         viewMenu.add(moteRelationsItem);
+        var frameRateMenu = new JMenu("Frame rate");
+        var frameRateGroup = new ButtonGroup();
+        for (int fps : new int[] {5, 10, 25, 50}) {
+          var frameRateItem = new JRadioButtonMenuItem(fps + " fps", fps == frameRate);
+          frameRateItem.addActionListener(e1 -> setFrameRate(fps));
+          frameRateGroup.add(frameRateItem);
+          frameRateMenu.add(frameRateItem);
+        }
+        viewMenu.add(frameRateMenu);
         viewMenu.add(new JSeparator());
         for (var skinClass : visualizerSkins) {
           // Should skin be enabled in this simulation?
@@ -381,7 +414,7 @@ public class Visualizer extends VisPlugin implements HasQuickHelp {
         for (VisualizerSkin skin : currentSkins) {
           skin.paintBeforeMotes(g);
         }
-        paintMotes(g);
+        paintMoteLayer(g);
         for (VisualizerSkin skin : currentSkins) {
           skin.paintAfterMotes(g);
         }
@@ -418,16 +451,25 @@ public class Visualizer extends VisPlugin implements HasQuickHelp {
     canvas.setBackground(Color.WHITE);
     viewportTransform = new AffineTransform();
 
+    /* Simulation events may request repaints at any rate, paint at most once per frame */
+    frameTimer = new Timer(1000 / frameRate, e -> {
+      if (repaintPending) {
+        repaintPending = false;
+        repaint();
+      }
+    });
+    frameTimer.start();
+
     this.add(BorderLayout.CENTER, canvas);
 
     /* Observe simulation and mote positions */
-    simulation.getEventCentral().getPositionTriggers().addTrigger(this, (o, m) -> EventQueue.invokeLater(this::repaint));
+    simulation.getEventCentral().getPositionTriggers().addTrigger(this, (o, m) -> repaintFrame());
 
     simulation.getMoteTriggers().addTrigger(this, (operation, mote) -> EventQueue.invokeLater(() -> {
       if (operation == EventTriggers.AddRemove.ADD) {
         resetViewport = 1;
       }
-      repaint();
+      repaintFrame();
     }));
 
     /* Observe mote highlights */
@@ -455,7 +497,7 @@ public class Visualizer extends VisPlugin implements HasQuickHelp {
     });
 
     /* Observe mote relations */
-    simulation.getMoteRelationsTriggers().addTrigger(this, (k, v) -> repaint());
+    simulation.getMoteRelationsTriggers().addTrigger(this, (k, v) -> repaintFrame());
 
     canvas.getInputMap().put(KeyStroke.getKeyStroke("ESCAPE"), "abort_action");
     canvas.getInputMap().put(KeyStroke.getKeyStroke("DELETE"), "delete_motes");
@@ -1073,85 +1115,160 @@ public class Visualizer extends VisPlugin implements HasQuickHelp {
   }
 
   public void paintMotes(Graphics g) {
-    Mote[] allMotes = simulation.getMotes();
-
-    /* Paint mote relations */
-    if (showMoteToMoteRelations) {
-      MoteRelation[] relations = simulation.getMoteRelations();
-      for (MoteRelation r : relations) {
-        Position sourcePos = r.source().getInterfaces().getPosition();
-        Position destPos = r.dest().getInterfaces().getPosition();
-
-        Point sourcePoint = transformPositionToPixel(sourcePos);
-        Point destPoint = transformPositionToPixel(destPos);
+    paintMoteRelations(g);
+    for (Mote mote : simulation.getMotes()) {
+      Point pixelCoord = transformPositionToPixel(mote.getInterfaces().getPosition());
+      paintMote(g, pixelCoord.x, pixelCoord.y, getMoteColors(mote), getMoteState(mote));
+    }
+  }
 
-        g.setColor(r.color() == null ? Color.black : r.color());
-        drawArrow(g, sourcePoint.x, sourcePoint.y, destPoint.x, destPoint.y);
+  /**
+   * Paints the cached mote layer. Only motes whose position, colors or state
+   * changed since the last frame are redrawn, unless the layer was lost or
+   * motes or relations were moved, added or removed.
+   */
+  private void paintMoteLayer(Graphics g) {
+    Mote[] motes = simulation.getMotes();
+    MoteRelation[] relations = showMoteToMoteRelations ? simulation.getMoteRelations() : NO_RELATIONS;
+    boolean full = moteLayer.validate(canvas)
+            || motes.length != layerMotes.length
+            || !Arrays.equals(relations, layerRelations);
+    if (motes.length != layerMotes.length) {
+      layerX = new int[motes.length];
+      layerY = new int[motes.length];
+      layerColors = new Color[motes.length][];
+      layerStates = new int[motes.length];
+    }
+    Rectangle dirty = null;
+    for (int i = 0; i < motes.length; i++) {
+      Mote mote = motes[i];
+      Point pixelCoord = transformPositionToPixel(mote.getInterfaces().getPosition());
+      Color[] colors = getMoteColors(mote);
+      int state = getMoteState(mote);
+      if (!full) {
+        if (mote != layerMotes[i] || pixelCoord.x != layerX[i] || pixelCoord.y != layerY[i]) {
+          full = true;
+        } else if (state != layerStates[i] || !Arrays.equals(colors, layerColors[i])) {
+          Rectangle bounds = new Rectangle(pixelCoord.x - MOTE_RADIUS - 3, pixelCoord.y - MOTE_RADIUS - 3,
+                  2 * MOTE_RADIUS + 6, 2 * MOTE_RADIUS + 6);
+          if (dirty == null) {
+            dirty = bounds;
+          } else {
+            dirty.add(bounds);
+          }
+        }
       }
+      layerX[i] = pixelCoord.x;
+      layerY[i] = pixelCoord.y;
+      layerColors[i] = colors;
+      layerStates[i] = state;
     }
+    layerMotes = motes;
+    layerRelations = relations;
 
-    for (Mote mote : allMotes) {
-
-      /* Use the first skin's non-null mote colors */
-      Color[] moteColors = null;
-      for (VisualizerSkin skin : currentSkins) {
-        moteColors = skin.getColorOf(mote);
-        if (moteColors != null) {
-          break;
-        }
+    if (full || dirty != null) {
+      Graphics2D lg = moteLayer.createGraphics(full ? null : dirty);
+      if (lg == null) {
+        paintMotes(g);
+        return;
       }
-      if (moteColors == null) {
-        moteColors = DEFAULT_MOTE_COLORS;
+      /* Relations are cheap, let clipping sort them out */
+      paintMoteRelations(lg);
+      for (int i = 0; i < motes.length; i++) {
+        if (full || dirty.intersects(layerX[i] - MOTE_RADIUS - 3, layerY[i] - MOTE_RADIUS - 3,
+                2 * MOTE_RADIUS + 6, 2 * MOTE_RADIUS + 6)) {
+          paintMote(lg, layerX[i], layerY[i], layerColors[i], layerStates[i]);
+        }
       }
+      lg.dispose();
+    }
+    moteLayer.draw(g, canvas);
+  }
 
-      Position motePos = mote.getInterfaces().getPosition();
+  private void paintMoteRelations(Graphics g) {
+    if (!showMoteToMoteRelations) {
+      return;
+    }
+    MoteRelation[] relations = simulation.getMoteRelations();
+    for (MoteRelation r : relations) {
+      Position sourcePos = r.source().getInterfaces().getPosition();
+      Position destPos = r.dest().getInterfaces().getPosition();
 
-      Point pixelCoord = transformPositionToPixel(motePos);
-      int x = pixelCoord.x;
-      int y = pixelCoord.y;
+      Point sourcePoint = transformPositionToPixel(sourcePos);
+      Point destPoint = transformPositionToPixel(destPos);
 
-      if ( (movedMotes != null) && movedMotes.contains(mote) ) {
-        g.setColor(MOVE_COLOR);
-        g.fillOval(x - MOTE_RADIUS, y - MOTE_RADIUS, 2 * MOTE_RADIUS,
-                   2 * MOTE_RADIUS);
-      }
-      else if (!highlightedMotes.isEmpty() && highlightedMotes.contains(mote)) {
-        g.setColor(HIGHLIGHT_COLOR);
-        g.fillOval(x - MOTE_RADIUS, y - MOTE_RADIUS, 2 * MOTE_RADIUS,
-                   2 * MOTE_RADIUS);
+      g.setColor(r.color() == null ? Color.black : r.color());
+      drawArrow(g, sourcePoint.x, sourcePoint.y, destPoint.x, destPoint.y);
+    }
+  }
+
+  private Color[] getMoteColors(Mote mote) {
+    /* Use the first skin's non-null mote colors */
+    for (VisualizerSkin skin : currentSkins) {
+      Color[] moteColors = skin.getColorOf(mote);
+      if (moteColors != null) {
+        return moteColors;
       }
-      else if (moteColors.length >= 2) {
-        g.setColor(moteColors[0]);
-        g.fillOval(x - MOTE_RADIUS, y - MOTE_RADIUS, 2 * MOTE_RADIUS,
-                   2 * MOTE_RADIUS);
+    }
+    return DEFAULT_MOTE_COLORS;
+  }
 
-        g.setColor(moteColors[1]);
-        g.fillOval(x - MOTE_RADIUS / 2, y - MOTE_RADIUS / 2, MOTE_RADIUS,
-                   MOTE_RADIUS);
+  private int getMoteState(Mote mote) {
+    int state = 0;
+    if ((movedMotes != null) && movedMotes.contains(mote)) {
+      state |= STATE_MOVED;
+    }
+    if (!highlightedMotes.isEmpty() && highlightedMotes.contains(mote)) {
+      state |= STATE_HIGHLIGHTED;
+    }
+    if (getSelectedMotes().contains(mote)) {
+      state |= STATE_SELECTED;
+    }
+    return state;
+  }
 
-      }
-      else if (moteColors.length == 1) {
-        g.setColor(moteColors[0]);
-        g.fillOval(x - MOTE_RADIUS, y - MOTE_RADIUS, 2 * MOTE_RADIUS,
-                   2 * MOTE_RADIUS);
-      }
+  private static void paintMote(Graphics g, int x, int y, Color[] moteColors, int state) {
+    if ((state & STATE_MOVED) != 0) {
+      g.setColor(MOVE_COLOR);
+      g.fillOval(x - MOTE_RADIUS, y - MOTE_RADIUS, 2 * MOTE_RADIUS,
+                 2 * MOTE_RADIUS);
+    }
+    else if ((state & STATE_HIGHLIGHTED) != 0) {
+      g.setColor(HIGHLIGHT_COLOR);
+      g.fillOval(x - MOTE_RADIUS, y - MOTE_RADIUS, 2 * MOTE_RADIUS,
+                 2 * MOTE_RADIUS);
+    }
+    else if (moteColors.length >= 2) {
+      g.setColor(moteColors[0]);
+      g.fillOval(x - MOTE_RADIUS, y - MOTE_RADIUS, 2 * MOTE_RADIUS,
+                 2 * MOTE_RADIUS);
 
-      if (getSelectedMotes().contains(mote)) {
-        /* If mote is selected, highlight with red circle
-         and semitransparent gray overlay */
-        g.setColor(new Color(51, 102, 255));
-        g.drawOval(x - MOTE_RADIUS, y - MOTE_RADIUS, 2 * MOTE_RADIUS,
-                   2 * MOTE_RADIUS);
-        g.drawOval(x - MOTE_RADIUS - 1, y - MOTE_RADIUS - 1, 2 * MOTE_RADIUS + 2,
-                   2 * MOTE_RADIUS + 2);
-        g.setColor(new Color(128, 128, 128, 128));
-        g.fillOval(x - MOTE_RADIUS, y - MOTE_RADIUS, 2 * MOTE_RADIUS,
-                   2 * MOTE_RADIUS);
-      } else {
-        g.setColor(Color.BLACK);
-        g.drawOval(x - MOTE_RADIUS, y - MOTE_RADIUS, 2 * MOTE_RADIUS,
-                   2 * MOTE_RADIUS);
-      }
+      g.setColor(moteColors[1]);
+      g.fillOval(x - MOTE_RADIUS / 2, y - MOTE_RADIUS / 2, MOTE_RADIUS,
+                 MOTE_RADIUS);
+
+    }
+    else if (moteColors.length == 1) {
+      g.setColor(moteColors[0]);
+      g.fillOval(x - MOTE_RADIUS, y - MOTE_RADIUS, 2 * MOTE_RADIUS,
+                 2 * MOTE_RADIUS);
+    }
+
+    if ((state & STATE_SELECTED) != 0) {
+      /* If mote is selected, highlight with red circle
+       and semitransparent gray overlay */
+      g.setColor(SELECTED_COLOR);
+      g.drawOval(x - MOTE_RADIUS, y - MOTE_RADIUS, 2 * MOTE_RADIUS,
+                 2 * MOTE_RADIUS);
+      g.drawOval(x - MOTE_RADIUS - 1, y - MOTE_RADIUS - 1, 2 * MOTE_RADIUS + 2,
+                 2 * MOTE_RADIUS + 2);
+      g.setColor(SELECTED_OVERLAY_COLOR);
+      g.fillOval(x - MOTE_RADIUS, y - MOTE_RADIUS, 2 * MOTE_RADIUS,
+                 2 * MOTE_RADIUS);
+    } else {
+      g.setColor(Color.BLACK);
+      g.drawOval(x - MOTE_RADIUS, y - MOTE_RADIUS, 2 * MOTE_RADIUS,
+                 2 * MOTE_RADIUS);
     }
   }
 
@@ -1323,8 +1440,36 @@ public class Visualizer extends VisPlugin implements HasQuickHelp {
     return (y - viewportTransform.getTranslateY()) / viewportTransform.getScaleY();
   }
 
+  /**
+   * Requests a repaint after a simulation change. The repaint is deferred
+   * to the next frame, so that any number of requests between two frames
+   * result in a single repaint. Can be called from any thread.
+   * <p>
+   * Repaints for user interaction should call {@link #repaint()} instead.
+   */
+  public void repaintFrame() {
+    repaintPending = true;
+  }
+
+  /**
+   * @return Maximum number of repaints per second
+   */
+  public int getFrameRate() {
+    return frameRate;
+  }
+
+  /**
+   * @param frameRate Maximum number of repaints per second
+   */
+  public void setFrameRate(int frameRate) {
+    this.frameRate = Math.max(1, Math.min(frameRate, 1000));
+    frameTimer.setDelay(1000 / this.frameRate);
+  }
+
   @Override
   public void closePlugin() {
+    frameTimer.stop();
+    moteLayer.flush();
     for (VisualizerSkin skin : currentSkins) {
       skin.setInactive();
     }
@@ -1354,6 +1499,13 @@ public class Visualizer extends VisPlugin implements HasQuickHelp {
       config.add(element);
     }
 
+    /* Frame rate */
+    if (frameRate != DEFAULT_FRAME_RATE) {
+      element = new Element("framerate");
+      element.setText(String.valueOf(frameRate));
+      config.add(element);
+    }
+
     /* Skins */
     for (int i = currentSkins.size() - 1; i >= 0; i--) {
       VisualizerSkin skin = currentSkins.get(i);
@@ -1414,6 +1566,13 @@ public class Visualizer extends VisPlugin implements HasQuickHelp {
         case "moterelations":
           showMoteToMoteRelations = true;
           break;
+        case "framerate":
+          try {
+            setFrameRate(Integer.parseInt(element.getText()));
+          } catch (NumberFormatException e) {
+            logger.warn("Bad frame rate: " + element.getText());
+          }
+          break;
         case "viewport":
           try {
             String[] matrix = element.getText().split(" ");
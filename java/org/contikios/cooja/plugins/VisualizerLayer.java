@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.plugins;
+
+import java.awt.AlphaComposite;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.VolatileImage;
+
+/**
+ * Cached translucent layer of the visualizer canvas, backed by a
+ * {@link VolatileImage}. The layer is only redrawn when it is invalidated,
+ * the canvas is resized, or the image contents are lost.
+ * <p>
+ * The image has the device size of the component, so the layer stays sharp
+ * on scaled displays. Graphics from {@link #createGraphics(Shape)} use the
+ * component's coordinates.
+ */
+public class VisualizerLayer {
+  private VolatileImage image;
+  private boolean dirty = true;
+  /* Device pixels per component pixel */
+  private double scaleX = 1;
+  private double scaleY = 1;
+
+  /**
+   * Marks the layer contents as stale.
+   */
+  public void invalidate() {
+    dirty = true;
+  }
+
+  /**
+   * Makes sure the layer image matches the component.
+   *
+   * @param c Component the layer is painted on
+   * @return True if the whole layer must be redrawn
+   */
+  public boolean validate(Component c) {
+    GraphicsConfiguration gc = c.getGraphicsConfiguration();
+    if (gc == null) {
+      return true;
+    }
+    AffineTransform device = gc.getDefaultTransform();
+    double sx = device.getScaleX();
+    double sy = device.getScaleY();
+    int width = Math.max(1, (int) Math.ceil(c.getWidth() * sx));
+    int height = Math.max(1, (int) Math.ceil(c.getHeight() * sy));
+    int status = image == null ? VolatileImage.IMAGE_INCOMPATIBLE : image.validate(gc);
+    if (status == VolatileImage.IMAGE_INCOMPATIBLE
+        || image.getWidth() != width || image.getHeight() != height
+        || sx != scaleX || sy != scaleY) {
+      if (image != null) {
+        image.flush();
+      }
+      image = gc.createCompatibleVolatileImage(width, height, Transparency.TRANSLUCENT);
+      image.validate(gc);
+      scaleX = sx;
+      scaleY = sy;
+      dirty = true;
+    } else if (status == VolatileImage.IMAGE_RESTORED) {
+      /* The surface was recreated, the old contents are gone */
+      dirty = true;
+    }
+    return dirty;
+  }
+
+  /**
+   * Returns graphics for redrawing the layer. The area to be redrawn is
+   * cleared first.
+   *
+   * @param clip Area to redraw in component coordinates, or null to redraw the whole layer
+   * @return Graphics in component coordinates, to be disposed by the caller,
+   * or null if the layer has no image
+   */
+  public Graphics2D createGraphics(Shape clip) {
+    if (image == null) {
+      return null;
+    }
+    Graphics2D g = image.createGraphics();
+    g.scale(scaleX, scaleY);
+    if (clip != null) {
+      g.clip(clip);
+    }
+    g.setComposite(AlphaComposite.Clear);
+    g.fillRect(0, 0, (int) Math.ceil(image.getWidth() / scaleX), (int) Math.ceil(image.getHeight() / scaleY));
+    g.setComposite(AlphaComposite.SrcOver);
+    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    dirty = false;
+    return g;
+  }
+
+  /**
+   * Draws the layer, and schedules a new repaint if the image contents
+   * were lost meanwhile.
+   *
+   * @param g Graphics
+   * @param c Component the layer is painted on
+   */
+  public void draw(Graphics g, Component c) {
+    if (image == null) {
+      return;
+    }
+    /* Undo the device scale so that image pixels map to device pixels */
+    Graphics2D g2 = (Graphics2D) g.create();
+    g2.scale(1 / scaleX, 1 / scaleY);
+    g2.drawImage(image, 0, 0, null);
+    g2.dispose();
+    if (image.contentsLost()) {
+      dirty = true;
+      c.repaint();
+    }
+  }
+
+  /**
+   * Releases the layer image.
+   */
+  public void flush() {
+    if (image != null) {
+      image.flush();
+      image = null;
+    }
+    dirty = true;
+  }
+}
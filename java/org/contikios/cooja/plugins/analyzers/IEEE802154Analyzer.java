@@ -31,7 +31,7 @@ public class IEEE802154Analyzer extends PacketAnalyzer {
 
   public IEEE802154Analyzer(boolean pcap) {
     if (pcap) {
-      pcapExporter = new PcapExporter();
+      pcapExporter = new PcapExporter(true);
     }
   }
 
@@ -45,6 +45,29 @@ public class IEEE802154Analyzer extends PacketAnalyzer {
     }
   }
 
+  /**
+   * Writes all exported packets to the pcap file.
+   */
+  public void flushPcap() {
+    if (pcapExporter != null) {
+      try {
+        pcapExporter.flush();
+      } catch (IOException e) {
+        logger.error("Could not write pcap file", e);
+      }
+    }
+  }
+
+  public void closePcap() {
+    if (pcapExporter != null) {
+      try {
+        pcapExporter.closePcap();
+      } catch (IOException e) {
+        logger.error("Could not close pcap file", e);
+      }
+    }
+  }
+
   @Override
   public boolean matchPacket(Packet packet) {
     return packet.level == MAC_LEVEL;
@@ -63,7 +86,7 @@ public class IEEE802154Analyzer extends PacketAnalyzer {
 
     if (pcapExporter != null) {
       try {
-        pcapExporter.exportPacketData(packet.getPayload(), packet.getTimestamp());
+        pcapExporter.exportPacketData(packet.getPayload(), packet.getTimestamp(), packet.getChannel());
       } catch (IOException e) {
         logger.error("Could not export PCap data", e);
       }
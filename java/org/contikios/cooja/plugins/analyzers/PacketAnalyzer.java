@@ -19,6 +19,7 @@ public abstract class PacketAnalyzer {
     /* size = length - consumed bytes at tail */
     int size;
     final long ts;  /* in microseconds */
+    final int channel; /* radio channel, or -1 if unknown */
 
     /* L2 addresseses */
     byte[] llsender;
@@ -27,10 +28,15 @@ public abstract class PacketAnalyzer {
     byte lastDispatch;
 
     public Packet(byte[] data, int level, long ts) {
+      this(data, level, ts, -1);
+    }
+
+    public Packet(byte[] data, int level, long ts, int channel) {
       this.level = level;
       this.data = data.clone();
       this.size = data.length;
       this.ts = ts;
+      this.channel = channel;
     }
 
     public void consumeBytesStart(int bytes) {
@@ -85,6 +91,10 @@ public abstract class PacketAnalyzer {
     public long getTimestamp() {
       return ts;
     }
+
+    public int getChannel() {
+      return channel;
+    }
   }
 
   public abstract boolean matchPacket(Packet packet);
@@ -1,18 +1,60 @@
 package org.contikios.cooja.plugins.analyzers;
 
-import java.io.DataOutputStream;
-import java.io.FileOutputStream;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import java.io.IOException;
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Writes packets to a pcap file, or to a pcapng file if the file name ends
+ * with ".pcapng". In pcapng files each radio channel gets its own interface.
+ * <p>
+ * In asynchronous mode packets are handed to a background writer thread
+ * through a bounded lock-free queue, and written in batches. Call
+ * {@link #flush()} to wait until all exported packets are on disk.
+ */
 public class PcapExporter {
   private static final Logger logger = LoggerFactory.getLogger(PcapExporter.class);
 
-  DataOutputStream out;
+  private static final int LINKTYPE_IEEE802_15_4 = 195;
+  private static final int SNAPLEN = 4096;
+  private static final int BUFFER_SIZE = 1024 * 1024;
+  private static final int QUEUE_SIZE = 4096;
+
+  private final boolean asynchronous;
+
+  private FileChannel out;
+  private boolean pcapng;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  /* pcapng interface per radio channel */
+  private final HashMap<Integer, Integer> interfaces = new HashMap<>();
+
+  private PacketQueue queue;
+  private Thread writer;
+  private volatile boolean closing;
+  private volatile IOException writeError;
+  private final AtomicLong exported = new AtomicLong();
+  private volatile long written;
 
   public PcapExporter() {
+    this(false);
+  }
+
+  /**
+   * @param asynchronous Write packets on a background thread
+   */
+  public PcapExporter(boolean asynchronous) {
+    this.asynchronous = asynchronous;
   }
 
   public void openPcap(File pcapFile) throws IOException {
@@ -23,42 +65,297 @@ public class PcapExporter {
       /* pcap file not specified, use default file name */
       pcapFile = new File("radiolog-" + System.currentTimeMillis() + ".pcap");
     }
-    out = new DataOutputStream(new FileOutputStream(pcapFile));
-    /* pcap header */
-    out.writeInt(0xa1b2c3d4);
-    out.writeShort(0x0002);
-    out.writeShort(0x0004);
-    out.writeInt(0);
-    out.writeInt(0);
-    out.writeInt(4096);
-    out.writeInt(195); /* 195 for LINKTYPE_IEEE802_15_4 */
-
-    out.flush();
+    out = FileChannel.open(pcapFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    pcapng = pcapFile.getName().endsWith(".pcapng");
+    interfaces.clear();
+    buffer.clear();
+    if (pcapng) {
+      /* Section header block */
+      buffer.putInt(0x0A0D0D0A);
+      buffer.putInt(28);
+      buffer.putInt(0x1A2B3C4D);
+      buffer.putShort((short) 1);
+      buffer.putShort((short) 0);
+      buffer.putLong(-1);
+      buffer.putInt(28);
+    } else {
+      /* pcap header */
+      buffer.putInt(0xa1b2c3d4);
+      buffer.putShort((short) 0x0002);
+      buffer.putShort((short) 0x0004);
+      buffer.putInt(0);
+      buffer.putInt(0);
+      buffer.putInt(SNAPLEN);
+      buffer.putInt(LINKTYPE_IEEE802_15_4);
+    }
+    writeBuffer();
+
+    if (asynchronous) {
+      queue = new PacketQueue(QUEUE_SIZE);
+      closing = false;
+      writeError = null;
+      exported.set(0);
+      written = 0;
+      writer = new Thread(this::runWriter, "pcap writer");
+      writer.setDaemon(true);
+      writer.start();
+    }
     logger.info("Opened pcap file " + pcapFile);
   }
 
   public void closePcap() throws IOException {
-    out.close();
-    out = null;
+    if (out == null) {
+      return;
+    }
+    try {
+      flush();
+    } finally {
+      if (writer != null) {
+        /* Stop the writer even if flushing failed, before closing its file */
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+          writer.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        writer = null;
+        queue = null;
+      }
+      out.close();
+      out = null;
+    }
   }
 
   public void exportPacketData(byte[] data, long ts) throws IOException {
+    exportPacketData(data, ts, -1);
+  }
+
+  /**
+   * @param data Packet data
+   * @param ts Timestamp (us)
+   * @param channel Radio channel, or -1 if unknown
+   * @throws IOException On write error
+   */
+  public void exportPacketData(byte[] data, long ts, int channel) throws IOException {
     if (out == null) {
       /* pcap file never set, open default */
       openPcap(null);
     }
-    try {
+    if (writer == null) {
+      try {
+        writePacket(data, ts, channel);
+        writeBuffer();
+      } catch (Exception e) {
+        logger.error("Failed to write Pcap data:", e);
+      }
+      return;
+    }
+    if (writeError != null) {
+      throw writeError;
+    }
+    /* Back-pressure: wait for the writer if the queue is full */
+    while (!queue.offer(data, ts, channel)) {
+      LockSupport.unpark(writer);
+      Thread.onSpinWait();
+    }
+    exported.incrementAndGet();
+    LockSupport.unpark(writer);
+  }
+
+  /**
+   * Writes all exported packets to the file.
+   *
+   * @throws IOException On write error
+   */
+  public void flush() throws IOException {
+    if (writer == null) {
+      return;
+    }
+    long target = exported.get();
+    while (written < target && writer.isAlive()) {
+      LockSupport.unpark(writer);
+      LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+    }
+    if (writeError != null) {
+      throw writeError;
+    }
+  }
+
+  private void runWriter() {
+    long count = 0;
+    while (true) {
+      byte[] data = queue.peekData();
+      if (data == null) {
+        /* Queue drained: write the batch */
+        if (buffer.position() > 0) {
+          try {
+            writeBuffer();
+          } catch (IOException e) {
+            logger.error("Failed to write Pcap data:", e);
+            writeError = e;
+            buffer.clear();
+          }
+        }
+        written = count;
+        if (closing) {
+          return;
+        }
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        continue;
+      }
+      try {
+        writePacket(data, queue.peekTime(), queue.peekChannel());
+      } catch (IOException e) {
+        logger.error("Failed to write Pcap data:", e);
+        writeError = e;
+        buffer.clear();
+      }
+      queue.remove();
+      count++;
+    }
+  }
+
+  private void ensure(int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      writeBuffer();
+    }
+  }
+
+  private void writeBuffer() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private void writePacket(byte[] data, long ts, int channel) throws IOException {
+    int captured = Math.min(data.length, SNAPLEN);
+    if (!pcapng) {
       /* pcap packet header */
-      out.writeInt((int) (ts / 1000000));
-      out.writeInt((int) (ts % 1000000));
-      out.writeInt(data.length);
-      out.writeInt(data.length);
+      ensure(16 + captured);
+      buffer.putInt((int) (ts / 1000000));
+      buffer.putInt((int) (ts % 1000000));
+      buffer.putInt(captured);
+      buffer.putInt(data.length);
       /* and the data */
-      out.write(data);
-      out.flush();
-    } catch (Exception e) {
-      logger.error("Failed to write Pcap data:", e);
+      buffer.put(data, 0, captured);
+      return;
+    }
+
+    Integer iface = interfaces.get(channel);
+    if (iface == null) {
+      iface = interfaces.size();
+      interfaces.put(channel, iface);
+      writeInterfaceBlock(channel);
+    }
+    /* Enhanced packet block */
+    int padded = (captured + 3) & ~3;
+    int length = 32 + padded;
+    ensure(length);
+    buffer.putInt(0x00000006);
+    buffer.putInt(length);
+    buffer.putInt(iface);
+    buffer.putInt((int) (ts >>> 32));
+    buffer.putInt((int) ts);
+    buffer.putInt(captured);
+    buffer.putInt(data.length);
+    buffer.put(data, 0, captured);
+    for (int i = captured; i < padded; i++) {
+      buffer.put((byte) 0);
+    }
+    buffer.putInt(length);
+  }
+
+  private void writeInterfaceBlock(int channel) throws IOException {
+    byte[] name = (channel < 0 ? "radio" : "radio channel " + channel).getBytes(UTF_8);
+    int padded = (name.length + 3) & ~3;
+    /* Header, if_name option, end of options, trailer */
+    int length = 16 + 4 + padded + 4 + 4;
+    ensure(length);
+    buffer.putInt(0x00000001);
+    buffer.putInt(length);
+    buffer.putShort((short) LINKTYPE_IEEE802_15_4);
+    buffer.putShort((short) 0);
+    buffer.putInt(SNAPLEN);
+    buffer.putShort((short) 2);
+    buffer.putShort((short) name.length);
+    buffer.put(name);
+    for (int i = name.length; i < padded; i++) {
+      buffer.put((byte) 0);
     }
+    buffer.putInt(0);
+    buffer.putInt(length);
   }
 
+  /**
+   * Bounded multi-producer, single-consumer queue of packets. Each slot has
+   * a sequence number telling whether it is free for a producer or ready for
+   * the consumer.
+   */
+  private static class PacketQueue {
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final byte[][] data;
+    private final long[] times;
+    private final int[] channels;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    PacketQueue(int size) {
+      mask = size - 1;
+      sequences = new AtomicLongArray(size);
+      data = new byte[size][];
+      times = new long[size];
+      channels = new int[size];
+      for (int i = 0; i < size; i++) {
+        sequences.set(i, i);
+      }
+    }
+
+    boolean offer(byte[] packet, long time, int channel) {
+      while (true) {
+        long pos = tail.get();
+        int slot = (int) pos & mask;
+        long seq = sequences.get(slot);
+        if (seq == pos) {
+          if (tail.compareAndSet(pos, pos + 1)) {
+            data[slot] = packet;
+            times[slot] = time;
+            channels[slot] = channel;
+            sequences.set(slot, pos + 1);
+            return true;
+          }
+        } else if (seq < pos) {
+          /* Full */
+          return false;
+        }
+      }
+    }
+
+    byte[] peekData() {
+      int slot = (int) head & mask;
+      if (sequences.get(slot) != head + 1) {
+        return null;
+      }
+      return data[slot];
+    }
+
+    long peekTime() {
+      return times[(int) head & mask];
+    }
+
+    int peekChannel() {
+      return channels[(int) head & mask];
+    }
+
+    void remove() {
+      int slot = (int) head & mask;
+      data[slot] = null;
+      sequences.set(slot, head + mask + 1);
+      head++;
+    }
+  }
 }
@@ -72,7 +72,7 @@ public class AddressVisualizerSkin implements VisualizerSkin {
             newMotesListener = new AnyMoteEventTriggers<>(simulation, mote -> {
               var ipAddr = mote.getInterfaces().getIPAddress();
               return ipAddr == null ? Optional.empty() : Optional.of(ipAddr.getTriggers());
-            })).addTrigger(this, (event, mote) -> visualizer.repaint());
+            })).addTrigger(this, (event, mote) -> visualizer.repaintFrame());
     visualizer.registerMoteMenuAction(CopyAddressAction.class);
   }
 
@@ -60,7 +60,7 @@ public class AttributeVisualizerSkin implements VisualizerSkin {
   private Simulation simulation;
   private Visualizer visualizer;
 
-  private final BiConsumer<EventTriggers.AddRemoveUpdate, MoteAttributes.MoteAttributeUpdateData> attributesTrigger = (obs, obj) -> visualizer.repaint();
+  private final BiConsumer<EventTriggers.AddRemoveUpdate, MoteAttributes.MoteAttributeUpdateData> attributesTrigger = (obs, obj) -> visualizer.repaintFrame();
   private final BiConsumer<EventTriggers.AddRemove, Mote> newMotesListener = (event, mote) -> {
     var intf = mote.getInterfaces().getInterfaceOfType(MoteAttributes.class);
     if (intf != null) {
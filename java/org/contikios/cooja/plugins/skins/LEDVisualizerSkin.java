@@ -68,7 +68,7 @@ public class LEDVisualizerSkin implements VisualizerSkin {
         return ledInterface != null ? Optional.of(ledInterface.getTriggers()) : Optional.empty();
       });
     }
-    ledTriggers.addTrigger(this, (operation, mote) -> visualizer.repaint());
+    ledTriggers.addTrigger(this, (operation, mote) -> visualizer.repaintFrame());
   }
 
   @Override
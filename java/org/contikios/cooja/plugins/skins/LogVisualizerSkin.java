@@ -57,14 +57,14 @@ public class LogVisualizerSkin implements VisualizerSkin {
   private Simulation simulation;
   private Visualizer visualizer;
 
-  private final LogOutputListener logOutputListener = ev -> visualizer.repaint();
+  private final LogOutputListener logOutputListener = ev -> visualizer.repaintFrame();
 
   @Override
   public void setActive(Simulation simulation, Visualizer vis) {
     this.simulation = simulation;
     this.visualizer = vis;
     simulation.getEventCentral().addLogOutputListener(logOutputListener);
-    simulation.getMoteTriggers().addTrigger(this, (event, m) -> visualizer.repaint());
+    simulation.getMoteTriggers().addTrigger(this, (event, m) -> visualizer.repaintFrame());
   }
 
   @Override
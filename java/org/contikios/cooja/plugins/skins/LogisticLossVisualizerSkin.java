@@ -37,8 +37,11 @@ import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.geom.Area;
 import java.awt.geom.Ellipse2D;
+import java.util.Arrays;
 import java.util.Set;
 
+import javax.swing.JPanel;
+
 import org.contikios.cooja.ClassDescription;
 import org.contikios.cooja.Mote;
 import org.contikios.cooja.Simulation;
@@ -46,6 +49,7 @@ import org.contikios.cooja.SupportedArguments;
 import org.contikios.cooja.interfaces.Position;
 import org.contikios.cooja.interfaces.Radio;
 import org.contikios.cooja.plugins.Visualizer;
+import org.contikios.cooja.plugins.VisualizerLayer;
 import org.contikios.cooja.plugins.VisualizerSkin;
 import org.contikios.cooja.radiomediums.LogisticLoss;
 import org.slf4j.Logger;
@@ -76,6 +80,10 @@ public class LogisticLossVisualizerSkin implements VisualizerSkin {
   private Visualizer visualizer;
   private LogisticLoss radioMedium;
 
+  /* Cached range areas, and the selected mote positions and ranges they were painted from */
+  private final VisualizerLayer rangeLayer = new VisualizerLayer();
+  private int[] rangeKey;
+
   @Override
   public void setActive(Simulation simulation, Visualizer vis) {
     if (!(simulation.getRadioMedium() instanceof LogisticLoss)) {
@@ -91,7 +99,9 @@ public class LogisticLossVisualizerSkin implements VisualizerSkin {
   public void setInactive() {
     if (simulation == null) {
       /* Skin was never activated */
+      return;
     }
+    rangeLayer.flush();
   }
 
   @Override
@@ -106,11 +116,9 @@ public class LogisticLossVisualizerSkin implements VisualizerSkin {
       return;
     }
 
-    Area intRangeArea = new Area();
-    Area intRangeMaxArea = new Area();
-    Area trxRangeArea = new Area();
-    Area trxRangeMaxArea = new Area();
-
+    /* Pixel position and ranges of each selected mote */
+    int[] key = new int[6 * selectedMotes.size()];
+    int n = 0;
     for (Mote selectedMote : selectedMotes) {
       if (selectedMote.getInterfaces().getRadio() == null) {
         continue;
@@ -120,74 +128,37 @@ public class LogisticLossVisualizerSkin implements VisualizerSkin {
       Position motePos = selectedMote.getInterfaces().getPosition();
 
       Point pixelCoord = visualizer.transformPositionToPixel(motePos);
-      int x = pixelCoord.x;
-      int y = pixelCoord.y;
-
-      // Fetch current output power indicator (scale with as percent)
-      double moteInterferenceRange
-              = radioMedium.INTERFERENCE_RANGE;
-      double moteTransmissionRange
-              = radioMedium.TRANSMITTING_RANGE;
 
       Point translatedZero = visualizer.transformPositionToPixel(0.0, 0.0, 0.0);
       Point translatedInterference
-              = visualizer.transformPositionToPixel(moteInterferenceRange, moteInterferenceRange, 0.0);
-      Point translatedTransmission
-              = visualizer.transformPositionToPixel(moteTransmissionRange, moteTransmissionRange, 0.0);
-      Point translatedInterferenceMax
               = visualizer.transformPositionToPixel(radioMedium.INTERFERENCE_RANGE, radioMedium.INTERFERENCE_RANGE, 0.0);
-      Point translatedTransmissionMax
+      Point translatedTransmission
               = visualizer.transformPositionToPixel(radioMedium.TRANSMITTING_RANGE, radioMedium.TRANSMITTING_RANGE, 0.0);
 
-      translatedInterference.x = Math.abs(translatedInterference.x - translatedZero.x);
-      translatedInterference.y = Math.abs(translatedInterference.y - translatedZero.y);
-      translatedTransmission.x = Math.abs(translatedTransmission.x - translatedZero.x);
-      translatedTransmission.y = Math.abs(translatedTransmission.y - translatedZero.y);
-      translatedInterferenceMax.x = Math.abs(translatedInterferenceMax.x - translatedZero.x);
-      translatedInterferenceMax.y = Math.abs(translatedInterferenceMax.y - translatedZero.y);
-      translatedTransmissionMax.x = Math.abs(translatedTransmissionMax.x - translatedZero.x);
-      translatedTransmissionMax.y = Math.abs(translatedTransmissionMax.y - translatedZero.y);
-
-      /* Interference range */
-      intRangeArea.add(new Area(new Ellipse2D.Double(
-              x - translatedInterference.x,
-              y - translatedInterference.y,
-              2 * translatedInterference.x,
-              2 * translatedInterference.y)));
-
-      /* Interference range (MAX) */
-      trxRangeArea.add(new Area(new Ellipse2D.Double(
-              x - translatedTransmission.x,
-              y - translatedTransmission.y,
-              2 * translatedTransmission.x,
-              2 * translatedTransmission.y)));
-
-      intRangeMaxArea.add(new Area(new Ellipse2D.Double(
-              x - translatedInterferenceMax.x,
-              y - translatedInterferenceMax.y,
-              2 * translatedInterferenceMax.x,
-              2 * translatedInterferenceMax.y)));
-
-      /* Transmission range (MAX) */
-      trxRangeMaxArea.add(new Area(new Ellipse2D.Double(
-              x - translatedTransmissionMax.x,
-              y - translatedTransmissionMax.y,
-              2 * translatedTransmissionMax.x,
-              2 * translatedTransmissionMax.y)));
-
+      key[n++] = pixelCoord.x;
+      key[n++] = pixelCoord.y;
+      key[n++] = Math.abs(translatedInterference.x - translatedZero.x);
+      key[n++] = Math.abs(translatedInterference.y - translatedZero.y);
+      key[n++] = Math.abs(translatedTransmission.x - translatedZero.x);
+      key[n++] = Math.abs(translatedTransmission.y - translatedZero.y);
+    }
+    if (n < key.length) {
+      key = Arrays.copyOf(key, n);
     }
 
-    Graphics2D g2d = (Graphics2D) g;
-
-    g2d.setColor(COLOR_INT);
-    g2d.fill(intRangeArea);
-    g.setColor(Color.GRAY);
-    g2d.draw(intRangeMaxArea);
-
-    g.setColor(COLOR_TX);
-    g2d.fill(trxRangeArea);
-    g.setColor(Color.GRAY);
-    g2d.draw(trxRangeMaxArea);
+    /* The range areas are expensive to build, only redraw them when they change */
+    JPanel canvas = visualizer.getCurrentCanvas();
+    if (rangeLayer.validate(canvas) || !Arrays.equals(key, rangeKey)) {
+      Graphics2D lg = rangeLayer.createGraphics(null);
+      if (lg == null) {
+        paintRanges(g, key);
+      } else {
+        paintRanges(lg, key);
+        lg.dispose();
+      }
+      rangeKey = key;
+    }
+    rangeLayer.draw(g, canvas);
 
     FontMetrics fm = g.getFontMetrics();
     g.setColor(Color.BLACK);
@@ -215,6 +186,36 @@ public class LogisticLossVisualizerSkin implements VisualizerSkin {
 
   }
 
+  private static void paintRanges(Graphics g, int[] key) {
+    Area intRangeArea = new Area();
+    Area trxRangeArea = new Area();
+    for (int i = 0; i < key.length; i += 6) {
+      int x = key[i];
+      int y = key[i + 1];
+
+      /* Interference range */
+      intRangeArea.add(new Area(new Ellipse2D.Double(
+              x - key[i + 2], y - key[i + 3], 2 * key[i + 2], 2 * key[i + 3])));
+
+      /* Transmission range */
+      trxRangeArea.add(new Area(new Ellipse2D.Double(
+              x - key[i + 4], y - key[i + 5], 2 * key[i + 4], 2 * key[i + 5])));
+    }
+
+    Graphics2D g2d = (Graphics2D) g;
+
+    /* The ranges do not depend on output power, so they are also the maximum ranges */
+    g2d.setColor(COLOR_INT);
+    g2d.fill(intRangeArea);
+    g.setColor(Color.GRAY);
+    g2d.draw(intRangeArea);
+
+    g.setColor(COLOR_TX);
+    g2d.fill(trxRangeArea);
+    g.setColor(Color.GRAY);
+    g2d.draw(trxRangeArea);
+  }
+
   @Override
   public void paintAfterMotes(Graphics g) {
   }
@@ -31,12 +31,15 @@ package org.contikios.cooja.plugins.skins;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Polygon;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.BiConsumer;
 
+import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 
 import org.contikios.cooja.ClassDescription;
@@ -48,6 +51,7 @@ import org.contikios.cooja.TimeEvent;
 import org.contikios.cooja.interfaces.Position;
 import org.contikios.cooja.interfaces.Radio;
 import org.contikios.cooja.plugins.Visualizer;
+import org.contikios.cooja.plugins.VisualizerLayer;
 import org.contikios.cooja.plugins.VisualizerSkin;
 import org.contikios.cooja.radiomediums.AbstractRadioMedium;
 
@@ -71,8 +75,12 @@ public class TrafficVisualizerSkin implements VisualizerSkin {
 
   private final List<RadioConnectionArrow> historyList = new ArrayList<>();
 
-  private final void repaint_async() {
-      java.awt.EventQueue.invokeLater(() -> visualizer.repaint(500));
+  /* Cached arrows, and the ages and pixel positions they were painted from */
+  private final VisualizerLayer arrowLayer = new VisualizerLayer();
+  private int[] arrowKey;
+
+  private void repaint_async() {
+    visualizer.repaintFrame();
   }
   
   private final BiConsumer<Radio.RadioEvent, Object> radioMediumObserver = (event, obj) -> {
@@ -133,6 +141,7 @@ public class TrafficVisualizerSkin implements VisualizerSkin {
 
     /* Stop observing radio medium */
     radioMedium.getRadioTransmissionTriggers().removeTrigger(this, radioMediumObserver);
+    arrowLayer.flush();
   }
 
   @Override
@@ -176,19 +185,62 @@ public class TrafficVisualizerSkin implements VisualizerSkin {
     synchronized (historyList) {
       histories = historyList.toArray(new RadioConnectionArrow[0]);
     }
-    for (var connArrow : histories) {
+    /* Age, source, number of destinations and destinations of each arrow */
+    Radio[][] allDestinations = new Radio[histories.length][];
+    int size = 0;
+    for (int a = 0; a < histories.length; a++) {
+      allDestinations[a] = histories[a].getConnection().getDestinations();
+      size += 4 + 2 * allDestinations[a].length;
+    }
+    int[] key = new int[size];
+    int n = 0;
+    for (int a = 0; a < histories.length; a++) {
+      var connArrow = histories[a];
       Point sourcePoint = visualizer.transformPositionToPixel(connArrow.getConnection().getSource().getPosition());
-      g.setColor(new Color(UNTRANSMITTED_COLOR_RGB[0], UNTRANSMITTED_COLOR_RGB[1], UNTRANSMITTED_COLOR_RGB[2], 1.0f - connArrow.getAge()));
+      Radio[] destinations = allDestinations[a];
+      key[n++] = connArrow.age;
+      key[n++] = sourcePoint.x;
+      key[n++] = sourcePoint.y;
+      key[n++] = destinations.length;
+      for (Radio destRadio : destinations) {
+        Point destPoint = visualizer.transformPositionToPixel(destRadio.getPosition());
+        key[n++] = destPoint.x;
+        key[n++] = destPoint.y;
+      }
+    }
+
+    /* Only redraw the arrows when the traffic or the view changes */
+    JPanel canvas = visualizer.getCurrentCanvas();
+    if (arrowLayer.validate(canvas) || !Arrays.equals(key, arrowKey)) {
+      Graphics2D lg = arrowLayer.createGraphics(null);
+      if (lg == null) {
+        paintArrows(g, key);
+      } else {
+        paintArrows(lg, key);
+        lg.dispose();
+      }
+      arrowKey = key;
+    }
+    arrowLayer.draw(g, canvas);
+  }
+
+  private void paintArrows(Graphics g, int[] key) {
+    int i = 0;
+    while (i < key.length) {
+      float age = (float) key[i] / (float) RadioConnectionArrow.MAX_AGE;
+      int sourceX = key[i + 1];
+      int sourceY = key[i + 2];
+      int destinations = key[i + 3];
+      i += 4;
+      g.setColor(new Color(UNTRANSMITTED_COLOR_RGB[0], UNTRANSMITTED_COLOR_RGB[1], UNTRANSMITTED_COLOR_RGB[2], 1.0f - age));
       // If there is no destination, paint red circles to indicate non-transmitted message.
-      if (connArrow.getConnection().getDestinations().length == 0) {
-        g.drawOval(sourcePoint.x - 20, sourcePoint.y - 20, 40, 40);
-        g.drawOval(sourcePoint.x - 30, sourcePoint.y - 30, 60, 60);
+      if (destinations == 0) {
+        g.drawOval(sourceX - 20, sourceY - 20, 40, 40);
+        g.drawOval(sourceX - 30, sourceY - 30, 60, 60);
         continue;
       }
-      for (Radio destRadio : connArrow.getConnection().getDestinations()) {
-          Position destPos = destRadio.getPosition();
-          Point destPoint = visualizer.transformPositionToPixel(destPos);
-          drawArrow(g, sourcePoint.x, sourcePoint.y, destPoint.x, destPoint.y, 8);
+      for (int d = 0; d < destinations; d++, i += 2) {
+        drawArrow(g, sourceX, sourceY, key[i], key[i + 1], 8);
       }
     }
   }
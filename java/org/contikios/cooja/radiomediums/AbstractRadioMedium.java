@@ -32,7 +32,10 @@ package org.contikios.cooja.radiomediums;
 
 import java.lang.Runnable;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -78,10 +81,18 @@ public abstract class AbstractRadioMedium implements RadioMedium {
 	protected final Map<Radio, Double> sendRssi = java.util.Collections.synchronizedMap(new HashMap<>());
 	
 	private final ArrayList<Radio> registeredRadios = new ArrayList<>();
+
+	/* Delayed deliveries per destination radio */
+	private final HashMap<Radio, DeliveryQueue> deliveryQueues = new HashMap<>();
 	
 	private final ArrayList<RadioConnection> activeConnections = new ArrayList<>();
 	
 	private RadioConnection lastConnection;
+
+	/* Delay before the radio medium acts on a radio operation (us) */
+	private long propagationDelay;
+
+	private RadioCaptureStore radioCapture;
 	
 	protected final Simulation simulation;
 	
@@ -107,7 +118,55 @@ public abstract class AbstractRadioMedium implements RadioMedium {
      */
     public AbstractRadioMedium(Simulation simulation) {
         this.simulation = simulation;
-        radioEventsObserver = (event, radio) -> { update(event, radio); };
+        radioEventsObserver = (event, radio) -> {
+          if (propagationDelay > 0) {
+            simulation.scheduleEvent(new DelayedUpdate(event, radio),
+                    simulation.getSimulationTime() + propagationDelay);
+          } else {
+            update(event, radio);
+          }
+        };
+
+        String delay = simulation.getCfg().opts().get("propagation-delay");
+        if (delay != null) {
+          setPropagationDelay(Long.parseLong(delay));
+        }
+
+        /* Record all packets to a PCAP file, without the radio logger plugin */
+        String capture = simulation.getCfg().opts().get("radio-capture");
+        if (capture != null) {
+          try {
+            radioCapture = RadioCaptureStore.create(new File(capture));
+          } catch (IOException e) {
+            throw new RuntimeException("Could not create radio capture file " + capture, e);
+          }
+          radioTransmissionTriggers.addTrigger(this, (event, obj) -> {
+            RadioConnection conn = lastConnection;
+            if (event != Radio.RadioEvent.TRANSMISSION_FINISHED || conn == null) {
+              return;
+            }
+            RadioPacket packet = conn.getSource().getLastPacketTransmitted();
+            if (packet == null) {
+              return;
+            }
+            try {
+              radioCapture.add(conn, packet, conn.getStartTime(), simulation.getSimulationTime());
+            } catch (IOException e) {
+              logger.error("Could not record radio packet: " + e.getMessage());
+            }
+          });
+        }
+    }
+
+    @Override
+    public void removed() {
+      if (radioCapture != null) {
+        try {
+          radioCapture.close();
+        } catch (IOException e) {
+          logger.error("Could not close radio capture file: " + e.getMessage());
+        }
+      }
     }
 	
 
@@ -116,6 +175,22 @@ public abstract class AbstractRadioMedium implements RadioMedium {
      * new transmissions.
      */
     protected void update(Radio.RadioEvent event, Radio radio) {
+        update(event, radio, getTransmittedData(event, radio));
+    }
+
+    /**
+     * @return Packet or custom data transmitted by the radio event, if any
+     */
+    private static Object getTransmittedData(Radio.RadioEvent event, Radio radio) {
+        return switch (event) {
+            case PACKET_TRANSMITTED -> radio.getLastPacketTransmitted();
+            case CUSTOM_DATA_TRANSMITTED ->
+                    radio instanceof CustomDataRadio customRadio ? customRadio.getLastCustomDataTransmitted() : null;
+            default -> null;
+        };
+    }
+
+    private void update(Radio.RadioEvent event, Radio radio, Object transmitted) {
             
             switch (event) {
                 case RECEPTION_STARTED:
@@ -161,9 +236,9 @@ public abstract class AbstractRadioMedium implements RadioMedium {
                     updateSignalStrengths();
                     
                     if (newConnection != null)
-                    for (Radio r : newConnection.getAllDestinations()) {
-                        invokeRemote(newConnection, r, (x)->{ x.signalReceptionStart(); } );
-                    } 
+                    for (int i = 0; i < newConnection.getAllDestinationsCount(); i++) {
+                        invokeRemote(newConnection, i, RadioMethod.RECEPTION_START, null);
+                    }
                     
                     /* Notify observers */
                     lastConnection = null;
@@ -181,11 +256,11 @@ public abstract class AbstractRadioMedium implements RadioMedium {
                     activeConnections.remove(connection);
                     lastConnection = connection;
                     COUNTER_TX++;
-                    for (Radio dstRadio : connection.getAllDestinations()) {
-                        invokeRemote(connection, dstRadio, (x)->{ x.signalReceptionEnd(); } );
+                    for (int i = 0; i < connection.getAllDestinationsCount(); i++) {
+                        invokeRemote(connection, i, RadioMethod.RECEPTION_END, null);
                     }
-                    COUNTER_RX += connection.getDestinations().length;
-                    COUNTER_INTERFERED += connection.getInterfered().length;
+                    COUNTER_RX += connection.getDestinationsCount();
+                    COUNTER_INTERFERED += connection.getInterferedCount();
                     for (Radio intRadio : connection.getInterferedNonDestinations()) {
 
                       if (intRadio.isInterfered()) {
@@ -210,27 +285,21 @@ public abstract class AbstractRadioMedium implements RadioMedium {
                         return;
                     }
                     
-                    Object data = ((CustomDataRadio) radio).getLastCustomDataTransmitted();
+                    Object data = transmitted;
                     if (data == null) {
                         logger.error("No custom data objecTransmissiont to forward");
                         return;
                     }
                     
-                    for (Radio dstRadio : connection.getAllDestinations()) {
+                    for (int i = 0; i < connection.getAllDestinationsCount(); i++) {
+                        Radio dstRadio = connection.getAllDestination(i);
                         if (!(dstRadio instanceof CustomDataRadio) || 
                             !((CustomDataRadio) dstRadio).canReceiveFrom((CustomDataRadio)radio)) {
                             /* Radios communicate via radio packets */
                             continue;
                         }
                         
-                        invokeRemote(connection, dstRadio, 
-                                new RadioMethod() {
-                                        final Object xdata = data;
-                                        public void run( Radio x) {
-                                            ((CustomDataRadio) x).receiveCustomData(xdata);
-                                        }
-                                    } 
-                                );
+                        invokeRemote(connection, i, RadioMethod.CUSTOM_DATA, data);
                     }
                     
                 }
@@ -241,13 +310,14 @@ public abstract class AbstractRadioMedium implements RadioMedium {
                         return; // SilentRadioMedium will return here.
                     }
                     
-                    RadioPacket packet = radio.getLastPacketTransmitted();
+                    RadioPacket packet = (RadioPacket) transmitted;
                     if (packet == null) {
                         logger.error("No radio packet to forward");
                         return;
                     }
                     
-                    for (Radio dstRadio : connection.getAllDestinations()) {
+                    for (int i = 0; i < connection.getAllDestinationsCount(); i++) {
+                      Radio dstRadio = connection.getAllDestination(i);
 
                       if ((radio instanceof CustomDataRadio) &&
                           (dstRadio instanceof CustomDataRadio) && 
@@ -256,16 +326,7 @@ public abstract class AbstractRadioMedium implements RadioMedium {
                         continue;
                       }
 
-                    
-                    invokeRemote(connection, dstRadio, 
-                            new RadioMethod() {
-                                final RadioPacket xPacket = packet;
-                                public void run( Radio x) {
-                                    x.setReceivedPacket(xPacket);
-                                }
-                            } 
-                        );
-                        
+                      invokeRemote(connection, i, RadioMethod.PACKET, packet);
                     }
                 }
                 break;
@@ -274,23 +335,179 @@ public abstract class AbstractRadioMedium implements RadioMedium {
             }
     };
 
-    protected void invokeRemote(RadioConnection connection,  Radio radio, RadioMethod action) {
-        long delay = connection.getDestinationDelay(radio);
-            if (delay == 0) {
-                action.run(radio);
-            } else {
-                
-                /* EXPERIMENTAL: Simulating propagation delay */
-                TimeEvent delayedEvent = new TimeEvent() {
-                    final Radio delayedRadio = radio;
-                    
-                    @Override
-                    public void execute(long t) {
-                        action.run(delayedRadio);
-                    }
-                };
-                simulation.scheduleEvent(delayedEvent, simulation.getSimulationTime() + delay);
+    /**
+     * A radio operation that the radio medium acts on after the propagation
+     * delay, with the packet or custom data that was transmitted.
+     */
+    private final class DelayedUpdate extends TimeEvent {
+        private final Radio.RadioEvent event;
+        private final Radio radio;
+        private final Object transmitted;
+
+        DelayedUpdate(Radio.RadioEvent event, Radio radio) {
+            this.event = event;
+            this.radio = radio;
+            transmitted = getTransmittedData(event, radio);
+        }
+
+        @Override
+        public void execute(long t) {
+            /* The radio may have been removed meanwhile */
+            if (registeredRadios.contains(radio)) {
+                update(event, radio, transmitted);
+            }
+        }
+    }
+
+    /**
+     * @return Delay before the radio medium acts on a radio operation (us)
+     */
+    public long getPropagationDelay() {
+        return propagationDelay;
+    }
+
+    /**
+     * Sets the delay before the radio medium acts on radio operations, such
+     * as transmission start, transmitted packets, and radios turned on or
+     * off. Nothing a radio does affects any other radio before this delay.
+     * The delay is also the lookahead of the radio medium, so a non-zero
+     * delay lets mote events execute in parallel.
+     * <p>
+     * The packet and custom data of a transmission are taken when they are
+     * transmitted, other radio state when the delay has passed. Delays of
+     * connection destinations are added to this delay.
+     *
+     * @see #getLookahead()
+     * @param delay Delay (us), 0 to act immediately
+     */
+    public void setPropagationDelay(long delay) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Negative propagation delay: " + delay);
+        }
+        propagationDelay = delay;
+    }
+
+    @Override
+    public long getLookahead() {
+        return propagationDelay;
+    }
+
+    /**
+     * Invoke a radio method on a connection destination, after the propagation
+     * delay of the destination if any.
+     *
+     * @param connection Radio connection
+     * @param index      Index of the destination in all destinations of the connection
+     * @param method     Radio method
+     * @param data       Custom data or radio packet, if used by the method
+     */
+    protected void invokeRemote(RadioConnection connection, int index, RadioMethod method, Object data) {
+        Radio radio = connection.getAllDestination(index);
+        long delay = connection.getAllDestinationDelay(index);
+        if (delay == 0) {
+            method.invoke(radio, data);
+        } else {
+            /* EXPERIMENTAL: Simulating propagation delay */
+            DeliveryQueue queue = deliveryQueues.get(radio);
+            if (queue == null) {
+                queue = new DeliveryQueue(radio);
+                deliveryQueues.put(radio, queue);
             }
+            queue.add(simulation.getSimulationTime() + delay, method, data);
+        }
+    }
+
+    /**
+     * Pending delayed deliveries to one radio, kept in time order in a ring
+     * buffer and executed by the queue itself as a reusable time event.
+     */
+    private final class DeliveryQueue extends TimeEvent {
+        private final Radio radio;
+        private long[] times = new long[16];
+        private RadioMethod[] methods = new RadioMethod[16];
+        private Object[] data = new Object[16];
+        private int first;
+        private int size;
+        private boolean isExecuting;
+
+        DeliveryQueue(Radio radio) {
+            this.radio = radio;
+        }
+
+        private int pos(int index) {
+            return (first + index) & (times.length - 1);
+        }
+
+        void add(long time, RadioMethod method, Object obj) {
+            if (size == times.length) {
+                grow();
+            }
+            /* Ordered by time, and by insertion order for the same time */
+            int i = size;
+            while (i > 0 && times[pos(i - 1)] > time) {
+                int from = pos(i - 1);
+                int to = pos(i);
+                times[to] = times[from];
+                methods[to] = methods[from];
+                data[to] = data[from];
+                i--;
+            }
+            int to = pos(i);
+            times[to] = time;
+            methods[to] = method;
+            data[to] = obj;
+            size++;
+            if (i == 0 && !isExecuting) {
+                if (isScheduled()) {
+                    remove();
+                }
+                simulation.scheduleEvent(this, time);
+            }
+        }
+
+        private void grow() {
+            int capacity = times.length * 2;
+            long[] newTimes = new long[capacity];
+            RadioMethod[] newMethods = new RadioMethod[capacity];
+            Object[] newData = new Object[capacity];
+            for (int i = 0; i < size; i++) {
+                newTimes[i] = times[pos(i)];
+                newMethods[i] = methods[pos(i)];
+                newData[i] = data[pos(i)];
+            }
+            times = newTimes;
+            methods = newMethods;
+            data = newData;
+            first = 0;
+        }
+
+        void clear() {
+            if (isScheduled()) {
+                remove();
+            }
+            Arrays.fill(data, null);
+            size = 0;
+        }
+
+        @Override
+        public void execute(long t) {
+            isExecuting = true;
+            try {
+                while (size > 0 && times[first] <= t) {
+                    RadioMethod method = methods[first];
+                    Object obj = data[first];
+                    data[first] = null;
+                    first = pos(1);
+                    size--;
+                    method.invoke(radio, obj);
+                }
+            } finally {
+                isExecuting = false;
+            }
+            if (size > 0 && !isScheduled()) {
+                simulation.scheduleEvent(this, times[first]);
+            }
+        }
     }
 
 	/**
@@ -343,17 +560,19 @@ public abstract class AbstractRadioMedium implements RadioMedium {
 	public void updateSignalStrengths() {
 		
 		/* Reset signal strengths */
-		for (Radio radio : getRegisteredRadios()) {
+		for (int i = 0; i < registeredRadios.size(); i++) {
+			Radio radio = registeredRadios.get(i);
 			radio.setCurrentSignalStrength(getBaseRssi(radio));
 		}
 		
 		/* Set signal strength to strong on destinations */
-		RadioConnection[] conns = getActiveConnections();
-		for (RadioConnection conn : conns) {
+		for (int i = 0; i < activeConnections.size(); i++) {
+			RadioConnection conn = activeConnections.get(i);
 			Radio source = conn.getSource();
 			strength_powerup(source, SS_STRONG);
 
-			for (Radio dstRadio : conn.getDestinations()) {
+			for (int j = 0; j < conn.getDestinationsCount(); j++) {
+				Radio dstRadio = conn.getDestination(j);
 				if (not_same_chanel(source, dstRadio ) ) continue;
 
 				strength_powerup(dstRadio, SS_STRONG);
@@ -361,7 +580,8 @@ public abstract class AbstractRadioMedium implements RadioMedium {
 		}
 		
 		/* Set signal strength to weak on interfered */
-		for (RadioConnection conn : conns) {
+		for (int i = 0; i < activeConnections.size(); i++) {
+			RadioConnection conn = activeConnections.get(i);
 			Radio source = conn.getSource();
 			
 			for (Radio intfRadio : conn.getInterfered()) {
@@ -425,11 +645,37 @@ public abstract class AbstractRadioMedium implements RadioMedium {
 		return null;
 	}
 	
-	@FunctionalInterface
-	interface RadioMethod {
-	    // abstract method
-	    void run(Radio x);
-	}
+    /**
+     * Radio methods invoked on connection destinations.
+     */
+    protected enum RadioMethod {
+        RECEPTION_START {
+            @Override
+            void invoke(Radio radio, Object data) {
+                radio.signalReceptionStart();
+            }
+        },
+        RECEPTION_END {
+            @Override
+            void invoke(Radio radio, Object data) {
+                radio.signalReceptionEnd();
+            }
+        },
+        CUSTOM_DATA {
+            @Override
+            void invoke(Radio radio, Object data) {
+                ((CustomDataRadio) radio).receiveCustomData(data);
+            }
+        },
+        PACKET {
+            @Override
+            void invoke(Radio radio, Object data) {
+                radio.setReceivedPacket((RadioPacket) data);
+            }
+        };
+
+        abstract void invoke(Radio radio, Object data);
+    }
 
 
     @Override
@@ -458,6 +704,10 @@ public abstract class AbstractRadioMedium implements RadioMedium {
         }
         radio.getRadioEventTriggers().removeTrigger(this, radioEventsObserver);
         registeredRadios.remove(radio);
+        DeliveryQueue queue = deliveryQueues.remove(radio);
+        if (queue != null) {
+            queue.clear();
+        }
     
         dropFromActiveConnections(radio);
         radioMediumTriggers.trigger(EventTriggers.AddRemove.REMOVE, radio);
@@ -0,0 +1,472 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.radiomediums;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.contikios.cooja.ConvertedRadioPacket;
+import org.contikios.cooja.RadioConnection;
+import org.contikios.cooja.RadioPacket;
+
+/**
+ * On-disk store of radio packets.
+ * <p>
+ * Packets are appended to a PCAP file (LINKTYPE_IEEE802_15_4, timestamps in
+ * simulated time), and to two sidecar files: a fixed-size index with times,
+ * source and file offsets per packet, and a file with the destinations and
+ * cross-level data. Only small write buffers are kept in memory, so the
+ * number of recorded packets is not limited by the heap.
+ */
+public class RadioCaptureStore implements Closeable {
+  private static final int PCAP_HEADER_SIZE = 24;
+  private static final int PCAP_RECORD_HEADER_SIZE = 16;
+  private static final int PCAP_SNAPLEN = 4096;
+  private static final int LINKTYPE_IEEE802_15_4 = 195;
+
+  /* Index record: start time, end time, pcap offset, extra offset, data length,
+   * data hash, source ID, destinations, all destinations hash, flags, channel */
+  private static final int INDEX_RECORD_SIZE = 8 + 8 + 8 + 8 + 4 + 4 + 4 + 4 + 4 + 4 + 4;
+  private static final int FLAG_CONVERTED = 1;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File pcapFile;
+  private final File indexFile;
+  private final File extraFile;
+  private final boolean temporary;
+
+  private final FileChannel pcap;
+  private final FileChannel index;
+  private final FileChannel extra;
+  private final ByteBuffer pcapBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private final ByteBuffer indexBuffer = ByteBuffer.allocate(BUFFER_SIZE - BUFFER_SIZE % INDEX_RECORD_SIZE);
+  private final ByteBuffer extraBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(INDEX_RECORD_SIZE);
+
+  private long pcapSize;
+  private long extraSize;
+  private int count;
+
+  private RadioCaptureStore(File pcapFile, File indexFile, File extraFile, boolean temporary)
+          throws IOException {
+    this.pcapFile = pcapFile;
+    this.indexFile = indexFile;
+    this.extraFile = extraFile;
+    this.temporary = temporary;
+    pcap = open(pcapFile);
+    index = open(indexFile);
+    extra = open(extraFile);
+    writePcapHeader();
+  }
+
+  /**
+   * Creates a store recording to a PCAP file, with the index in
+   * <i>file</i>.idx and the destinations in <i>file</i>.dst.
+   *
+   * @param pcapFile PCAP file
+   * @return Store
+   * @throws IOException On file error
+   */
+  public static RadioCaptureStore create(File pcapFile) throws IOException {
+    return new RadioCaptureStore(pcapFile, new File(pcapFile.getPath() + ".idx"),
+            new File(pcapFile.getPath() + ".dst"), false);
+  }
+
+  /**
+   * Creates a store in temporary files, deleted when the store is closed.
+   *
+   * @return Store
+   * @throws IOException On file error
+   */
+  public static RadioCaptureStore createTemporary() throws IOException {
+    File pcapFile = File.createTempFile("cooja-radio", ".pcap");
+    File indexFile = File.createTempFile("cooja-radio", ".idx");
+    File extraFile = File.createTempFile("cooja-radio", ".dst");
+    pcapFile.deleteOnExit();
+    indexFile.deleteOnExit();
+    extraFile.deleteOnExit();
+    return new RadioCaptureStore(pcapFile, indexFile, extraFile, true);
+  }
+
+  private static FileChannel open(File file) throws IOException {
+    return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  private void writePcapHeader() throws IOException {
+    pcapBuffer.putInt(0xa1b2c3d4);
+    pcapBuffer.putShort((short) 0x0002);
+    pcapBuffer.putShort((short) 0x0004);
+    pcapBuffer.putInt(0);
+    pcapBuffer.putInt(0);
+    pcapBuffer.putInt(PCAP_SNAPLEN);
+    pcapBuffer.putInt(LINKTYPE_IEEE802_15_4);
+    pcapSize = PCAP_HEADER_SIZE;
+  }
+
+  /**
+   * @return PCAP file
+   */
+  public File getPcapFile() {
+    return pcapFile;
+  }
+
+  /**
+   * @return Number of recorded packets
+   */
+  public synchronized int size() {
+    return count;
+  }
+
+  /**
+   * Records a packet. The destinations and their signal strengths are read
+   * from the connection at the time of this call.
+   *
+   * @param conn Radio connection
+   * @param packet Transmitted packet
+   * @param startTime Start time
+   * @param endTime End time
+   * @throws IOException On write error
+   */
+  public synchronized void add(RadioConnection conn, RadioPacket packet, long startTime, long endTime)
+          throws IOException {
+    byte[] data;
+    byte[] converted = null;
+    int flags = 0;
+    if (packet instanceof ConvertedRadioPacket convertedPacket) {
+      data = convertedPacket.getOriginalPacketData();
+      converted = convertedPacket.getPacketData();
+      flags |= FLAG_CONVERTED;
+    } else {
+      data = packet.getPacketData();
+    }
+    if (data == null) {
+      data = new byte[0];
+    }
+
+    /* Packet data */
+    long pcapOffset = pcapSize;
+    int captured = Math.min(data.length, PCAP_SNAPLEN);
+    ensure(pcapBuffer, pcap, PCAP_RECORD_HEADER_SIZE);
+    pcapBuffer.putInt((int) (startTime / 1000000));
+    pcapBuffer.putInt((int) (startTime % 1000000));
+    pcapBuffer.putInt(captured);
+    pcapBuffer.putInt(data.length);
+    put(pcapBuffer, pcap, data, captured);
+    pcapSize += PCAP_RECORD_HEADER_SIZE + captured;
+
+    /* Destinations and cross-level data */
+    long extraOffset = extraSize;
+    int dests = conn.getDestinationsCount();
+    ensure(extraBuffer, extra, 4 + 12 * dests + 4);
+    extraBuffer.putInt(dests);
+    for (int i = 0; i < dests; i++) {
+      extraBuffer.putInt(conn.getDestination(i).getMote().getID());
+      extraBuffer.putDouble(conn.getDestination(i).getCurrentSignalStrength());
+    }
+    if (converted == null) {
+      extraBuffer.putInt(-1);
+      extraSize += 4 + 12 * dests + 4;
+    } else {
+      extraBuffer.putInt(converted.length);
+      put(extraBuffer, extra, converted, converted.length);
+      extraSize += 4 + 12 * dests + 4 + converted.length;
+    }
+
+    int allDestsHash = 1;
+    for (int i = 0, n = conn.getAllDestinationsCount(); i < n; i++) {
+      allDestsHash = 31 * allDestsHash + conn.getAllDestination(i).getMote().getID();
+    }
+
+    if (!indexBuffer.hasRemaining()) {
+      flush(indexBuffer, index);
+    }
+    indexBuffer.putLong(startTime);
+    indexBuffer.putLong(endTime);
+    indexBuffer.putLong(pcapOffset);
+    indexBuffer.putLong(extraOffset);
+    indexBuffer.putInt(data.length);
+    indexBuffer.putInt(Arrays.hashCode(data));
+    indexBuffer.putInt(conn.getSource().getMote().getID());
+    indexBuffer.putInt(dests);
+    indexBuffer.putInt(allDestsHash);
+    indexBuffer.putInt(flags);
+    indexBuffer.putInt(conn.getSource().getChannel());
+    count++;
+  }
+
+  private static void ensure(ByteBuffer buffer, FileChannel channel, int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      flush(buffer, channel);
+    }
+  }
+
+  private static void put(ByteBuffer buffer, FileChannel channel, byte[] data, int length)
+          throws IOException {
+    int pos = 0;
+    while (pos < length) {
+      if (!buffer.hasRemaining()) {
+        flush(buffer, channel);
+      }
+      int n = Math.min(buffer.remaining(), length - pos);
+      buffer.put(data, pos, n);
+      pos += n;
+    }
+  }
+
+  private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, channel.size());
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Writes buffered packets to the files.
+   *
+   * @throws IOException On write error
+   */
+  public synchronized void flush() throws IOException {
+    flush(pcapBuffer, pcap);
+    flush(extraBuffer, extra);
+    flush(indexBuffer, index);
+  }
+
+  private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+    buffer.flip();
+  }
+
+  /* Writes the buffer if the bytes before end are not all in the file yet */
+  private static void flushTo(ByteBuffer buffer, FileChannel channel, long size, long end)
+          throws IOException {
+    if (end > size - buffer.position()) {
+      flush(buffer, channel);
+    }
+  }
+
+  private ByteBuffer readIndex(int i) throws IOException {
+    if (i < 0 || i >= count) {
+      throw new IndexOutOfBoundsException(i);
+    }
+    if (i >= count - indexBuffer.position() / INDEX_RECORD_SIZE) {
+      flush(indexBuffer, index);
+    }
+    readBuffer.clear();
+    readFully(index, readBuffer, (long) i * INDEX_RECORD_SIZE);
+    return readBuffer;
+  }
+
+  /**
+   * @param i Packet index
+   * @return Start time of packet
+   * @throws IOException On read error
+   */
+  public synchronized long getStartTime(int i) throws IOException {
+    return readIndex(i).getLong(0);
+  }
+
+  /**
+   * @param i Packet index
+   * @return End time of packet
+   * @throws IOException On read error
+   */
+  public synchronized long getEndTime(int i) throws IOException {
+    return readIndex(i).getLong(8);
+  }
+
+  /**
+   * @param i Packet index
+   * @return Number of non-interfered destinations of packet
+   * @throws IOException On read error
+   */
+  public synchronized int getDestinationsCount(int i) throws IOException {
+    return readIndex(i).getInt(44);
+  }
+
+  /**
+   * @param time Time
+   * @return Index of the first packet ending at or after time, or the number of packets
+   * @throws IOException On read error
+   */
+  public synchronized int indexOfEndTime(long time) throws IOException {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (getEndTime(mid) < time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @param i Packet index, larger than zero
+   * @return True if packet has the same data, source and destinations as the previous packet
+   * @throws IOException On read error
+   */
+  public synchronized boolean isDuplicateOfPrevious(int i) throws IOException {
+    ByteBuffer current = readIndex(i);
+    int length = current.getInt(32);
+    int hash = current.getInt(36);
+    int source = current.getInt(40);
+    int allDestsHash = current.getInt(48);
+    ByteBuffer previous = readIndex(i - 1);
+    if (previous.getInt(32) != length || previous.getInt(36) != hash
+            || previous.getInt(40) != source || previous.getInt(48) != allDestsHash) {
+      return false;
+    }
+    return Arrays.equals(read(i - 1).data, read(i).data);
+  }
+
+  /**
+   * @param i Packet index
+   * @return Packet
+   * @throws IOException On read error
+   */
+  public synchronized Packet read(int i) throws IOException {
+    ByteBuffer record = readIndex(i);
+    long startTime = record.getLong(0);
+    long endTime = record.getLong(8);
+    long pcapOffset = record.getLong(16);
+    long extraOffset = record.getLong(24);
+    int length = record.getInt(32);
+    int source = record.getInt(40);
+    int dests = record.getInt(44);
+    boolean converted = (record.getInt(52) & FLAG_CONVERTED) != 0;
+    int channel = record.getInt(56);
+
+    flushTo(pcapBuffer, pcap, pcapSize, pcapOffset + PCAP_RECORD_HEADER_SIZE + Math.min(length, PCAP_SNAPLEN));
+    flushTo(extraBuffer, extra, extraSize, extraOffset + 4 + 12 * dests + 4);
+
+    ByteBuffer buffer = ByteBuffer.allocate(PCAP_RECORD_HEADER_SIZE);
+    readFully(pcap, buffer, pcapOffset);
+    buffer = ByteBuffer.allocate(buffer.getInt(8));
+    readFully(pcap, buffer, pcapOffset + PCAP_RECORD_HEADER_SIZE);
+    byte[] data = buffer.array();
+
+    buffer = ByteBuffer.allocate(4 + 12 * dests + 4);
+    readFully(extra, buffer, extraOffset);
+    buffer.getInt();
+    int[] destIDs = new int[dests];
+    double[] destSignals = new double[dests];
+    for (int d = 0; d < dests; d++) {
+      destIDs[d] = buffer.getInt();
+      destSignals[d] = buffer.getDouble();
+    }
+    int convertedLength = buffer.getInt();
+    byte[] convertedData = null;
+    if (converted) {
+      flushTo(extraBuffer, extra, extraSize, extraOffset + 4 + 12 * dests + 4 + convertedLength);
+      buffer = ByteBuffer.allocate(convertedLength);
+      readFully(extra, buffer, extraOffset + 4 + 12 * dests + 4);
+      convertedData = buffer.array();
+    }
+    return new Packet(startTime, endTime, source, channel, destIDs, destSignals, data, converted, convertedData);
+  }
+
+  /**
+   * Removes all recorded packets.
+   *
+   * @throws IOException On file error
+   */
+  public synchronized void clear() throws IOException {
+    pcapBuffer.clear();
+    indexBuffer.clear();
+    extraBuffer.clear();
+    pcap.truncate(0);
+    index.truncate(0);
+    extra.truncate(0);
+    extraSize = 0;
+    count = 0;
+    writePcapHeader();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      pcap.close();
+      index.close();
+      extra.close();
+      if (temporary) {
+        pcapFile.delete();
+        indexFile.delete();
+        extraFile.delete();
+      }
+    }
+  }
+
+  /** Recorded packet. */
+  public static class Packet {
+    public final long startTime;
+    public final long endTime;
+    public final int sourceID;
+    /** Radio channel of source, or -1 if unknown */
+    public final int channel;
+    /** Non-interfered destinations */
+    public final int[] destinationIDs;
+    public final double[] destinationSignals;
+    /** Transmitted data, or the original data of a cross-level packet */
+    public final byte[] data;
+    public final boolean converted;
+    /** Cross-level data, or null */
+    public final byte[] convertedData;
+
+    Packet(long startTime, long endTime, int sourceID, int channel, int[] destinationIDs,
+           double[] destinationSignals, byte[] data, boolean converted, byte[] convertedData) {
+      this.startTime = startTime;
+      this.endTime = endTime;
+      this.sourceID = sourceID;
+      this.channel = channel;
+      this.destinationIDs = destinationIDs;
+      this.destinationSignals = destinationSignals;
+      this.data = data;
+      this.converted = converted;
+      this.convertedData = convertedData;
+    }
+  }
+}
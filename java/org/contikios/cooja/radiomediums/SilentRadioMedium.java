@@ -57,6 +57,12 @@ public class SilentRadioMedium extends AbstractRadioMedium {
   @Override
   public void updateSignalStrengths() {
   }
+
+  @Override
+  public long getLookahead() {
+    /* Radios never affect each other */
+    return Long.MAX_VALUE;
+  }
   
 
   @Override
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.script;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Files written by a test script through log.append() and log.writeFile().
+ * <p>
+ * Each file is opened once and kept open with a buffered writer until the
+ * pool is closed. A background thread flushes the buffers periodically, so
+ * the simulation does not wait for the disk on every line. All writes to a
+ * file go through the same writer, so lines are written in call order.
+ */
+public class FileSinkPool {
+  private static final Logger logger = LoggerFactory.getLogger(FileSinkPool.class);
+
+  private static final long FLUSH_INTERVAL = 500; /* ms */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final HashMap<Path, Sink> sinks = new HashMap<>();
+  private Thread flusher;
+
+  private static class Sink {
+    final FileChannel channel;
+    final Writer writer;
+    boolean dirty;
+
+    Sink(Path path) throws IOException {
+      channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.APPEND);
+      writer = new BufferedWriter(Channels.newWriter(channel, UTF_8), BUFFER_SIZE);
+    }
+  }
+
+  /**
+   * Append a message to a file.
+   *
+   * @param filename File name
+   * @param msg Message
+   * @throws IOException On error opening or writing the file
+   */
+  public void append(String filename, String msg) throws IOException {
+    var sink = getSink(filename);
+    synchronized (sink) {
+      sink.writer.write(msg);
+      sink.dirty = true;
+    }
+  }
+
+  /**
+   * Replace the contents of a file with a message.
+   *
+   * @param filename File name
+   * @param msg Message
+   * @throws IOException On error opening or writing the file
+   */
+  public void writeFile(String filename, String msg) throws IOException {
+    var sink = getSink(filename);
+    synchronized (sink) {
+      sink.writer.flush();
+      sink.channel.truncate(0);
+      sink.writer.write(msg);
+      sink.dirty = true;
+    }
+  }
+
+  private synchronized Sink getSink(String filename) throws IOException {
+    var path = Path.of(filename).toAbsolutePath().normalize();
+    var sink = sinks.get(path);
+    if (sink == null) {
+      sink = new Sink(path);
+      sinks.put(path, sink);
+      if (flusher == null) {
+        flusher = new Thread(this::runFlusher, "script file flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+      }
+    }
+    return sink;
+  }
+
+  /** Write all buffered messages to the files. */
+  public void flush() {
+    ArrayList<Sink> all;
+    synchronized (this) {
+      all = new ArrayList<>(sinks.values());
+    }
+    for (var sink : all) {
+      synchronized (sink) {
+        if (!sink.dirty || !sink.channel.isOpen()) {
+          continue;
+        }
+        try {
+          sink.writer.flush();
+        } catch (IOException e) {
+          logger.warn("Failed to write script file: " + e.getMessage());
+        }
+        sink.dirty = false;
+      }
+    }
+  }
+
+  /** Flush and close all files. The pool can be used again afterwards. */
+  public void close() {
+    Thread thread;
+    ArrayList<Sink> all;
+    synchronized (this) {
+      thread = flusher;
+      flusher = null;
+      all = new ArrayList<>(sinks.values());
+      sinks.clear();
+    }
+    if (thread != null) {
+      /* Not interrupt(), that would close a channel being flushed */
+      LockSupport.unpark(thread);
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    for (var sink : all) {
+      synchronized (sink) {
+        try {
+          sink.writer.close();
+        } catch (IOException e) {
+          logger.warn("Failed to close script file: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  private void runFlusher() {
+    var self = Thread.currentThread();
+    while (isFlusher(self)) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL));
+      flush();
+    }
+  }
+
+  private synchronized boolean isFlusher(Thread thread) {
+    return flusher == thread;
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.script;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Java side check of a WAIT_UNTIL condition, used to avoid waking the script
+ * for log output that cannot satisfy the condition.
+ * <p>
+ * Conditions are combinations with && and || of the following:
+ * <ul>
+ *   <li>msg.contains(s), msg.startsWith(s), msg.endsWith(s), msg.equals(s), msg == s</li>
+ *   <li>msg.matches(s), msg.match(/re/), /re/.test(msg)</li>
+ *   <li>id == n, mote.getID() == n</li>
+ *   <li>time &lt; n, time &lt;= n, time &gt; n, time &gt;= n</li>
+ * </ul>
+ * Other terms of a conjunction are ignored, from the first unknown term on,
+ * so the filter only rejects log output for which the script condition is
+ * false and would be evaluated without side effects.
+ */
+public class LogFilter {
+  private static final String STRING = "(\"(?:[^\"\\\\]|\\\\.)*\"|'(?:[^'\\\\]|\\\\.)*')";
+  private static final String REGEX = "/((?:[^/\\\\\\[]|\\\\.|\\[(?:[^\\]\\\\]|\\\\.)*\\])+)/([gim]*)";
+  private static final String NUMBER = "(\\d+)";
+  private static final String ID = "(?:id|mote\\.getID\\(\\))";
+
+  private static final Pattern MSG_METHOD = Pattern.compile(
+      "msg\\.(contains|startsWith|endsWith|equals|matches)\\(\\s*" + STRING + "\\s*\\)");
+  private static final Pattern MSG_EQUALS = Pattern.compile("msg\\s*===?\\s*" + STRING);
+  private static final Pattern MSG_EQUALS_REVERSE = Pattern.compile(STRING + "\\s*===?\\s*msg");
+  private static final Pattern MSG_MATCH = Pattern.compile("msg\\.match\\(\\s*" + REGEX + "\\s*\\)");
+  private static final Pattern REGEX_TEST = Pattern.compile(REGEX + "\\.test\\(\\s*msg\\s*\\)");
+  private static final Pattern ID_EQUALS = Pattern.compile(ID + "\\s*===?\\s*" + NUMBER);
+  private static final Pattern ID_EQUALS_REVERSE = Pattern.compile(NUMBER + "\\s*===?\\s*" + ID);
+  private static final Pattern TIME = Pattern.compile("time\\s*(<=|<|>=|>)\\s*" + NUMBER);
+  private static final Pattern TIME_REVERSE = Pattern.compile(NUMBER + "\\s*(<=|<|>=|>)\\s*time");
+
+  private interface Term {
+    boolean test(int id, long time, String msg);
+  }
+
+  private final Term term;
+  private final String condition;
+
+  private LogFilter(Term term, String condition) {
+    this.term = term;
+    this.condition = condition;
+  }
+
+  /**
+   * Analyze a WAIT_UNTIL condition.
+   *
+   * @param condition Script condition
+   * @return Filter, or null if nothing is known about the condition
+   */
+  public static LogFilter parse(String condition) {
+    var term = parseOr(condition);
+    return term == null ? null : new LogFilter(term, condition.strip());
+  }
+
+  /**
+   * @return False if the condition is false for this log output
+   */
+  public boolean matches(int id, long time, String msg) {
+    return term.test(id, time, msg);
+  }
+
+  @Override
+  public String toString() {
+    return condition;
+  }
+
+  private static Term parseOr(String s) {
+    var terms = new ArrayList<Term>();
+    for (var part : split(s, "||")) {
+      var term = parseAnd(part);
+      if (term == null) {
+        return null;
+      }
+      terms.add(term);
+    }
+    if (terms.size() == 1) {
+      return terms.get(0);
+    }
+    return (id, time, msg) -> {
+      for (var term : terms) {
+        if (term.test(id, time, msg)) {
+          return true;
+        }
+      }
+      return false;
+    };
+  }
+
+  private static Term parseAnd(String s) {
+    var terms = new ArrayList<Term>();
+    for (var part : split(s, "&&")) {
+      var term = parseTerm(part.strip());
+      if (term == null) {
+        /* The rest of the conjunction is evaluated by the script */
+        break;
+      }
+      terms.add(term);
+    }
+    if (terms.isEmpty()) {
+      return null;
+    }
+    if (terms.size() == 1) {
+      return terms.get(0);
+    }
+    return (id, time, msg) -> {
+      for (var term : terms) {
+        if (!term.test(id, time, msg)) {
+          return false;
+        }
+      }
+      return true;
+    };
+  }
+
+  private static Term parseTerm(String s) {
+    if (s.startsWith("(") && closing(s, 0) == s.length() - 1) {
+      return parseOr(s.substring(1, s.length() - 1));
+    }
+    Matcher m;
+    if ((m = MSG_METHOD.matcher(s)).matches()) {
+      String arg = unquote(m.group(2));
+      if (arg == null) {
+        return null;
+      }
+      return switch (m.group(1)) {
+        case "contains" -> (id, time, msg) -> msg.contains(arg);
+        case "startsWith" -> (id, time, msg) -> msg.startsWith(arg);
+        case "endsWith" -> (id, time, msg) -> msg.endsWith(arg);
+        case "equals" -> (id, time, msg) -> msg.equals(arg);
+        default -> regex(arg, "", true);
+      };
+    }
+    if ((m = MSG_EQUALS.matcher(s)).matches() || (m = MSG_EQUALS_REVERSE.matcher(s)).matches()) {
+      String arg = unquote(m.group(1));
+      return arg == null ? null : (id, time, msg) -> msg.equals(arg);
+    }
+    if ((m = MSG_MATCH.matcher(s)).matches() || (m = REGEX_TEST.matcher(s)).matches()) {
+      return regex(m.group(1), m.group(2), false);
+    }
+    if ((m = ID_EQUALS.matcher(s)).matches() || (m = ID_EQUALS_REVERSE.matcher(s)).matches()) {
+      long value = Long.parseLong(m.group(1));
+      return (id, time, msg) -> id == value;
+    }
+    if ((m = TIME.matcher(s)).matches()) {
+      return time(m.group(1), Long.parseLong(m.group(2)));
+    }
+    if ((m = TIME_REVERSE.matcher(s)).matches()) {
+      /* n < time is time > n */
+      String op = m.group(2).replace('<', '!').replace('>', '<').replace('!', '>');
+      return time(op, Long.parseLong(m.group(1)));
+    }
+    return null;
+  }
+
+  private static Term time(String op, long value) {
+    return switch (op) {
+      case "<" -> (id, time, msg) -> time < value;
+      case "<=" -> (id, time, msg) -> time <= value;
+      case ">" -> (id, time, msg) -> time > value;
+      default -> (id, time, msg) -> time >= value;
+    };
+  }
+
+  private static Term regex(String regex, String flags, boolean whole) {
+    if (flags.contains("m")) {
+      return null;
+    }
+    Pattern pattern;
+    try {
+      pattern = Pattern.compile(regex, flags.contains("i") ? Pattern.CASE_INSENSITIVE : 0);
+    } catch (PatternSyntaxException e) {
+      /* Leave it to the script */
+      return null;
+    }
+    if (whole) {
+      return (id, time, msg) -> pattern.matcher(msg).matches();
+    }
+    return (id, time, msg) -> pattern.matcher(msg).find();
+  }
+
+  private static String unquote(String literal) {
+    var sb = new StringBuilder();
+    for (int i = 1; i < literal.length() - 1; i++) {
+      char c = literal.charAt(i);
+      if (c == '\\') {
+        c = literal.charAt(++i);
+        switch (c) {
+          case 'n' -> c = '\n';
+          case 't' -> c = '\t';
+          case 'r' -> c = '\r';
+          case '\\', '"', '\'' -> {
+          }
+          default -> {
+            return null;
+          }
+        }
+      }
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+
+  /** Split at a top-level operator, outside parentheses and literals. */
+  private static List<String> split(String s, String operator) {
+    var parts = new ArrayList<String>();
+    int depth = 0;
+    int start = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\'' || c == '/' && isRegexStart(s, i)) {
+        i = skipLiteral(s, i);
+      } else if (c == '(' || c == '[' || c == '{') {
+        depth++;
+      } else if (c == ')' || c == ']' || c == '}') {
+        depth--;
+      } else if (depth == 0 && s.startsWith(operator, i)) {
+        parts.add(s.substring(start, i));
+        i += operator.length() - 1;
+        start = i + 1;
+      }
+    }
+    parts.add(s.substring(start));
+    return parts;
+  }
+
+  /** Returns the index of the parenthesis closing the one at start, or -1. */
+  private static int closing(String s, int start) {
+    int depth = 0;
+    for (int i = start; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\'' || c == '/' && isRegexStart(s, i)) {
+        i = skipLiteral(s, i);
+      } else if (c == '(' || c == '[' || c == '{') {
+        depth++;
+      } else if ((c == ')' || c == ']' || c == '}') && --depth == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Returns the index of the end quote of the literal starting at i. */
+  private static int skipLiteral(String s, int i) {
+    char quote = s.charAt(i);
+    for (i++; i < s.length() && s.charAt(i) != quote; i++) {
+      if (s.charAt(i) == '\\') {
+        i++;
+      }
+    }
+    return i;
+  }
+
+  private static boolean isRegexStart(String s, int i) {
+    int prev = i - 1;
+    while (prev >= 0 && Character.isWhitespace(s.charAt(prev))) {
+      prev--;
+    }
+    return prev < 0 || "(,=!&|?:".indexOf(s.charAt(prev)) >= 0;
+  }
+}
@@ -42,4 +42,5 @@ public interface ScriptLog {
     void generateMsg(Mote mote, long delay, String msg);
     void append(String filename, String msg);
     void writeFile(String filename, String msg);
+    void setWaitFilter(int index);
 }
@@ -30,6 +30,8 @@
 
 package org.contikios.cooja.script;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,6 +42,7 @@ import org.contikios.cooja.Simulation;
 public class ScriptParser {
   private long timeoutTime = -1;
   private String timeoutCode = "";
+  private final List<LogFilter> logFilters = new ArrayList<>();
 
   private final String code;
 
@@ -91,7 +94,16 @@ public class ScriptParser {
 
     Matcher matcher5 = Pattern.compile("WAIT_UNTIL\\(" + "(.*)" + "\\)").matcher(code);
     while (matcher5.find()) {
-      code = matcher5.replaceFirst("while (!(" + matcher5.group(1) + ")) { " + " YIELD(); " + "}");
+      // Let the simulation skip log output that cannot satisfy simple conditions.
+      String condition = matcher5.group(1);
+      LogFilter filter = LogFilter.parse(condition);
+      String select = "";
+      if (filter != null) {
+        select = "log.setWaitFilter(" + logFilters.size() + "); ";
+        logFilters.add(filter);
+      }
+      code = matcher5.replaceFirst(Matcher.quoteReplacement(
+          "while (!(" + condition + ")) { " + select + " YIELD(); " + "}"));
       matcher5.reset(code);
     }
     code = Pattern.compile("log\\.testOK\\(\\)").matcher(code).replaceAll("throw new TestOK()");
@@ -101,6 +113,65 @@ public class ScriptParser {
   }
 
   public String getJSCode() {
+    return getDefinitions() +
+     """
+     function YIELD() {
+       SEMAPHORE_SIM.release();
+       SEMAPHORE_SCRIPT.acquire(); // Wait for simulation here.
+       RESUMED();
+     };
+
+     function run() {
+       try {
+         YIELD();
+         // User script starting.
+     """ +
+     code +
+     """
+         // User script end.
+         while (true) { YIELD(); }
+       } catch (error) {
+         SEMAPHORE_SCRIPT.release();
+         if (error instanceof TestOK) return 0;
+         if (error instanceof TestFailed) return 1;
+         if (error instanceof Shutdown) return -1;
+         throw(error);
+       }
+     };
+     run();
+     """;
+  }
+
+  /**
+   * Returns the script as a state machine that is stepped on the simulation
+   * thread, one YIELD() at a time, by calling __resume(). __resume() returns
+   * null while the script is running, and 0, 1 or -1 when it has ended, like
+   * the script from {@link #getJSCode()}.
+   *
+   * @return Script code, or null if the script cannot be run as a state machine
+   */
+  public String getJSStateMachineCode() {
+    String stateMachine = ScriptStateMachine.translate(code);
+    if (stateMachine == null) {
+      return null;
+    }
+    return getDefinitions() + stateMachine +
+     """
+     function __resume() {
+       try {
+         __step();
+         return null;
+       } catch (error) {
+         if (error instanceof TestOK) return 0;
+         if (error instanceof TestFailed) return 1;
+         if (error instanceof Shutdown) return -1;
+         throw(error);
+       }
+     };
+     """;
+  }
+
+  private String getDefinitions() {
     // Nashorn can be created with --language=es6, but "class TestFailed extends Error .." is not supported.
     return
      """
@@ -136,9 +207,7 @@ public class ScriptParser {
        log.generateMsg(mote, time, msg);
      };
 
-     function YIELD() {
-       SEMAPHORE_SIM.release();
-       SEMAPHORE_SCRIPT.acquire(); // Wait for simulation here.
+     function RESUMED() {
        if (TIMEOUT) {
      """ + timeoutCode + ";\n" +
      """
@@ -154,24 +223,6 @@ public class ScriptParser {
        mote.getInterfaces().getLog().writeString(msg);
      };
      timeout_function = null;
-     function run() {
-       try {
-         YIELD();
-         // User script starting.
-     """ +
-     code +
-     """
-         // User script end.
-         while (true) { YIELD(); }
-       } catch (error) {
-         SEMAPHORE_SCRIPT.release();
-         if (error instanceof TestOK) return 0;
-         if (error instanceof TestFailed) return 1;
-         if (error instanceof Shutdown) return -1;
-         throw(error);
-       }
-     };
-     run();
      """;
   }
 
@@ -179,6 +230,13 @@ public class ScriptParser {
     return timeoutTime;
   }
 
+  /**
+   * @return Filters for WAIT_UNTIL conditions, selected by log.setWaitFilter(index)
+   */
+  public List<LogFilter> getLogFilters() {
+    return logFilters;
+  }
+
   public static class ScriptSyntaxErrorException extends ScriptException {
     public ScriptSyntaxErrorException(String msg) {
       super(msg);
@@ -0,0 +1,636 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.script;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Translates a preprocessed test script into a resumable state machine.
+ * <p>
+ * The script body becomes a function __step() that runs until the next
+ * YIELD() and returns. Each YIELD() is turned into a state, and the
+ * loops and branches around it into jumps between states, so the script
+ * can be stepped on the simulation thread without a script thread.
+ * Variables declared with var become globals so they survive between steps.
+ * <p>
+ * Only YIELD() statements at statement level inside blocks, if/else,
+ * while and for are supported. Scripts using YIELD() anywhere else, or
+ * break/continue/return around a YIELD(), are not translated.
+ * <p>
+ * Making variables global can change the meaning of scripts that declare
+ * the same name in several places, so translation is only used when the
+ * "script-inline" simulation option is "true".
+ */
+final class ScriptStateMachine {
+  private String src;
+  private final StringBuilder body = new StringBuilder();
+  private final StringBuilder functions = new StringBuilder();
+  private final LinkedHashSet<String> globals = new LinkedHashSet<>();
+  private int states;
+
+  private ScriptStateMachine() {
+  }
+
+  /**
+   * Translate script code.
+   *
+   * @param code Script code with WAIT_UNTIL expanded and comments removed
+   * @return Declarations and the __step() function, or null if the script cannot be translated
+   */
+  static String translate(String code) {
+    var translator = new ScriptStateMachine();
+    try {
+      return translator.run(code);
+    } catch (UntranslatableException e) {
+      return null;
+    }
+  }
+
+  private String run(String code) throws UntranslatableException {
+    src = code;
+    src = hoistDeclarations();
+    var statements = parseList(0, src.length());
+
+    /* The script starts with a YIELD(), the same as a script thread. */
+    body.append("case 0:\nRESUMED();\n");
+    for (var s : statements) {
+      emit(s);
+    }
+    /* Script done: keep yielding. */
+    int end = ++states;
+    body.append("__pc = ").append(end).append("; return;\n")
+        .append("case ").append(end).append(":\nRESUMED();\n")
+        .append("__pc = ").append(end).append("; return;\n");
+
+    var sb = new StringBuilder();
+    sb.append("var __pc = 0;\n");
+    for (var name : globals) {
+      sb.append("var ").append(name).append(";\n");
+    }
+    sb.append(functions);
+    sb.append("function __step() {\n__dispatch: while (true) {\nswitch (__pc) {\n");
+    sb.append(body);
+    sb.append("}\n}\n}\n");
+    return sb.toString();
+  }
+
+  /* Statements */
+
+  private enum Kind { SIMPLE, YIELD, BLOCK, IF, WHILE, FOR, FUNCTION, LOOP, OTHER }
+
+  private static class Statement {
+    final Kind kind;
+    final int start;
+    int end;
+    boolean yields;
+    String cond;
+    String init;
+    String update;
+    Statement first;
+    Statement second;
+    List<Statement> children;
+
+    Statement(Kind kind, int start) {
+      this.kind = kind;
+      this.start = start;
+    }
+  }
+
+  private List<Statement> parseList(int from, int to) throws UntranslatableException {
+    var list = new ArrayList<Statement>();
+    int i = skipSpace(from, to);
+    while (i < to) {
+      var s = parseStatement(i, to);
+      list.add(s);
+      i = skipSpace(s.end, to);
+    }
+    return list;
+  }
+
+  private Statement parseStatement(int i, int to) throws UntranslatableException {
+    i = skipSpace(i, to);
+    if (i >= to) {
+      throw new UntranslatableException();
+    }
+    if (src.charAt(i) == '{') {
+      var s = new Statement(Kind.BLOCK, i);
+      s.end = matchClose(i);
+      s.children = parseList(i + 1, s.end - 1);
+      for (var c : s.children) {
+        s.yields |= c.yields;
+      }
+      return s;
+    }
+    String word = wordAt(i);
+    int after = i + word.length();
+    switch (word) {
+      case "if" -> {
+        var s = new Statement(Kind.IF, i);
+        int close = parenthesis(after, to);
+        s.cond = src.substring(skipSpace(after, to) + 1, close - 1);
+        s.first = parseStatement(close, to);
+        s.end = s.first.end;
+        int k = skipSpace(s.end, to);
+        if (wordAt(k).equals("else")) {
+          s.second = parseStatement(k + 4, to);
+          s.end = s.second.end;
+        }
+        s.yields = s.first.yields || s.second != null && s.second.yields;
+        return s;
+      }
+      case "while" -> {
+        var s = new Statement(Kind.WHILE, i);
+        int close = parenthesis(after, to);
+        s.cond = src.substring(skipSpace(after, to) + 1, close - 1);
+        s.first = parseStatement(close, to);
+        s.end = s.first.end;
+        s.yields = s.first.yields;
+        return s;
+      }
+      case "for" -> {
+        int open = skipSpace(after, to);
+        int close = parenthesis(after, to);
+        var parts = splitHeader(open + 1, close - 1);
+        var s = new Statement(parts == null ? Kind.LOOP : Kind.FOR, i);
+        if (parts != null) {
+          s.init = parts[0];
+          s.cond = parts[1];
+          s.update = parts[2];
+        }
+        s.first = parseStatement(close, to);
+        s.end = s.first.end;
+        s.yields = s.first.yields;
+        return s;
+      }
+      case "do" -> {
+        var s = new Statement(Kind.LOOP, i);
+        s.first = parseStatement(after, to);
+        int k = skipSpace(s.first.end, to);
+        if (!wordAt(k).equals("while")) {
+          throw new UntranslatableException();
+        }
+        s.end = endOfStatement(parenthesis(k + 5, to), to);
+        s.yields = s.first.yields;
+        return s;
+      }
+      case "switch" -> {
+        var s = new Statement(Kind.LOOP, i);
+        s.end = block(parenthesis(after, to), to);
+        s.yields = containsWord(s.start, s.end, "YIELD", false);
+        return s;
+      }
+      case "try" -> {
+        var s = new Statement(Kind.OTHER, i);
+        int k = block(after, to);
+        while (true) {
+          int next = skipSpace(k, to);
+          String clause = wordAt(next);
+          if (clause.equals("catch")) {
+            k = block(parenthesis(next + 5, to), to);
+          } else if (clause.equals("finally")) {
+            k = block(next + 7, to);
+          } else {
+            break;
+          }
+        }
+        s.end = k;
+        s.yields = containsWord(s.start, s.end, "YIELD", false);
+        return s;
+      }
+      case "function" -> {
+        var s = new Statement(Kind.FUNCTION, i);
+        int open = src.indexOf('(', after);
+        if (open < 0 || open >= to) {
+          throw new UntranslatableException();
+        }
+        s.end = block(matchClose(open), to);
+        s.yields = containsWord(s.start, s.end, "YIELD", false);
+        return s;
+      }
+      case "else", "case", "default" -> throw new UntranslatableException();
+      default -> {
+        if (!word.isEmpty() && src.charAt(skipSpace(after, to)) == ':') {
+          /* Labeled statement */
+          throw new UntranslatableException();
+        }
+      }
+    }
+    var s = new Statement(Kind.SIMPLE, i);
+    s.end = endOfStatement(i, to);
+    String text = src.substring(s.start, s.end).replaceAll("[\\s;]", "");
+    if (text.equals("YIELD()")) {
+      var step = new Statement(Kind.YIELD, i);
+      step.end = s.end;
+      step.yields = true;
+      return step;
+    }
+    if (containsWord(s.start, s.end, "YIELD", false)) {
+      throw new UntranslatableException();
+    }
+    return s;
+  }
+
+  /* Code generation */
+
+  private void emit(Statement s) throws UntranslatableException {
+    if (s.kind == Kind.FUNCTION) {
+      if (s.yields) {
+        throw new UntranslatableException();
+      }
+      functions.append(src, s.start, s.end).append('\n');
+      return;
+    }
+    if (containsWord(s.start, s.end, "return", true)) {
+      throw new UntranslatableException();
+    }
+    if (!s.yields) {
+      String text = src.substring(s.start, s.end).strip();
+      if (!text.equals(";")) {
+        body.append(text).append(s.kind == Kind.SIMPLE && !text.endsWith(";") ? ";\n" : "\n");
+      }
+      return;
+    }
+    switch (s.kind) {
+      case YIELD -> {
+        int state = ++states;
+        body.append("__pc = ").append(state).append("; return;\n")
+            .append("case ").append(state).append(":\nRESUMED();\n");
+      }
+      case BLOCK -> {
+        for (var c : s.children) {
+          emit(c);
+        }
+      }
+      case IF -> {
+        int otherwise = ++states;
+        int end = s.second == null ? otherwise : ++states;
+        body.append("if (!(").append(s.cond).append(")) { __pc = ").append(otherwise)
+            .append("; continue __dispatch; }\n");
+        emit(s.first);
+        if (s.second != null) {
+          jump(end);
+          body.append("case ").append(otherwise).append(":\n");
+          emit(s.second);
+        }
+        body.append("case ").append(end).append(":\n");
+      }
+      case WHILE, FOR -> {
+        checkNoJumps(s.first);
+        if (s.init != null && !s.init.isBlank()) {
+          body.append(s.init).append(";\n");
+        }
+        int top = ++states;
+        int end = ++states;
+        body.append("case ").append(top).append(":\n");
+        if (s.cond != null && !s.cond.isBlank()) {
+          body.append("if (!(").append(s.cond).append(")) { __pc = ").append(end)
+              .append("; continue __dispatch; }\n");
+        }
+        emit(s.first);
+        if (s.update != null && !s.update.isBlank()) {
+          body.append(s.update).append(";\n");
+        }
+        jump(top);
+        body.append("case ").append(end).append(":\n");
+      }
+      default -> throw new UntranslatableException();
+    }
+  }
+
+  private void jump(int state) {
+    body.append("__pc = ").append(state).append("; continue __dispatch;\n");
+  }
+
+  /** Break and continue cannot leave a loop that has been split into states. */
+  private void checkNoJumps(Statement s) throws UntranslatableException {
+    switch (s.kind) {
+      case BLOCK -> {
+        for (var c : s.children) {
+          checkNoJumps(c);
+        }
+      }
+      case IF -> {
+        checkNoJumps(s.first);
+        if (s.second != null) {
+          checkNoJumps(s.second);
+        }
+      }
+      case SIMPLE, OTHER -> {
+        if (containsWord(s.start, s.end, "break", true) || containsWord(s.start, s.end, "continue", true)) {
+          throw new UntranslatableException();
+        }
+      }
+      default -> {
+        /* Loops and functions contain their own break and continue */
+      }
+    }
+  }
+
+  /* Variable declarations */
+
+  /** Remove var from declarations outside functions and collect the declared names. */
+  private String hoistDeclarations() throws UntranslatableException {
+    var sb = new StringBuilder();
+    int i = 0;
+    while (i < src.length()) {
+      String word = wordAt(i);
+      if (word.equals("function")) {
+        int open = src.indexOf('{', i);
+        if (open < 0) {
+          throw new UntranslatableException();
+        }
+        int end = matchClose(open);
+        sb.append(src, i, end);
+        i = end;
+      } else if (word.equals("var")) {
+        collectNames(i + 3);
+        i += 3;
+      } else if (!word.isEmpty()) {
+        sb.append(word);
+        i += word.length();
+      } else {
+        int next = skipToken(i);
+        sb.append(src, i, next);
+        i = next;
+      }
+    }
+    return sb.toString();
+  }
+
+  private void collectNames(int i) throws UntranslatableException {
+    int depth = 0;
+    boolean expectName = true;
+    while (i < src.length()) {
+      char c = src.charAt(i);
+      if (expectName && !Character.isWhitespace(c)) {
+        String name = wordAt(i);
+        if (name.isEmpty()) {
+          throw new UntranslatableException();
+        }
+        globals.add(name);
+        expectName = false;
+        i += name.length();
+        continue;
+      }
+      if (depth == 0) {
+        if (c == ';' || c == ')' || c == '}') {
+          return;
+        }
+        if (c == ',') {
+          expectName = true;
+        } else if (c == '\n' && endsLine(i)) {
+          return;
+        } else {
+          String word = wordAt(i);
+          if (word.equals("in") || word.equals("of")) {
+            return;
+          }
+        }
+      }
+      if (c == '(' || c == '[' || c == '{') {
+        depth++;
+      } else if (c == ')' || c == ']' || c == '}') {
+        depth--;
+      }
+      i = skipToken(i);
+    }
+  }
+
+  /* Scanning */
+
+  private int endOfStatement(int i, int to) throws UntranslatableException {
+    int depth = 0;
+    while (i < to) {
+      char c = src.charAt(i);
+      if (depth == 0) {
+        if (c == ';') {
+          return i + 1;
+        }
+        if (c == '}' || c == ')' || c == ']') {
+          return i;
+        }
+        if (c == '\n' && endsLine(i)) {
+          return i;
+        }
+      }
+      if (c == '(' || c == '[' || c == '{') {
+        depth++;
+      } else if (c == ')' || c == ']' || c == '}') {
+        depth--;
+      }
+      i = skipToken(i);
+    }
+    if (depth != 0) {
+      throw new UntranslatableException();
+    }
+    return to;
+  }
+
+  /** Whether automatic semicolon insertion ends a statement at the newline at i. */
+  private boolean endsLine(int i) {
+    int prev = i - 1;
+    while (prev >= 0 && Character.isWhitespace(src.charAt(prev))) {
+      prev--;
+    }
+    int next = i + 1;
+    while (next < src.length() && Character.isWhitespace(src.charAt(next))) {
+      next++;
+    }
+    if (prev < 0 || next >= src.length()) {
+      return true;
+    }
+    char p = src.charAt(prev);
+    boolean postfix = prev > 0 && (src.startsWith("++", prev - 1) || src.startsWith("--", prev - 1));
+    if ("=+-*/%&|^!<>?:,.([{".indexOf(p) >= 0 && !postfix) {
+      return false;
+    }
+    char n = src.charAt(next);
+    boolean prefix = src.startsWith("++", next) || src.startsWith("--", next);
+    return ".([+-*/%=&|^?:,<>)]".indexOf(n) < 0 || prefix;
+  }
+
+  /** Split a for header into init, condition and update, or null for for-in loops. */
+  private String[] splitHeader(int from, int to) throws UntranslatableException {
+    var parts = new ArrayList<String>();
+    int depth = 0;
+    int start = from;
+    int i = from;
+    while (i < to) {
+      char c = src.charAt(i);
+      if (c == '(' || c == '[' || c == '{') {
+        depth++;
+      } else if (c == ')' || c == ']' || c == '}') {
+        depth--;
+      } else if (c == ';' && depth == 0) {
+        parts.add(src.substring(start, i));
+        start = i + 1;
+      }
+      i = skipToken(i);
+    }
+    parts.add(src.substring(start, to));
+    return parts.size() == 3 ? parts.toArray(new String[0]) : null;
+  }
+
+  private int parenthesis(int i, int to) throws UntranslatableException {
+    i = skipSpace(i, to);
+    if (i >= to || src.charAt(i) != '(') {
+      throw new UntranslatableException();
+    }
+    return matchClose(i);
+  }
+
+  private int block(int i, int to) throws UntranslatableException {
+    i = skipSpace(i, to);
+    if (i >= to || src.charAt(i) != '{') {
+      throw new UntranslatableException();
+    }
+    return matchClose(i);
+  }
+
+  /** Returns the index after the bracket matching the one at i. */
+  private int matchClose(int i) throws UntranslatableException {
+    int depth = 0;
+    while (i < src.length()) {
+      char c = src.charAt(i);
+      if (c == '(' || c == '[' || c == '{') {
+        depth++;
+      } else if (c == ')' || c == ']' || c == '}') {
+        if (--depth == 0) {
+          return i + 1;
+        }
+      }
+      i = skipToken(i);
+    }
+    throw new UntranslatableException();
+  }
+
+  private boolean containsWord(int from, int to, String word, boolean skipFunctions)
+      throws UntranslatableException {
+    int i = from;
+    while (i < to) {
+      String w = wordAt(i);
+      if (w.equals(word)) {
+        return true;
+      }
+      if (skipFunctions && w.equals("function")) {
+        int open = src.indexOf('{', i);
+        if (open < 0) {
+          throw new UntranslatableException();
+        }
+        i = matchClose(open);
+      } else {
+        i = w.isEmpty() ? skipToken(i) : i + w.length();
+      }
+    }
+    return false;
+  }
+
+  private int skipSpace(int i, int to) {
+    while (i < to && Character.isWhitespace(src.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  /** Returns the identifier starting at i, or an empty string. */
+  private String wordAt(int i) {
+    if (i >= src.length() || !Character.isJavaIdentifierStart(src.charAt(i))
+        || i > 0 && Character.isJavaIdentifierPart(src.charAt(i - 1))) {
+      return "";
+    }
+    int end = i + 1;
+    while (end < src.length() && Character.isJavaIdentifierPart(src.charAt(end))) {
+      end++;
+    }
+    return src.substring(i, end);
+  }
+
+  /** Returns the index after the token at i, skipping whole string and regular expression literals. */
+  private int skipToken(int i) throws UntranslatableException {
+    char c = src.charAt(i);
+    if (c == '"' || c == '\'' || c == '`') {
+      return skipLiteral(i, c);
+    }
+    if (c == '/' && isRegexStart(i)) {
+      return skipLiteral(i, '/');
+    }
+    return i + 1;
+  }
+
+  private int skipLiteral(int i, char quote) throws UntranslatableException {
+    boolean inClass = false;
+    for (int j = i + 1; j < src.length(); j++) {
+      char c = src.charAt(j);
+      if (c == '\\') {
+        j++;
+      } else if (quote == '/' && c == '[') {
+        inClass = true;
+      } else if (quote == '/' && c == ']') {
+        inClass = false;
+      } else if (c == quote && !inClass) {
+        return j + 1;
+      } else if (c == '\n' && quote != '`') {
+        break;
+      }
+    }
+    throw new UntranslatableException();
+  }
+
+  private boolean isRegexStart(int i) {
+    int prev = i - 1;
+    while (prev >= 0 && Character.isWhitespace(src.charAt(prev))) {
+      prev--;
+    }
+    if (prev < 0) {
+      return true;
+    }
+    char p = src.charAt(prev);
+    if (Character.isJavaIdentifierPart(p)) {
+      int start = prev;
+      while (start > 0 && Character.isJavaIdentifierPart(src.charAt(start - 1))) {
+        start--;
+      }
+      String word = src.substring(start, prev + 1);
+      return word.equals("return") || word.equals("typeof") || word.equals("in");
+    }
+    return "(,=:[!&|?{};+-*%<>~^".indexOf(p) >= 0;
+  }
+
+  private static class UntranslatableException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    UntranslatableException() {
+      super(null, null, false, false);
+    }
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.serialsocket;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bounded byte buffer between a producer, usually the simulation thread,
+ * and a socket selector thread that drains it.
+ */
+class ByteRing {
+  /** What to do with data when the buffer is full. */
+  enum OverflowPolicy {
+    /** Wait for the consumer, stalling the producer. No data is lost. */
+    BLOCK,
+    /** Drop the new data. */
+    DROP_NEWEST,
+    /** Drop the oldest buffered data. */
+    DROP_OLDEST;
+
+    static OverflowPolicy parse(String name) {
+      return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+
+    @Override
+    public String toString() {
+      return name().toLowerCase().replace('_', '-');
+    }
+  }
+
+  static final int DEFAULT_SIZE = 64 * 1024;
+
+  private final byte[] buffer;
+  private final OverflowPolicy policy;
+  private int head;
+  private int count;
+  private boolean drainRequested;
+  private boolean closed;
+
+  private volatile long bytes;
+  private volatile long droppedBytes;
+  private volatile long overflows;
+  private volatile long stalls;
+
+  ByteRing(int size, OverflowPolicy policy) {
+    buffer = new byte[size];
+    this.policy = policy;
+  }
+
+  /**
+   * Append one byte.
+   *
+   * @return True if the consumer should be asked to drain the buffer
+   */
+  synchronized boolean put(byte data) {
+    if (!makeRoom(1, true)) {
+      return false;
+    }
+    buffer[(head + count) % buffer.length] = data;
+    count++;
+    bytes++;
+    return requestDrain();
+  }
+
+  /**
+   * Append data as a whole. With DROP_NEWEST either all of it or nothing
+   * is dropped. DROP_OLDEST drops as many old bytes as needed, and is not
+   * safe for framed data.
+   *
+   * @return True if the consumer should be asked to drain the buffer
+   */
+  synchronized boolean put(byte[] data) {
+    if (data.length > buffer.length) {
+      droppedBytes += data.length;
+      overflows++;
+      return false;
+    }
+    if (!makeRoom(data.length, false)) {
+      return false;
+    }
+    int tail = (head + count) % buffer.length;
+    int first = Math.min(data.length, buffer.length - tail);
+    System.arraycopy(data, 0, buffer, tail, first);
+    System.arraycopy(data, first, buffer, 0, data.length - first);
+    count += data.length;
+    bytes += data.length;
+    return requestDrain();
+  }
+
+  private boolean makeRoom(int size, boolean single) {
+    if (closed) {
+      return false;
+    }
+    if (buffer.length - count >= size) {
+      return true;
+    }
+    overflows++;
+    switch (policy) {
+      case DROP_NEWEST -> {
+        droppedBytes += size;
+        return false;
+      }
+      case DROP_OLDEST -> {
+        int drop = single ? 1 : size - (buffer.length - count);
+        head = (head + drop) % buffer.length;
+        count -= drop;
+        droppedBytes += drop;
+        return true;
+      }
+      default -> {
+        stalls++;
+        while (buffer.length - count < size && !closed) {
+          try {
+            wait(100);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+          }
+        }
+        return !closed;
+      }
+    }
+  }
+
+  private boolean requestDrain() {
+    if (drainRequested) {
+      return false;
+    }
+    drainRequested = true;
+    return true;
+  }
+
+  /**
+   * Move buffered data to a byte buffer. When the ring is empty, the drain
+   * request is cleared so the next put asks for a new one.
+   *
+   * @param dst Destination, in write mode
+   * @return False if there was no data
+   */
+  synchronized boolean drainTo(ByteBuffer dst) {
+    int n = Math.min(count, dst.remaining());
+    if (n == 0) {
+      if (count == 0) {
+        drainRequested = false;
+      }
+      return false;
+    }
+    int first = Math.min(n, buffer.length - head);
+    dst.put(buffer, head, first);
+    dst.put(buffer, 0, n - first);
+    head = (head + n) % buffer.length;
+    count -= n;
+    notifyAll();
+    return true;
+  }
+
+  /** Release blocked producers and drop further data. */
+  synchronized void close() {
+    closed = true;
+    notifyAll();
+  }
+
+  long getBytes() {
+    return bytes;
+  }
+
+  long getDroppedBytes() {
+    return droppedBytes;
+  }
+
+  long getOverflows() {
+    return overflows;
+  }
+
+  long getStalls() {
+    return stalls;
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.serialsocket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import org.contikios.cooja.Simulation;
+import org.contikios.cooja.interfaces.SerialPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Forwards data between a mote serial port and a non-blocking socket
+ * channel served by a {@link SocketSelector}.
+ * <p>
+ * Serial data from the mote is put in a ring buffer on the simulation
+ * thread, and written to the socket by the selector thread in as large
+ * writes as possible. Data from the socket is collected by the selector
+ * thread and written to the serial port in one batch per simulation thread
+ * invocation. When the incoming batch is full, the socket is not read until
+ * the simulation has consumed it.
+ */
+class SerialConnection implements SocketSelector.Handler {
+  private static final Logger logger = LoggerFactory.getLogger(SerialConnection.class);
+
+  private static final int READ_SIZE = 16 * 1024;
+
+  private final SerialPort serialPort;
+  private final Simulation simulation;
+  private final SocketChannel channel;
+  private final SocketSelector selector;
+  private final Runnable onClose;
+  private SelectionKey key;
+
+  /* Mote to socket */
+  private final ByteRing out;
+  private final ByteBuffer writeBuffer;
+
+  /* Socket to mote, guarded by in */
+  private final byte[] in;
+  private int inCount;
+  private boolean deliveryPending;
+  private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_SIZE);
+
+  private volatile boolean closed;
+  private volatile long bytesToMote;
+
+  /**
+   * @param serialPort Mote serial port
+   * @param simulation Simulation
+   * @param channel Connected socket channel
+   * @param selector Selector serving the channel
+   * @param bufferSize Size of the buffers in each direction
+   * @param policy Overflow policy for data from the mote
+   * @param onClose Called once when the connection is closed
+   */
+  SerialConnection(SerialPort serialPort, Simulation simulation, SocketChannel channel, SocketSelector selector,
+                   int bufferSize, ByteRing.OverflowPolicy policy, Runnable onClose) {
+    this.serialPort = serialPort;
+    this.simulation = simulation;
+    this.channel = channel;
+    this.selector = selector;
+    this.onClose = onClose;
+    out = new ByteRing(bufferSize, policy);
+    in = new byte[bufferSize];
+    writeBuffer = ByteBuffer.allocateDirect(Math.min(bufferSize, READ_SIZE));
+    writeBuffer.limit(0);
+  }
+
+  /** Start serving the connection. Must be called on the selector thread. */
+  void start() throws IOException {
+    channel.configureBlocking(false);
+    key = selector.register(channel, SelectionKey.OP_READ, this);
+  }
+
+  /**
+   * Queue serial data from the mote for the socket.
+   * Called on the simulation thread.
+   */
+  void moteData(byte data) {
+    if (out.put(data)) {
+      selector.execute(this::enableWrite);
+    }
+  }
+
+  private void enableWrite() {
+    if (key != null && key.isValid()) {
+      key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+    }
+  }
+
+  @Override
+  public void ready(SelectionKey key) {
+    try {
+      if (key.isReadable()) {
+        read();
+      }
+      if (key.isValid() && key.isWritable()) {
+        write();
+      }
+    } catch (IOException e) {
+      logger.info("Connection closed: " + e.getMessage());
+      close();
+    }
+  }
+
+  private void write() throws IOException {
+    while (true) {
+      if (!writeBuffer.hasRemaining()) {
+        /* Refill from the ring buffer */
+        writeBuffer.clear();
+        if (!out.drainTo(writeBuffer)) {
+          key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+          writeBuffer.limit(0);
+          return;
+        }
+        writeBuffer.flip();
+      }
+      channel.write(writeBuffer);
+      if (writeBuffer.hasRemaining()) {
+        /* Socket full, continue when writable */
+        return;
+      }
+    }
+  }
+
+  private void read() throws IOException {
+    readBuffer.clear();
+    synchronized (in) {
+      readBuffer.limit(Math.min(READ_SIZE, in.length - inCount));
+    }
+    int n = channel.read(readBuffer);
+    if (n < 0) {
+      logger.info("End of Stream");
+      close();
+      return;
+    }
+    readBuffer.flip();
+    boolean deliver;
+    synchronized (in) {
+      readBuffer.get(in, inCount, n);
+      inCount += n;
+      if (inCount == in.length) {
+        /* Wait for the simulation to consume the batch */
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+      }
+      deliver = !deliveryPending;
+      deliveryPending = true;
+    }
+    if (deliver) {
+      simulation.invokeSimulationThread(this::deliver);
+    }
+  }
+
+  /* Socket -> mote, on the simulation thread */
+  private void deliver() {
+    byte[] data;
+    boolean resume;
+    synchronized (in) {
+      data = Arrays.copyOf(in, inCount);
+      resume = inCount == in.length;
+      inCount = 0;
+      deliveryPending = false;
+    }
+    if (closed) {
+      return;
+    }
+    if (resume) {
+      selector.execute(() -> {
+        if (key.isValid()) {
+          key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+      });
+    }
+    serialPort.writeArray(data);
+    bytesToMote += data.length;
+  }
+
+  /** Close the connection. Can be called from any thread. */
+  void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    out.close();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      logger.error("Failed closing client socket:", e);
+    }
+    if (out.getDroppedBytes() > 0 || out.getStalls() > 0) {
+      logger.info("Serial connection closed: {} bytes dropped, {} overflows, {} stalls",
+          out.getDroppedBytes(), out.getOverflows(), out.getStalls());
+    }
+    onClose.run();
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  SocketChannel getChannel() {
+    return channel;
+  }
+
+  long getBytesToMote() {
+    return bytesToMote;
+  }
+
+  long getBytesFromMote() {
+    return out.getBytes();
+  }
+
+  long getDroppedBytes() {
+    return out.getDroppedBytes();
+  }
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.serialsocket;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.function.BiConsumer;
+import org.contikios.cooja.Mote;
+import org.contikios.cooja.Simulation;
+import org.contikios.cooja.TimeEvent;
+import org.contikios.cooja.interfaces.SerialPort;
+import org.contikios.cooja.util.EventTriggers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serial socket service shared by all motes in a simulation.
+ * <p>
+ * All serial socket connections of a simulation are served by a single
+ * selector thread, instead of threads per socket.
+ * <p>
+ * The gateway can also listen on a single port that carries the serial data
+ * of all motes. Data in both directions is sent in frames of a 4 byte mote
+ * ID, a 2 byte length and the data, with integers in network byte order.
+ * Serial data from the motes is collected for up to one millisecond of
+ * simulated time into one frame per mote, and sent to all connected clients.
+ * Frames from the clients are written to the serial port of the mote with
+ * the given ID. The port is set with the simulation option
+ * serial-gateway-port (simulation.csc,serial-gateway-port=PORT on the
+ * command line) or with the Serial Gateway plugin.
+ */
+public class SerialGateway {
+  private static final Logger logger = LoggerFactory.getLogger(SerialGateway.class);
+
+  private static final HashMap<Simulation, SerialGateway> gateways = new HashMap<>();
+
+  private static final int HEADER_SIZE = 6;
+  private static final int MAX_FRAME_DATA = 0xffff;
+  private static final int WRITE_SIZE = 16 * 1024;
+  private static final int MAX_PENDING_INPUT = 64 * 1024;
+
+  private final Simulation simulation;
+  private final SocketSelector selector;
+
+  /* Multiplexed port */
+  private ServerSocketChannel serverChannel;
+  private int port = -1;
+  private final ArrayList<MuxClient> clients = new ArrayList<>();
+
+  /* Mote output collected on the simulation thread */
+  private final LinkedHashMap<Mote, MoteOutput> moteOutput = new LinkedHashMap<>();
+  private boolean observingMotes;
+
+  private final BiConsumer<EventTriggers.AddRemove, Mote> moteTrigger = (op, mote) -> {
+    if (op == EventTriggers.AddRemove.ADD) {
+      observe(mote);
+    } else {
+      var output = moteOutput.remove(mote);
+      if (output != null) {
+        output.serialPort.getSerialDataTriggers().deleteTriggers(this);
+      }
+    }
+  };
+
+  /* Socket input waiting for the simulation thread, guarded by pendingInput */
+  private final LinkedHashMap<Integer, ByteBuffer> pendingInput = new LinkedHashMap<>();
+  private int pendingInputBytes;
+  private boolean deliveryPending;
+  private boolean readPaused;
+
+  private SerialGateway(Simulation simulation) throws IOException {
+    this.simulation = simulation;
+    selector = new SocketSelector("serial gateway");
+  }
+
+  /**
+   * Returns the gateway of a simulation, creating it if needed.
+   * The gateway is closed when the simulation is removed.
+   *
+   * @param simulation Simulation
+   * @return Gateway
+   */
+  public static SerialGateway get(Simulation simulation) {
+    synchronized (gateways) {
+      var gateway = gateways.get(simulation);
+      if (gateway == null) {
+        try {
+          gateway = new SerialGateway(simulation);
+        } catch (IOException e) {
+          throw new RuntimeException("Failed to create serial gateway", e);
+        }
+        gateways.put(simulation, gateway);
+        final var created = gateway;
+        simulation.getSimulationStateTriggers().addTrigger(created, (op, sim) -> {
+          if (op == EventTriggers.Operation.REMOVE) {
+            created.close();
+          }
+        });
+      }
+      return gateway;
+    }
+  }
+
+  SocketSelector getSelector() {
+    return selector;
+  }
+
+  /**
+   * Listen for multiplexed connections.
+   *
+   * @param port Port to listen on
+   * @return True on success
+   */
+  public synchronized boolean listen(int port) {
+    stopListening();
+    try {
+      serverChannel = ServerSocketChannel.open();
+      serverChannel.bind(new InetSocketAddress(port));
+      serverChannel.configureBlocking(false);
+    } catch (IOException e) {
+      logger.error("Serial gateway failed listening on port " + port + ": " + e.getMessage());
+      closeServerChannel();
+      return false;
+    }
+    this.port = port;
+    final var channel = serverChannel;
+    selector.execute(() -> {
+      try {
+        selector.register(channel, SelectionKey.OP_ACCEPT, key -> accept(channel));
+      } catch (IOException e) {
+        logger.error("Serial gateway failed listening on port " + port + ":", e);
+      }
+    });
+    simulation.invokeSimulationThread(this::observeMotes);
+    logger.info("Serial gateway listening on port " + port);
+    return true;
+  }
+
+  /** Stop listening and disconnect all multiplexed clients. */
+  public synchronized void stopListening() {
+    if (serverChannel == null) {
+      return;
+    }
+    closeServerChannel();
+    selector.execute(() -> {
+      for (var client : new ArrayList<>(clients)) {
+        client.close();
+      }
+    });
+    simulation.invokeSimulationThread(this::unobserveMotes);
+    logger.info("Serial gateway stopped listening on port " + port);
+    port = -1;
+  }
+
+  private void closeServerChannel() {
+    try {
+      if (serverChannel != null) {
+        serverChannel.close();
+      }
+    } catch (IOException e) {
+      logger.error("Failed closing server socket:", e);
+    }
+    serverChannel = null;
+  }
+
+  /**
+   * @return Port of the multiplexed listener, or -1 if not listening
+   */
+  public synchronized int getPort() {
+    return port;
+  }
+
+  /**
+   * @return Number of connected multiplexed clients
+   */
+  public int getClientCount() {
+    synchronized (clients) {
+      return clients.size();
+    }
+  }
+
+  private void close() {
+    synchronized (gateways) {
+      gateways.remove(simulation);
+    }
+    synchronized (this) {
+      closeServerChannel();
+      port = -1;
+    }
+    selector.close();
+  }
+
+  /* Mote output, on the simulation thread */
+
+  private static class MoteOutput {
+    final int id;
+    final SerialPort serialPort;
+    byte[] data = new byte[64];
+    int length;
+
+    MoteOutput(int id, SerialPort serialPort) {
+      this.id = id;
+      this.serialPort = serialPort;
+    }
+  }
+
+  private void observeMotes() {
+    if (observingMotes) {
+      return;
+    }
+    observingMotes = true;
+    simulation.getMoteTriggers().addTrigger(this, moteTrigger);
+    for (var mote : simulation.getMotes()) {
+      observe(mote);
+    }
+  }
+
+  private void unobserveMotes() {
+    if (!observingMotes) {
+      return;
+    }
+    observingMotes = false;
+    simulation.getMoteTriggers().deleteTriggers(this);
+    for (var output : moteOutput.values()) {
+      output.serialPort.getSerialDataTriggers().deleteTriggers(this);
+    }
+    moteOutput.clear();
+    flushEvent.remove();
+  }
+
+  private void observe(Mote mote) {
+    SerialPort serialPort = mote.getInterfaces().getSerial();
+    if (serialPort == null) {
+      return;
+    }
+    var output = new MoteOutput(mote.getID(), serialPort);
+    moteOutput.put(mote, output);
+    serialPort.getSerialDataTriggers().addTrigger(this, (event, data) -> {
+      if (output.length == output.data.length) {
+        if (output.length == MAX_FRAME_DATA) {
+          flushOutput();
+        } else {
+          output.data = Arrays.copyOf(output.data, Math.min(MAX_FRAME_DATA, output.length * 2));
+        }
+      }
+      output.data[output.length++] = data;
+      if (!flushEvent.isScheduled()) {
+        simulation.scheduleEvent(flushEvent, simulation.getSimulationTime() + Simulation.MILLISECOND);
+      }
+    });
+  }
+
+  private final TimeEvent flushEvent = new TimeEvent() {
+    @Override
+    public void execute(long t) {
+      flushOutput();
+    }
+  };
+
+  private void flushOutput() {
+    MuxClient[] targets;
+    synchronized (clients) {
+      targets = clients.toArray(new MuxClient[0]);
+    }
+    for (var output : moteOutput.values()) {
+      if (output.length == 0) {
+        continue;
+      }
+      if (targets.length > 0) {
+        var frame = ByteBuffer.allocate(HEADER_SIZE + output.length);
+        frame.putInt(output.id);
+        frame.putShort((short) output.length);
+        frame.put(output.data, 0, output.length);
+        for (var client : targets) {
+          client.send(frame.array());
+        }
+      }
+      output.length = 0;
+    }
+  }
+
+  /* Socket input */
+
+  private void accept(ServerSocketChannel channel) throws IOException {
+    SocketChannel socket = channel.accept();
+    if (socket == null) {
+      return;
+    }
+    socket.configureBlocking(false);
+    var client = new MuxClient(socket);
+    synchronized (pendingInput) {
+      client.key = selector.register(socket, readPaused ? 0 : SelectionKey.OP_READ, client);
+      synchronized (clients) {
+        clients.add(client);
+      }
+    }
+    logger.info("Serial gateway client connected: " + socket.getRemoteAddress());
+  }
+
+  /* Called on the selector thread */
+  private void received(int id, byte[] data, int offset, int length) {
+    boolean deliver;
+    synchronized (pendingInput) {
+      var buffer = pendingInput.get(id);
+      if (buffer == null || buffer.remaining() < length) {
+        var grown = ByteBuffer.allocate(Math.max(1024, (buffer == null ? 0 : buffer.position()) + length) * 2);
+        if (buffer != null) {
+          buffer.flip();
+          grown.put(buffer);
+        }
+        buffer = grown;
+        pendingInput.put(id, buffer);
+      }
+      buffer.put(data, offset, length);
+      pendingInputBytes += length;
+      if (pendingInputBytes >= MAX_PENDING_INPUT && !readPaused) {
+        /* Wait for the simulation to consume the input */
+        readPaused = true;
+        setReadInterest(false);
+      }
+      deliver = !deliveryPending;
+      deliveryPending = true;
+    }
+    if (deliver) {
+      simulation.invokeSimulationThread(this::deliver);
+    }
+  }
+
+  private void setReadInterest(boolean read) {
+    synchronized (clients) {
+      for (var client : clients) {
+        if (client.key.isValid()) {
+          int ops = client.key.interestOps();
+          client.key.interestOps(read ? ops | SelectionKey.OP_READ : ops & ~SelectionKey.OP_READ);
+        }
+      }
+    }
+  }
+
+  /* Socket -> motes, on the simulation thread */
+  private void deliver() {
+    var batch = new ArrayList<MoteInput>();
+    boolean resume;
+    synchronized (pendingInput) {
+      for (var entry : pendingInput.entrySet()) {
+        var buffer = entry.getValue();
+        batch.add(new MoteInput(entry.getKey(), Arrays.copyOf(buffer.array(), buffer.position())));
+      }
+      pendingInput.clear();
+      pendingInputBytes = 0;
+      deliveryPending = false;
+      resume = readPaused;
+      readPaused = false;
+    }
+    if (resume) {
+      selector.execute(() -> {
+        synchronized (pendingInput) {
+          if (!readPaused) {
+            setReadInterest(true);
+          }
+        }
+      });
+    }
+    for (var input : batch) {
+      var mote = simulation.getMoteWithID(input.id);
+      SerialPort serialPort = mote == null ? null : mote.getInterfaces().getSerial();
+      if (serialPort == null) {
+        logger.warn("Serial gateway: no serial port on mote " + input.id);
+        continue;
+      }
+      serialPort.writeArray(input.data);
+    }
+  }
+
+  private record MoteInput(int id, byte[] data) {}
+
+  /** Client of the multiplexed port. */
+  private class MuxClient implements SocketSelector.Handler {
+    private final SocketChannel channel;
+    private final ByteRing out = new ByteRing(ByteRing.DEFAULT_SIZE * 4, ByteRing.OverflowPolicy.DROP_NEWEST);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_SIZE);
+    /* Holds at least one frame of the largest size */
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(HEADER_SIZE + MAX_FRAME_DATA);
+    private SelectionKey key;
+    private boolean closed;
+
+    MuxClient(SocketChannel channel) {
+      this.channel = channel;
+      writeBuffer.limit(0);
+    }
+
+    /* Called on the simulation thread */
+    void send(byte[] frame) {
+      if (out.put(frame)) {
+        selector.execute(() -> {
+          if (key.isValid()) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+          }
+        });
+      }
+    }
+
+    @Override
+    public void ready(SelectionKey key) {
+      try {
+        if (key.isReadable()) {
+          read();
+        }
+        if (key.isValid() && key.isWritable()) {
+          write();
+        }
+      } catch (IOException e) {
+        logger.info("Serial gateway client closed: " + e.getMessage());
+        close();
+      }
+    }
+
+    private void read() throws IOException {
+      if (channel.read(readBuffer) < 0) {
+        close();
+        return;
+      }
+      readBuffer.flip();
+      while (readBuffer.remaining() >= HEADER_SIZE) {
+        int id = readBuffer.getInt(readBuffer.position());
+        int length = readBuffer.getShort(readBuffer.position() + 4) & 0xffff;
+        if (readBuffer.remaining() < HEADER_SIZE + length) {
+          break;
+        }
+        received(id, readBuffer.array(), readBuffer.position() + HEADER_SIZE, length);
+        readBuffer.position(readBuffer.position() + HEADER_SIZE + length);
+      }
+      readBuffer.compact();
+    }
+
+    private void write() throws IOException {
+      while (true) {
+        if (!writeBuffer.hasRemaining()) {
+          writeBuffer.clear();
+          if (!out.drainTo(writeBuffer)) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            writeBuffer.limit(0);
+            return;
+          }
+          writeBuffer.flip();
+        }
+        channel.write(writeBuffer);
+        if (writeBuffer.hasRemaining()) {
+          return;
+        }
+      }
+    }
+
+    void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      out.close();
+      synchronized (clients) {
+        clients.remove(this);
+      }
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.error("Failed closing client socket:", e);
+      }
+      if (out.getDroppedBytes() > 0) {
+        logger.info("Serial gateway client closed: {} bytes dropped", out.getDroppedBytes());
+      }
+    }
+  }
+}
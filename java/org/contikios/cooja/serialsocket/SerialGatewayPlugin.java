@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.serialsocket;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JFormattedTextField;
+import javax.swing.JInternalFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+import javax.swing.text.NumberFormatter;
+import org.contikios.cooja.ClassDescription;
+import org.contikios.cooja.Cooja;
+import org.contikios.cooja.Plugin;
+import org.contikios.cooja.PluginType;
+import org.contikios.cooja.Simulation;
+import org.contikios.cooja.VisPlugin;
+import org.jdom2.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Configures the multiplexed port of the simulation {@link SerialGateway},
+ * which carries the serial data of all motes over one socket.
+ */
+@ClassDescription("Serial Gateway")
+@PluginType(PluginType.PType.SIM_PLUGIN)
+public class SerialGatewayPlugin implements Plugin {
+  private static final Logger logger = LoggerFactory.getLogger(SerialGatewayPlugin.class);
+
+  private static final int DEFAULT_PORT = 60000;
+
+  private final SerialGateway gateway;
+  private final VisPlugin frame;
+  private JFormattedTextField portField;
+  private JButton startButton;
+  private JLabel statusLabel;
+  private boolean closed;
+
+  public SerialGatewayPlugin(Simulation simulation, Cooja gui) {
+    gateway = SerialGateway.get(simulation);
+    if (!Cooja.isVisualized()) {
+      frame = null;
+      return;
+    }
+    frame = new VisPlugin("Serial Gateway", gui, this);
+    frame.setLayout(new BorderLayout());
+
+    var panel = new JPanel();
+    panel.setBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2));
+    panel.add(new JLabel("Listen port: "));
+    NumberFormat nf = NumberFormat.getIntegerInstance();
+    nf.setGroupingUsed(false);
+    portField = new JFormattedTextField(new NumberFormatter(nf));
+    portField.setColumns(5);
+    portField.setText(String.valueOf(gateway.getPort() < 0 ? DEFAULT_PORT : gateway.getPort()));
+    panel.add(portField);
+    startButton = new JButton(gateway.getPort() < 0 ? "Start" : "Stop");
+    startButton.addActionListener(e -> {
+      if (gateway.getPort() < 0) {
+        try {
+          portField.commitEdit();
+        } catch (ParseException ex) {
+          logger.error("Listen port '{}' is not a number", portField.getText());
+          return;
+        }
+        gateway.listen(((Number) portField.getValue()).intValue());
+      } else {
+        gateway.stopListening();
+      }
+      updateStatus();
+    });
+    panel.add(startButton);
+    frame.add(BorderLayout.NORTH, panel);
+
+    statusLabel = new JLabel();
+    statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
+    frame.add(BorderLayout.SOUTH, statusLabel);
+    updateStatus();
+    updateTimer.start();
+    frame.pack();
+  }
+
+  private void updateStatus() {
+    int port = gateway.getPort();
+    portField.setEnabled(port < 0);
+    startButton.setText(port < 0 ? "Start" : "Stop");
+    if (port < 0) {
+      statusLabel.setForeground(Color.DARK_GRAY);
+      statusLabel.setText("Idle");
+    } else {
+      statusLabel.setForeground(new Color(0, 161, 83));
+      statusLabel.setText("Listening on port " + port + ", " + gateway.getClientCount() + " clients");
+    }
+  }
+
+  @Override
+  public JInternalFrame getCooja() {
+    return frame;
+  }
+
+  @Override
+  public void startPlugin() {
+  }
+
+  @Override
+  public void closePlugin() {
+    closed = true;
+  }
+
+  @Override
+  public Collection<Element> getConfigXML() {
+    List<Element> config = new ArrayList<>();
+    int port = gateway.getPort();
+    var element = new Element("port");
+    if (port < 0 && portField != null) {
+      element.setText(portField.getText());
+    } else {
+      element.setText(String.valueOf(port < 0 ? DEFAULT_PORT : port));
+    }
+    config.add(element);
+    element = new Element("bound");
+    element.setText(String.valueOf(port >= 0));
+    config.add(element);
+    return config;
+  }
+
+  @Override
+  public boolean setConfigXML(Collection<Element> configXML, boolean visAvailable) {
+    int port = DEFAULT_PORT;
+    boolean bound = false;
+    for (Element element : configXML) {
+      switch (element.getName()) {
+        case "port" -> port = Integer.parseInt(element.getText());
+        case "bound" -> bound = Boolean.parseBoolean(element.getText());
+        default -> logger.warn("Unknown config element: " + element.getName());
+      }
+    }
+    if (portField != null) {
+      portField.setText(String.valueOf(port));
+    }
+    if (bound && !gateway.listen(port)) {
+      return false;
+    }
+    if (frame != null) {
+      updateStatus();
+    }
+    return true;
+  }
+
+  private static final int UPDATE_INTERVAL = 500;
+  private final Timer updateTimer = new Timer(UPDATE_INTERVAL, new ActionListener() {
+    @Override
+    public void actionPerformed(ActionEvent e) {
+      if (closed) {
+        updateTimer.stop();
+        return;
+      }
+      updateStatus();
+    }
+  });
+}
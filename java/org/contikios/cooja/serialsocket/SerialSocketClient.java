@@ -38,14 +38,14 @@ import java.awt.EventQueue;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.GridLayout;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.io.IOException;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -58,6 +58,7 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JSeparator;
 import javax.swing.JTextField;
+import javax.swing.Timer;
 import javax.swing.border.EtchedBorder;
 import javax.swing.text.NumberFormatter;
 import org.jdom2.Element;
@@ -101,11 +102,9 @@ public class SerialSocketClient implements Plugin, MotePlugin {
   private JFormattedTextField serverPortField;
   private JButton serverSelectButton;
   
-  private int inBytes, outBytes;
-
-  private Socket socket;
-  private DataInputStream in;
-  private DataOutputStream out;
+  private volatile SerialConnection connection;
+  private String connectedHost;
+  private int connectedPort;
 
   private final Mote mote;
   private final Simulation simulation;
@@ -126,6 +125,7 @@ public class SerialSocketClient implements Plugin, MotePlugin {
       return;
     }
     frame = new VisPlugin("Serial Socket (CLIENT) (" + mote + ")", gui, this);
+    updateTimer.start();
     if (Cooja.isVisualized()) {
     frame.setResizable(false);
     frame.setLayout(new BorderLayout());
@@ -249,27 +249,6 @@ public class SerialSocketClient implements Plugin, MotePlugin {
         cleanup();
       }
     });
-
-
-    // Observe serial port for outgoing data and write to socket.
-    // FIXME: update code to use data directly.
-    serialPort.getSerialDataTriggers().addTrigger(this, (event, data) -> {
-      if (out == null) {
-        return;
-      }
-      try {
-        out.write(serialPort.getLastSerialData());
-        out.flush();
-        outBytes++;
-        if (Cooja.isVisualized()) {
-          moteToSocketLabel.setText(outBytes + " bytes");
-        }
-      } catch (IOException ex) {
-        logger.error(ex.getMessage());
-        socketStatusLabel.setText("failed");
-        socketStatusLabel.setForeground(ST_COLOR_FAILED);
-      }
-    });
     }
 
     if (Cooja.isVisualized()) {
@@ -351,87 +330,66 @@ public class SerialSocketClient implements Plugin, MotePlugin {
   
   
   public void startClient(String host, int port) {
-    if (socket == null) {
+    var client = connection;
+    if (client == null || client.isClosed()) {
       // connect to serer
+      SocketChannel channel = null;
       try {
         logger.info("Connecting: " + host + ":" + port);
-        socket = new Socket(host, port);
-        in = new DataInputStream(socket.getInputStream());
-        out = new DataOutputStream(socket.getOutputStream());
-        out.flush();
-        startSocketReadThread(in);
-        notifyClientConnected();
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
       } catch (IOException ex) {
         logger.error(ex.getMessage());
         notifyClientError(ex.getMessage());
+        return;
       }
+      var selector = SerialGateway.get(simulation).getSelector();
+      var newClient = new SerialConnection(serialPort, simulation, channel, selector, ByteRing.DEFAULT_SIZE,
+          ByteRing.OverflowPolicy.BLOCK, this::disconnected);
+      selector.execute(() -> {
+        try {
+          newClient.start();
+        } catch (IOException ex) {
+          logger.error("Failed setting up client connection:", ex);
+          newClient.close();
+        }
+      });
+      connection = newClient;
+      connectedHost = host;
+      connectedPort = port;
+      // Observe serial port for outgoing data and write to socket.
+      serialPort.getSerialDataTriggers().addTrigger(this, (event, data) -> newClient.moteData(data));
+      notifyClientConnected();
     } else {
       // disconnect from server
-      try {
-        logger.info("Closing connection to serer...");
-        socket.close();
-        notifyClientDisconnected();
-      } catch (IOException ex) {
-        logger.error("Failed to close client socket:", ex);
-        notifyClientError(ex.getMessage());
-      } finally {
-        socket = null;
-      }
+      logger.info("Closing connection to serer...");
+      client.close();
     }
-
   }
 
-  private void startSocketReadThread(final DataInputStream in) {
-    /* Forward data: virtual port -> mote */
-    Thread incomingDataThread = new Thread(() -> {
-      int numRead = 0;
-      byte[] data = new byte[16*1024];
-      logger.info("Start forwarding: socket -> serial port");
-      while (numRead >= 0) {
-        try {
-          numRead = in.read(data);
-        } catch (IOException e) {
-          logger.info(e.getMessage());
-          numRead = -1;
-          continue;
-        }
-
-        if (numRead >= 0) {
-          final int finalNumRead = numRead;
-            final byte[] finalData = Arrays.copyOf(data, finalNumRead);
-          /* We are not on the simulation thread */
-          simulation.invokeSimulationThread(() -> {
-                serialPort.writeArray(finalData);
-          });
-          inBytes += numRead;
-          if (Cooja.isVisualized()) {
-            socketToMoteLabel.setText(inBytes + " bytes");
-          }
-        }
-      }
-      logger.info("Incoming data thread shut down");
-      cleanup();
-      notifyClientDisconnected();
-    }, "SerialSocketClient");
-    incomingDataThread.start();
+  /* Called once for each connection, when it is closed */
+  private void disconnected() {
+    serialPort.getSerialDataTriggers().deleteTriggers(this);
+    notifyClientDisconnected();
   }
-  
+
   @Override
   public Collection<Element> getConfigXML() {
     List<Element> config = new ArrayList<>();
     Element element;
     
     // XXX isVisualized guards?
+    var client = connection;
+    boolean connected = client != null && !client.isClosed();
     element = new Element("host");
-    if (socket == null || !socket.isBound()) {
+    if (!connected) {
       element.setText(serverHostField.getText());
     } else {
-      element.setText(socket.getInetAddress().getHostName());
+      element.setText(connectedHost);
     }
     config.add(element);
 
     element = new Element("port");
-    if (socket == null || !socket.isBound()) {
+    if (!connected) {
       try {
         serverPortField.commitEdit();
         element.setText(String.valueOf(serverPortField.getValue()));
@@ -440,16 +398,12 @@ public class SerialSocketClient implements Plugin, MotePlugin {
         serverPortField.setText("null");
       }
     } else {
-      element.setText(String.valueOf(socket.getPort()));
+      element.setText(String.valueOf(connectedPort));
     }
     config.add(element);
 
     element = new Element("bound");
-    if (socket == null) {
-      element.setText(String.valueOf(false));
-    } else {
-      element.setText(String.valueOf(socket.isBound()));
-    }
+    element.setText(String.valueOf(connected));
     config.add(element);
 
     return config;
@@ -495,35 +449,15 @@ public class SerialSocketClient implements Plugin, MotePlugin {
 
 
   private void cleanup() {
-    serialPort.getSerialDataTriggers().deleteTriggers(this);
-    try {
-      if (socket != null) {
-        socket.close();
-        socket = null;
-      }
-    } catch (IOException e1) {
-      logger.warn(e1.getMessage());
-    }
-    try {
-      if (in != null) {
-        in.close();
-        in = null;
-      }
-    } catch (IOException e) {
-      logger.warn(e.getMessage());
-    }
-    try {
-      if (out != null) {
-        out.close();
-        out = null;
-      }
-    } catch (IOException e) {
-      logger.warn(e.getMessage());
+    var client = connection;
+    if (client != null) {
+      client.close();
     }
   }
 
   @Override
   public void closePlugin() {
+    closed = true;
     cleanup();
   }
 
@@ -531,5 +465,23 @@ public class SerialSocketClient implements Plugin, MotePlugin {
   public Mote getMote() {
     return mote;
   }
-}
 
+  private boolean closed;
+
+  private static final int UPDATE_INTERVAL = 150;
+  private final Timer updateTimer = new Timer(UPDATE_INTERVAL, new ActionListener() {
+    @Override
+    public void actionPerformed(ActionEvent e) {
+      if (closed) {
+        updateTimer.stop();
+        return;
+      }
+      var client = connection;
+      if (client == null) {
+        return;
+      }
+      socketToMoteLabel.setText(client.getBytesToMote() + " bytes");
+      moteToSocketLabel.setText(client.getBytesFromMote() + " bytes");
+    }
+  });
+}
@@ -39,15 +39,15 @@ import java.awt.GridBagLayout;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -105,10 +105,12 @@ public class SerialSocketServer implements Plugin, MotePlugin {
   private JFormattedTextField listenPortField;
   private JButton serverStartButton;
 
-  private int inBytes, outBytes;
-
-  private ServerSocket serverSocket;
-  private Socket clientSocket;
+  private SocketSelector selector;
+  private ServerSocketChannel serverChannel;
+  private int listenPort;
+  private volatile SerialConnection connection;
+  private int bufferSize = ByteRing.DEFAULT_SIZE;
+  private ByteRing.OverflowPolicy overflowPolicy = ByteRing.OverflowPolicy.BLOCK;
 
   private String commands;
 
@@ -277,9 +279,9 @@ public class SerialSocketServer implements Plugin, MotePlugin {
       public void onClientDisconnected() {
         SwingUtilities.invokeLater(() -> {
           // XXX check why needed
-          if (serverSocket != null) {
+          if (isListening()) {
             socketStatusLabel.setForeground(COLOR_NEUTRAL);
-            socketStatusLabel.setText("Listening on port " + serverSocket.getLocalPort());
+            socketStatusLabel.setText("Listening on port " + listenPort);
           }
         });
       }
@@ -357,83 +359,28 @@ public class SerialSocketServer implements Plugin, MotePlugin {
    */
   public boolean startServer(int port) {
     try {
-      serverSocket = new ServerSocket(port);
+      selector = SerialGateway.get(simulation).getSelector();
+      serverChannel = ServerSocketChannel.open();
+      serverChannel.bind(new InetSocketAddress(port));
+      serverChannel.configureBlocking(false);
+      listenPort = port;
+      final var channel = serverChannel;
+      final var sel = selector;
+      sel.execute(() -> {
+        try {
+          sel.register(channel, SelectionKey.OP_ACCEPT, key -> acceptClient(channel, sel));
+        } catch (IOException e) {
+          logger.error("Failed listening on port " + port + ":", e);
+        }
+      });
       logger.info("Listening on port: " + port);
       notifyServerStarted(port);
     } catch (IOException ex) {
       logger.error(ex.getMessage());
       notifyServerError(ex.getMessage());
+      closeServerChannel();
       return false;
     }
-    new Thread(() -> {
-      Thread incomingDataHandler = null;
-      while (!serverSocket.isClosed()) {
-        try {
-          // wait for next client
-          Socket candidateSocket = serverSocket.accept();
-
-          // reject connection if already one client connected
-          if (clientSocket != null && !clientSocket.isClosed()) {
-            logger.info("Refused connection of client " + candidateSocket.getInetAddress());
-            candidateSocket.close();
-            continue;
-          }
-
-          clientSocket = candidateSocket;
-
-          /* Start handler for data input from socket */
-          incomingDataHandler = new Thread(new IncomingDataHandler(), "incomingDataHandler");
-          incomingDataHandler.start();
-
-          /* Observe serial port for outgoing data */
-          DataOutputStream outStream;
-          try {
-            outStream = new DataOutputStream(clientSocket.getOutputStream());
-          } catch (IOException ex) {
-            logger.error("Failed opening client socket output stream:", ex);
-            // FIXME: this should fail, not continue and produce invisible updates.
-            outStream = null;
-          }
-          final var out = outStream;
-          // FIXME: update code to use data directly.
-          serialPort.getSerialDataTriggers().addTrigger(this, serialDataObserver = (event, data) -> {
-            if (out == null) {
-              return;
-            }
-            try {
-              out.write(serialPort.getLastSerialData());
-              out.flush();
-              outBytes++;
-            } catch (IOException ex) {
-              logger.error("Failed writing:", ex);
-              cleanupClient();
-            }
-          });
-
-          inBytes = outBytes = 0;
-
-          logger.info("Client connected: " + clientSocket.getInetAddress());
-          notifyClientConnected(clientSocket);
-        } catch (IOException e) {
-          logger.info("Listening thread shut down: " + e.getMessage());
-          try {
-            serverSocket.close();
-          } catch (IOException ex) {
-            logger.error("Failed closing server socket:", ex);
-          }
-        }
-      }
-      cleanupClient();
-      if (incomingDataHandler != null) {
-        // Wait for reader thread to terminate
-        try {
-          incomingDataHandler.join(500);
-        } catch (InterruptedException ex) {
-          logger.warn("Interrupted join", ex);
-        }
-      }
-      notifyServerStopped();
-    }, "SerialSocketServer").start();
 
     if (commands != null && !simulation.getCfg().updateSim()) {
       // Run commands in a separate thread since Cooja cannot start the simulation before this method returns.
@@ -459,53 +406,63 @@ public class SerialSocketServer implements Plugin, MotePlugin {
     return true;
   }
 
-  /**
-   * Stops server by closing server listen socket.
-   */
-  public void stopServer() {
+  /* Called on the selector thread */
+  private void acceptClient(ServerSocketChannel channel, SocketSelector sel) throws IOException {
+    SocketChannel candidate = channel.accept();
+    if (candidate == null) {
+      return;
+    }
+
+    // reject connection if already one client connected
+    if (connection != null && !connection.isClosed()) {
+      logger.info("Refused connection of client " + candidate.getRemoteAddress());
+      candidate.close();
+      return;
+    }
+
+    var client = new SerialConnection(serialPort, simulation, candidate, sel, bufferSize, overflowPolicy,
+        this::cleanupClient);
     try {
-      serverSocket.close();
+      client.start();
     } catch (IOException ex) {
-      logger.error("Failed closing server socket:", ex);
+      logger.error("Failed setting up client connection:", ex);
+      candidate.close();
+      return;
     }
-  }
+    connection = client;
 
-  /* Forward data: virtual port -> mote */
-  private class IncomingDataHandler implements Runnable {
+    /* Observe serial port for outgoing data */
+    serialPort.getSerialDataTriggers().addTrigger(this, serialDataObserver = (event, data) -> client.moteData(data));
 
-    DataInputStream in;
-
-    @Override
-    public void run() {
-      int numRead = 0;
-      byte[] data = new byte[16*1024];
-      try {
-        in = new DataInputStream(clientSocket.getInputStream());
-      } catch (IOException ex) {
-        logger.error("Failed opening input stream from client socket:", ex);
-        return;
-      }
+    logger.info("Client connected: " + candidate.getRemoteAddress());
+    notifyClientConnected(candidate.socket());
+  }
 
-      logger.info("Forwarder: socket -> serial port");
-      while (numRead >= 0) {
-        final int finalNumRead = numRead;
-        final byte[] finalData = Arrays.copyOf(data, finalNumRead);
-        /* We are not on the simulation thread */
-        simulation.invokeSimulationThread(() -> {
-            serialPort.writeArray(finalData);
-          inBytes += finalNumRead;
-        });
+  /**
+   * Stops server by closing server listen socket.
+   */
+  public void stopServer() {
+    if (selector == null) {
+      return;
+    }
+    var client = connection;
+    if (client != null) {
+      client.close();
+    }
+    closeServerChannel();
+    notifyServerStopped();
+  }
 
-        try {
-          numRead = in.read(data);
-        } catch (IOException e) {
-          logger.info(e.getMessage());
-          numRead = -1;
-        }
+  private void closeServerChannel() {
+    try {
+      if (serverChannel != null) {
+        serverChannel.close();
       }
-      logger.info("End of Stream");
-      cleanupClient();
+    } catch (IOException ex) {
+      logger.error("Failed closing server socket:", ex);
     }
+    serverChannel = null;
+    selector = null;
   }
 
   @Override
@@ -515,7 +472,7 @@ public class SerialSocketServer implements Plugin, MotePlugin {
     // XXX isVisualized guards?
 
     var element = new Element("port");
-    if (serverSocket == null || !serverSocket.isBound()) {
+    if (!isListening()) {
       try {
         listenPortField.commitEdit();
         element.setText(String.valueOf(listenPortField.getValue()));
@@ -524,18 +481,26 @@ public class SerialSocketServer implements Plugin, MotePlugin {
         listenPortField.setText("null");
       }
     } else {
-      element.setText(String.valueOf(serverSocket.getLocalPort()));
+      element.setText(String.valueOf(listenPort));
     }
     config.add(element);
 
     element = new Element("bound");
-    if (serverSocket == null) {
-      element.setText(String.valueOf(false));
-    } else {
-      element.setText(String.valueOf(!serverSocket.isClosed()));
-    }
+    element.setText(String.valueOf(isListening()));
     config.add(element);
 
+    if (bufferSize != ByteRing.DEFAULT_SIZE) {
+      element = new Element("buffer-size");
+      element.setText(String.valueOf(bufferSize));
+      config.add(element);
+    }
+
+    if (overflowPolicy != ByteRing.OverflowPolicy.BLOCK) {
+      element = new Element("overflow");
+      element.setText(overflowPolicy.toString());
+      config.add(element);
+    }
+
     if (commands != null) {
       element = new Element("commands");
       element.setText(commands);
@@ -555,6 +520,8 @@ public class SerialSocketServer implements Plugin, MotePlugin {
         case "port" -> port = Integer.parseInt(element.getText());
         case "bound" -> bound = Boolean.parseBoolean(element.getText());
         case "commands" -> commands = element.getText();
+        case "buffer-size" -> bufferSize = Integer.parseInt(element.getText());
+        case "overflow" -> overflowPolicy = ByteRing.OverflowPolicy.parse(element.getText());
         default -> logger.warn("Unknown config element: " + element.getName());
       }
     }
@@ -577,15 +544,13 @@ public class SerialSocketServer implements Plugin, MotePlugin {
     return true;
   }
 
+  private boolean isListening() {
+    var channel = serverChannel;
+    return channel != null && channel.isOpen();
+  }
+
+  /* Called once for each client connection, when it is closed */
   private void cleanupClient() {
-    try {
-      if (clientSocket != null) {
-        clientSocket.close();
-        clientSocket = null;
-      }
-    } catch (IOException e1) {
-      logger.error(e1.getMessage());
-    }
     serialPort.getSerialDataTriggers().removeTrigger(this, serialDataObserver);
     notifyClientDisconnected();
   }
@@ -604,14 +569,7 @@ public class SerialSocketServer implements Plugin, MotePlugin {
   @Override
   public void closePlugin() {
     closed = true;
-    cleanupClient();
-    try {
-      if (serverSocket != null) {
-        serverSocket.close();
-      }
-    } catch (IOException ex) {
-      logger.error("Failed closing server socket:", ex);
-    }
+    stopServer();
   }
 
   @Override
@@ -627,8 +585,14 @@ public class SerialSocketServer implements Plugin, MotePlugin {
         updateTimer.stop();
         return;
       }
-      socketToMoteLabel.setText(inBytes + " bytes");
-      moteToSocketLabel.setText(outBytes + " bytes");
+      var client = connection;
+      if (client == null) {
+        return;
+      }
+      socketToMoteLabel.setText(client.getBytesToMote() + " bytes");
+      long dropped = client.getDroppedBytes();
+      moteToSocketLabel.setText(client.getBytesFromMote() + " bytes"
+          + (dropped > 0 ? " (" + dropped + " dropped)" : ""));
     }
   });
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.serialsocket;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread that serves non-blocking socket channels with a selector.
+ * Channels are registered with a handler that is called on the selector
+ * thread when the channel is ready. Other threads hand work to the
+ * selector thread with {@link #execute(Runnable)}.
+ */
+class SocketSelector {
+  private static final Logger logger = LoggerFactory.getLogger(SocketSelector.class);
+
+  interface Handler {
+    void ready(SelectionKey key) throws IOException;
+  }
+
+  private final Selector selector;
+  private final Thread thread;
+  private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private volatile boolean closed;
+
+  SocketSelector(String name) throws IOException {
+    selector = Selector.open();
+    thread = new Thread(this::run, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Register a channel. Must be called on the selector thread.
+   *
+   * @param channel Non-blocking channel
+   * @param ops Interest set
+   * @param handler Handler called when the channel is ready
+   * @return Selection key
+   * @throws ClosedChannelException If the channel is closed
+   */
+  SelectionKey register(SelectableChannel channel, int ops, Handler handler) throws ClosedChannelException {
+    return channel.register(selector, ops, handler);
+  }
+
+  /** Run a task on the selector thread. */
+  void execute(Runnable task) {
+    tasks.add(task);
+    selector.wakeup();
+  }
+
+  boolean isSelectorThread() {
+    return Thread.currentThread() == thread;
+  }
+
+  /** Stop the selector thread and close all registered channels. */
+  void close() {
+    closed = true;
+    selector.wakeup();
+    if (!isSelectorThread()) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void run() {
+    while (!closed) {
+      try {
+        selector.select();
+      } catch (IOException e) {
+        logger.error("Selector failed:", e);
+        break;
+      }
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+        task.run();
+      }
+      var selected = selector.selectedKeys();
+      for (var key : selected) {
+        if (!key.isValid()) {
+          continue;
+        }
+        try {
+          ((Handler) key.attachment()).ready(key);
+        } catch (IOException e) {
+          logger.info("Closing connection: " + e.getMessage());
+          key.cancel();
+          try {
+            key.channel().close();
+          } catch (IOException ex) {
+            logger.error("Failed closing channel:", ex);
+          }
+        }
+      }
+      selected.clear();
+    }
+    /* Run remaining tasks, they may be closing channels */
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+    for (var key : selector.keys()) {
+      try {
+        key.channel().close();
+      } catch (IOException e) {
+        logger.error("Failed closing channel:", e);
+      }
+    }
+    try {
+      selector.close();
+    } catch (IOException e) {
+      logger.error("Failed closing selector:", e);
+    }
+  }
+}
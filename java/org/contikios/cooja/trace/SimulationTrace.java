@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.trace;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.contikios.cooja.Mote;
+import org.contikios.cooja.RadioConnection;
+import org.contikios.cooja.SimEventCentral.LogOutputListener;
+import org.contikios.cooja.Simulation;
+import org.contikios.cooja.interfaces.LED;
+import org.contikios.cooja.interfaces.Radio;
+import org.contikios.cooja.util.EventTriggers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records log output, radio traffic, LED changes and radio power states of
+ * a simulation to a binary trace file.
+ * Enabled with the simulation option trace=FILE, where FILE is relative
+ * to the log directory.
+ *
+ * @see TraceWriter
+ * @see TraceReader
+ */
+public class SimulationTrace {
+  private static final Logger logger = LoggerFactory.getLogger(SimulationTrace.class);
+
+  private final Simulation simulation;
+  private final TraceWriter writer;
+  private final LogOutputListener logOutputListener;
+  private final Thread shutdownHook;
+
+  private SimulationTrace(Simulation simulation, Path file) throws IOException {
+    this.simulation = simulation;
+    writer = new TraceWriter(file);
+    logOutputListener = ev -> writer.log(ev.getTime(), ev.getMote().getID(), ev.msg);
+    /* Headless Cooja may exit before the simulation thread has removed the simulation. */
+    shutdownHook = new Thread(this::closeWriter, "trace shutdown");
+  }
+
+  /**
+   * Starts tracing a simulation. The trace is closed when the simulation is removed.
+   *
+   * @param simulation Simulation
+   * @param file Trace file
+   * @return Trace
+   * @throws IOException If the trace file could not be created
+   */
+  public static SimulationTrace start(Simulation simulation, Path file) throws IOException {
+    var trace = new SimulationTrace(simulation, file);
+    trace.start();
+    logger.info("Writing simulation trace to " + file);
+    return trace;
+  }
+
+  private void start() {
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+    simulation.getEventCentral().addLogOutputListener(logOutputListener);
+    var radioMedium = simulation.getRadioMedium();
+    if (radioMedium != null) {
+      radioMedium.getRadioTransmissionTriggers().addTrigger(this, (event, obj) -> {
+        if (event != Radio.RadioEvent.TRANSMISSION_FINISHED) {
+          return;
+        }
+        var conn = radioMedium.getLastConnection();
+        if (conn != null) {
+          radioTransmission(conn);
+        }
+      });
+    }
+    simulation.getMoteTriggers().addTrigger(this, (op, mote) -> {
+      if (op == EventTriggers.AddRemove.ADD) {
+        addMote(mote);
+      } else {
+        removeMote(mote);
+      }
+    });
+    for (var mote : simulation.getMotes()) {
+      addMote(mote);
+    }
+    simulation.getSimulationStateTriggers().addTrigger(this, (op, sim) -> {
+      if (op == EventTriggers.Operation.STOP) {
+        try {
+          writer.flush();
+        } catch (IOException e) {
+          logger.error("Failed to flush simulation trace: " + e.getMessage());
+        }
+      } else if (op == EventTriggers.Operation.REMOVE) {
+        stop();
+      }
+    });
+  }
+
+  /** Stops tracing and closes the trace file. */
+  public void stop() {
+    simulation.getSimulationStateTriggers().deleteTriggers(this);
+    simulation.getMoteTriggers().deleteTriggers(this);
+    simulation.getEventCentral().removeLogOutputListener(logOutputListener);
+    var radioMedium = simulation.getRadioMedium();
+    if (radioMedium != null) {
+      radioMedium.getRadioTransmissionTriggers().deleteTriggers(this);
+    }
+    for (var mote : simulation.getMotes()) {
+      removeMote(mote);
+    }
+    closeWriter();
+    try {
+      Runtime.getRuntime().removeShutdownHook(shutdownHook);
+    } catch (IllegalStateException e) {
+      // Already shutting down.
+    }
+  }
+
+  private void closeWriter() {
+    try {
+      writer.close();
+    } catch (IOException e) {
+      logger.error("Failed to write simulation trace: " + e.getMessage());
+    }
+  }
+
+  private void radioTransmission(RadioConnection conn) {
+    var source = conn.getSource();
+    var packet = source.getLastPacketTransmitted();
+    var sourceId = source.getMote().getID();
+    if (packet != null) {
+      writer.radioTransmission(conn.getStartTime(), sourceId, source.getChannel(), packet.getPacketData());
+    }
+    var now = simulation.getSimulationTime();
+    for (var radio : conn.getDestinations()) {
+      writer.radioReception(now, radio.getMote().getID(), sourceId);
+    }
+    for (var radio : conn.getInterfered()) {
+      writer.radioInterference(now, radio.getMote().getID(), sourceId);
+    }
+  }
+
+  private void addMote(Mote mote) {
+    var id = mote.getID();
+    var led = mote.getInterfaces().getLED();
+    if (led != null) {
+      writer.led(simulation.getSimulationTime(), id, ledMask(led));
+      led.getTriggers().addTrigger(this, (event, m) -> writer.led(simulation.getSimulationTime(), id, ledMask(led)));
+    }
+    var radio = mote.getInterfaces().getRadio();
+    if (radio != null) {
+      var last = new int[] { radioState(radio) };
+      writer.radioState(simulation.getSimulationTime(), id, last[0]);
+      radio.getRadioEventTriggers().addTrigger(this, (event, r) -> {
+        var state = radioState(radio);
+        if (state != last[0]) {
+          last[0] = state;
+          writer.radioState(simulation.getSimulationTime(), id, state);
+        }
+      });
+    }
+  }
+
+  private void removeMote(Mote mote) {
+    var led = mote.getInterfaces().getLED();
+    if (led != null) {
+      led.getTriggers().deleteTriggers(this);
+    }
+    var radio = mote.getInterfaces().getRadio();
+    if (radio != null) {
+      radio.getRadioEventTriggers().deleteTriggers(this);
+    }
+  }
+
+  private static int ledMask(LED led) {
+    return (led.isRedOn() ? 1 : 0) | (led.isGreenOn() ? 2 : 0) | (led.isYellowOn() ? 4 : 0);
+  }
+
+  private static int radioState(Radio radio) {
+    if (!radio.isRadioOn()) {
+      return TraceWriter.STATE_OFF;
+    } else if (radio.isTransmitting()) {
+      return TraceWriter.STATE_TX;
+    } else if (radio.isInterfered()) {
+      return TraceWriter.STATE_INTERFERED;
+    } else if (radio.isReceiving()) {
+      return TraceWriter.STATE_RX;
+    }
+    return TraceWriter.STATE_LISTEN;
+  }
+}
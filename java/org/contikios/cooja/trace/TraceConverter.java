@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.trace;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.github.cliftonlabs.json_simple.Jsoner;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.concurrent.Callable;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Converts binary simulation traces to CSV or JSON lines. Run with:
+ * <pre>
+ * java -cp cooja.jar org.contikios.cooja.trace.TraceConverter [--format=json] [-o FILE] TRACE
+ * </pre>
+ */
+@Command(name = "cooja-trace", description = "Convert a binary Cooja trace to CSV or JSON lines",
+        sortOptions = false, mixinStandardHelpOptions = true)
+public class TraceConverter implements Callable<Integer> {
+  enum Format { CSV, JSON }
+
+  private static final String[] TYPES = { "unknown", "log", "radio-tx", "radio-rx", "radio-interfered", "led", "radio-state" };
+  private static final String[] STATES = { "off", "listen", "tx", "rx", "interfered" };
+
+  @Option(names = "--format", paramLabel = "FORMAT", description = "output format: ${COMPLETION-CANDIDATES}",
+          defaultValue = "CSV", converter = FormatConverter.class)
+  Format format;
+
+  @Option(names = { "-o", "--output" }, paramLabel = "FILE", description = "output file (default standard output)")
+  Path output;
+
+  @Parameters(paramLabel = "TRACE", description = "the trace file")
+  Path trace;
+
+  static class FormatConverter implements CommandLine.ITypeConverter<Format> {
+    @Override
+    public Format convert(String value) {
+      return Format.valueOf(value.toUpperCase());
+    }
+  }
+
+  public static void main(String[] args) {
+    System.exit(new CommandLine(new TraceConverter()).execute(args));
+  }
+
+  @Override
+  public Integer call() {
+    try (var reader = new TraceReader(trace);
+         var out = output == null
+                 ? new BufferedWriter(new OutputStreamWriter(System.out, UTF_8), 1 << 16)
+                 : Files.newBufferedWriter(output, UTF_8)) {
+      if (format == Format.CSV) {
+        out.write("time,mote,type,value,data\n");
+      }
+      while (reader.next()) {
+        if (format == Format.CSV) {
+          writeCsv(reader, out);
+        } else {
+          writeJson(reader, out);
+        }
+      }
+    } catch (IOException e) {
+      System.err.println(trace + ": " + e.getMessage());
+      return 1;
+    }
+    return 0;
+  }
+
+  private static String typeName(byte type) {
+    return type > 0 && type < TYPES.length ? TYPES[type] : TYPES[0];
+  }
+
+  /** @return The value column, or null if the record has none */
+  private static String value(TraceReader reader) {
+    return switch (reader.getType()) {
+      case TraceWriter.LOG -> null;
+      case TraceWriter.RADIO_STATE -> reader.getValue() < STATES.length ? STATES[reader.getValue()] : null;
+      default -> String.valueOf(reader.getValue());
+    };
+  }
+
+  /** @return The data column, or null if the record has none */
+  private static String data(TraceReader reader) {
+    return switch (reader.getType()) {
+      case TraceWriter.LOG -> reader.getMessage();
+      case TraceWriter.RADIO_TX -> HexFormat.of().formatHex(reader.getPacket());
+      default -> null;
+    };
+  }
+
+  private static void writeCsv(TraceReader reader, Writer out) throws IOException {
+    out.write(Long.toString(reader.getTime()));
+    out.write(',');
+    out.write(Integer.toString(reader.getMoteID()));
+    out.write(',');
+    out.write(typeName(reader.getType()));
+    out.write(',');
+    var value = value(reader);
+    if (value != null) {
+      out.write(value);
+    }
+    out.write(',');
+    var data = data(reader);
+    if (data != null) {
+      out.write('"');
+      out.write(data.replace("\"", "\"\""));
+      out.write('"');
+    }
+    out.write('\n');
+  }
+
+  private static void writeJson(TraceReader reader, Writer out) throws IOException {
+    out.write("{\"time\":");
+    out.write(Long.toString(reader.getTime()));
+    out.write(",\"mote\":");
+    out.write(Integer.toString(reader.getMoteID()));
+    out.write(",\"type\":\"");
+    out.write(typeName(reader.getType()));
+    out.write('"');
+    var value = value(reader);
+    if (value != null) {
+      out.write(",\"value\":");
+      if (reader.getType() == TraceWriter.RADIO_STATE) {
+        out.write('"');
+        out.write(value);
+        out.write('"');
+      } else {
+        out.write(value);
+      }
+    }
+    var data = data(reader);
+    if (data != null) {
+      out.write(",\"data\":\"");
+      out.write(Jsoner.escape(data));
+      out.write('"');
+    }
+    out.write("}\n");
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.trace;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a binary trace written by {@link TraceWriter}, one record at a time.
+ */
+public class TraceReader implements AutoCloseable {
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  private final FileChannel in;
+  private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+  private long time;
+  private int mote;
+  private byte type;
+  private int value;
+  private byte[] data;
+
+  /**
+   * @param file Trace file
+   * @throws IOException If the file could not be read or is not a trace
+   */
+  public TraceReader(Path file) throws IOException {
+    in = FileChannel.open(file, StandardOpenOption.READ);
+    buffer.limit(0);
+    var magic = new byte[TraceWriter.MAGIC.length];
+    try {
+      if (fill(magic.length + 4)) {
+        buffer.get(magic);
+      }
+    } catch (EOFException e) {
+      // Reported below.
+    }
+    if (!Arrays.equals(magic, TraceWriter.MAGIC)) {
+      in.close();
+      throw new IOException("Not a Cooja trace");
+    }
+    var version = buffer.getInt();
+    if (version != TraceWriter.VERSION) {
+      in.close();
+      throw new IOException("Unsupported trace version " + version);
+    }
+  }
+
+  /**
+   * Reads the next record.
+   *
+   * @return False at the end of the trace
+   * @throws IOException On read error or truncated record
+   */
+  public boolean next() throws IOException {
+    if (!fill(4)) {
+      return false;
+    }
+    int length = buffer.getInt();
+    if (length < TraceWriter.HEADER_SIZE - 4) {
+      throw new IOException("Corrupt trace record");
+    }
+    if (!fill(length)) {
+      throw new EOFException("Truncated trace record");
+    }
+    time = buffer.getLong();
+    mote = buffer.getInt();
+    type = buffer.get();
+    int payload = length - (TraceWriter.HEADER_SIZE - 4);
+    value = 0;
+    data = null;
+    switch (type) {
+      case TraceWriter.LOG -> {
+        data = new byte[payload];
+        buffer.get(data);
+      }
+      case TraceWriter.RADIO_TX -> {
+        value = buffer.getShort();
+        data = new byte[payload - 2];
+        buffer.get(data);
+      }
+      case TraceWriter.RADIO_RX, TraceWriter.RADIO_INTERFERED -> {
+        value = buffer.getInt();
+        buffer.position(buffer.position() + payload - 4);
+      }
+      case TraceWriter.LED, TraceWriter.RADIO_STATE -> {
+        value = buffer.get() & 0xff;
+        buffer.position(buffer.position() + payload - 1);
+      }
+      default -> {
+        /* Unknown record type, keep the raw payload */
+        data = new byte[payload];
+        buffer.get(data);
+      }
+    }
+    return true;
+  }
+
+  /** @return Simulation time (us) */
+  public long getTime() {
+    return time;
+  }
+
+  public int getMoteID() {
+    return mote;
+  }
+
+  /** @return Record type, one of the TraceWriter type constants */
+  public byte getType() {
+    return type;
+  }
+
+  /**
+   * @return Radio channel for RADIO_TX, sending mote for RADIO_RX and
+   * RADIO_INTERFERED, LED mask for LED, and power state for RADIO_STATE
+   */
+  public int getValue() {
+    return value;
+  }
+
+  /** @return Log line of a LOG record */
+  public String getMessage() {
+    return type == TraceWriter.LOG ? new String(data, UTF_8) : null;
+  }
+
+  /** @return Packet data of a RADIO_TX record */
+  public byte[] getPacket() {
+    return type == TraceWriter.RADIO_TX ? data : null;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * Buffers at least the given number of bytes.
+   *
+   * @return False if the file ended before anything was buffered
+   */
+  private boolean fill(int bytes) throws IOException {
+    if (buffer.remaining() >= bytes) {
+      return true;
+    }
+    if (bytes > buffer.capacity()) {
+      buffer = ByteBuffer.allocate(bytes).put(buffer).flip();
+    }
+    buffer.compact();
+    try {
+      while (buffer.position() < bytes) {
+        if (in.read(buffer) < 0) {
+          if (buffer.position() == 0) {
+            return false;
+          }
+          throw new EOFException("Truncated trace record");
+        }
+      }
+    } finally {
+      buffer.flip();
+    }
+    return true;
+  }
+}
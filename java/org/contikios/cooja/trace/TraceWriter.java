@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.trace;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a binary simulation trace.
+ * <p>
+ * The file starts with the magic bytes "COOJATRC" and a 32-bit format
+ * version. Each record that follows is a 32-bit length, counting the bytes
+ * after the length field, a 64-bit simulation time in microseconds, a 32-bit
+ * mote ID, an 8-bit record type, and a type-specific payload:
+ * <ul>
+ * <li>{@link #LOG}: the log line, UTF-8 encoded</li>
+ * <li>{@link #RADIO_TX}: 16-bit channel (-1 if unknown), packet data</li>
+ * <li>{@link #RADIO_RX}, {@link #RADIO_INTERFERED}: 32-bit ID of the sending mote</li>
+ * <li>{@link #LED}: 8-bit mask, red 1, green 2, yellow 4</li>
+ * <li>{@link #RADIO_STATE}: 8-bit radio power state, one of the STATE constants</li>
+ * </ul>
+ * All values are big-endian.
+ * <p>
+ * Records are added by a single thread, normally the simulation thread, and
+ * handed to a background writer thread through a bounded lock-free queue.
+ * Encoding and file I/O happen on the writer thread.
+ */
+public class TraceWriter implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(TraceWriter.class);
+
+  static final byte[] MAGIC = "COOJATRC".getBytes(UTF_8);
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 4 + 8 + 4 + 1; /* Length, time, mote, type */
+
+  public static final byte LOG = 1;
+  public static final byte RADIO_TX = 2;
+  public static final byte RADIO_RX = 3;
+  public static final byte RADIO_INTERFERED = 4;
+  public static final byte LED = 5;
+  public static final byte RADIO_STATE = 6;
+
+  public static final int STATE_OFF = 0;
+  public static final int STATE_LISTEN = 1;
+  public static final int STATE_TX = 2;
+  public static final int STATE_RX = 3;
+  public static final int STATE_INTERFERED = 4;
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+  private static final int QUEUE_SIZE = 1 << 14;
+
+  private final FileChannel out;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+  /* Single-producer, single-consumer ring of records */
+  private final int mask = QUEUE_SIZE - 1;
+  private final long[] times = new long[QUEUE_SIZE];
+  private final int[] motes = new int[QUEUE_SIZE];
+  private final byte[] types = new byte[QUEUE_SIZE];
+  private final int[] values = new int[QUEUE_SIZE];
+  private final Object[] refs = new Object[QUEUE_SIZE];
+  private volatile long head; /* Next record to write, owned by the writer */
+  private volatile long tail; /* Next free slot, owned by the producer */
+
+  private final Thread writer;
+  private volatile boolean closing;
+  private volatile IOException writeError;
+  private boolean closed;
+
+  /**
+   * @param file Trace file, truncated if it exists
+   * @throws IOException If the file could not be created
+   */
+  public TraceWriter(Path file) throws IOException {
+    out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    buffer.put(MAGIC);
+    buffer.putInt(VERSION);
+    writeBuffer();
+    writer = new Thread(this::runWriter, "trace writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  public void log(long time, int mote, String msg) {
+    add(time, mote, LOG, 0, msg);
+  }
+
+  public void radioTransmission(long time, int mote, int channel, byte[] packet) {
+    add(time, mote, RADIO_TX, channel, packet);
+  }
+
+  public void radioReception(long time, int mote, int source) {
+    add(time, mote, RADIO_RX, source, null);
+  }
+
+  public void radioInterference(long time, int mote, int source) {
+    add(time, mote, RADIO_INTERFERED, source, null);
+  }
+
+  public void led(long time, int mote, int mask) {
+    add(time, mote, LED, mask, null);
+  }
+
+  public void radioState(long time, int mote, int state) {
+    add(time, mote, RADIO_STATE, state, null);
+  }
+
+  /** @return Number of records added */
+  public long getRecordCount() {
+    return tail;
+  }
+
+  private void add(long time, int mote, byte type, int value, Object ref) {
+    if (closing) {
+      return;
+    }
+    long t = tail;
+    /* Back-pressure: wait for the writer if the queue is full */
+    while (t - head == QUEUE_SIZE) {
+      if (!writer.isAlive()) {
+        return;
+      }
+      LockSupport.unpark(writer);
+      Thread.onSpinWait();
+    }
+    int slot = (int) t & mask;
+    times[slot] = time;
+    motes[slot] = mote;
+    types[slot] = type;
+    values[slot] = value;
+    refs[slot] = ref;
+    tail = t + 1;
+    if (t - head > QUEUE_SIZE / 2) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  /**
+   * Waits until all added records are written to the file.
+   *
+   * @throws IOException On write error
+   */
+  public void flush() throws IOException {
+    long target = tail;
+    while (head < target && writer.isAlive()) {
+      LockSupport.unpark(writer);
+      LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+    }
+    if (writeError != null) {
+      throw writeError;
+    }
+  }
+
+  /** Writes all added records and closes the file. */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      flush();
+    } finally {
+      closing = true;
+      LockSupport.unpark(writer);
+      try {
+        writer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      out.close();
+    }
+  }
+
+  private void runWriter() {
+    while (true) {
+      long h = head;
+      long t = tail;
+      try {
+        for (; h < t; h++) {
+          int slot = (int) h & mask;
+          writeRecord(times[slot], motes[slot], types[slot], values[slot], refs[slot]);
+          refs[slot] = null;
+        }
+        /* Queue drained: write the batch */
+        if (buffer.position() > 0) {
+          writeBuffer();
+        }
+      } catch (IOException e) {
+        if (writeError == null) {
+          logger.error("Failed to write trace: " + e.getMessage());
+        }
+        writeError = e;
+        buffer.clear();
+        h = t;
+      }
+      head = h;
+      if (h == tail) {
+        if (closing) {
+          return;
+        }
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+      }
+    }
+  }
+
+  private void writeRecord(long time, int mote, byte type, int value, Object ref) throws IOException {
+    byte[] data = null;
+    int payload;
+    switch (type) {
+      case LOG -> {
+        data = ((String) ref).getBytes(UTF_8);
+        payload = data.length;
+      }
+      case RADIO_TX -> {
+        data = (byte[]) ref;
+        payload = 2 + data.length;
+      }
+      case RADIO_RX, RADIO_INTERFERED -> payload = 4;
+      default -> payload = 1;
+    }
+    int length = HEADER_SIZE - 4 + payload;
+    if (buffer.remaining() < 4 + length) {
+      writeBuffer();
+      if (buffer.remaining() < 4 + length) {
+        /* Larger than the buffer, write it directly */
+        var large = ByteBuffer.allocate(4 + length);
+        putRecord(large, length, time, mote, type, value, data);
+        large.flip();
+        while (large.hasRemaining()) {
+          out.write(large);
+        }
+        return;
+      }
+    }
+    putRecord(buffer, length, time, mote, type, value, data);
+  }
+
+  private static void putRecord(ByteBuffer b, int length, long time, int mote, byte type, int value, byte[] data) {
+    b.putInt(length);
+    b.putLong(time);
+    b.putInt(mote);
+    b.put(type);
+    switch (type) {
+      case LOG -> b.put(data);
+      case RADIO_TX -> {
+        b.putShort((short) value);
+        b.put(data);
+      }
+      case RADIO_RX, RADIO_INTERFERED -> b.putInt(value);
+      default -> b.put((byte) value);
+    }
+  }
+
+  private void writeBuffer() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+    buffer.clear();
+  }
+}
@@ -33,6 +33,7 @@ package org.contikios.cooja.util;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.function.BiConsumer;
+import org.contikios.cooja.ParallelExecutor;
 
 /**
  * Helper class that holds triggers. Triggers are called with a key for the kind
@@ -96,6 +97,11 @@ public class EventTriggers<K, T> {
    * Invoke all triggers with the key and value as parameters.
    */
   public void trigger(K key, T value) {
+    if (!hasChanged && listeners.length == 0) {
+      return;
+    }
+    // Observers are shared between motes, see them in simulation order.
+    ParallelExecutor.awaitTurn();
     if (hasChanged) {
       hasChanged = false;
       var observers = new ArrayList<BiConsumer<K,T>>();
@@ -31,9 +31,11 @@ package org.contikios.mrm;
 import java.awt.Color;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Point;
+import java.util.Arrays;
 import java.util.Set;
-
+import javax.swing.JPanel;
 
 import org.contikios.cooja.ClassDescription;
 import org.contikios.cooja.Mote;
@@ -42,6 +44,7 @@ import org.contikios.cooja.SupportedArguments;
 import org.contikios.cooja.interfaces.Position;
 import org.contikios.cooja.interfaces.Radio;
 import org.contikios.cooja.plugins.Visualizer;
+import org.contikios.cooja.plugins.VisualizerLayer;
 import org.contikios.cooja.plugins.VisualizerSkin;
 import org.contikios.mrm.ChannelModel.RadioPair;
 import org.contikios.mrm.ChannelModel.TxPair;
@@ -56,6 +59,12 @@ public class MRMVisualizerSkin implements VisualizerSkin {
 
   private Simulation simulation;
   private Visualizer visualizer;
+  private MRM radioMedium;
+
+  /* Cached edges, and the mote positions they were painted from */
+  private final VisualizerLayer edgeLayer = new VisualizerLayer();
+  private int[] edgeKey;
+  private volatile boolean settingsChanged;
 
   @Override
   public void setActive(Simulation simulation, Visualizer vis) {
@@ -65,13 +74,21 @@ public class MRMVisualizerSkin implements VisualizerSkin {
     }
     this.simulation = simulation;
     this.visualizer = vis;
+    this.radioMedium = (MRM) simulation.getRadioMedium();
+    radioMedium.getChannelModel().getSettingsTriggers().addTrigger(this, (event, param) -> {
+      settingsChanged = true;
+      visualizer.repaintFrame();
+    });
   }
 
   @Override
   public void setInactive() {
     if (simulation == null) {
       /* Skin was never activated */
+      return;
     }
+    radioMedium.getChannelModel().getSettingsTriggers().deleteTriggers(this);
+    edgeLayer.flush();
   }
 
   @Override
@@ -89,6 +106,40 @@ public class MRMVisualizerSkin implements VisualizerSkin {
       return;
     }
 
+    /* Edges depend on the selected motes, their output power and all mote positions */
+    Mote[] motes = simulation.getMotes();
+    int[] key = new int[2 * selectedMotes.size() + 2 * motes.length];
+    int n = 0;
+    for (Mote selectedMote : selectedMotes) {
+      Radio radio = selectedMote.getInterfaces().getRadio();
+      key[n++] = selectedMote.getID();
+      key[n++] = radio == null ? -1 : radio.getCurrentOutputPowerIndicator();
+    }
+    for (Mote mote : motes) {
+      Point pixel = visualizer.transformPositionToPixel(mote.getInterfaces().getPosition());
+      key[n++] = pixel.x;
+      key[n++] = pixel.y;
+    }
+
+    /* Channel model lookups are expensive, only redraw the edges when they change */
+    JPanel canvas = visualizer.getCurrentCanvas();
+    boolean changed = settingsChanged;
+    settingsChanged = false;
+    if (edgeLayer.validate(canvas) || changed || !Arrays.equals(key, edgeKey)) {
+      Graphics2D lg = edgeLayer.createGraphics(null);
+      if (lg == null) {
+        paintEdges(g, selectedMotes);
+      } else {
+        lg.setFont(g.getFont());
+        paintEdges(lg, selectedMotes);
+        lg.dispose();
+      }
+      edgeKey = key;
+    }
+    edgeLayer.draw(g, canvas);
+  }
+
+  private void paintEdges(Graphics g, Set<Mote> selectedMotes) {
     for (final Mote selectedMote : selectedMotes) {
       if (selectedMote.getInterfaces().getRadio() == null) {
         continue;
@@ -103,8 +154,6 @@ public class MRMVisualizerSkin implements VisualizerSkin {
       FontMetrics fm = g.getFontMetrics();
       g.setColor(Color.BLACK);
 
-      MRM radioMedium = (MRM) simulation.getRadioMedium();
-
       /* Print transmission success probabilities */
       Mote[] dests = simulation.getMotes();
       if (dests.length == 0) {
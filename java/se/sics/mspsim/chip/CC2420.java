@@ -407,9 +407,13 @@ public class CC2420 extends Radio802154 implements USARTListener {
   private boolean ackFramePending;
   private final CCITT_CRC rxCrc = new CCITT_CRC();
   private final CCITT_CRC txCrc = new CCITT_CRC();
+  private final CCITT_CRC frameCrc = new CCITT_CRC();
 
   private final ArrayFIFO rxFIFO;
 
+  /* Values of rxread where a received byte can reject the frame or end address decoding */
+  private static final int[] FRAME_EVENT_RXREAD = {0, 2, 2 + 5, 8 + 5};
+
   public void setStateListener(StateListener listener) {
     stateListener = listener;
   }
@@ -724,6 +728,93 @@ public class CC2420 extends Radio802154 implements USARTListener {
       }
   }
 
+  /* Find the next byte of a received frame that firmware can observe */
+  @Override
+  protected int getNextFrameEventIndex(byte[] frame, int pos) {
+    switch (stateMachine) {
+    case VREG_OFF:
+    case POWER_DOWN:
+    case IDLE:
+    case RX_OVERFLOW:
+      /* Bytes are ignored, and only SPI or VREG can change this state */
+      return frame.length - 1;
+    case RX_SFD_SEARCH:
+      /* Nothing happens until the SFD */
+      for (int i = pos; i < frame.length; i++) {
+        if (frame[i] == 0x7A) {
+          return i;
+        }
+      }
+      return frame.length - 1;
+    case RX_FRAME:
+      if (overflow || frameRejected) {
+        return pos + Math.max(0, rxlen - rxread);
+      }
+      /* Length (FIFO pin), FCF (rejection), end of address decoding and
+       * the last byte, FIFOP threshold and RXFIFO overflow. */
+      int next = pos + Math.max(0, rxlen - rxread);
+      for (int rx : FRAME_EVENT_RXREAD) {
+        if (rx >= rxread) {
+          next = Math.min(next, pos + rx - rxread);
+          break;
+        }
+      }
+      int fifoLen = rxFIFO.length();
+      next = Math.min(next, pos + Math.max(0, fifopThr - fifoLen));
+      return Math.min(next, pos + Math.max(0, 128 - fifoLen));
+    default:
+      /* State is changed by timers, deliver each byte on time */
+      return pos;
+    }
+  }
+
+  @Override
+  public byte[] getTransmittedFrame() {
+    byte[] frame;
+    switch (stateMachine) {
+    case TX_PREAMBLE:
+    case TX_FRAME: {
+      int len = memory[RAM_TXFIFO] & 0xff;
+      if (len < 2 || len > 127) {
+        return null;
+      }
+      CCITT_CRC crc = frameCrc;
+      crc.setCRC(0);
+      for (int i = 1; i < len - 1; i++) {
+        crc.addBitrev(memory[RAM_TXFIFO + i] & 0xff);
+      }
+      frame = new byte[SHR.length + len + 1];
+      for (int i = 0; i < len - 1; i++) {
+        frame[SHR.length + i] = (byte) memory[RAM_TXFIFO + i];
+      }
+      frame[SHR.length + len - 1] = (byte) crc.getCRCHi();
+      frame[SHR.length + len] = (byte) crc.getCRCLow();
+      break;
+    }
+    case TX_ACK_PREAMBLE:
+    case TX_ACK: {
+      CCITT_CRC crc = frameCrc;
+      crc.setCRC(0);
+      int fcf0 = ackFramePending ? ackBuf[1] | FRAME_PENDING : ackBuf[1] & ~FRAME_PENDING;
+      crc.addBitrev(fcf0 & 0xff);
+      crc.addBitrev(ackBuf[2] & 0xff);
+      crc.addBitrev(dsn & 0xff);
+      frame = new byte[SHR.length + ackBuf.length];
+      frame[SHR.length] = (byte) ackBuf[0];
+      frame[SHR.length + 1] = (byte) fcf0;
+      frame[SHR.length + 2] = (byte) ackBuf[2];
+      frame[SHR.length + 3] = (byte) dsn;
+      frame[SHR.length + 4] = (byte) crc.getCRCHi();
+      frame[SHR.length + 5] = (byte) crc.getCRCLow();
+      break;
+    }
+    default:
+      return null;
+    }
+    frame[SHR.length - 1] = 0x7A;
+    return frame;
+  }
+
   private void setReg(int address, int data) {
       int oldValue = registers[address];
       switch(address){
@@ -774,6 +865,14 @@ public class CC2420 extends Radio802154 implements USARTListener {
 
   @Override
   public void dataReceived(USARTSource source, int data) {
+    /* Bring a frame in the air up to date before the firmware looks at it,
+     * and plan the next frame event again as the access may change the RX state. */
+    updateReceivedFrame();
+    spiDataReceived(source, data);
+    updateReceivedFrame();
+  }
+
+  private void spiDataReceived(USARTSource source, int data) {
     int oldStatus = status;
     if (logLevel > INFO) {
       log("byte received: " + Utils.hex8(data) +
@@ -1391,6 +1490,7 @@ public class CC2420 extends Radio802154 implements USARTListener {
 
   public void setVRegOn(boolean newOn) {
     if(on == newOn) return;
+    updateReceivedFrame();
 
     if(newOn) {
       // 0.6ms maximum vreg startup from datasheet pg 13
@@ -1407,6 +1507,7 @@ public class CC2420 extends Radio802154 implements USARTListener {
   public void setChipSelect(boolean select) {
     chipSelect = select;
     if (!chipSelect) {
+      updateReceivedFrame();
       if (state == SpiState.WRITE_REGISTER && usartDataPos == 1) {
           // Register write incomplete. Do an 8 bit register write.
           usartDataValue = (registers[usartDataAddress] & 0xff) | (usartDataValue & 0xff00);
@@ -1416,6 +1517,7 @@ public class CC2420 extends Radio802154 implements USARTListener {
           setReg(usartDataAddress, usartDataValue);
       }
       state = SpiState.WAITING;
+      updateReceivedFrame();
     }
 
     if (logLevel > INFO) {
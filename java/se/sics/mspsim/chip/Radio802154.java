@@ -30,19 +30,135 @@
 package se.sics.mspsim.chip;
 import se.sics.mspsim.core.Chip;
 import se.sics.mspsim.core.MSP430Core;
+import se.sics.mspsim.core.TimeEvent;
 
 /**
  * @author Niclas Finne
  */
 public abstract class Radio802154 extends Chip implements RFListener, RFSource {
 
+    /* Time to send one byte at 250 kbit/s */
+    public static final double BYTE_PERIOD_MILLIS = 0.032;
+
     protected RFListener rfListener;
     protected ChannelListener channelListener;
 
+    /* Frame received through receivedFrame() that is still in the "air" */
+    private byte[] rxFrame;
+    private int rxFramePos;
+    private long rxFrameStart;
+    private long rxFrameByteTime;
+    private boolean rxFrameUpdating;
+
+    private final TimeEvent rxFrameEvent = new TimeEvent(0, "Radio802154 RX Frame") {
+        @Override
+        public void execute(long t) {
+            updateReceivedFrame();
+        }
+    };
+
     public Radio802154(String id, String name, MSP430Core cpu) {
         super(id, name, cpu);
     }
 
+    /**
+     * Receive a whole frame from the "air" instead of one byte at a time.
+     * <p>
+     * Byte <code>offset</code> of the frame arrives now, earlier bytes are
+     * delivered immediately and the rest follow with one byte period in between.
+     * The bytes are handed to receivedByte() lazily: an event is only scheduled
+     * for the bytes returned by getNextFrameEventIndex(), and the chip must call
+     * updateReceivedFrame() before anything that depends on the receive state.
+     * A frame still in the air is cut off by the new frame.
+     *
+     * @param frame  the frame including the synchronization header, owned by the radio after the call
+     * @param offset the index of the byte that arrives now
+     */
+    public void receivedFrame(byte[] frame, int offset) {
+        updateReceivedFrame();
+        rxFrameByteTime = (long) (BYTE_PERIOD_MILLIS / 1000 * cpu.getMaxDCOFrequency());
+        rxFrameStart = cpu.getTime() - offset * rxFrameByteTime;
+        rxFramePos = 0;
+        rxFrame = frame;
+        updateReceivedFrame();
+    }
+
+    /**
+     * Corrupt the part of the received frame that has not yet arrived.
+     */
+    public void interfereReceivedFrame() {
+        updateReceivedFrame();
+        if (rxFrame != null) {
+            for (int i = rxFramePos; i < rxFrame.length; i++) {
+                rxFrame[i] = (byte) 0xff;
+            }
+        }
+    }
+
+    /**
+     * Returns true while a frame passed to receivedFrame() is still arriving.
+     */
+    public boolean isReceivingFrame() {
+        return rxFrame != null;
+    }
+
+    /**
+     * Deliver all bytes of the received frame that have arrived by now and
+     * schedule the next frame event.
+     */
+    protected void updateReceivedFrame() {
+        if (rxFrame == null || rxFrameUpdating) {
+            return;
+        }
+        rxFrameUpdating = true;
+        try {
+            long now = cpu.getTime();
+            while (rxFrame != null && rxFramePos < rxFrame.length
+                    && rxFrameStart + rxFramePos * rxFrameByteTime <= now) {
+                receivedByte(rxFrame[rxFramePos++]);
+            }
+        } finally {
+            rxFrameUpdating = false;
+        }
+        if (rxFrame == null || rxFramePos >= rxFrame.length) {
+            rxFrame = null;
+            rxFrameEvent.remove();
+            return;
+        }
+        int next = Math.min(Math.max(rxFramePos, getNextFrameEventIndex(rxFrame, rxFramePos)),
+                rxFrame.length - 1);
+        long time = rxFrameStart + next * rxFrameByteTime;
+        if (!rxFrameEvent.isScheduled() || rxFrameEvent.getTime() != time) {
+            rxFrameEvent.remove();
+            cpu.scheduleTimeEvent(rxFrameEvent, time);
+        }
+    }
+
+    /**
+     * Returns the index of the next byte of a received frame that can have an
+     * effect firmware can observe at the time it arrives (pins, interrupts, state changes).
+     * Bytes before it are delivered late, in a batch, at that byte or at the next
+     * call to updateReceivedFrame(). The estimate may be early but never late.
+     * The default delivers every byte on time.
+     *
+     * @param frame the frame being received
+     * @param pos   the index of the next byte to arrive
+     * @return index of the next byte that must be delivered on time
+     */
+    protected int getNextFrameEventIndex(byte[] frame, int pos) {
+        return pos;
+    }
+
+    /**
+     * Returns the frame currently being transmitted, including the synchronization
+     * header, if the chip knows all of it in advance. Used for frame level delivery.
+     *
+     * @return the frame or null if not available
+     */
+    public byte[] getTransmittedFrame() {
+        return null;
+    }
+
     public abstract boolean isReadyToReceive();
 
     @Override
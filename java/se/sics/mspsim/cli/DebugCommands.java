@@ -33,6 +33,8 @@
  * Created : Mon Feb 11 2008
  */
 package se.sics.mspsim.cli;
+import java.io.IOException;
+
 import se.sics.mspsim.core.DbgInstruction;
 import se.sics.mspsim.core.DisAsm;
 import se.sics.mspsim.core.EmulationException;
@@ -619,7 +621,12 @@ public class DebugCommands implements CommandBundle {
             if (stubs != null) {
               context.err.println("GDBStubs already open");
             } else {
-              stubs = new GDBStubs(cpu, context.getArgumentAsInt(0));
+              try {
+                stubs = new GDBStubs(cpu, context.getArgumentAsInt(0));
+              } catch (IOException e) {
+                context.err.println("Failed to open GDBStubs: " + e.getMessage());
+                return 1;
+              }
             }
             return 0;
           }
@@ -45,10 +45,13 @@ import se.sics.mspsim.core.Chip;
 import se.sics.mspsim.core.EventListener;
 import se.sics.mspsim.core.MSP430;
 import se.sics.mspsim.core.Profiler;
+import se.sics.mspsim.profiler.SampleProfiler;
+import se.sics.mspsim.profiler.SampleReport;
 import se.sics.mspsim.profiler.SimpleProfiler;
 import se.sics.mspsim.ui.CPUHeatMap;
 import se.sics.mspsim.ui.WindowManager;
 import se.sics.mspsim.util.ComponentRegistry;
+import se.sics.mspsim.util.ELF;
 import se.sics.mspsim.util.StackMonitor;
 
 /**
@@ -61,7 +64,7 @@ public class ProfilerCommands implements CommandBundle {
     final MSP430 cpu = registry.getComponent(MSP430.class);
     if (cpu != null) {
       ch.registerCommand("profile", new BasicCommand("show profile information",
-          "[-clear] [-sort column] [-showcallers] [regexp]") {
+          "[-clear] [-collapsed] [-sort column] [-showcallers] [regexp]") {
         @Override
         public int executeCommand(final CommandContext context) {
           Profiler profiler = cpu.getProfiler();
@@ -80,6 +83,13 @@ public class ProfilerCommands implements CommandBundle {
               profiler.clearProfile();
               context.out.println("Cleared profile information.");
               return 0;
+            } else if ("-collapsed".equals(value)) {
+              if (!(profiler instanceof SimpleProfiler sprof)) {
+                context.err.println("Profiler does not support collapsed stacks.");
+                return 1;
+              }
+              sprof.printCollapsedStacks(context.out);
+              return 0;
             } else if ("-sort".equals(value)) {
               if (context.getArgumentCount() > i + 1) {
                 sortMode = context.getArgument(i + 1);
@@ -128,6 +138,46 @@ public class ProfilerCommands implements CommandBundle {
         }
       });
 
+      ch.registerCommand("sampleprof", new BasicCommand("sample the program counter every N cycles",
+          "<start [cycles]|stop|clear|report|collapsed>") {
+        @Override
+        public int executeCommand(CommandContext context) {
+          SampleProfiler sampler = SampleProfiler.getSampleProfiler(cpu);
+          String cmd = context.getArgument(0);
+          switch (cmd) {
+            case "start" -> {
+              int period = context.getArgumentAsInt(1, SampleProfiler.DEFAULT_PERIOD);
+              if (period <= 0) {
+                context.err.println("Sample period must be positive.");
+                return 1;
+              }
+              sampler.start(period);
+              context.out.println("Sampling every " + period + " cycles.");
+            }
+            case "stop" -> sampler.stop();
+            case "clear" -> sampler.clear();
+            case "report", "collapsed" -> {
+              if (cpu.getDisAsm() == null || cpu.getDisAsm().getMap() == null) {
+                context.err.println("No map table found.");
+                return 1;
+              }
+              SampleReport report = new SampleReport(cpu.getDisAsm().getMap(), registry.getComponent(ELF.class));
+              report.add(sampler);
+              if ("report".equals(cmd)) {
+                report.printReport(context.out);
+              } else {
+                report.printCollapsedStacks(context.out, null);
+              }
+            }
+            default -> {
+              context.err.println("Unknown command: " + cmd);
+              return 1;
+            }
+          }
+          return 0;
+        }
+      });
+
       ch.registerCommand("stacktrace", new BasicCommand("show stack trace", "") {
         @Override
         public int executeCommand(CommandContext context) {
@@ -44,6 +44,7 @@ import java.util.Arrays;
 import se.sics.mspsim.core.EmulationLogger.WarningType;
 import se.sics.mspsim.core.Memory.AccessMode;
 import se.sics.mspsim.core.Memory.AccessType;
+import se.sics.mspsim.util.ArrayUtils;
 import se.sics.mspsim.util.ComponentRegistry;
 import se.sics.mspsim.util.ComponentRegistry.ComponentEntry;
 import se.sics.mspsim.util.MapEntry;
@@ -68,8 +69,9 @@ public class MSP430Core extends Chip implements MSP430Constants {
   // 16 registers of which some are "special" - PC, SP, etc.
   public final int[] reg = new int[16];
 
-  private final RegisterMonitor[] regWriteMonitors = new RegisterMonitor[16];
-  private final RegisterMonitor[] regReadMonitors = new RegisterMonitor[16];
+  /* monitors per register, null if the register is not monitored */
+  private final RegisterMonitor[][] regWriteMonitors = new RegisterMonitor[16][];
+  private final RegisterMonitor[][] regReadMonitors = new RegisterMonitor[16][];
 
   public final int[] memory;
   private final Flash flash;
@@ -77,7 +79,8 @@ public class MSP430Core extends Chip implements MSP430Constants {
   boolean isStopping;
 
   private final Memory[] memorySegments;
-  Memory currentSegment;
+  private final MemoryWatchpoints watchpoints;
+  final Memory currentSegment;
 
   public long cycles;
   public long cpuCycles;
@@ -120,6 +123,8 @@ public class MSP430Core extends Chip implements MSP430Constants {
 //  private int clkACaptureMode = CLKCAPTURE_NONE;
   // Other clocks too...
   long nextEventCycles;
+  // Events up to this cycle count have been executed (start of the current instruction)
+  long eventCycles;
   private final EventQueue vTimeEventQueue = new EventQueue();
   private long nextVTimeEventCycles;
 
@@ -149,12 +154,18 @@ public class MSP430Core extends Chip implements MSP430Constants {
             new Flash.FlashRange(config.infoMemStart, config.infoMemStart + config.infoMemSize, 128, 64),
             config.flashControllerOffset);
 
+    watchpoints = new MemoryWatchpoints(MAX_MEM);
+    final long[][] watchBits = watchpoints.pageBits;
     currentSegment = new Memory() {
         @Override
         public int read(int address, AccessMode mode, AccessType type) throws EmulationException {
             if (address >= MAX_MEM) {
                 throw new EmulationException("Reading outside memory: 0x" + Utils.hex(address, 4));
             }
+            long[] bits = watchBits[address >> 8];
+            if (bits != null && (bits[(address >> 6) & 3] & (1L << address)) != 0) {
+                return watchpoints.read(memorySegments[address >> 8], address, mode, type);
+            }
             return memorySegments[address >> 8].read(address, mode, type);
         }
         @Override
@@ -162,6 +173,11 @@ public class MSP430Core extends Chip implements MSP430Constants {
             if (address >= MAX_MEM) {
                 throw new EmulationException("Writing outside memory: 0x" + Utils.hex(address, 4));
             }
+            long[] bits = watchBits[address >> 8];
+            if (bits != null && (bits[(address >> 6) & 3] & (1L << address)) != 0) {
+                watchpoints.write(memorySegments[address >> 8], address, data, mode);
+                return;
+            }
             memorySegments[address >> 8].write(address, data, mode);
         }
         @Override
@@ -289,24 +305,30 @@ public class MSP430Core extends Chip implements MSP430Constants {
     profiler.setCPU(this);
   }
 
+  /**
+   * Adds a monitor of all memory accesses.
+   */
   public synchronized void addGlobalMonitor(MemoryMonitor mon) {
-      GlobalWatchedMemory gwm;
-      if (currentSegment instanceof GlobalWatchedMemory mem) {
-          gwm = mem;
-      } else {
-          currentSegment = gwm = new GlobalWatchedMemory(currentSegment);
+      addGlobalMonitor(mon, 0, MAX_MEM);
+  }
+
+  /**
+   * Adds a monitor of all memory accesses in an address range. Accesses
+   * outside the range do not pay for the monitor.
+   *
+   * @param start First address
+   * @param end Address after the last address
+   */
+  public synchronized void addGlobalMonitor(MemoryMonitor mon, int start, int end) {
+      if (start < 0 || end > MAX_MEM || start >= end) {
+          throw new IllegalArgumentException("Illegal address range $" + Utils.hex(start, 4)
+                  + " - $" + Utils.hex(end, 4));
       }
-      gwm.addGlobalMonitor(mon);
+      watchpoints.addGlobalMonitor(mon, start, end);
   }
 
   public synchronized void removeGlobalMonitor(MemoryMonitor mon) {
-      if (currentSegment instanceof GlobalWatchedMemory gwm) {
-          gwm.removeGlobalMonitor(mon);
-          if (!gwm.hasGlobalMonitor()) {
-              // No more monitors - switch back to normal memory
-              currentSegment = gwm.getWatchedMemory();
-          }
-      }
+      watchpoints.removeGlobalMonitor(mon);
   }
 
   public ComponentRegistry getRegistry() {
@@ -385,29 +407,15 @@ public class MSP430Core extends Chip implements MSP430Constants {
   }
 
   public boolean hasWatchPoint(int address) {
-      Memory mem = memorySegments[address >> 8];
-      if (mem instanceof WatchedMemory) {
-          return ((WatchedMemory)mem).hasWatchPoint(address);
-      }
-      return false;
+      return watchpoints.hasWatchPoint(address);
   }
 
   public synchronized void addWatchPoint(int address, MemoryMonitor mon) {
-      int seg = address >> 8;
-      WatchedMemory wm;
-      if (memorySegments[seg] instanceof WatchedMemory) {
-          wm = (WatchedMemory) memorySegments[seg];
-      } else {
-          wm = new WatchedMemory(address & 0xfff00, memorySegments[seg]);
-          memorySegments[seg] = wm;
-      }
-      wm.addWatchPoint(address, mon);
+      watchpoints.addWatchPoint(address, mon);
   }
 
   public synchronized void removeWatchPoint(int address, MemoryMonitor mon) {
-      if (memorySegments[address >> 8] instanceof WatchedMemory wm) {
-          wm.removeWatchPoint(address, mon);
-      }
+      watchpoints.removeWatchPoint(address, mon);
   }
 
   public synchronized void addRegisterMonitor(int r, RegisterMonitor mon) {
@@ -421,19 +429,19 @@ public class MSP430Core extends Chip implements MSP430Constants {
   }
 
   public synchronized void addRegisterWriteMonitor(int r, RegisterMonitor mon) {
-      regWriteMonitors[r] = RegisterMonitor.Proxy.INSTANCE.add(regWriteMonitors[r], mon);
+      regWriteMonitors[r] = ArrayUtils.add(RegisterMonitor.class, regWriteMonitors[r], mon);
   }
 
   public synchronized void removeRegisterWriteMonitor(int r, RegisterMonitor mon) {
-      regWriteMonitors[r] = RegisterMonitor.Proxy.INSTANCE.remove(regWriteMonitors[r], mon);
+      regWriteMonitors[r] = ArrayUtils.remove(regWriteMonitors[r], mon);
   }
 
   public synchronized void addRegisterReadMonitor(int r, RegisterMonitor mon) {
-      regReadMonitors[r] = RegisterMonitor.Proxy.INSTANCE.add(regReadMonitors[r], mon);
+      regReadMonitors[r] = ArrayUtils.add(RegisterMonitor.class, regReadMonitors[r], mon);
   }
 
   public synchronized void removeRegisterReadMonitor(int r, RegisterMonitor mon) {
-      regReadMonitors[r] = RegisterMonitor.Proxy.INSTANCE.remove(regReadMonitors[r], mon);
+      regReadMonitors[r] = ArrayUtils.remove(regReadMonitors[r], mon);
   }
 
   public void writeRegister(int r, int value) {
@@ -458,12 +466,16 @@ public class MSP430Core extends Chip implements MSP430Constants {
 //        new Throwable().printStackTrace();
 //    }
 
-      RegisterMonitor rwm = regWriteMonitors[r];
+      RegisterMonitor[] rwm = regWriteMonitors[r];
     if (rwm != null) {
         // TODO Add register access mode
-        rwm.notifyWriteBefore(r, value, AccessMode.WORD);
+        for (RegisterMonitor mon : rwm) {
+          mon.notifyWriteBefore(r, value, AccessMode.WORD);
+        }
         reg[r] = value;
-        rwm.notifyWriteAfter(r, value, AccessMode.WORD);
+        for (RegisterMonitor mon : rwm) {
+          mon.notifyWriteAfter(r, value, AccessMode.WORD);
+        }
     } else {
         reg[r] = value;
     }
@@ -513,12 +525,16 @@ public class MSP430Core extends Chip implements MSP430Constants {
 
   public int readRegister(int r) {
     int value;
-    RegisterMonitor rrm = regReadMonitors[r];
+    RegisterMonitor[] rrm = regReadMonitors[r];
     if (rrm != null) {
         // TODO Register access mode
-        rrm.notifyReadBefore(r, AccessMode.WORD);
+        for (RegisterMonitor mon : rrm) {
+          mon.notifyReadBefore(r, AccessMode.WORD);
+        }
         value = reg[r];
-        rrm.notifyReadAfter(r, AccessMode.WORD);
+        for (RegisterMonitor mon : rrm) {
+          mon.notifyReadAfter(r, AccessMode.WORD);
+        }
     } else {
         value = reg[r];
     }
@@ -532,12 +548,16 @@ public class MSP430Core extends Chip implements MSP430Constants {
       return CREG_VALUES[r - 2][m];
     }
     int value;
-    RegisterMonitor rrm = regReadMonitors[r];
+    RegisterMonitor[] rrm = regReadMonitors[r];
     if (rrm != null) {
         // TODO Register access mode
-        rrm.notifyReadBefore(r, AccessMode.WORD);
+        for (RegisterMonitor mon : rrm) {
+          mon.notifyReadBefore(r, AccessMode.WORD);
+        }
         value = reg[r];
-        rrm.notifyReadAfter(r, AccessMode.WORD);
+        for (RegisterMonitor mon : rrm) {
+          mon.notifyReadAfter(r, AccessMode.WORD);
+        }
     } else {
         value = reg[r];
     }
@@ -546,20 +566,28 @@ public class MSP430Core extends Chip implements MSP430Constants {
 
   public int incRegister(int r, int value) {
     int registerValue;
-    RegisterMonitor rm = regReadMonitors[r];
+    RegisterMonitor[] rm = regReadMonitors[r];
     if (rm != null) {
-        rm.notifyReadBefore(r, AccessMode.WORD);
+        for (RegisterMonitor mon : rm) {
+          mon.notifyReadBefore(r, AccessMode.WORD);
+        }
         registerValue = reg[r];
-        rm.notifyReadAfter(r, AccessMode.WORD);
+        for (RegisterMonitor mon : rm) {
+          mon.notifyReadAfter(r, AccessMode.WORD);
+        }
     } else {
         registerValue = reg[r];
     }
     rm = regWriteMonitors[r];
     registerValue += value;
     if (rm != null) {
-      rm.notifyWriteBefore(r, registerValue, AccessMode.WORD);
+      for (RegisterMonitor mon : rm) {
+        mon.notifyWriteBefore(r, registerValue, AccessMode.WORD);
+      }
       reg[r] = registerValue;
-      rm.notifyWriteAfter(r, registerValue, AccessMode.WORD);
+      for (RegisterMonitor mon : rm) {
+        mon.notifyWriteAfter(r, registerValue, AccessMode.WORD);
+      }
     } else {
       reg[r] = registerValue;
     }
@@ -604,6 +632,11 @@ public class MSP430Core extends Chip implements MSP430Constants {
     return lastCyclesTime + (long) ((vTime - lastVTime) / currentDCOFactor);
   }
 
+  // returns the frequency of the virtual time clock
+  public int getMaxDCOFrequency() {
+    return bcs.getMaxDCOFrequency();
+  }
+
   // get elapsed time in seconds
   public double getTimeMillis() {
       return 1000.0 * getTime() / bcs.getMaxDCOFrequency();
@@ -950,6 +983,7 @@ public class MSP430Core extends Chip implements MSP430Constants {
     //System.out.println("CYCLES BEFORE: " + cycles);
     int pc = readRegister(PC);
     long startCycles = cycles;
+    eventCycles = cycles;
 
     // -------------------------------------------------------------------
     // Interrupt processing [after the last instruction was executed]
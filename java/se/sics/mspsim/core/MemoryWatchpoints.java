@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package se.sics.mspsim.core;
+
+import se.sics.mspsim.util.ArrayUtils;
+
+/**
+ * Memory watchpoints of a CPU. Watched addresses are marked in a bitmap
+ * per 256 byte page that the CPU checks inline on each access, and only
+ * accesses to marked addresses are dispatched here. Pages without any
+ * watched address have no bitmap.
+ * <p>
+ * Monitors are either watching a single address, or a range of addresses
+ * for global monitors. Notifications are for accesses starting at a
+ * watched address, like before the bitmap.
+ */
+final class MemoryWatchpoints {
+
+  private record Range(int start, int end, MemoryMonitor monitor) {}
+
+  /* bitmap per page, read by the CPU on every memory access */
+  final long[][] pageBits;
+  /* monitors per page and offset */
+  private final MemoryMonitor[][][] pageMonitors;
+  private Range[] ranges = new Range[0];
+
+  MemoryWatchpoints(int maxMem) {
+    pageBits = new long[maxMem >> 8][];
+    pageMonitors = new MemoryMonitor[maxMem >> 8][][];
+  }
+
+  boolean hasWatchPoint(int address) {
+    MemoryMonitor[][] monitors = pageMonitors[address >> 8];
+    return monitors != null && monitors[address & 0xff] != null;
+  }
+
+  void addWatchPoint(int address, MemoryMonitor mon) {
+    int page = address >> 8;
+    MemoryMonitor[][] monitors = pageMonitors[page];
+    if (monitors == null) {
+      pageMonitors[page] = monitors = new MemoryMonitor[Memory.SEGMENT_SIZE][];
+    }
+    monitors[address & 0xff] = ArrayUtils.add(MemoryMonitor.class, monitors[address & 0xff], mon);
+    updatePages(page, page);
+  }
+
+  void removeWatchPoint(int address, MemoryMonitor mon) {
+    int page = address >> 8;
+    MemoryMonitor[][] monitors = pageMonitors[page];
+    if (monitors != null) {
+      monitors[address & 0xff] = ArrayUtils.remove(monitors[address & 0xff], mon);
+      updatePages(page, page);
+    }
+  }
+
+  /**
+   * @param start First address
+   * @param end Address after the last address
+   */
+  void addGlobalMonitor(MemoryMonitor mon, int start, int end) {
+    ranges = ArrayUtils.add(Range.class, ranges, new Range(start, end, mon));
+    updatePages(start >> 8, (end - 1) >> 8);
+  }
+
+  void removeGlobalMonitor(MemoryMonitor mon) {
+    for (Range range : ranges) {
+      if (range.monitor == mon) {
+        Range[] r = ArrayUtils.remove(ranges, range);
+        ranges = r == null ? new Range[0] : r;
+        updatePages(range.start >> 8, (range.end - 1) >> 8);
+      }
+    }
+  }
+
+  private void updatePages(int first, int last) {
+    for (int page = first; page <= last; page++) {
+      long[] bits = new long[Memory.SEGMENT_SIZE / 64];
+      boolean watched = false;
+      MemoryMonitor[][] monitors = pageMonitors[page];
+      if (monitors != null) {
+        for (int i = 0; i < monitors.length; i++) {
+          if (monitors[i] != null) {
+            bits[i >> 6] |= 1L << i;
+            watched = true;
+          }
+        }
+        if (!watched) {
+          pageMonitors[page] = null;
+        }
+      }
+      int pageStart = page << 8;
+      for (Range range : ranges) {
+        int from = Math.max(range.start, pageStart) - pageStart;
+        int to = Math.min(range.end, pageStart + Memory.SEGMENT_SIZE) - pageStart;
+        for (int i = from; i < to; i++) {
+          bits[i >> 6] |= 1L << i;
+          watched = true;
+        }
+      }
+      /* publish a complete bitmap */
+      pageBits[page] = watched ? bits : null;
+    }
+  }
+
+  int read(Memory segment, int address, Memory.AccessMode mode, Memory.AccessType type) throws EmulationException {
+    Range[] ranges = this.ranges;
+    MemoryMonitor[][] monitors = pageMonitors[address >> 8];
+    MemoryMonitor[] mons = monitors == null ? null : monitors[address & 0xff];
+    for (Range range : ranges) {
+      if (address >= range.start && address < range.end) {
+        range.monitor.notifyReadBefore(address, mode, type);
+      }
+    }
+    if (mons != null) {
+      for (MemoryMonitor mon : mons) {
+        mon.notifyReadBefore(address, mode, type);
+      }
+    }
+    int val = segment.read(address, mode, type);
+    if (mons != null) {
+      for (MemoryMonitor mon : mons) {
+        mon.notifyReadAfter(address, mode, type);
+      }
+    }
+    for (Range range : ranges) {
+      if (address >= range.start && address < range.end) {
+        range.monitor.notifyReadAfter(address, mode, type);
+      }
+    }
+    return val;
+  }
+
+  void write(Memory segment, int address, int data, Memory.AccessMode mode) throws EmulationException {
+    Range[] ranges = this.ranges;
+    MemoryMonitor[][] monitors = pageMonitors[address >> 8];
+    MemoryMonitor[] mons = monitors == null ? null : monitors[address & 0xff];
+    for (Range range : ranges) {
+      if (address >= range.start && address < range.end) {
+        range.monitor.notifyWriteBefore(address, data, mode);
+      }
+    }
+    if (mons != null) {
+      for (MemoryMonitor mon : mons) {
+        mon.notifyWriteBefore(address, data, mode);
+      }
+    }
+    segment.write(address, data, mode);
+    if (mons != null) {
+      for (MemoryMonitor mon : mons) {
+        mon.notifyWriteAfter(address, data, mode);
+      }
+    }
+    for (Range range : ranges) {
+      if (address >= range.start && address < range.end) {
+        range.monitor.notifyWriteAfter(address, data, mode);
+      }
+    }
+  }
+}
@@ -66,6 +66,12 @@ import se.sics.mspsim.util.Utils;
  * ==&gt; Reads might be another problem. If a loop is just checking the
  * counter it will be reading same value for a long time. Needs to "capture"
  * reads to Timers by some simple means...
+ * <p>
+ * The counter (TR) is calculated from elapsed cycles when read. Compare
+ * matches and overflows that only set a flag, because their interrupt is
+ * disabled, are not scheduled. They are evaluated when the timer is accessed,
+ * up to the cycle count where the CPU would have executed the events, and are
+ * scheduled again when their interrupt is enabled.
  */
 public class Timer extends IOUnit {
 
@@ -216,6 +222,8 @@ public class Timer extends IOUnit {
       long cyclesLeft;
       boolean sync;
       int outMode;
+      /* compare match at expCaptureTime not scheduled since it only sets CCIFG */
+      boolean deferred;
 
       final int interruptVector;
       final int index;
@@ -232,6 +240,7 @@ public class Timer extends IOUnit {
 
       @Override
       public void execute(long t) {
+          Timer.this.settle(time);
           if (mode == STOP) {
               return;
           }
@@ -349,7 +358,57 @@ public class Timer extends IOUnit {
           }
       }
 
+      /* a compare without interrupt only sets CCIFG, which is evaluated when read */
+      private boolean isDeferrable() {
+          return !captureOn && (tcctl & CC_IE) == 0;
+      }
+
+      /* evaluate the deferred compare matches the CPU would have seen by now */
+      void settle(long cycles) {
+          if (!deferred) {
+              return;
+          }
+          while (expCaptureTime <= cycles) {
+              if (mode == STOP) {
+                  /* the event would have been dropped */
+                  deferred = false;
+                  return;
+              }
+              updateCounter(expCaptureTime);
+              if (counter < tccr) {
+                  expCaptureTime += Math.max(1, (long) ((tccr - counter) * cyclesMultiplicator));
+                  continue;
+              }
+              tcctl |= CC_IFG;
+              expCaptureTime = expCaptureTime + (long) (0x10000 * cyclesMultiplicator);
+          }
+      }
+
+      /* schedule or defer the pending compare match after a change of CCIE */
+      void updateDeferred() {
+          if (expCaptureTime == -1) {
+              return;
+          }
+          if (isDeferrable()) {
+              if (isScheduled()) {
+                  remove();
+                  deferred = true;
+              }
+          } else if (deferred) {
+              deferred = false;
+              cpu.scheduleCycleEvent(this, expCaptureTime);
+          }
+      }
+
       public void update() {
+          if (expCaptureTime != -1 && isDeferrable()) {
+              if (isScheduled()) {
+                  remove();
+              }
+              deferred = true;
+              return;
+          }
+          deferred = false;
           /* schedule this capture register for update*/
           if (expCaptureTime != -1 && expCaptureTime != time) {
               if (DEBUG) log(cpu.cycles + ":" + ">> SCHEDULING " + getName() + " = " + tccr +
@@ -388,11 +447,12 @@ public class Timer extends IOUnit {
   private final TimeEvent counterTrigger = new TimeEvent(0, "Timer Counter Trigger") {
       @Override
       public void execute(long t) {
+          settle(time);
           interruptPending = true;
           /* and can be something else if mode is another... */
           // This should be updated whenever clockspeed changes...
           nextTimerTrigger = (long) (nextTimerTrigger + 0x10000 * cyclesMultiplicator);
-          cpu.scheduleCycleEvent(this, nextTimerTrigger);
+          scheduleOverflow(nextTimerTrigger);
 
 
           if (lastTIV == 0 && interruptEnable) {
@@ -404,6 +464,10 @@ public class Timer extends IOUnit {
 
   private int lastTIV;
 
+  /* overflow at overflowTime not scheduled since the interrupt is disabled */
+  private boolean overflowDeferred;
+  private long overflowTime;
+
   private final int[] srcMap;
 
   private long triggerTime;
@@ -468,11 +532,43 @@ public class Timer extends IOUnit {
       mode = STOP;
       nextTimerTrigger = 0;
       inputDivider = 1;
+      overflowDeferred = false;
+      for (int i = 0; i < noCompare; i++) {
+          ccr[i].deferred = false;
+      }
+  }
+
+  /**
+   * Evaluates the compare matches and overflows that were not scheduled,
+   * up to the given cycle count.
+   *
+   * @param cycles Cycle count where the CPU has executed all events
+   */
+  private void settle(long cycles) {
+      while (overflowDeferred && overflowTime <= cycles) {
+          interruptPending = true;
+          nextTimerTrigger = (long) (nextTimerTrigger + 0x10000 * cyclesMultiplicator);
+          overflowTime = nextTimerTrigger;
+      }
+      for (int i = 0; i < noCompare; i++) {
+          ccr[i].settle(cycles);
+      }
+  }
+
+  private void scheduleOverflow(long time) {
+      overflowTime = time;
+      overflowDeferred = !interruptEnable;
+      if (overflowDeferred) {
+          counterTrigger.remove();
+      } else {
+          cpu.scheduleCycleEvent(counterTrigger, time);
+      }
   }
 
   // Should handle read of byte also (currently ignores that...)
   @Override
   public int read(int address, boolean word, long cycles) {
+      settle(cpu.eventCycles);
       if (address == tiv) {
       // should clear registers for cause of interrupt (highest value)?
       // but what if a higher value have been triggered since this was
@@ -599,6 +695,7 @@ public class Timer extends IOUnit {
   public void write(int address, int data, boolean word, long cycles) {
     // This does not handle word/byte difference yet... assumes it gets
     // all 16 bits when called!!!
+    settle(cpu.eventCycles);
 
     if (address == tiv) {
       // should clear registers for cause of interrupt (highest value)?
@@ -668,6 +765,11 @@ public class Timer extends IOUnit {
       mode = newMode;
 
       interruptEnable = (data & 0x02) > 0;
+      if (interruptEnable && overflowDeferred) {
+        scheduleOverflow(overflowTime);
+      } else if (!interruptEnable && counterTrigger.isScheduled()) {
+        scheduleOverflow(counterTrigger.getTime());
+      }
 
       if (DEBUG) {
         log("Write:  CTL: inDiv:" + inputDivider +
@@ -734,6 +836,7 @@ public class Timer extends IOUnit {
       }
 
       reg.updateCaptures(cycles);
+      reg.updateDeferred();
 //      updateCaptures(index, cycles);
       break;
       // Write to compare register!
@@ -824,7 +927,7 @@ public class Timer extends IOUnit {
       log("Counter reset at " + cycles +  " cycMul: " + cyclesMultiplicator);
     }
 
-    cpu.scheduleCycleEvent(counterTrigger, cycles + (long)((0x10000 - counter) * cyclesMultiplicator));
+    scheduleOverflow(cycles + (long)((0x10000 - counter) * cyclesMultiplicator));
   }
 
   private void setCounter(int newCtr, long cycles) {
@@ -909,6 +1012,7 @@ public class Timer extends IOUnit {
    * @param source - the capture source (0/1)
    */
   public void capture(int ccrIndex, int source, IOPort.PinState value) {
+      settle(cpu.eventCycles);
       CCR reg = ccr[ccrIndex];
       if (ccrIndex < noCompare && reg.captureOn && reg.inputSel == source) {
           /* This is obviously a capture! */
@@ -959,6 +1063,7 @@ public class Timer extends IOUnit {
 
   @Override
   public String info() {
+      settle(cpu.eventCycles);
       StringBuilder sb = new StringBuilder();
       sb.append("  Source: ").append(getSourceName(clockSource)).append("  Speed: ").append(clockSpeed)
         .append(" Hz  inDiv: ").append(inputDivider).append("  Multiplier: ").append(cyclesMultiplicator).append('\n')
@@ -95,6 +95,8 @@ public class USART extends IOUnit implements SFRModule, DMATrigger, USARTSource
   private boolean transmitting;
   private int nextRXByte = -1;
   private boolean receiving;
+  /* True while the listener is handed the byte just shifted out */
+  private boolean shiftingOut;
 
   private final SFR sfr;
 
@@ -378,7 +380,12 @@ public class USART extends IOUnit implements SFRModule, DMATrigger, USARTSource
         /* in this case we have shifted out the last character */
         USARTListener listener = this.usartListener;
         if (listener != null && txShiftReg != -1) {
-            listener.dataReceived(this, txShiftReg);
+            shiftingOut = true;
+            try {
+                listener.dataReceived(this, txShiftReg);
+            } finally {
+                shiftingOut = false;
+            }
         }
         /* nothing more to transmit after this - stop transmission */
         if (nextTXByte == -1) {
@@ -424,6 +431,12 @@ public class USART extends IOUnit implements SFRModule, DMATrigger, USARTSource
       log(" byteReceived: " + b + " " + (b > 32 ? (char)b : '.'));
     }
     nextRXByte = b & 0xff;
+    if (spiMode && shiftingOut && !receiving) {
+      /* In SPI mode the reply is shifted in while the byte is shifted out,
+         so it is complete in the same event as the transmission. */
+      handleReceive();
+      return;
+    }
     if (!receiving) {
       receiving = true;
       cpu.scheduleCycleEvent(rxTrigger, cpu.cycles + 1);
@@ -41,6 +41,9 @@ package se.sics.mspsim.debug;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.PriorityQueue;
 
 import se.sics.mspsim.util.DebugInfo;
 import se.sics.mspsim.util.ELF;
@@ -102,13 +105,25 @@ public class DwarfReader implements ELFDebug {
         LineEntry[] lineEntries;
     }
 
-    final ArrayList<LineData> lineInfo = new ArrayList<>();
+    /* Line lookup table built by read(): non-overlapping address ranges
+     * sorted by start address, searched with binary search. */
+    private int[] rangeStart = new int[0];
+    private int[] rangeEnd = new int[0];
+    private int[] rangeLine = new int[0];
+    private int[] rangeFile = new int[0];
+    private String[] fileNames = new String[0];
+
+    /* Addresses of all line entries in line program order */
+    private int[] lineAddresses = new int[0];
+    /* First source file of each line sequence */
+    private String[] sequenceFiles = new String[0];
 
     public DwarfReader(ELF elfFile) {
         this.elfFile = elfFile;
     }
 
     public void read() {
+        ArrayList<LineData> lineInfo = new ArrayList<>();
         for (int i = 0; i < elfFile.getSectionCount(); i++) {
             ELFSection sec = elfFile.getSection(i);
             String name = sec.getSectionName();
@@ -116,12 +131,13 @@ public class DwarfReader implements ELFDebug {
             if (".debug_aranges".equals(name)) {
                 readAranges(sec);
             } else if (".debug_line".equals(name)) {
-                readLines(sec);
+                readLines(sec, lineInfo);
             }
         }
+        buildLineTable(lineInfo);
     }
 
-    private void readLines(ELFSection sec) {
+    private static void readLines(ELFSection sec, ArrayList<LineData> lineInfo) {
         if (DEBUG) {
             System.out.println("DWARF Line - ELF Section length: " + sec.getSize());
         }
@@ -420,55 +436,140 @@ public class DwarfReader implements ELFDebug {
         } while (pos < sec.getSize());
     }
 
+    /* Flattens the line sequences into the line lookup table. Each entry
+     * covers the addresses up to the next entry in its sequence, and where
+     * ranges overlap the first one in line program order is used. */
+    private void buildLineTable(ArrayList<LineData> lineInfo) {
+        int entries = 0;
+        for (LineData data : lineInfo) {
+            entries += data.lineEntries.length;
+        }
+        lineAddresses = new int[entries];
+        sequenceFiles = new String[lineInfo.size()];
+
+        /* Candidate ranges, in line program order */
+        int[] low = new int[entries];
+        int[] high = new int[entries];
+        int[] line = new int[entries];
+        int[] file = new int[entries];
+        int count = 0;
+        int index = 0;
+        HashMap<String, Integer> fileIds = new HashMap<>();
+        ArrayList<String> files = new ArrayList<>();
+        for (int i = 0; i < lineInfo.size(); i++) {
+            LineData data = lineInfo.get(i);
+            LineEntry[] lineEntries = data.lineEntries;
+            sequenceFiles[i] = data.sourceFiles.length > 0 ? data.sourceFiles[0] : null;
+            for (LineEntry entry : lineEntries) {
+                lineAddresses[index++] = entry.address;
+            }
+            int start = lineEntries[0].address;
+            int end = lineEntries[lineEntries.length - 1].address;
+            /* XXX ignore all line entries starting on address 0 */
+            if (start == 0) continue;
+
+            /* the last entry only ends the sequence (do not match prologue entries) */
+            for (int j = 0; j + 1 < lineEntries.length; j++) {
+                int from = Math.max(lineEntries[j].address, start);
+                int to = Math.min(lineEntries[j + 1].address - 1, end);
+                if (from > to) continue;
+                low[count] = from;
+                high[count] = to;
+                line[count] = lineEntries[j].line;
+                int fileIndex = lineEntries[j].file - 1;
+                if (fileIndex >= 0 && fileIndex < data.sourceFiles.length) {
+                    file[count] = fileIds.computeIfAbsent(data.sourceFiles[fileIndex], name -> {
+                        files.add(name);
+                        return files.size() - 1;
+                    });
+                } else {
+                    file[count] = -1;
+                }
+                count++;
+            }
+        }
+        fileNames = files.toArray(new String[0]);
+
+        /* Sweep over the range boundaries, keeping the active ranges ordered
+         * by line program order. */
+        long[] byStart = new long[count];
+        long[] bounds = new long[count * 2];
+        for (int i = 0; i < count; i++) {
+            byStart[i] = ((long) low[i] << 32) | i;
+            bounds[i * 2] = low[i];
+            bounds[i * 2 + 1] = high[i] + 1L;
+        }
+        Arrays.sort(byStart);
+        Arrays.sort(bounds);
+        int[] starts = new int[bounds.length];
+        int[] ends = new int[bounds.length];
+        int[] ranges = new int[bounds.length];
+        int size = 0;
+        PriorityQueue<Integer> active = new PriorityQueue<>();
+        for (int b = 0, next = 0; b < bounds.length; b++) {
+            long at = bounds[b];
+            if (b + 1 < bounds.length && bounds[b + 1] == at) continue;
+            while (next < count && low[(int) byStart[next]] <= at) {
+                active.add((int) byStart[next++]);
+            }
+            while (!active.isEmpty() && high[active.peek()] < at) {
+                active.poll();
+            }
+            if (active.isEmpty()) continue;
+            /* the range covers at least up to the next boundary */
+            int range = active.peek();
+            int segmentEnd = (int) (bounds[b + 1] - 1);
+            if (size > 0 && ranges[size - 1] == range && ends[size - 1] + 1L == at) {
+                ends[size - 1] = segmentEnd;
+            } else {
+                starts[size] = (int) at;
+                ends[size] = segmentEnd;
+                ranges[size] = range;
+                size++;
+            }
+        }
+        rangeStart = Arrays.copyOf(starts, size);
+        rangeEnd = Arrays.copyOf(ends, size);
+        rangeLine = new int[size];
+        rangeFile = new int[size];
+        for (int i = 0; i < size; i++) {
+            rangeLine[i] = line[ranges[i]];
+            rangeFile[i] = file[ranges[i]];
+        }
+    }
+
     /* Access methods for data... */
     @Override
     public DebugInfo getDebugInfo(int address) {
-      for (LineData data : lineInfo) {
-        int start = data.lineEntries[0].address;
-        int end = data.lineEntries[data.lineEntries.length - 1].address;
-        /* XXX ignore all line entries starting on address 0 */
-        if (start == 0) continue;
-
-        if (address <= end && address >= start) {
-          for (int j = 0; j < data.lineEntries.length; j++) {
-            LineEntry lineEntry = data.lineEntries[j];
-            int startEntry = lineEntry.address;
-            int endEntry;
-            if (j + 1 < data.lineEntries.length) {
-              endEntry = data.lineEntries[j + 1].address - 1;
+        int low = 0;
+        int high = rangeStart.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (rangeStart[mid] <= address) {
+                low = mid + 1;
             } else {
-              /* do not match prologue entries */
-              continue;
-            }
-            if (address >= startEntry &&
-                    address <= endEntry) {
-              return new DebugInfo(lineEntry.line, null, data.sourceFiles[lineEntry.file - 1], "* not available");
+                high = mid - 1;
             }
-          }
         }
-      }
-        return null;
+        if (high < 0 || address > rangeEnd[high]) {
+            return null;
+        }
+        int file = rangeFile[high];
+        return new DebugInfo(rangeLine[high], null, file < 0 ? null : fileNames[file], "* not available");
     }
 
     @Override
     public ArrayList<Integer> getExecutableAddresses() {
-        ArrayList<Integer> executableAddresses = new ArrayList<>();
-        for (LineData data: lineInfo) {
-            for (LineEntry entry: data.lineEntries) {
-                executableAddresses.add(entry.address);
-            }
+        ArrayList<Integer> executableAddresses = new ArrayList<>(lineAddresses.length);
+        for (int address : lineAddresses) {
+            executableAddresses.add(address);
         }
         return executableAddresses;
     }
 
     @Override
     public String[] getSourceFiles() {
-        String[] sourceFilesArray = new String[lineInfo.size()];
-        for (int i = 0; i < lineInfo.size(); i++) {
-            sourceFilesArray[i] = lineInfo.get(i).sourceFiles[0];
-        }
-
-        return sourceFilesArray;
+        return sequenceFiles.clone();
     }
 
     public static void main(String[] args) throws Exception {
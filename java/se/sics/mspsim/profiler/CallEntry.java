@@ -1,33 +1,15 @@
 package se.sics.mspsim.profiler;
-import java.util.HashMap;
 import se.sics.mspsim.util.MapEntry;
 
+/**
+ * A frame on the profiler call stack as seen by call listeners. The
+ * entry is reused and only valid during the listener callback.
+ */
 public class CallEntry {
 
-    static class CallCounter implements Comparable<CallCounter> {
-        public int count;
-
-        @Override
-        public int compareTo(CallCounter o) {
-            return Integer.compare(count, o.count);
-        }
-    }
-
-
     int fromPC;
     MapEntry function;
     long cycles;
-    long exclusiveCycles;
-    int calls;
-    int hide;
-    int stackStart;
-    int currentStackMax;
-
-    final HashMap<MapEntry,CallCounter> callers;
-
-    public CallEntry() {
-      callers = new HashMap<>();
-    }
 
     public MapEntry getFunction() {
         return function;
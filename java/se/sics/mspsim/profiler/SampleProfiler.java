@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package se.sics.mspsim.profiler;
+
+import java.util.Arrays;
+
+import se.sics.mspsim.core.Chip;
+import se.sics.mspsim.core.MSP430Constants;
+import se.sics.mspsim.core.MSP430Core;
+import se.sics.mspsim.core.OperatingModeListener;
+import se.sics.mspsim.core.TimeEvent;
+import se.sics.mspsim.util.ComponentRegistry;
+
+/**
+ * Statistical profiler sampling the program counter of a CPU every given
+ * number of cycles. The call stack of each sample is taken from the
+ * calling context of the {@link SimpleProfiler}, when the CPU has one.
+ * Samples are counted per calling context and PC in a primitive hash
+ * table, see {@link SampleReport} for reports.
+ * <p>
+ * Samples are taken on a fixed grid of cycles. No sample event is scheduled
+ * while the CPU is in a low power mode, so sampling does not wake the CPU;
+ * the samples that fall in a low power mode are counted as idle when the
+ * CPU becomes active again.
+ * <p>
+ * The profiler is a chip of the CPU to keep sampling after CPU resets.
+ */
+public class SampleProfiler extends Chip {
+
+  public static final int DEFAULT_PERIOD = 10000;
+
+  public interface SampleVisitor {
+    void visit(int context, int pc, int count);
+  }
+
+  private SimpleProfiler contexts;
+  private int period = DEFAULT_PERIOD;
+  private boolean running;
+
+  /* open addressing table of (context << 20 | pc) + 1 and sample count
+     pairs, in one array so that a reader always sees a consistent table */
+  private long[] table = new long[2048];
+  private int size;
+  private long samples;
+  private long idleSamples;
+  /* Cycle of the next sample */
+  private long nextSample;
+
+  private final TimeEvent sampleEvent = new TimeEvent(0, "sample profiler") {
+    @Override
+    public void execute(long t) {
+      sample();
+      nextSample = t + period;
+      cpu.scheduleCycleEvent(this, nextSample);
+    }
+  };
+
+  private final OperatingModeListener modeListener = new OperatingModeListener() {
+    @Override
+    public void modeChanged(Chip source, int mode) {
+      if (mode == MSP430Constants.MODE_ACTIVE) {
+        resume();
+      } else {
+        sampleEvent.remove();
+      }
+    }
+  };
+
+  public SampleProfiler(MSP430Core cpu) {
+    super("SampleProfiler", cpu);
+  }
+
+  /**
+   * Returns the sample profiler of a CPU, creating it if needed.
+   */
+  public static SampleProfiler getSampleProfiler(MSP430Core cpu) {
+    ComponentRegistry registry = cpu.getRegistry();
+    SampleProfiler profiler = registry.getComponent(SampleProfiler.class);
+    if (profiler == null) {
+      profiler = new SampleProfiler(cpu);
+      registry.registerComponent("sampleProfiler", profiler);
+    }
+    return profiler;
+  }
+
+  public int getPeriod() {
+    return period;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Starts sampling.
+   *
+   * @param period Cycles between samples
+   */
+  public void start(int period) {
+    if (period <= 0) {
+      throw new IllegalArgumentException("Sample period must be positive");
+    }
+    this.period = period;
+    contexts = cpu.getProfiler() instanceof SimpleProfiler p ? p : null;
+    if (!running) {
+      running = true;
+      cpu.addOperatingModeListener(modeListener);
+    }
+    sampleEvent.remove();
+    nextSample = cpu.cycles + period;
+    if (cpu.getMode() == MSP430Constants.MODE_ACTIVE) {
+      cpu.scheduleCycleEvent(sampleEvent, nextSample);
+    }
+  }
+
+  public void stop() {
+    if (running) {
+      long missed = idleMissedSamples();
+      samples += missed;
+      idleSamples += missed;
+      running = false;
+      cpu.removeOperatingModeListener(modeListener);
+    }
+    sampleEvent.remove();
+  }
+
+  @Override
+  public void notifyReset() {
+    /* the CPU removes all events on reset */
+    if (running && cpu.getMode() == MSP430Constants.MODE_ACTIVE) {
+      resume();
+    }
+  }
+
+  /**
+   * Counts the samples missed in a low power mode as idle, and schedules
+   * the next sample.
+   */
+  private void resume() {
+    long missed = missedSamples();
+    samples += missed;
+    idleSamples += missed;
+    nextSample += missed * period;
+    sampleEvent.remove();
+    cpu.scheduleCycleEvent(sampleEvent, nextSample);
+  }
+
+  /**
+   * @return Number of samples due before the current cycle that were not taken
+   */
+  private long missedSamples() {
+    if (!running || nextSample >= cpu.cycles) {
+      return 0;
+    }
+    return (cpu.cycles - nextSample + period - 1) / period;
+  }
+
+  public void clear() {
+    Arrays.fill(table, 0);
+    size = 0;
+    samples = 0;
+    idleSamples = 0;
+  }
+
+  /**
+   * @return Number of samples, including samples with the CPU off
+   */
+  public long getSampleCount() {
+    return samples + idleMissedSamples();
+  }
+
+  /**
+   * @return Number of samples taken in a low power mode
+   */
+  public long getIdleSampleCount() {
+    return idleSamples + idleMissedSamples();
+  }
+
+  /* Samples missed so far in the current low power mode */
+  private long idleMissedSamples() {
+    return cpu.getMode() == MSP430Constants.MODE_ACTIVE ? 0 : missedSamples();
+  }
+
+  /**
+   * @return Profiler holding the calling contexts of the samples, or null
+   */
+  public SimpleProfiler getContexts() {
+    return contexts;
+  }
+
+  /**
+   * Visits the sample count of each calling context and PC with the CPU active.
+   */
+  public void visitSamples(SampleVisitor visitor) {
+    long[] table = this.table;
+    for (int i = 0; i < table.length; i += 2) {
+      long key = table[i] - 1;
+      if (key >= 0) {
+        visitor.visit((int) (key >>> 20), (int) key & 0xfffff, (int) table[i + 1]);
+      }
+    }
+  }
+
+  @Override
+  public int getConfiguration(int parameter) {
+    return 0;
+  }
+
+  @Override
+  public int getModeMax() {
+    return 0;
+  }
+
+  private static int slot(long key, int mask) {
+    return ((int) (key ^ (key >>> 23)) * 0x9E3779B9 & mask) << 1;
+  }
+
+  private void sample() {
+    samples++;
+    if (cpu.getMode() != MSP430Constants.MODE_ACTIVE) {
+      idleSamples++;
+      return;
+    }
+    int context = contexts == null ? 0 : contexts.getCurrentContext();
+    long key = (((long) context << 20) | (cpu.getPC() & 0xfffff)) + 1;
+    long[] table = this.table;
+    int mask = (table.length >> 1) - 1;
+    int slot = slot(key, mask);
+    long k;
+    while ((k = table[slot]) != 0) {
+      if (k == key) {
+        table[slot + 1]++;
+        return;
+      }
+      slot = (slot + 2) & (table.length - 1);
+    }
+    table[slot] = key;
+    table[slot + 1] = 1;
+    if (++size * 4 > table.length) {
+      rehash();
+    }
+  }
+
+  private void rehash() {
+    long[] old = table;
+    long[] table = new long[old.length * 2];
+    int mask = (table.length >> 1) - 1;
+    for (int i = 0; i < old.length; i += 2) {
+      long key = old[i];
+      if (key != 0) {
+        int slot = slot(key, mask);
+        while (table[slot] != 0) {
+          slot = (slot + 2) & (table.length - 1);
+        }
+        table[slot] = key;
+        table[slot + 1] = old[i + 1];
+      }
+    }
+    this.table = table;
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package se.sics.mspsim.profiler;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import se.sics.mspsim.util.DebugInfo;
+import se.sics.mspsim.util.ELF;
+import se.sics.mspsim.util.MapEntry;
+import se.sics.mspsim.util.MapTable;
+import se.sics.mspsim.util.Utils;
+
+/**
+ * Aggregates the samples of one or more sample profilers running the same
+ * firmware into a per-function and per-line report and collapsed stacks.
+ */
+public class SampleReport {
+
+  private final MapTable map;
+  private final ELF elf;
+
+  /* samples per PC / 2 */
+  private final int[] pcSamples = new int[0x80000];
+  private final TreeMap<String, Long> stacks = new TreeMap<>();
+  private long samples;
+  private long idleSamples;
+  private int profilers;
+
+  /**
+   * @param map Map table of the firmware
+   * @param elf Firmware with debug information for line numbers, or null
+   */
+  public SampleReport(MapTable map, ELF elf) {
+    this.map = map;
+    this.elf = elf;
+  }
+
+  public void add(SampleProfiler profiler) {
+    SimpleProfiler contexts = profiler.getContexts();
+    HashMap<Integer, String> paths = new HashMap<>();
+    profiler.visitSamples((context, pc, count) -> {
+      pcSamples[pc >> 1] += count;
+      MapEntry function = map.getFunctionAt(pc);
+      String leaf = function == null ? "$" + Utils.hex(pc, 5) : function.getName().replace(';', ':');
+      String stack;
+      if (contexts == null || context == 0) {
+        stack = leaf;
+      } else {
+        String path = paths.computeIfAbsent(context, contexts::getContextPath);
+        MapEntry top = contexts.getContextFunction(context);
+        /* interrupt handlers and inlined code are not on the call stack */
+        stack = top != null && top.getName().equals(function == null ? null : function.getName())
+            ? path : path + ';' + leaf;
+      }
+      stacks.merge(stack, (long) count, Long::sum);
+    });
+    samples += profiler.getSampleCount();
+    idleSamples += profiler.getIdleSampleCount();
+    profilers++;
+  }
+
+  public long getSampleCount() {
+    return samples;
+  }
+
+  public void printReport(PrintStream out) {
+    long active = samples - idleSamples;
+    out.println("Samples: " + samples + " from " + profilers + " CPUs, CPU off: " + idleSamples
+        + " (" + percent(idleSamples, samples) + "%)");
+    if (active == 0) {
+      return;
+    }
+
+    long[] functionSamples = new long[map.getFunctionCount()];
+    long unknown = 0;
+    HashMap<String, long[]> lineSamples = new HashMap<>();
+    for (int i = 0; i < pcSamples.length; i++) {
+      int count = pcSamples[i];
+      if (count == 0) {
+        continue;
+      }
+      int pc = i << 1;
+      MapEntry function = map.getFunctionAt(pc);
+      if (function == null) {
+        unknown += count;
+      } else {
+        functionSamples[function.getIndex()] += count;
+      }
+      DebugInfo di = elf == null ? null : elf.getDebugInfo(pc);
+      String line = di == null ? "$" + Utils.hex(pc, 5) : di.getFile() + ':' + di.getLine();
+      lineSamples.computeIfAbsent(line, k -> new long[1])[0] += count;
+    }
+
+    out.println("Function                                     Samples       %");
+    ArrayList<Map.Entry<String, Long>> rows = new ArrayList<>();
+    for (int i = 0; i < functionSamples.length; i++) {
+      if (functionSamples[i] > 0) {
+        rows.add(Map.entry(map.getFunction(i).getName(), functionSamples[i]));
+      }
+    }
+    if (unknown > 0) {
+      rows.add(Map.entry("(unknown)", unknown));
+    }
+    printRows(out, rows, active);
+
+    out.println("Line                                         Samples       %");
+    rows.clear();
+    for (var entry : lineSamples.entrySet()) {
+      rows.add(Map.entry(entry.getKey(), entry.getValue()[0]));
+    }
+    printRows(out, rows, active);
+  }
+
+  private static void printRows(PrintStream out, ArrayList<Map.Entry<String, Long>> rows, long total) {
+    rows.sort((o1, o2) -> Long.compare(o2.getValue(), o1.getValue()));
+    for (var row : rows) {
+      out.printf("%-40s %12d %7s%n", row.getKey(), row.getValue(), percent(row.getValue(), total));
+    }
+  }
+
+  private static String percent(long value, long total) {
+    return total == 0 ? "0.0" : String.format("%.1f", 100.0 * value / total);
+  }
+
+  /**
+   * Prints the sampled call stacks in the collapsed stack format used by
+   * flame graph tools.
+   *
+   * @param out Output
+   * @param root Name of a root frame added to all stacks, or null
+   */
+  public void printCollapsedStacks(PrintStream out, String root) {
+    if (root == null) {
+      SimpleProfiler.printCollapsedStacks(out, stacks);
+      return;
+    }
+    String prefix = root.replace(';', ':') + ';';
+    for (var entry : stacks.entrySet()) {
+      out.print(prefix);
+      out.print(entry.getKey());
+      out.print(' ');
+      out.println(entry.getValue());
+    }
+  }
+}
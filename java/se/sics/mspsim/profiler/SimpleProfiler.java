@@ -39,13 +39,12 @@
 
 package se.sics.mspsim.profiler;
 import java.io.PrintStream;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.List;
-import java.util.Map.Entry;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
 
 import se.sics.mspsim.core.Chip;
@@ -53,25 +52,72 @@ import se.sics.mspsim.core.EventListener;
 import se.sics.mspsim.core.EventSource;
 import se.sics.mspsim.core.MSP430Core;
 import se.sics.mspsim.core.Profiler;
-import se.sics.mspsim.profiler.CallEntry.CallCounter;
 import se.sics.mspsim.util.ArrayUtils;
 import se.sics.mspsim.util.MapEntry;
 import se.sics.mspsim.util.StackMonitor;
 import se.sics.mspsim.util.Utils;
 
+/**
+ * Call profiler. Functions are given dense ids from their map table
+ * index and all statistics are kept in primitive arrays indexed by id.
+ * <p>
+ * Calls are tracked on a shadow stack of fixed depth. Each frame also
+ * refers to a node in a calling context tree, where the exclusive cycles
+ * of every distinct call stack are accumulated for flame graph export.
+ * Calls nested deeper than {@link #MAX_DEPTH} are not profiled.
+ */
 public class SimpleProfiler implements Profiler, EventListener {
 
-  private final HashMap<MapEntry,CallEntry> profileData = new HashMap<>();
+  public static final int MAX_DEPTH = 256;
+
   private final HashMap<String, TagEntry> tagProfiles = new HashMap<>();
   private final HashMap<String, TagEntry> startTags = new HashMap<>();
   private final HashMap<String, TagEntry> endTags = new HashMap<>();
   private final HashMap<String, String> ignoreFunctions = new HashMap<>();
-  private CallEntry[] callStack = new CallEntry[64];
-  private int cSP;
   private MSP430Core cpu;
   private PrintStream logger;
   private boolean hideIRQ;
 
+  /* function id table */
+  private MapEntry[] functions = new MapEntry[256];
+  private int functionCount;
+  /* map table index + 1 -> function id, 0 if not known */
+  private int[] idByIndex = new int[256];
+  /* functions not found through their map table index */
+  private final HashMap<MapEntry, Integer> functionIds = new HashMap<>();
+
+  /* per function statistics */
+  private int[] calls = new int[256];
+  private long[] cycles = new long[256];
+  private long[] exclusiveCycles = new long[256];
+  private int[] stackMax = new int[256];
+
+  /* calling context tree, node 0 is the root */
+  private int[] nodeParent = new int[1024];
+  private int[] nodeFunction = new int[1024];
+  private int[] nodeCalls = new int[1024];
+  private long[] nodeCycles = new long[1024];
+  private int nodeCount = 1;
+  /* open addressing table: (parent node, function id) -> child node */
+  private long[] childKeys = new long[2048];
+  private int[] childNodes = new int[2048];
+
+  /* shadow call stack */
+  private final int[] frameFunction = new int[MAX_DEPTH];
+  private final int[] frameNode = new int[MAX_DEPTH];
+  private final long[] frameCycles = new long[MAX_DEPTH];
+  private final long[] frameExclusiveCycles = new long[MAX_DEPTH];
+  private final int[] frameFromPC = new int[MAX_DEPTH];
+  private final int[] frameHide = new int[MAX_DEPTH];
+  private final boolean[] frameCounted = new boolean[MAX_DEPTH];
+  private final int[] frameStackStart = new int[MAX_DEPTH];
+  private final int[] frameStackMax = new int[MAX_DEPTH];
+  private int cSP;
+  /* calls above the shadow stack that are not profiled */
+  private int overflowDepth;
+  private long overflowCalls;
+
+  private final CallEntry callEntry = new CallEntry();
   private CallListener[] callListeners;
 
   /* statistics for interrupts */
@@ -102,22 +148,104 @@ public class SimpleProfiler implements Profiler, EventListener {
     ignoreFunctions.put(function, function);
   }
 
+  private int getFunctionId(MapEntry entry) {
+    int index = entry.getIndex();
+    if (index >= 0 && index < idByIndex.length) {
+      int id = idByIndex[index] - 1;
+      /* the entry may come from another map table after a firmware reload */
+      if (id >= 0 && functions[id] == entry) {
+        return id;
+      }
+    }
+    Integer known = functionIds.get(entry);
+    int id;
+    if (known != null) {
+      id = known;
+    } else {
+      id = functionCount++;
+      if (id == functions.length) {
+        int size = id * 2;
+        functions = Arrays.copyOf(functions, size);
+        calls = Arrays.copyOf(calls, size);
+        cycles = Arrays.copyOf(cycles, size);
+        exclusiveCycles = Arrays.copyOf(exclusiveCycles, size);
+        stackMax = Arrays.copyOf(stackMax, size);
+      }
+      functions[id] = entry;
+      functionIds.put(entry, id);
+    }
+    if (index >= 0) {
+      if (index >= idByIndex.length) {
+        idByIndex = Arrays.copyOf(idByIndex, Math.max(index + 1, idByIndex.length * 2));
+      }
+      idByIndex[index] = id + 1;
+    }
+    return id;
+  }
+
+  private int getChildNode(int parent, int function) {
+    long key = ((long) parent << 32) | function;
+    int mask = childKeys.length - 1;
+    int slot = (int) (key ^ (key >>> 29)) * 0x9E3779B9 & mask;
+    int node;
+    while ((node = childNodes[slot]) != 0) {
+      if (childKeys[slot] == key) {
+        return node;
+      }
+      slot = (slot + 1) & mask;
+    }
+    node = nodeCount++;
+    if (node == nodeParent.length) {
+      int size = node * 2;
+      nodeParent = Arrays.copyOf(nodeParent, size);
+      nodeFunction = Arrays.copyOf(nodeFunction, size);
+      nodeCalls = Arrays.copyOf(nodeCalls, size);
+      nodeCycles = Arrays.copyOf(nodeCycles, size);
+    }
+    nodeParent[node] = parent;
+    nodeFunction[node] = function;
+    childKeys[slot] = key;
+    childNodes[slot] = node;
+    if (nodeCount * 2 > childKeys.length) {
+      rehashChildNodes();
+    }
+    return node;
+  }
+
+  private void rehashChildNodes() {
+    long[] oldKeys = childKeys;
+    int[] oldNodes = childNodes;
+    childKeys = new long[oldKeys.length * 2];
+    childNodes = new int[oldNodes.length * 2];
+    int mask = childKeys.length - 1;
+    for (int i = 0; i < oldNodes.length; i++) {
+      if (oldNodes[i] != 0) {
+        long key = oldKeys[i];
+        int slot = (int) (key ^ (key >>> 29)) * 0x9E3779B9 & mask;
+        while (childNodes[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        childKeys[slot] = key;
+        childNodes[slot] = oldNodes[i];
+      }
+    }
+  }
+
   @Override
   public void profileCall(MapEntry entry, long cycles, int from) {
-    if (cSP == callStack.length) {
-      CallEntry[] tmp = new CallEntry[cSP + 64];
-      System.arraycopy(callStack, 0, tmp, 0, cSP);
-      callStack = tmp;
-    }
-    if (callStack[cSP] == null) {
-      callStack[cSP] = new CallEntry();
+    if (cSP == MAX_DEPTH) {
+      overflowDepth++;
+      overflowCalls++;
+      newIRQ = false;
+      return;
     }
+    int id = getFunctionId(entry);
 
     int hide = 0;
     PrintStream logger = this.logger;
     if (logger != null) {
       /* hide this if last call was to be hidden */
-      hide = (cSP == 0 || newIRQ) ? 0 : callStack[cSP - 1].hide;
+      hide = (cSP == 0 || newIRQ) ? 0 : frameHide[cSP - 1];
       /* increase level of "hide" if last was hidden */
       if (hide > 0) hide++;
       if ((!hideIRQ || servicedInterrupt == -1) && hide == 0) {
@@ -131,28 +259,33 @@ public class SimpleProfiler implements Profiler, EventListener {
       }
     }
 
-    CallEntry ce = callStack[cSP++];
-    ce.function = entry;
-    ce.calls = 0;
-    ce.cycles = cycles;
-    ce.exclusiveCycles = cycles;
-    ce.hide = hide;
-    ce.fromPC = from;
+    int sp = cSP++;
+    frameFunction[sp] = id;
+    frameNode[sp] = getChildNode(sp == 0 ? 0 : frameNode[sp - 1], id);
+    frameCycles[sp] = cycles;
+    frameExclusiveCycles[sp] = cycles;
+    frameHide[sp] = hide;
+    frameFromPC[sp] = from;
+    frameCounted[sp] = true;
     newIRQ = false;
 
 
     if (stackMonitor != null) {
         /* get the current stack MAX for previous function */
-        if (cSP > 1) {
-            callStack[cSP - 2].currentStackMax = stackMonitor.getProfStackMax();
+        if (sp > 0) {
+            frameStackMax[sp - 1] = stackMonitor.getProfStackMax();
         }
         /* start stack here! */
-        ce.stackStart = stackMonitor.getStack();
+        frameStackStart[sp] = stackMonitor.getStack();
         stackMonitor.setProfStackMax(stackMonitor.getStack());
     }
 
     CallListener[] listeners = callListeners;
     if (listeners != null) {
+      CallEntry ce = callEntry;
+      ce.function = entry;
+      ce.cycles = cycles;
+      ce.fromPC = from;
       for (CallListener listener : listeners) {
         listener.functionCall(this, ce);
       }
@@ -161,75 +294,61 @@ public class SimpleProfiler implements Profiler, EventListener {
 
   @Override
   public void profileReturn(long cycles) {
+    if (overflowDepth > 0) {
+      overflowDepth--;
+      newIRQ = false;
+      return;
+    }
     if (cSP <= 0) {
       /* the stack pointer might have been messed with? */
-      PrintStream logger = this.logger;
-      if (logger != null) {
-          // logger.println("SimpleProfiler: Too many returns?");
-      } else {
-        // System.err.println("SimpleProfiler: Too many returns?");
-      }
       return;
     }
-    CallEntry cspEntry = callStack[--cSP];
-    MapEntry fkn = cspEntry.function;
-//     System.out.println("Profiler: return / call stack: " + cSP + ", " + fkn);
+    int sp = --cSP;
+    int id = frameFunction[sp];
 
-    long elapsed = cycles - cspEntry.cycles;
-    long exElapsed = cycles - cspEntry.exclusiveCycles;
-    if (cSP != 0) {
-      callStack[cSP-1].exclusiveCycles += elapsed;
+    long elapsed = cycles - frameCycles[sp];
+    long exElapsed = cycles - frameExclusiveCycles[sp];
+    if (sp != 0) {
+      frameExclusiveCycles[sp - 1] += elapsed;
     }
     int maxUsage = 0;
 
-    if (cspEntry.calls >= 0) {
-      CallEntry ce = profileData.get(fkn);
-      if (ce == null) {
-        profileData.put(fkn, ce = new CallEntry());
-        ce.function = fkn;
-      }
-      ce.cycles += elapsed;
-      ce.exclusiveCycles += exElapsed;
-      ce.calls++;
+    if (frameCounted[sp]) {
+      this.cycles[id] += elapsed;
+      exclusiveCycles[id] += exElapsed;
+      calls[id]++;
+      int node = frameNode[sp];
+      nodeCycles[node] += exElapsed;
+      nodeCalls[node]++;
 
       if (stackMonitor != null) {
-          maxUsage = stackMonitor.getProfStackMax() - cspEntry.stackStart;
-          ce.stackStart = cspEntry.stackStart;
-          if (maxUsage > ce.currentStackMax) {
-              ce.currentStackMax = maxUsage;
+          maxUsage = stackMonitor.getProfStackMax() - frameStackStart[sp];
+          if (maxUsage > stackMax[id]) {
+              stackMax[id] = maxUsage;
           }
-          if (cSP != 0) {
+          if (sp != 0) {
               /* put the max for previous function back into the max profiler */
-              stackMonitor.setProfStackMax(callStack[cSP-1].currentStackMax);
+              stackMonitor.setProfStackMax(frameStackMax[sp - 1]);
           }
       }
 
-
-
-      if (cSP != 0) {
-        MapEntry caller = callStack[cSP-1].function;
-        HashMap<MapEntry,CallCounter> callers = ce.callers;
-        CallCounter numCalls = callers.get(caller);
-        if (numCalls == null) {
-          numCalls = new CallCounter();
-          callers.put(caller, numCalls);
-        }
-        numCalls.count++;
-      }
-
       PrintStream logger = this.logger;
       if (logger != null) {
-        if ((cspEntry.hide <= 1) && (!hideIRQ || servicedInterrupt == -1)) {
+        if ((frameHide[sp] <= 1) && (!hideIRQ || servicedInterrupt == -1)) {
           if (servicedInterrupt >= 0) logger.printf("[%2d] ",servicedInterrupt);
-          printSpace(logger, (cSP - interruptLevel) * 2);
-          logger.println("return from " + ce.function.getInfo() + " elapsed: " + elapsed + " maxStackUsage: " + maxUsage);
+          printSpace(logger, (sp - interruptLevel) * 2);
+          logger.println("return from " + functions[id].getInfo() + " elapsed: " + elapsed + " maxStackUsage: " + maxUsage);
         }
       }
 
       CallListener[] listeners = callListeners;
       if (listeners != null) {
+        CallEntry ce = callEntry;
+        ce.function = functions[id];
+        ce.cycles = frameCycles[sp];
+        ce.fromPC = frameFromPC[sp];
         for (CallListener listener : listeners) {
-          listener.functionReturn(this, cspEntry);
+          listener.functionReturn(this, ce);
         }
       }
     }
@@ -273,20 +392,20 @@ public class SimpleProfiler implements Profiler, EventListener {
   public void resetProfile() {
     clearProfile();
     cSP = 0;
+    overflowDepth = 0;
     servicedInterrupt = -1;
   }
 
   @Override
   public void clearProfile() {
-    for (var entry : profileData.values().toArray(new CallEntry[0])) {
-      entry.cycles = 0;
-      entry.calls = 0;
-    }
-    for (var e : callStack) {
-      if (e != null) {
-        e.calls = -1;
-      }
-    }
+    Arrays.fill(calls, 0);
+    Arrays.fill(cycles, 0);
+    Arrays.fill(exclusiveCycles, 0);
+    Arrays.fill(nodeCalls, 0);
+    Arrays.fill(nodeCycles, 0);
+    overflowCalls = 0;
+    /* calls in progress are not counted */
+    Arrays.fill(frameCounted, false);
   }
 
   @Override
@@ -300,9 +419,11 @@ public class SimpleProfiler implements Profiler, EventListener {
     String profSort = parameters.getProperty(PARAM_SORT_MODE);
     boolean profCallers = parameters.getProperty(PARAM_PROFILE_CALLERS) != null;
     Pattern pattern = null;
-    CallEntry[] entries = profileData.values().toArray(new CallEntry[0]);
-
-    Arrays.sort(entries, new CallEntryComparator(profSort));
+    Integer[] ids = new Integer[functionCount];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = i;
+    }
+    Arrays.sort(ids, new CallComparator(profSort));
 
     out.println("************************* Profile Data **************************************");
     out.println("Function                              Calls    Average       Total  Exclusive");
@@ -310,15 +431,15 @@ public class SimpleProfiler implements Profiler, EventListener {
     if (functionNameRegexp != null && !functionNameRegexp.isEmpty()) {
       pattern = Pattern.compile(functionNameRegexp);
     }
-    for (CallEntry entry : entries) {
-      int c = entry.calls;
+    for (int id : ids) {
+      int c = calls[id];
       if (c > 0) {
-        String functionName = entry.function.getName();
+        String functionName = functions[id].getName();
         if (pattern == null || pattern.matcher(functionName).find()) {
-          String cyclesS = String.valueOf(entry.cycles);
-          String exCyclesS = String.valueOf(entry.exclusiveCycles);
+          String cyclesS = String.valueOf(cycles[id]);
+          String exCyclesS = String.valueOf(exclusiveCycles[id]);
           String callS = String.valueOf(c);
-          String avgS = String.valueOf(entry.cycles / c);
+          String avgS = String.valueOf(cycles[id] / c);
           out.print(functionName);
           printSpace(out, 43 - functionName.length() - callS.length());
           out.print(callS);
@@ -331,11 +452,14 @@ public class SimpleProfiler implements Profiler, EventListener {
           printSpace(out, 11 - exCyclesS.length());
           out.println(exCyclesS);
           if (profCallers) {
-            printCallers(entry, out);
+            printCallers(id, out);
           }
         }
       }
     }
+    if (overflowCalls > 0) {
+      out.println("Calls deeper than " + MAX_DEPTH + " not profiled: " + overflowCalls);
+    }
     if (pattern == null) {
       out.println("********** Profile IRQ **************************");
       out.println("Vector          Average    Calls  Tot.Cycles");
@@ -348,13 +472,26 @@ public class SimpleProfiler implements Profiler, EventListener {
     }
   }
 
-  private static void printCallers(CallEntry callEntry, PrintStream out) {
-    HashMap<MapEntry,CallCounter> callers = callEntry.callers;
-    List<Entry<MapEntry,CallCounter>> list = new ArrayList<>(callers.entrySet());
-    list.sort((o1, o2) -> o2.getValue().compareTo(o1.getValue()));
-    for (Entry<MapEntry,CallCounter> entry : list) {
-      String functionName = entry.getKey().getName();
-      String callS = String.valueOf(entry.getValue().count);
+  private void printCallers(int function, PrintStream out) {
+    /* callers are the parents of the function in the calling context tree */
+    int[] callerCalls = new int[functionCount];
+    for (int node = 1; node < nodeCount; node++) {
+      int parent = nodeParent[node];
+      if (nodeFunction[node] == function && parent != 0) {
+        callerCalls[nodeFunction[parent]] += nodeCalls[node];
+      }
+    }
+    Integer[] callers = new Integer[functionCount];
+    for (int i = 0; i < callers.length; i++) {
+      callers[i] = i;
+    }
+    Arrays.sort(callers, (o1, o2) -> Integer.compare(callerCalls[o2], callerCalls[o1]));
+    for (int caller : callers) {
+      if (callerCalls[caller] == 0) {
+        break;
+      }
+      String functionName = functions[caller].getName();
+      String callS = String.valueOf(callerCalls[caller]);
       printSpace(out, 12 - callS.length());
       out.print(callS);
       printSpace(out, 2);
@@ -369,26 +506,92 @@ public class SimpleProfiler implements Profiler, EventListener {
     }
   }
 
+  /**
+   * @return Calling context of the current call stack, 0 if it is empty
+   */
+  public int getCurrentContext() {
+    return cSP == 0 ? 0 : frameNode[cSP - 1];
+  }
+
+  /**
+   * @return Innermost function of a calling context, or null for the root
+   */
+  public MapEntry getContextFunction(int context) {
+    return context == 0 ? null : functions[nodeFunction[context]];
+  }
+
+  /**
+   * @return Function names of a calling context separated by ';'
+   */
+  public String getContextPath(int context) {
+    StringBuilder sb = new StringBuilder();
+    for (int node = context; node != 0; node = nodeParent[node]) {
+      if (node != context) {
+        sb.insert(0, ';');
+      }
+      sb.insert(0, functions[nodeFunction[node]].getName().replace(';', ':'));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Adds the exclusive cycles of each call stack seen by this profiler to
+   * the given map, keyed by the function names of the stack separated by
+   * ';'. Adding the stacks of several profilers aggregates them.
+   *
+   * @param stacks Map of collapsed stacks to cycles
+   */
+  public void addCollapsedStacks(Map<String, Long> stacks) {
+    String[] paths = new String[nodeCount];
+    for (int node = 1; node < nodeCount; node++) {
+      /* parents are always created before their children */
+      int parent = nodeParent[node];
+      String name = functions[nodeFunction[node]].getName().replace(';', ':');
+      paths[node] = parent == 0 ? name : paths[parent] + ';' + name;
+      if (nodeCycles[node] > 0) {
+        stacks.merge(paths[node], nodeCycles[node], Long::sum);
+      }
+    }
+  }
+
+  /**
+   * Prints the call stacks in the collapsed stack format used by flame
+   * graph tools: one line per stack with the cycles spent in it.
+   */
+  public void printCollapsedStacks(PrintStream out) {
+    TreeMap<String, Long> stacks = new TreeMap<>();
+    addCollapsedStacks(stacks);
+    printCollapsedStacks(out, stacks);
+  }
+
+  public static void printCollapsedStacks(PrintStream out, Map<String, Long> stacks) {
+    for (var entry : stacks.entrySet()) {
+      out.print(entry.getKey());
+      out.print(' ');
+      out.println(entry.getValue());
+    }
+  }
+
   @Override
   public void printStackTrace(PrintStream out) {
     int stackCount = cSP;
-    out.println("Stack Trace: number of calls: " + stackCount
+    out.println("Stack Trace: number of calls: " + (stackCount + overflowDepth)
         + " PC: $" + Utils.hex(cpu.getPC(), 5));
     for (int i = 0; i < stackCount; i++) {
-      CallEntry call = callStack[stackCount - i - 1];
-      out.println("  " + call.function.getInfo()
-          + " called from PC: $" + Utils.hex(call.fromPC, 5)
-          + " (elapsed: " + (cpu.cpuCycles - call.cycles) + ')');
-      if (stackCount - i - 1 == interruptLevel && servicedInterrupt != -1) {
+      int sp = stackCount - i - 1;
+      out.println("  " + functions[frameFunction[sp]].getInfo()
+          + " called from PC: $" + Utils.hex(frameFromPC[sp], 5)
+          + " (elapsed: " + (cpu.cpuCycles - frameCycles[sp]) + ')');
+      if (sp == interruptLevel && servicedInterrupt != -1) {
         out.println(" *** Interrupt " + servicedInterrupt + " from PC: $" + Utils.hex(interruptFrom, 5));
       }
     }
   }
 
-  private static class CallEntryComparator implements Comparator<CallEntry> {
+  private class CallComparator implements Comparator<Integer> {
     private final int mode;
 
-    public CallEntryComparator(String modeS) {
+    public CallComparator(String modeS) {
       if ("exclusive".equalsIgnoreCase(modeS)) {
         mode = 1;
       } else if ("calls".equalsIgnoreCase(modeS)) {
@@ -403,16 +606,16 @@ public class SimpleProfiler implements Profiler, EventListener {
     }
 
     @Override
-    public int compare(CallEntry o1, CallEntry o2) {
+    public int compare(Integer o1, Integer o2) {
       long diff;
       switch (mode) {
-        case 1 -> diff = o2.exclusiveCycles - o1.exclusiveCycles;
-        case 2 -> diff = (long) o2.calls - o1.calls;
-        case 3 -> diff = (o2.calls > 0 ? (o2.cycles / o2.calls) : 0) - (o1.calls > 0 ? (o1.cycles / o1.calls) : 0);
+        case 1 -> diff = exclusiveCycles[o2] - exclusiveCycles[o1];
+        case 2 -> diff = (long) calls[o2] - calls[o1];
+        case 3 -> diff = (calls[o2] > 0 ? (cycles[o2] / calls[o2]) : 0) - (calls[o1] > 0 ? (cycles[o1] / calls[o1]) : 0);
         case 4 -> {
-          return o1.function.getName().compareTo(o2.function.getName());
+          return functions[o1].getName().compareTo(functions[o2].getName());
         }
-        default -> diff = o2.cycles - o1.cycles;
+        default -> diff = cycles[o2] - cycles[o1];
       }
       if (diff > 0) return 1;
       if (diff < 0) return -1;
@@ -522,11 +725,11 @@ public class SimpleProfiler implements Profiler, EventListener {
 
   @Override
   public String getCall(int i) {
-    return callStack[cSP - i - 1].function.getInfo();
+    return getCallMapEntry(i).getInfo();
   }
 
   public MapEntry getCallMapEntry(int i) {
-    return callStack[cSP - i - 1].function;
+    return functions[frameFunction[cSP - i - 1]];
   }
 
 }
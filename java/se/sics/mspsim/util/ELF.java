@@ -36,11 +36,17 @@
  */
 
 package se.sics.mspsim.util;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import se.sics.mspsim.debug.DwarfReader;
 import se.sics.mspsim.debug.StabDebug;
@@ -53,6 +59,11 @@ public class ELF {
 
   public static final boolean DEBUG = false;
 
+  /* Files at least this large are mapped from a private copy instead of read into the heap */
+  private static final int MAP_THRESHOLD = 1024 * 1024;
+
+  /* Read ELF files by canonical path, see getSharedELF() */
+  private static final HashMap<String, SharedELF> sharedFiles = new HashMap<>();
 
   boolean encMSB = true;
   int type;
@@ -69,7 +80,7 @@ public class ELF {
   int shnum;
   int shstrndx;
 
-  final byte[] elfData;
+  final ByteBuffer elfData;
   private int pos;
 
   private ELFSection[] sections;
@@ -80,28 +91,42 @@ public class ELF {
   ELFSection symTable;
   ELFSection dbgStab;
   public ELFSection dbgStabStr;
+  private boolean hasDwarf;
 
-  ELFDebug debug;
+  /* Decoded on first use */
+  private ELFDebug debug;
+  private MapEntry[] symbols;
+  private int heapStart = -1;
+  private int stackStart = -1;
 
   public ELF(byte[] data) {
-    elfData = data;
+    this(ByteBuffer.wrap(data));
+  }
+
+  /**
+   * @param data ELF file contents from the current position, for example a
+   *             read-only mapping of the file
+   */
+  public ELF(ByteBuffer data) {
+    elfData = data.slice();
     setPos(0);
   }
 
   private void readHeader() throws ELFException {
     for (int i = 0; i < MAGIC.length; i++) {
-      if (elfData[i] != (byte) (MAGIC[i] & 0xff)) {
+      if (elfData.get(i) != (byte) (MAGIC[i] & 0xff)) {
         throw new ELFException("Not an elf file");
       }
     }
 
-    if (elfData[EI_ENCODING] == 2) {
+    if (elfData.get(EI_ENCODING) == 2) {
       encMSB = true;
-    } else if (elfData[EI_ENCODING] == 1) {
+    } else if (elfData.get(EI_ENCODING) == 1) {
       encMSB = false;
     } else {
-      throw new ELFException("Illegal encoding: " + elfData[EI_ENCODING]);
+      throw new ELFException("Illegal encoding: " + elfData.get(EI_ENCODING));
     }
+    elfData.order(encMSB ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
 
     setPos(getPos() + 16);
     type = readElf16();
@@ -196,33 +221,15 @@ public class ELF {
   }
 
   int readElf32(int pos) {
-    int b;
-    if (encMSB) {
-      b = (elfData[pos++] & 0xff) << 24 |
-        ((elfData[pos++] & 0xff) << 16) |
-        ((elfData[pos++] & 0xff) << 8) |
-        (elfData[pos] & 0xff);
-    } else {
-      b = (elfData[pos++] & 0xff) |
-        ((elfData[pos++] & 0xff) << 8) |
-        ((elfData[pos++] & 0xff) << 16) |
-        ((elfData[pos] & 0xff) << 24);
-    }
-    return b;
+    return elfData.getInt(pos);
   }
 
   int readElf16(int pos) {
-    int b;
-    if (encMSB) {
-      b = ((elfData[pos++] & 0xff) << 8) | (elfData[pos] & 0xff);
-    } else {
-      b = (elfData[pos++] & 0xff) | ((elfData[pos] & 0xff) << 8);
-    }
-    return b;
+    return elfData.getShort(pos) & 0xffff;
   }
 
   int readElf8(int pos) {
-    return elfData[pos] & 0xff;
+    return elfData.get(pos) & 0xff;
   }
 
   private void readSections() {
@@ -239,7 +246,6 @@ public class ELF {
       }
     }
 
-    boolean readDwarf = false;
     /* Find sections */
     for (int i = 0, n = shnum; i < n; i++) {
         String name = sections[i].getSectionName();
@@ -254,15 +260,9 @@ public class ELF {
       }
       if (".debug_aranges".equals(name) ||
           ".debug_line".equals(name)) {
-          readDwarf = true;
+          hasDwarf = true;
       }
     }
-    if (readDwarf) {
-        DwarfReader dwarf = new DwarfReader(this);
-        dwarf.read();
-        debug = dwarf;
-    }
-
   }
 
   private void readPrograms() {
@@ -280,9 +280,6 @@ public class ELF {
     readHeader();
     readPrograms();
     readSections();
-    if (dbgStab != null) {
-      debug = new StabDebug(this, dbgStab, dbgStabStr);
-    }
   }
 
   public void loadPrograms(int[] memory) {
@@ -300,7 +297,7 @@ public class ELF {
              Integer.toString(addr, 16) + " fill " + fill);
     }
     for (int i = 0; i < len; i++) {
-      memory[addr++] = elfData[offset++] & 0xff;
+      memory[addr++] = elfData.get(offset++) & 0xff;
     }
     if (fill > len) {
       int n = fill - len;
@@ -313,18 +310,34 @@ public class ELF {
     }
   }
 
-  public ELFDebug getDebug() {
+  /**
+   * Returns the debug information, decoding the debug sections on first use.
+   *
+   * @return Debug information, or null if the file has none
+   */
+  public synchronized ELFDebug getDebug() {
+    if (debug == null) {
+      if (dbgStab != null) {
+        debug = new StabDebug(this, dbgStab, dbgStabStr);
+      } else if (hasDwarf) {
+        DwarfReader dwarf = new DwarfReader(this);
+        dwarf.read();
+        debug = dwarf;
+      }
+    }
     return debug;
   }
 
   public DebugInfo getDebugInfo(int adr) {
+      ELFDebug debug = getDebug();
       if (debug != null) {
           return debug.getDebugInfo(adr);
       }
       return null;
   }
 
-  public String lookupFile(int address) {
+  public synchronized String lookupFile(int address) {
+    ELFDebug debug = getDebug();
     if (debug != null) {
         DebugInfo di = debug.getDebugInfo(address);
         if (di != null) {
@@ -339,8 +352,33 @@ public class ELF {
     return null;
   }
 
+  /**
+   * Creates a map table of the symbols. The symbol table is decoded on first
+   * use and each call returns a new map table with its own entries.
+   */
   public MapTable getMap() {
+    MapEntry[] entries;
+    synchronized (this) {
+      if (symbols == null) {
+        symbols = readSymbols();
+      }
+      entries = symbols;
+    }
     MapTable map = new MapTable();
+    for (MapEntry entry : entries) {
+      map.setEntry(new MapEntry(entry.getType(), entry.getAddress(), entry.getSize(),
+          entry.getName(), entry.getFile(), entry.isLocal()));
+    }
+    map.setHeapStart(heapStart);
+    map.setStackStart(stackStart);
+    return map;
+  }
+
+  private MapEntry[] readSymbols() {
+    ArrayList<MapEntry> map = new ArrayList<>();
+    if (symTable == null) {
+      return new MapEntry[0];
+    }
     int sAddrHighest = -1;
     boolean foundEnd = false;
 
@@ -354,12 +392,11 @@ public class ELF {
     }
     int currentAddress = 0;
     for (int i = 0; i < count; i++) {
-      setPos(addr);
-      int nI = readElf32();
+      int nI = readElf32(addr);
       String sn = name.getName(nI);
-      int sAddr = readElf32();
-      int size = readElf32();
-      int info = readElf8();
+      int sAddr = readElf32(addr + 4);
+      int size = readElf32(addr + 8);
+      int info = readElf8(addr + 12);
       int bind = info >> 4;
       int type = info & 0xf;
 
@@ -370,7 +407,7 @@ public class ELF {
             currentAddress = sAddr;
           }
         } else if (!sn.startsWith("_")) {
-            map.setEntry(new MapEntry(MapEntry.TYPE.variable, sAddr, 0, sn, currentFile,
+            map.add(new MapEntry(MapEntry.TYPE.variable, sAddr, 0, sn, currentFile,
                     false));
         }
       }
@@ -391,9 +428,9 @@ public class ELF {
         }
         if ("_end".equals(sn)) {
       foundEnd = true;
-          map.setHeapStart(sAddr);
+          heapStart = sAddr;
         } else if ("__stack".equals(sn)){
-          map.setStackStart(sAddr);
+          stackStart = sAddr;
         }
 
 
@@ -402,14 +439,14 @@ public class ELF {
           if (file == null) {
             file = currentFile;
           }
-          map.setEntry(new MapEntry(MapEntry.TYPE.function, sAddr, 0, sn, file,
+          map.add(new MapEntry(MapEntry.TYPE.function, sAddr, 0, sn, file,
               bind == ELFSection.SYMBIND_LOCAL));
         } else if (type == ELFSection.SYMTYPE_OBJECT) {
           String file = lookupFile(sAddr);
           if (file == null) {
             file = currentFile;
           }
-          map.setEntry(new MapEntry(MapEntry.TYPE.variable, sAddr, size, sn, file,
+          map.add(new MapEntry(MapEntry.TYPE.variable, sAddr, size, sn, file,
               bind == ELFSection.SYMBIND_LOCAL));
         } else {
           if (DEBUG) {
@@ -423,24 +460,78 @@ public class ELF {
 
   if (!foundEnd && sAddrHighest > 0) {
     System.out.printf("Warning: Unable to parse _end symbol. I'm guessing that heap starts at 0x%05x\n", sAddrHighest);
-    map.setHeapStart(sAddrHighest);
+    heapStart = sAddrHighest;
   }
 
-    return map;
+    return map.toArray(new MapEntry[0]);
   }
 
   public static ELF readELF(String file) throws IOException {
-    try (var input = new DataInputStream(new FileInputStream(file));
-         var baous = new ByteArrayOutputStream(65536)) {
-      byte[] buf = new byte[2048];
-      for (int read; (read = input.read(buf)) != -1; baous.write(buf, 0, read)) {
+    ByteBuffer data;
+    try (var channel = FileChannel.open(Path.of(file), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new ELFException("File too large: " + file);
       }
-      byte[] data = baous.toByteArray();
-      if (DEBUG) {
-        System.out.println("Length of data: " + data.length);
+      if (size >= MAP_THRESHOLD) {
+        data = mapPrivateCopy(channel, size);
+      } else {
+        data = ByteBuffer.allocate((int) size);
+        while (data.hasRemaining() && channel.read(data) != -1) {
+        }
+        data.flip();
+      }
+    }
+    if (DEBUG) {
+      System.out.println("Length of data: " + data.limit());
+    }
+    ELF elf = new ELF(data);
+    elf.readAll();
+    return elf;
+  }
+
+  /**
+   * Maps a private copy of a file. Debug information is decoded lazily, and
+   * firmware files are commonly rebuilt in place, so mapping the file itself
+   * would fail on the next access once it is truncated. The copy is deleted
+   * when the channel is closed, the mapping stays valid until it is
+   * garbage collected.
+   */
+  private static ByteBuffer mapPrivateCopy(FileChannel channel, long size) throws IOException {
+    Path copy = Files.createTempFile("elf", ".tmp");
+    try (var out = FileChannel.open(copy, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                    StandardOpenOption.DELETE_ON_CLOSE)) {
+      long pos = 0;
+      while (pos < size) {
+        long n = channel.transferTo(pos, size - pos, out);
+        if (n <= 0) {
+          throw new ELFException("File changed while reading");
+        }
+        pos += n;
+      }
+      return out.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+  }
+
+  /**
+   * Reads an ELF file, or returns the instance already read for the same
+   * file if it is still in use and the file has not changed since.
+   * The debug information and symbols are then only decoded once for all
+   * users of the file, so the returned instance must not be modified.
+   */
+  public static ELF getSharedELF(String file) throws IOException {
+    File canonical = new File(file).getCanonicalFile();
+    String path = canonical.getPath();
+    long modified = canonical.lastModified();
+    long length = canonical.length();
+    synchronized (sharedFiles) {
+      sharedFiles.values().removeIf(shared -> shared.get() == null);
+      SharedELF shared = sharedFiles.get(path);
+      ELF elf = shared == null ? null : shared.get();
+      if (elf == null || shared.modified != modified || shared.length != length) {
+        elf = readELF(path);
+        sharedFiles.put(path, new SharedELF(elf, modified, length));
       }
-      ELF elf = new ELF(data);
-      elf.readAll();
       return elf;
     }
   }
@@ -461,7 +552,7 @@ public class ELF {
           }
           for (int j = 0, m = 2000; j < m; j++) {
             if (DEBUG) {
-              System.out.print((char) elf.elfData[adr++]);
+              System.out.print((char) elf.elfData.get(adr++));
               if (i % 20 == 19) {
                 System.out.println();
               }
@@ -491,4 +582,15 @@ public class ELF {
   }
 
   private record FileInfo(String name, int start, int end) {}
+
+  private static class SharedELF extends WeakReference<ELF> {
+    final long modified;
+    final long length;
+
+    SharedELF(ELF elf, long modified, long length) {
+      super(elf);
+      this.modified = modified;
+      this.length = length;
+    }
+  }
 } // ELF
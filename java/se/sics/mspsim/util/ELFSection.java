@@ -112,8 +112,8 @@ public class ELFSection {
     int pos = getOffset() + i;
     StringBuilder sb = new StringBuilder();
     char c;
-    int elfSize = elf.elfData.length;
-    while (pos < elfSize && (c = (char) elf.elfData[pos++]) != 0) {
+    int elfSize = elf.elfData.limit();
+    while (pos < elfSize && (c = (char) elf.elfData.get(pos++)) != 0) {
       sb.append(c);
     }
     return sb.toString();
@@ -40,189 +40,986 @@
  */
 package se.sics.mspsim.util;
 
-import java.io.DataInputStream;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
 import java.io.IOException;
-import java.io.OutputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import se.sics.mspsim.core.EmulationException;
-import se.sics.mspsim.core.MSP430Core;
+import se.sics.mspsim.core.MSP430;
+import se.sics.mspsim.core.MSP430Constants;
 import se.sics.mspsim.core.Memory;
+import se.sics.mspsim.core.Memory.AccessMode;
+import se.sics.mspsim.core.Memory.AccessType;
+import se.sics.mspsim.core.MemoryMonitor;
 
+/**
+ * GDB remote serial protocol server.
+ * <p>
+ * A single selector thread serves all connections on the port, and each
+ * connection debugs one of the targets added to the server. Targets are
+ * presented to GDB as processes. With a single target GDB can connect
+ * with "target remote :PORT". Otherwise connect with
+ * "target extended-remote :PORT", list the targets with
+ * "info os processes" and attach to one with "attach ID". Only the
+ * attached target is stopped, the others keep running.
+ * <p>
+ * Memory can be transferred in binary with the x and X packets, acks can
+ * be turned off with QStartNoAckMode, and the Z0-Z4 breakpoints and
+ * watchpoints are CPU watchpoints, so the firmware is never patched.
+ */
 public final class GDBStubs implements Runnable {
 
     private final static String OK = "OK";
+    private final static int PACKET_SIZE = 0x4000;
+    private final static int REGISTERS = 16;
+    private final static int SIGINT = 2;
+    private final static int SIGTRAP = 5;
+
+    /**
+     * A CPU that can be debugged. Registers and memory are only accessed
+     * while the target is stopped.
+     */
+    public interface Target {
+
+        MSP430 getCPU();
+
+        /**
+         * @return Description shown by GDB
+         */
+        String getName();
+
+        /**
+         * Stops the CPU before its next instruction and keeps it stopped
+         * until resumed. Called from the server thread, and from the
+         * emulation when a breakpoint or watchpoint is hit.
+         *
+         * @param stopped Called from any thread once the CPU is stopped
+         */
+        void stop(Runnable stopped);
+
+        /**
+         * Resumes the stopped CPU, or executes a single instruction.
+         *
+         * @param step    Execute one instruction and stay stopped
+         * @param stopped Called from any thread after a single step
+         */
+        void resume(boolean step, Runnable stopped);
+    }
+
+    /**
+     * Target for a CPU driven by its own CPU loop, as in standalone MSPSim.
+     */
+    public static class CPUTarget implements Target {
+
+        private final MSP430 cpu;
+        private volatile Thread loop;
+
+        public CPUTarget(MSP430 cpu) {
+            this.cpu = cpu;
+        }
+
+        @Override
+        public MSP430 getCPU() {
+            return cpu;
+        }
+
+        @Override
+        public String getName() {
+            return "MSPSim " + cpu.config.getClass().getSimpleName();
+        }
+
+        @Override
+        public void stop(Runnable stopped) {
+            Thread t = loop;
+            /* The CPU loop clears stop requests made before it started,
+             * so keep stopping until the CPU is no longer running. */
+            Thread waiter = new Thread(() -> {
+                try {
+                    while (t != null ? t.isAlive() : cpu.isRunning()) {
+                        cpu.stop();
+                        if (t != null) {
+                            t.join(10);
+                        } else {
+                            Thread.sleep(10);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                stopped.run();
+            }, "GDBStubs.stop");
+            waiter.setDaemon(true);
+            waiter.start();
+        }
 
-    ServerSocket serverSocket;
-    OutputStream output;
-    final MSP430Core cpu;
+        @Override
+        public void resume(boolean step, Runnable stopped) {
+            if (step) {
+                try {
+                    cpu.stepInstructions(1);
+                } catch (EmulationException | IllegalStateException e) {
+                    System.err.println("GDBStubs: failed to step: " + e.getMessage());
+                }
+                stopped.run();
+                return;
+            }
+            if (cpu.isRunning() || loop != null && loop.isAlive()) {
+                return;
+            }
+            loop = new Thread(() -> {
+                try {
+                    cpu.cpuloop();
+                } catch (EmulationException | IllegalStateException e) {
+                    System.err.println("GDBStubs: CPU stopped: " + e.getMessage());
+                }
+            }, "GDBStubs.cpuloop");
+            loop.start();
+        }
+    }
+
+    private record Breakpoint(int type, int address, int length, MemoryMonitor monitor) {}
+
+    private final class TargetState {
+        final int id;
+        final Target target;
+        final MSP430 cpu;
+        final ArrayList<Breakpoint> breakpoints = new ArrayList<>();
+        /* Read by breakpoints in the emulation thread */
+        volatile Connection connection;
+        /* Incremented on every resume to ignore stale stop notifications */
+        volatile int generation;
+        volatile int stopSignal = SIGTRAP;
+        volatile String stopInfo = "";
+        /* Resumed and not yet reported as stopped */
+        boolean running;
+
+        TargetState(int id, Target target) {
+            this.id = id;
+            this.target = target;
+            this.cpu = target.getCPU();
+        }
 
-    public GDBStubs(MSP430Core cpu, int port) {
-        this.cpu = cpu;
+        /* Can be called from any thread */
+        void stop(int signal, String info) {
+            int gen = generation;
+            stopSignal = signal;
+            stopInfo = info;
+            target.stop(() -> execute(() -> stopped(this, gen)));
+        }
+
+        void resume(boolean step) {
+            int gen = ++generation;
+            running = true;
+            stopSignal = SIGTRAP;
+            stopInfo = "";
+            target.resume(step, () -> execute(() -> stopped(this, gen)));
+        }
+
+        String stopReply() {
+            return "T" + Utils.hex8(stopSignal) + "thread:" + Utils.hex(id) + ";" + stopInfo;
+        }
+    }
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    /* Only accessed by the server thread */
+    private final ArrayList<TargetState> targets = new ArrayList<>();
+    private volatile boolean closed;
+
+    public GDBStubs(MSP430 cpu, int port) throws IOException {
+        this(port);
+        addTarget(1, new CPUTarget(cpu));
+    }
+
+    public GDBStubs(int port) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
         try {
-            serverSocket = new ServerSocket(port);
-            System.out.println("GDBStubs open server socket port: " + port);
-            new Thread(this, "GDBStubs.setupServer").start();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
         } catch (IOException e) {
-            e.printStackTrace();
+            serverChannel.close();
+            selector.close();
+            throw e;
         }
+        System.out.println("GDBStubs open server socket port: " + port);
+        Thread thread = new Thread(this, "GDBStubs");
+        thread.setDaemon(true);
+        thread.start();
     }
 
-    final int[] buffer = new int[256];
-    int len;
+    /**
+     * @return Port the server listens on
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Makes a target available to GDB.
+     *
+     * @param id     Process id shown by GDB, must be positive and unique
+     * @param target Target
+     */
+    public void addTarget(int id, Target target) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("process id must be positive: " + id);
+        }
+        execute(() -> {
+            if (findTarget(id) != null) {
+                System.err.println("GDBStubs: process id " + id + " already in use, ignoring " + target.getName());
+                return;
+            }
+            targets.add(new TargetState(id, target));
+        });
+    }
+
+    /**
+     * Removes a target, detaching any GDB debugging it.
+     */
+    public void removeTarget(Target target) {
+        execute(() -> {
+            for (Iterator<TargetState> it = targets.iterator(); it.hasNext(); ) {
+                TargetState state = it.next();
+                if (state.target != target) {
+                    continue;
+                }
+                it.remove();
+                Connection c = state.connection;
+                if (c != null) {
+                    boolean waiting = c.waitingForStop;
+                    removeBreakpoints(state);
+                    state.connection = null;
+                    c.target = null;
+                    c.waitingForStop = false;
+                    if (waiting) {
+                        c.send("X09");
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes the server and all connections. Debugged targets are resumed.
+     */
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
 
     @Override
     public void run() {
-        while (true) {
-            try {
-                Socket s = serverSocket.accept();
-
-                DataInputStream input = new DataInputStream(s.getInputStream());
-                output = s.getOutputStream();
-
-                StringBuilder cmd = new StringBuilder();
-                boolean readCmd = false;
-                int c;
-                while ((c = input.read()) != -1) {
-                    System.out.println("GDBStubs: Read  " + c + " => "
-                            + (char) c);
-                    if (c == '#') {
-                        readCmd = false;
-                        /* ack the message */
-                        output.write('+');
-                        handleCmd(cmd.toString(), buffer);
-                        cmd = new StringBuilder();
-                        len = 0;
+        try {
+            while (!closed) {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        /* Keep serving the other connections and targets */
+                        e.printStackTrace();
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
                     }
-                    if (readCmd) {
-                        cmd.append((char) c);
-                        buffer[len++] = (c & 0xff);
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
                     }
-                    if (c == '$') {
-                        readCmd = true;
+                    Connection c = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            c.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            c.flush();
+                        }
+                    } catch (IOException e) {
+                        c.close();
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                        c.close();
                     }
                 }
-            } catch (IOException | EmulationException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
-    private void handleCmd(String cmd, int[] cmdBytes)
-    throws IOException, EmulationException {
-        System.out.println("cmd: " + cmd);
-        char c = cmd.charAt(0);
-        switch (c) {
-        case 'H':
-            sendResponse(OK);
-            break;
-        case 'q':
-            switch (cmd) {
-                case "qC" -> sendResponse("QC1");
-                case "qOffsets" -> sendResponse("Text=0;Data=0;Bss=0");
-                case "qfThreadInfo" -> sendResponse("m 01");
-                case "qsThreadInfo" -> sendResponse("l");
-                case "qSymbol::" -> sendResponse(OK);
-
-                //} else if ("qThreadExtraInfo,1".equals(cmd)){
-                //              sendResponse(stringToHex("Stoped"));
-                default -> {
-                    System.out.println("Command unknown");
-                    sendResponse("");
-                }
-            }
-
-            break;
-        case '?':
-            sendResponse("S01");
-            break;
-        case 'g':
-            readRegisters();
-            break;
-        case 'k': // kill
-            sendResponse(OK);
-            break;
-        case 'm':
-        case 'M':
-        case 'X':
-            String cmd2 = cmd.substring(1);
-            String[] wdata = cmd2.split(":");
-            int cPos = cmd.indexOf(':');
-            if (cPos > 0) {
-                /* only until length in first part */
-                cmd2 = wdata[0];
-            }
-            String[] parts = cmd2.split(",");
-            int addr = Integer.decode("0x" + parts[0]);
-            int len = Integer.decode("0x" + parts[1]);
-            StringBuilder data = new StringBuilder();
-            Memory mem = cpu.getMemory();
-            if (c == 'm') {
-                System.out.println("Returning memory from: " + addr + " len = "
-                        + len);
-                /* This might be wrong - which is the correct byte order? */
-                for (int i = 0; i < len; i++) {
-                    data.append(Utils.hex8(mem.get(addr++, Memory.AccessMode.BYTE)));
-                }
-                sendResponse(data.toString());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection c) {
+                    c.close();
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                // Ignore close errors
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+        System.out.println("GDBStubs: connection from " + channel.getRemoteAddress());
+    }
+
+    private TargetState findTarget(int id) {
+        for (TargetState state : targets) {
+            if (state.id == id) {
+                return state;
+            }
+        }
+        return null;
+    }
+
+    /* Called in the server thread when a target has stopped */
+    private void stopped(TargetState state, int generation) {
+        if (!targets.contains(state)) {
+            return;
+        }
+        Connection c = state.connection;
+        if (c == null) {
+            /* Stopped by a breakpoint hit while detaching */
+            state.target.resume(false, () -> {});
+            return;
+        }
+        if (generation != state.generation || !state.running) {
+            return;
+        }
+        state.running = false;
+        if (c.waitingForStop) {
+            c.waitingForStop = false;
+            c.send(state.stopReply());
+        }
+    }
+
+    private void attach(Connection c, TargetState state) {
+        detach(c);
+        c.target = state;
+        state.connection = c;
+        state.running = true;
+        c.waitingForStop = true;
+        state.stop(SIGTRAP, "");
+    }
+
+    private void detach(Connection c) {
+        TargetState state = c.target;
+        c.target = null;
+        c.waitingForStop = false;
+        if (state == null) {
+            return;
+        }
+        removeBreakpoints(state);
+        state.connection = null;
+        state.generation++;
+        state.running = false;
+        state.target.resume(false, () -> {});
+    }
+
+    /* The attached target if it is stopped, otherwise null */
+    private static TargetState stoppedTarget(Connection c) {
+        TargetState state = c.target;
+        return state == null || state.running ? null : state;
+    }
+
+    private void handlePacket(Connection c, byte[] data, int length) {
+        String cmd = new String(data, 0, length, ISO_8859_1);
+        if (cmd.isEmpty()) {
+            c.send("");
+            return;
+        }
+        try {
+            switch (cmd.charAt(0)) {
+            case '!' -> {
+                c.extended = true;
+                c.send(OK);
+            }
+            case '?' -> status(c);
+            case 'q' -> query(c, cmd);
+            case 'Q' -> {
+                if ("QStartNoAckMode".equals(cmd)) {
+                    c.send(OK);
+                    c.noAck = true;
+                } else {
+                    c.send("");
+                }
+            }
+            case 'H' -> c.send(OK);
+            case 'T' -> c.send(c.target != null && Integer.parseInt(cmd.substring(1), 16) == c.target.id ? OK : "E01");
+            case 'g' -> readRegisters(c);
+            case 'G' -> writeRegisters(c, cmd);
+            case 'p' -> readRegister(c, cmd);
+            case 'P' -> writeRegister(c, cmd);
+            case 'm' -> readMemory(c, cmd, false);
+            case 'x' -> readMemory(c, cmd, true);
+            case 'M' -> writeMemory(c, data, length, false);
+            case 'X' -> writeMemory(c, data, length, true);
+            case 'c', 's' -> resume(c, cmd.charAt(0) == 's', cmd.substring(1));
+            case 'C', 'S' -> {
+                int semi = cmd.indexOf(';');
+                resume(c, cmd.charAt(0) == 'S', semi < 0 ? "" : cmd.substring(semi + 1));
+            }
+            case 'v' -> verbose(c, cmd);
+            case 'Z', 'z' -> breakpoint(c, cmd);
+            case 'D' -> {
+                detach(c);
+                c.send(OK);
+            }
+            case 'k' -> detach(c);
+            default -> c.send("");
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            c.send("E01");
+        }
+    }
+
+    private void status(Connection c) {
+        TargetState state = c.target;
+        if (state == null) {
+            /* Plain remote mode debugs the only target */
+            if (!c.extended && targets.size() == 1 && targets.get(0).connection == null) {
+                attach(c, targets.get(0));
             } else {
-                System.out.println("Writing to memory at: " + addr + " len = "
-                        + len + " with: "
-                        + ((wdata.length > 1) ? wdata[1] : ""));
-                cPos++;
-                for (int i = 0; i < len; i++) {
-                    System.out.println("Writing: " + cmdBytes[cPos] + " to "
-                            + addr + " cpos=" + cPos);
-                    mem.set(addr++, cmdBytes[cPos++], Memory.AccessMode.BYTE);
-                }
-                sendResponse(OK);
-            }
-            break;
-        case 'C':
-            sendResponse("S01");
-            break;
-        default:
-            System.out.println("Command unknown");
-            sendResponse("");
-        }
-    }
-
-    private void readRegisters() throws IOException {
-        StringBuilder regs = new StringBuilder();
-        for (int i = 0; i < 16; i++) {
-            regs.append(Utils.hex8(cpu.reg[i] & 0xff)).append(Utils.hex8(cpu.reg[i] >> 8));
-        }
-        sendResponse(regs.toString());
-    }
-
-    public void sendResponse(String resp) throws IOException {
-        output.write('$');
-        int cs = 0;
-        if (resp != null) {
-            for (int i = 0; i < resp.length(); i++) {
-                output.write(resp.charAt(i));
-                System.out.print(resp.charAt(i));
-                cs += resp.charAt(i);
-            }
-        }
-        output.write('#');
-        System.out.print('#');
-        int c = (cs & 0xff) >> 4;
-            if (c < 10) {
-                c = c + '0';
+                c.send("W00");
+            }
+        } else if (state.running) {
+            c.waitingForStop = true;
+        } else {
+            c.send(state.stopReply());
+        }
+    }
+
+    private void query(Connection c, String cmd) {
+        TargetState state = c.target;
+        if (cmd.startsWith("qSupported")) {
+            c.send("PacketSize=" + Utils.hex(PACKET_SIZE)
+                    + ";QStartNoAckMode+;qXfer:osdata:read+;vContSupported+;binary-upload+");
+        } else if ("qC".equals(cmd)) {
+            c.send(state == null ? "" : "QC" + Utils.hex(state.id));
+        } else if ("qfThreadInfo".equals(cmd)) {
+            c.send(state == null ? "l" : "m" + Utils.hex(state.id));
+        } else if ("qsThreadInfo".equals(cmd)) {
+            c.send("l");
+        } else if (cmd.startsWith("qAttached")) {
+            c.send("1");
+        } else if ("qOffsets".equals(cmd)) {
+            c.send("Text=0;Data=0;Bss=0");
+        } else if ("qSymbol::".equals(cmd)) {
+            c.send(OK);
+        } else if (cmd.startsWith("qThreadExtraInfo,")) {
+            TargetState t = findTarget(Integer.parseInt(cmd.substring(17), 16));
+            c.send(t == null ? "E01" : toHex(t.target.getName().getBytes(ISO_8859_1)));
+        } else if (cmd.startsWith("qXfer:osdata:read:")) {
+            String[] args = cmd.substring(18).split(":");
+            if (args.length != 2 || !"processes".equals(args[0])) {
+                c.send("E00");
+                return;
+            }
+            String[] range = args[1].split(",");
+            int offset = Integer.parseInt(range[0], 16);
+            int len = Math.min(Integer.parseInt(range[1], 16), PACKET_SIZE / 2 - 1);
+            byte[] doc = processes().getBytes(ISO_8859_1);
+            if (offset >= doc.length) {
+                c.send("l");
+                return;
+            }
+            int n = Math.min(len, doc.length - offset);
+            byte[] reply = new byte[n + 1];
+            reply[0] = (byte) (offset + n < doc.length ? 'm' : 'l');
+            System.arraycopy(doc, offset, reply, 1, n);
+            c.sendPacket(reply, reply.length);
+        } else {
+            c.send("");
+        }
+    }
+
+    private String processes() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\"?>\n<!DOCTYPE target SYSTEM \"osdata.dtd\">\n<osdata type=\"processes\">\n");
+        for (TargetState state : targets) {
+            sb.append("<item>\n<column name=\"pid\">").append(state.id).append("</column>\n");
+            sb.append("<column name=\"command\">").append(escapeXML(state.target.getName())).append("</column>\n");
+            sb.append("<column name=\"state\">").append(state.connection == null ? "" : "attached").append("</column>\n");
+            sb.append("</item>\n");
+        }
+        return sb.append("</osdata>\n").toString();
+    }
+
+    private static String escapeXML(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static String toHex(byte[] data) {
+        StringBuilder sb = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            sb.append(Utils.hex8(b));
+        }
+        return sb.toString();
+    }
+
+    /* Parses a little-endian 16-bit register value */
+    private static int parseRegister(String hex, int pos) {
+        return Integer.parseInt(hex.substring(pos, pos + 2), 16)
+                | Integer.parseInt(hex.substring(pos + 2, pos + 4), 16) << 8;
+    }
+
+    private static String formatRegister(int value) {
+        return Utils.hex8(value) + Utils.hex8(value >> 8);
+    }
+
+    /* Keeps the upper bits of 20-bit registers */
+    private static void setRegister(MSP430 cpu, int r, int value) {
+        cpu.writeRegister(r, (cpu.reg[r] & 0xf0000) | value);
+    }
+
+    private void readRegisters(Connection c) {
+        TargetState state = stoppedTarget(c);
+        if (state == null) {
+            c.send("E01");
+            return;
+        }
+        StringBuilder sb = new StringBuilder(REGISTERS * 4);
+        for (int i = 0; i < REGISTERS; i++) {
+            sb.append(formatRegister(state.cpu.reg[i]));
+        }
+        c.send(sb.toString());
+    }
+
+    private void writeRegisters(Connection c, String cmd) {
+        TargetState state = stoppedTarget(c);
+        if (state == null) {
+            c.send("E01");
+            return;
+        }
+        for (int i = 0; i < REGISTERS && 1 + i * 4 + 4 <= cmd.length(); i++) {
+            setRegister(state.cpu, i, parseRegister(cmd, 1 + i * 4));
+        }
+        c.send(OK);
+    }
+
+    private void readRegister(Connection c, String cmd) {
+        TargetState state = stoppedTarget(c);
+        int r = Integer.parseInt(cmd.substring(1), 16);
+        if (state == null || r >= REGISTERS) {
+            c.send("E01");
+            return;
+        }
+        c.send(formatRegister(state.cpu.reg[r]));
+    }
+
+    private void writeRegister(Connection c, String cmd) {
+        TargetState state = stoppedTarget(c);
+        int eq = cmd.indexOf('=');
+        int r = Integer.parseInt(cmd.substring(1, eq), 16);
+        if (state == null || r >= REGISTERS) {
+            c.send("E01");
+            return;
+        }
+        setRegister(state.cpu, r, parseRegister(cmd, eq + 1));
+        c.send(OK);
+    }
+
+    private void readMemory(Connection c, String cmd, boolean binary) {
+        TargetState state = stoppedTarget(c);
+        int comma = cmd.indexOf(',');
+        int addr = Integer.parseInt(cmd.substring(1, comma), 16);
+        int len = Integer.parseInt(cmd.substring(comma + 1), 16);
+        if (state == null || addr < 0 || addr >= state.cpu.MAX_MEM || len < 0) {
+            c.send("E01");
+            return;
+        }
+        /* Escaping can double the size of binary data */
+        len = Math.min(Math.min(len, state.cpu.MAX_MEM - addr), PACKET_SIZE / 2 - 1);
+        Memory mem = state.cpu.getMemory();
+        if (binary) {
+            byte[] reply = new byte[len + 1];
+            reply[0] = 'b';
+            for (int i = 0; i < len; i++) {
+                reply[i + 1] = (byte) mem.get(addr + i, AccessMode.BYTE);
+            }
+            c.sendPacket(reply, reply.length);
+        } else {
+            StringBuilder sb = new StringBuilder(len * 2);
+            for (int i = 0; i < len; i++) {
+                sb.append(Utils.hex8(mem.get(addr + i, AccessMode.BYTE)));
+            }
+            c.send(sb.toString());
+        }
+    }
+
+    private void writeMemory(Connection c, byte[] data, int length, boolean binary) {
+        TargetState state = stoppedTarget(c);
+        String header = new String(data, 0, length, ISO_8859_1);
+        int comma = header.indexOf(',');
+        int colon = header.indexOf(':');
+        int addr = Integer.parseInt(header.substring(1, comma), 16);
+        int len = Integer.parseInt(header.substring(comma + 1, colon), 16);
+        if (state == null || addr < 0 || len < 0 || addr + len > state.cpu.MAX_MEM) {
+            c.send("E01");
+            return;
+        }
+        byte[] bytes = new byte[len];
+        int n = 0;
+        for (int i = colon + 1; i < length && n < len; i++) {
+            if (binary) {
+                bytes[n++] = data[i] == 0x7d ? (byte) (data[++i] ^ 0x20) : data[i];
             } else {
-                c = c - 10 + 'a';
+                bytes[n++] = (byte) Integer.parseInt(header.substring(i, i + 2), 16);
+                i++;
             }
-            output.write((char) c);
-            System.out.print((char) c);
-            c = cs & 15;
-            if (c < 10) {
-                c = c + '0';
+        }
+        if (n < len) {
+            c.send("E01");
+            return;
+        }
+        Memory mem = state.cpu.getMemory();
+        for (int i = 0; i < len; i++) {
+            mem.set(addr + i, bytes[i] & 0xff, AccessMode.BYTE);
+        }
+        c.send(OK);
+    }
+
+    private void resume(Connection c, boolean step, String address) {
+        TargetState state = stoppedTarget(c);
+        if (state == null) {
+            c.send("E01");
+            return;
+        }
+        if (!address.isEmpty()) {
+            state.cpu.writeRegister(MSP430Constants.PC, Integer.parseInt(address, 16));
+        }
+        c.waitingForStop = true;
+        state.resume(step);
+    }
+
+    private void verbose(Connection c, String cmd) {
+        if ("vCont?".equals(cmd)) {
+            c.send("vCont;c;C;s;S;t");
+        } else if (cmd.startsWith("vCont;")) {
+            TargetState state = c.target;
+            if (state == null) {
+                c.send("E01");
+                return;
+            }
+            for (String action : cmd.substring(6).split(";")) {
+                int colon = action.indexOf(':');
+                if (colon >= 0) {
+                    String thread = action.substring(colon + 1);
+                    if (!"-1".equals(thread) && Integer.parseInt(thread, 16) != state.id) {
+                        continue;
+                    }
+                }
+                switch (action.charAt(0)) {
+                case 'c', 'C' -> resume(c, false, "");
+                case 's', 'S' -> resume(c, true, "");
+                case 't' -> {
+                    c.waitingForStop = true;
+                    if (state.running) {
+                        state.stop(0, "");
+                    } else {
+                        status(c);
+                    }
+                }
+                default -> c.send("E01");
+                }
+                return;
+            }
+            c.send(OK);
+        } else if (cmd.startsWith("vAttach;")) {
+            TargetState state = findTarget(Integer.parseInt(cmd.substring(8), 16));
+            if (state == null || state.connection != null && state.connection != c) {
+                c.send("E01");
             } else {
-                c = c - 10 + 'a';
+                attach(c, state);
             }
-            output.write((char) c);
-            System.out.println((char) c);
+        } else if (cmd.startsWith("vKill")) {
+            detach(c);
+            c.send(OK);
+        } else {
+            c.send("");
+        }
+    }
+
+    private void breakpoint(Connection c, String cmd) {
+        TargetState state = c.target;
+        int type = cmd.charAt(1) - '0';
+        if (type < 0 || type > 4) {
+            c.send("");
+            return;
+        }
+        String[] args = cmd.split(";")[0].split(",");
+        int address = Integer.parseInt(args[1], 16);
+        int length = type <= 1 ? 1 : Integer.parseInt(args[2], 16);
+        if (state == null || address < 0 || address >= state.cpu.MAX_MEM || length <= 0) {
+            c.send("E01");
+            return;
+        }
+        length = Math.min(length, state.cpu.MAX_MEM - address);
+        Breakpoint existing = null;
+        for (Breakpoint bp : state.breakpoints) {
+            if (bp.type == type && bp.address == address && bp.length == length) {
+                existing = bp;
+                break;
+            }
+        }
+        if (cmd.charAt(0) == 'Z') {
+            if (existing == null) {
+                Breakpoint bp = new Breakpoint(type, address, length, createMonitor(state, type, address, length));
+                for (int a = firstWatchAddress(bp); a < address + length; a++) {
+                    state.cpu.addWatchPoint(a, bp.monitor);
+                }
+                state.breakpoints.add(bp);
+            }
+        } else if (existing != null) {
+            removeBreakpoint(state, existing);
+            state.breakpoints.remove(existing);
+        }
+        c.send(OK);
+    }
+
+    /* Word accesses to the preceding even address also touch the watched data */
+    private static int firstWatchAddress(Breakpoint bp) {
+        return bp.type <= 1 ? bp.address : bp.address & ~1;
+    }
+
+    private static void removeBreakpoint(TargetState state, Breakpoint bp) {
+        for (int a = firstWatchAddress(bp); a < bp.address + bp.length; a++) {
+            state.cpu.removeWatchPoint(a, bp.monitor);
+        }
+    }
+
+    private static void removeBreakpoints(TargetState state) {
+        for (Breakpoint bp : state.breakpoints) {
+            removeBreakpoint(state, bp);
+        }
+        state.breakpoints.clear();
+    }
+
+    private static MemoryMonitor createMonitor(TargetState state, int type, int address, int length) {
+        MSP430 cpu = state.cpu;
+        if (type <= 1) {
+            return new MemoryMonitor.Adapter() {
+                private long lastCycles = -1;
+
+                @Override
+                public void notifyReadBefore(int addr, AccessMode mode, AccessType accessType) {
+                    /* Do not stop again when resuming from the breakpoint */
+                    if (accessType == AccessType.EXECUTE && addr == address
+                            && cpu.cycles != lastCycles && state.connection != null) {
+                        lastCycles = cpu.cycles;
+                        state.stop(SIGTRAP, "");
+                    }
+                }
+            };
+        }
+        String kind = type == 2 ? "watch" : type == 3 ? "rwatch" : "awatch";
+        return new MemoryMonitor.Adapter() {
+            @Override
+            public void notifyReadBefore(int addr, AccessMode mode, AccessType accessType) {
+                if (type != 2 && accessType == AccessType.READ) {
+                    check(addr, mode);
+                }
+            }
+
+            @Override
+            public void notifyWriteBefore(int dstAddress, int data, AccessMode mode) {
+                if (type != 3) {
+                    check(dstAddress, mode);
+                }
+            }
+
+            private void check(int addr, AccessMode mode) {
+                if (addr < address + length && addr + mode.bytes > address && state.connection != null) {
+                    state.stop(SIGTRAP, kind + ":" + Utils.hex(Math.max(addr, address)) + ";");
+                }
+            }
+        };
+    }
+
+    private final class Connection {
+        private static final int IDLE = 0;
+        private static final int DATA = 1;
+        private static final int CHECKSUM = 2;
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer input = ByteBuffer.allocate(PACKET_SIZE);
+        private ByteBuffer output = ByteBuffer.allocate(PACKET_SIZE * 2 + 8);
+        private final byte[] packet = new byte[PACKET_SIZE];
+        private int packetLength;
+        private int packetState = IDLE;
+        private int checksum;
+        private int receivedChecksum;
+        private int checksumDigits;
+        private boolean overflow;
+        /* Last packet sent, resent on NACK */
+        private byte[] lastPacket;
+
+        boolean noAck;
+        boolean extended;
+        TargetState target;
+        /* A stop reply is due when the target stops */
+        boolean waitingForStop;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() throws IOException {
+            input.clear();
+            if (channel.read(input) < 0) {
+                close();
+                return;
+            }
+            input.flip();
+            while (input.hasRemaining() && key.isValid()) {
+                receive(input.get() & 0xff);
+            }
+        }
+
+        private void receive(int b) {
+            switch (packetState) {
+            case IDLE -> {
+                if (b == '$') {
+                    packetState = DATA;
+                    packetLength = 0;
+                    checksum = 0;
+                    overflow = false;
+                } else if (b == 0x03) {
+                    /* Interrupt */
+                    TargetState state = target;
+                    if (state != null && state.running) {
+                        state.stop(SIGINT, "");
+                    }
+                } else if (b == '-' && lastPacket != null && !noAck) {
+                    queue(lastPacket, lastPacket.length);
+                }
+            }
+            case DATA -> {
+                if (b == '#') {
+                    packetState = CHECKSUM;
+                    receivedChecksum = 0;
+                    checksumDigits = 0;
+                } else {
+                    checksum += b;
+                    if (packetLength < packet.length) {
+                        packet[packetLength++] = (byte) b;
+                    } else {
+                        overflow = true;
+                    }
+                }
+            }
+            default -> {
+                receivedChecksum = receivedChecksum << 4 | Character.digit(b, 16);
+                if (++checksumDigits == 2) {
+                    packetState = IDLE;
+                    boolean valid = !overflow && (checksum & 0xff) == receivedChecksum;
+                    if (!noAck) {
+                        queue(new byte[] { (byte) (valid ? '+' : '-') }, 1);
+                    }
+                    if (valid) {
+                        handlePacket(this, packet, packetLength);
+                    }
+                }
+            }
+            }
+        }
+
+        void send(String payload) {
+            byte[] data = payload.getBytes(ISO_8859_1);
+            sendPacket(data, data.length);
+        }
+
+        void sendPacket(byte[] payload, int length) {
+            byte[] frame = new byte[length * 2 + 4];
+            int n = 0;
+            int sum = 0;
+            frame[n++] = '$';
+            for (int i = 0; i < length; i++) {
+                int b = payload[i] & 0xff;
+                if (b == '$' || b == '#' || b == '}' || b == '*') {
+                    frame[n++] = 0x7d;
+                    sum += 0x7d;
+                    b ^= 0x20;
+                }
+                frame[n++] = (byte) b;
+                sum += b;
+            }
+            frame[n++] = '#';
+            frame[n++] = (byte) Character.forDigit((sum >> 4) & 0xf, 16);
+            frame[n++] = (byte) Character.forDigit(sum & 0xf, 16);
+            if (!noAck) {
+                lastPacket = Arrays.copyOf(frame, n);
+            }
+            queue(frame, n);
+        }
+
+        private void queue(byte[] data, int length) {
+            if (!key.isValid()) {
+                return;
+            }
+            if (output.remaining() < length) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(output.capacity() * 2, output.position() + length));
+                output.flip();
+                larger.put(output);
+                output = larger;
+            }
+            output.put(data, 0, length);
+            try {
+                flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void flush() throws IOException {
+            output.flip();
+            channel.write(output);
+            output.compact();
+            key.interestOps(output.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        void close() {
+            detach(this);
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignore close errors
+            }
+        }
     }
 }
@@ -50,6 +50,7 @@ public class MapEntry {
   private final String name;
   private final String file;
   private final boolean isLocal;
+  private int index = -1;
   private int size;
   private int dataAddr;
   private int dataSize;
@@ -75,6 +76,18 @@ public class MapEntry {
     this.bssSize = bssSize;
   }
 
+  void setIndex(int index) {
+    this.index = index;
+  }
+
+  /**
+   * @return Dense index of this function in its map table, or -1 if
+   * this is not a function or has not been added to a map table
+   */
+  public int getIndex() {
+    return index;
+  }
+
   void setSize(int size) {
     this.size = size;
   }
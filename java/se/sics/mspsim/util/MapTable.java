@@ -43,6 +43,8 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.regex.Pattern;
 
@@ -72,6 +74,10 @@ public class MapTable {
 
   private final ArrayList<MapEntry> modules = new ArrayList<>();
   private final ArrayList<MapEntry> entries = new ArrayList<>();
+  /* functions by dense index */
+  private final ArrayList<MapEntry> functions = new ArrayList<>();
+  /* functions sorted by address, built on demand */
+  private MapEntry[] functionsByAddress;
   private final HashMap<Integer, MapEntry> addressMap = new HashMap<>();
 
   public MapTable() {
@@ -233,10 +239,55 @@ public class MapTable {
   }
 
   public void setEntry(MapEntry entry) {
+    if (entry.getType() == MapEntry.TYPE.function && entry.getIndex() < 0) {
+      entry.setIndex(functions.size());
+      functions.add(entry);
+      functionsByAddress = null;
+    }
     entries.add(entry);
     addressMap.put(entry.getAddress(), entry);
   }
 
+  /**
+   * @return Number of function indices handed out, see {@link MapEntry#getIndex()}
+   */
+  public int getFunctionCount() {
+    return functions.size();
+  }
+
+  public MapEntry getFunction(int index) {
+    return functions.get(index);
+  }
+
+  /**
+   * Returns the function containing an address, assuming each function
+   * extends to the start of the next one.
+   *
+   * @param address Code address
+   * @return Function with the highest start address not above the address, or null
+   */
+  public MapEntry getFunctionAt(int address) {
+    MapEntry[] sorted = functionsByAddress;
+    if (sorted == null) {
+      sorted = functions.toArray(new MapEntry[0]);
+      Arrays.sort(sorted, Comparator.comparingInt(MapEntry::getAddress));
+      functionsByAddress = sorted;
+    }
+    int low = 0;
+    int high = sorted.length - 1;
+    MapEntry found = null;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (sorted[mid].getAddress() <= address) {
+        found = sorted[mid];
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return found;
+  }
+
   // Really slow way to find a specific function address!!!!
   // Either reimplement this or cache in hashtable...
   public int getFunctionAddress(String function) {
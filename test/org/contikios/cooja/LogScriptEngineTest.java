@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import javax.swing.JInternalFrame;
+import org.contikios.cooja.motes.AbstractApplicationMote;
+import org.contikios.cooja.motes.AbstractApplicationMoteType;
+import org.contikios.cooja.radiomediums.SilentRadioMedium;
+import org.contikios.cooja.script.ScriptParser;
+import org.jdom2.Element;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that scripts stepped as state machines on the simulation thread
+ * ("script-inline") see the same log output and log the same lines as
+ * scripts run on a script thread.
+ */
+class LogScriptEngineTest {
+  private static final long SEED = 654321;
+  private static final int MOTES = 3;
+
+  private static Cooja cooja;
+
+  @BeforeAll
+  static void configure() throws Exception {
+    /* Headless, without Contiki-NG */
+    Cooja.configuration = new Cooja.Config(null, false, null, ".", null, null, null, null);
+    Cooja.loadExternalToolsDefaultSettings();
+    cooja = Cooja.makeCooja();
+    cooja.registerPlugin(ScriptController.class);
+  }
+
+  @Test
+  void yieldInWhile() throws Exception {
+    assertInlineMatchesThreaded(true, """
+        var count = 0;
+        while (count < 20) {
+          YIELD();
+          count++;
+          log.log(count + " " + time + " " + id + " " + msg + "\\n");
+        }
+        log.testOK();
+        """);
+  }
+
+  @Test
+  void yieldInForAndIf() throws Exception {
+    assertInlineMatchesThreaded(true, """
+        var events = 0;
+        for (var i = 0; i < 30; i++) {
+          if (msg.startsWith("event")) {
+            events++;
+            log.log("event " + i + " at " + time + " from " + id + "\\n");
+            YIELD();
+          } else if (id == 2) {
+            YIELD();
+            log.log("mote 2 " + i + " " + msg + "\\n");
+          } else {
+            YIELD();
+            log.log("other " + i + " " + msg + "\\n");
+          }
+        }
+        log.log("events " + events + "\\n");
+        if (events > 0) {
+          log.testOK();
+        }
+        log.testFailed();
+        """);
+  }
+
+  @Test
+  void nestedFunctions() throws Exception {
+    assertInlineMatchesThreaded(true, """
+        function format(prefix) {
+          function pad(n) {
+            return n < 10 ? "0" + n : "" + n;
+          }
+          var parts = [prefix, pad(id), msg];
+          return parts.join(":");
+        }
+        var seen = 0;
+        while (seen < 15) {
+          YIELD();
+          seen++;
+          log.log(format("m" + seen) + "\\n");
+        }
+        log.testOK();
+        """);
+  }
+
+  @Test
+  void literalsContainingYield() throws Exception {
+    assertInlineMatchesThreaded(true, """
+        var text = "YIELD() in a string; while (true) { YIELD(); }";
+        var quoted = 'if (x) { YIELD(); }';
+        var re = /YIELD\\(\\);?/g;
+        var n = 0;
+        while (n < 10) {
+          YIELD();
+          n++;
+          log.log(n + " " + text.match(re).length + " " + quoted.length + " " + msg.replace(/[0-9]+/, "#") + "\\n");
+        }
+        log.testOK();
+        """);
+  }
+
+  @Test
+  void waitUntil() throws Exception {
+    assertInlineMatchesThreaded(true, """
+        WAIT_UNTIL(id == 2 && msg.startsWith("event"));
+        log.log("first event of 2: " + msg + " at " + time + "\\n");
+        YIELD_THEN_WAIT_UNTIL(msg.equals("tick 7"));
+        log.log(id + " " + msg + " at " + time + "\\n");
+        var ticks = 0;
+        while (ticks < 5) {
+          WAIT_UNTIL(id == 1);
+          ticks++;
+          log.log("mote 1: " + msg + " at " + time + "\\n");
+          YIELD();
+        }
+        log.testOK();
+        """);
+  }
+
+  @Test
+  void timeout() throws Exception {
+    assertInlineMatchesThreaded(true, """
+        TIMEOUT(200, log.log("timed out at " + time + " after " + msg + "\\n"));
+        var n = 0;
+        while (true) {
+          YIELD();
+          n++;
+          if (n % 10 == 0) {
+            log.log(n + " " + msg + "\\n");
+          }
+        }
+        """);
+  }
+
+  @Test
+  void fallbackYieldInFunction() throws Exception {
+    assertInlineMatchesThreaded(false, """
+        function waitFor(prefix) {
+          YIELD();
+          while (!msg.startsWith(prefix)) {
+            YIELD();
+          }
+          return msg;
+        }
+        for (var i = 0; i < 5; i++) {
+          log.log(i + " " + waitFor("event") + " at " + time + "\\n");
+        }
+        log.testOK();
+        """);
+  }
+
+  @Test
+  void fallbackBreakAroundYield() throws Exception {
+    assertInlineMatchesThreaded(false, """
+        var n = 0;
+        while (true) {
+          YIELD();
+          if (msg.startsWith("event")) {
+            break;
+          }
+          n++;
+          log.log(n + " " + msg + "\\n");
+        }
+        log.log("stopped at " + msg + " after " + n + "\\n");
+        log.testOK();
+        """);
+  }
+
+  /**
+   * Runs the script threaded and with script-inline enabled, and compares
+   * the test logs.
+   *
+   * @param translated True if the script is expected to run as a state machine
+   * @param script Test script
+   */
+  private static void assertInlineMatchesThreaded(boolean translated, String script) throws Exception {
+    assertEquals(translated, new ScriptParser(script).getJSStateMachineCode() != null);
+    var threaded = run(script, false);
+    var inline = run(script, true);
+    assertTrue(threaded.size() > 4, "Script logged too little: " + threaded);
+    assertTrue(threaded.contains("TEST OK") || threaded.contains("TEST FAILED"), "Script did not end: " + threaded);
+    assertFalse(threaded.contains("TEST FAILED") && !script.contains("TIMEOUT"), "Script failed: " + threaded);
+    assertEquals(threaded, inline);
+  }
+
+  /** Runs the script and returns the lines of its test log. */
+  private static List<String> run(String script, boolean inline) throws Exception {
+    var logDir = Files.createTempDirectory("cooja-script");
+    var opts = Map.of("script-inline", Boolean.toString(inline));
+    var cfg = new Simulation.SimConfig(null, SEED, true, false, logDir.toString(), opts);
+    var root = new Element("simconf")
+            .addContent(new Element("simulation")
+                    .addContent(new Element("radiomedium").setText(SilentRadioMedium.class.getName())))
+            .addContent(new Element("plugin").setText(ScriptController.class.getName()));
+    var sim = new Simulation(cfg, cooja, "script", false, SEED, SilentRadioMedium.class.getName(), 0, true, root);
+    cooja.setSimulation(sim);
+    /* Before the motes, which are added on the simulation thread, so all their log output is observed */
+    var engine = sim.newScriptEngine(null);
+    var moteType = new TestMoteType();
+    sim.addMoteType(moteType);
+    for (int i = 0; i < MOTES; i++) {
+      var mote = moteType.generateMote(sim);
+      mote.getInterfaces().getMoteID().setMoteID(i + 1);
+      sim.addMote(mote);
+    }
+    assertTrue(engine.activateScript(engine.compileScript(script)), "Script not activated");
+    sim.startSimulation(true);
+    cooja.doRemoveSimulation();
+
+    /* Test log lines are flushed as they are written */
+    var log = Files.readAllLines(logDir.resolve("COOJA.testlog"), UTF_8);
+    return log.stream().filter(line -> !line.startsWith("Test ended at")).toList();
+  }
+
+  /** Controls the simulation in place of the script runner. */
+  @PluginType(PluginType.PType.SIM_CONTROL_PLUGIN)
+  public static class ScriptController implements Plugin {
+    public ScriptController(Simulation simulation, Cooja cooja) {
+    }
+
+    @Override
+    public void startPlugin() {
+    }
+
+    @Override
+    public JInternalFrame getCooja() {
+      return null;
+    }
+
+    @Override
+    public void closePlugin() {
+    }
+
+    @Override
+    public Collection<Element> getConfigXML() {
+      return null;
+    }
+
+    @Override
+    public boolean setConfigXML(Collection<Element> configXML, boolean visAvailable) {
+      return true;
+    }
+  }
+
+  private static class TestMoteType extends AbstractApplicationMoteType {
+    TestMoteType() {
+      super(true);
+    }
+
+    @Override
+    public Mote generateMote(Simulation simulation) throws MoteTypeCreationException {
+      return new TestMote(this, simulation);
+    }
+  }
+
+  /** Logs "tick n", or "event n" every fourth time, at random intervals. */
+  private static class TestMote extends AbstractApplicationMote {
+    private int count;
+
+    TestMote(MoteType moteType, Simulation simulation) throws MoteType.MoteTypeCreationException {
+      super(moteType, simulation);
+    }
+
+    @Override
+    public void execute(long time) {
+      count++;
+      log((count % 4 == 0 ? "event " : "tick ") + count);
+      scheduleNextWakeup(time + Simulation.MILLISECOND + simulation.getRandomGenerator().nextInt(4000));
+    }
+
+    @Override
+    public void receivedPacket(RadioPacket p) {
+    }
+
+    @Override
+    public void sentPacket(RadioPacket p) {
+    }
+
+    @Override
+    public void writeArray(byte[] s) {
+    }
+
+    @Override
+    public void writeByte(byte b) {
+    }
+
+    @Override
+    public void writeString(String s) {
+    }
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.JInternalFrame;
+import org.contikios.cooja.interfaces.ApplicationRadio;
+import org.contikios.cooja.motes.AbstractApplicationMote;
+import org.contikios.cooja.motes.AbstractApplicationMoteType;
+import org.contikios.cooja.radiomediums.UDGM;
+import org.jdom2.Element;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that parallel execution gives the same result as sequential
+ * execution, for motes that talk to each other through UDGM.
+ */
+class ParallelExecutorTest {
+  private static final long SEED = 123456;
+  private static final int MOTES = 16;
+  private static final long PROPAGATION_DELAY = 200;
+  private static final long DURATION = 1000 * Simulation.MILLISECOND;
+
+  private static Cooja cooja;
+
+  @BeforeAll
+  static void configure() throws Exception {
+    /* Headless, without Contiki-NG */
+    Cooja.configuration = new Cooja.Config(null, false, null, ".", null, null, null, null);
+    Cooja.loadExternalToolsDefaultSettings();
+    cooja = Cooja.makeCooja();
+    cooja.registerPlugin(StopController.class);
+  }
+
+  @Test
+  void parallelMatchesSequential() throws Exception {
+    var sequential = new Result();
+    run(1, sequential);
+    var parallel = new Result();
+    run(4, parallel);
+
+    assertFalse(sequential.received.isEmpty(), "No packets received");
+    assertFalse(sequential.sampled.isEmpty(), "No radio state sampled");
+    assertTrue(parallel.usedWorkers.get(), "No mote events executed in parallel");
+    assertEquals(sequential.received, parallel.received);
+    assertEquals(sequential.sampled, parallel.sampled);
+  }
+
+  private static void run(int threads, Result result) throws Exception {
+    var opts = Map.of("parallel-threads", Integer.toString(threads),
+            "propagation-delay", Long.toString(PROPAGATION_DELAY));
+    var cfg = new Simulation.SimConfig(null, SEED, true, false, ".", opts);
+    var root = new Element("simconf")
+            .addContent(new Element("simulation")
+                    .addContent(new Element("radiomedium").setText(UDGM.class.getName())))
+            .addContent(new Element("plugin").setText(StopController.class.getName()));
+    var sim = new Simulation(cfg, cooja, "parallel", false, SEED, UDGM.class.getName(), 0, true, root);
+    assertEquals(PROPAGATION_DELAY, sim.getRadioMedium().getLookahead());
+
+    var moteType = new TestMoteType(result);
+    sim.addMoteType(moteType);
+    var motes = new ArrayList<TestMote>();
+    for (int i = 0; i < MOTES; i++) {
+      var mote = (TestMote) moteType.generateMote(sim);
+      motes.add(mote);
+      mote.getInterfaces().getMoteID().setMoteID(i + 1);
+      /* A line of motes, each within range of its nearest neighbors */
+      mote.getInterfaces().getPosition().setCoordinates(i * 30, 0, 0);
+      sim.addMote(mote);
+    }
+    assertNull(sim.startSimulation(true));
+    for (var mote : motes) {
+      result.sampled.add(mote.sampled);
+    }
+  }
+
+  /**
+   * Stops the simulation after a fixed time. Scripts would keep the
+   * simulation sequential.
+   */
+  @PluginType(PluginType.PType.SIM_CONTROL_PLUGIN)
+  public static class StopController implements Plugin {
+    private final Simulation simulation;
+
+    public StopController(Simulation simulation, Cooja cooja) {
+      this.simulation = simulation;
+    }
+
+    @Override
+    public void startPlugin() {
+      simulation.invokeSimulationThread(() -> simulation.scheduleEvent(new TimeEvent() {
+        @Override
+        public void execute(long t) {
+          simulation.stopSimulation(null);
+        }
+      }, DURATION));
+    }
+
+    @Override
+    public JInternalFrame getCooja() {
+      return null;
+    }
+
+    @Override
+    public void closePlugin() {
+    }
+
+    @Override
+    public Collection<Element> getConfigXML() {
+      return null;
+    }
+
+    @Override
+    public boolean setConfigXML(Collection<Element> configXML, boolean visAvailable) {
+      return true;
+    }
+  }
+
+  private static class Result {
+    final List<String> received = Collections.synchronizedList(new ArrayList<>());
+    final List<List<String>> sampled = new ArrayList<>();
+    final AtomicBoolean usedWorkers = new AtomicBoolean();
+  }
+
+  private static class TestMoteType extends AbstractApplicationMoteType {
+    private final Result result;
+
+    TestMoteType(Result result) {
+      super(true);
+      this.result = result;
+    }
+
+    @Override
+    public Mote generateMote(Simulation simulation) throws MoteTypeCreationException {
+      return new TestMote(this, simulation, result);
+    }
+  }
+
+  /**
+   * Transmits a packet at random intervals, and samples its own radio
+   * state in between.
+   */
+  private static class TestMote extends AbstractApplicationMote {
+    private final Result result;
+    final List<String> sampled = new ArrayList<>();
+    private int sequence;
+    private int wakeups;
+
+    TestMote(MoteType moteType, Simulation simulation, Result result) throws MoteType.MoteTypeCreationException {
+      super(moteType, simulation);
+      this.result = result;
+    }
+
+    @Override
+    protected boolean isExecutionLocal() {
+      return true;
+    }
+
+    @Override
+    public void execute(long time) {
+      if (Thread.currentThread() instanceof ParallelExecutor.Worker) {
+        result.usedWorkers.set(true);
+      }
+      var radio = (ApplicationRadio) getInterfaces().getRadio();
+      sampled.add(time + " " + radio.isReceiving() + " " + radio.isInterfered() + " " + radio.getCurrentSignalStrength());
+      if (++wakeups % 100 == 0 && !radio.isTransmitting()) {
+        byte[] data = { (byte) getID(), (byte) sequence++ };
+        /* Transmissions last longer than the propagation delay */
+        radio.startTransmittingPacket(new COOJARadioPacket(data), 4 * PROPAGATION_DELAY);
+      }
+      scheduleNextWakeup(time + 50 + simulation.getRandomGenerator().nextInt(100));
+    }
+
+    @Override
+    public void receivedPacket(RadioPacket p) {
+      byte[] data = p.getPacketData();
+      result.received.add(simulation.getSimulationTime() + " " + getID() + " <- " + data[0] + ":" + data[1]);
+    }
+
+    @Override
+    public void sentPacket(RadioPacket p) {
+    }
+
+    @Override
+    public void writeArray(byte[] s) {
+    }
+
+    @Override
+    public void writeByte(byte b) {
+    }
+
+    @Override
+    public void writeString(String s) {
+    }
+  }
+}
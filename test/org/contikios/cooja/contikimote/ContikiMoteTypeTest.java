@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.contikimote;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.contikios.cooja.Cooja;
+import org.contikios.cooja.mote.memory.MemoryInterface.Symbol;
+import org.contikios.cooja.mote.memory.SectionMoteMemory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that motes pinned to different copies of a Contiki library can be
+ * ticked in parallel with the same result as ticking them sequentially on
+ * one copy. A small JNI library with the CoreComm functions of Contiki-NG
+ * stands in for a Contiki build.
+ */
+class ContikiMoteTypeTest {
+  private static final int MOTES = 8;
+  private static final int TICKS = 300;
+  private static final int STATE_WORDS = 64;
+  /* Map file addresses of the data section and its variables */
+  private static final long DATA_START = 0x1000;
+  private static final long STATE_ADDR = DATA_START + 8;
+  private static final int DATA_SIZE = 8 + STATE_WORDS * 8;
+  private static final int BSS_SIZE = 8;
+
+  private static final String LIBRARY = """
+      #include <jni.h>
+      #include <sched.h>
+      #include <stdint.h>
+
+      #define JNI_NAME(c, f) Java_org_contikios_cooja_corecomm_##c##_##f
+      #define NAME(c, f) JNI_NAME(c, f)
+      #define FUNC(f) NAME(CLASSNAME, f)
+
+      /* The data section, referenceVar and the mote state, followed by the bss section */
+      static struct {
+        intptr_t referenceVar;
+        uint64_t state[STATE_WORDS];
+        uint64_t bss;
+      } data = { 1, { 1 } };
+
+      JNIEXPORT void JNICALL FUNC(init)(JNIEnv *env, jobject obj) {
+        for (int i = 0; i < STATE_WORDS; i++) {
+          data.state[i] = i * 0x9e3779b97f4a7c15ULL;
+        }
+      }
+
+      JNIEXPORT void JNICALL FUNC(setReferenceAddress)(JNIEnv *env, jobject obj, jlong addr) {
+        data.referenceVar = (intptr_t)&data.referenceVar - (intptr_t)addr;
+      }
+
+      JNIEXPORT void JNICALL FUNC(getMemory)(JNIEnv *env, jobject obj, jlong rel, jint length, jbyteArray mem) {
+        (*env)->SetByteArrayRegion(env, mem, 0, length, (jbyte *)(intptr_t)(rel + data.referenceVar));
+      }
+
+      JNIEXPORT void JNICALL FUNC(setMemory)(JNIEnv *env, jobject obj, jlong rel, jint length, jbyteArray mem) {
+        (*env)->GetByteArrayRegion(env, mem, 0, length, (jbyte *)(intptr_t)(rel + data.referenceVar));
+      }
+
+      /* Mixes the state in place, yielding halfway to let other threads in */
+      JNIEXPORT void JNICALL FUNC(tick)(JNIEnv *env, jobject obj) {
+        for (int round = 0; round < 200; round++) {
+          for (int i = 0; i < STATE_WORDS; i++) {
+            data.state[i] = data.state[i] * 6364136223846793005ULL + data.state[(i + 1) % STATE_WORDS] + 1;
+          }
+          if (round == 100) {
+            sched_yield();
+          }
+        }
+      }
+
+      JNIEXPORT void JNICALL FUNC(kill)(JNIEnv *env, jobject obj) {
+      }
+      """;
+
+  private static Path tempDir;
+
+  @BeforeAll
+  static void configure() throws Exception {
+    var javaHome = Path.of(System.getProperty("java.home"));
+    /* The constructor is only meant for Main */
+    var ctor = Cooja.Config.class.getDeclaredConstructor(Cooja.LogbackColors.class, boolean.class, String.class,
+            String.class, String.class, String.class, String.class, Integer.class);
+    ctor.setAccessible(true);
+    Cooja.configuration = ctor.newInstance(null, false, null, ".", null, null,
+            javaHome.resolve("bin/javac").toString(), null);
+    Cooja.loadExternalToolsDefaultSettings();
+    tempDir = Files.createTempDirectory("cooja-instances");
+  }
+
+  @Test
+  void parallelCopiesMatchSequential() throws Exception {
+    var sequential = run(1);
+    var parallel = run(2);
+    assertTrue(parallel.overlapped, "No ticks on different copies overlapped");
+    for (int i = 0; i < MOTES; i++) {
+      assertEquals(Arrays.toString(sequential.states.get(i)), Arrays.toString(parallel.states.get(i)));
+    }
+    /* Motes with different ids end in different states */
+    assertFalse(Arrays.equals(sequential.states.get(0), sequential.states.get(1)), "Motes not distinguished");
+  }
+
+  @Test
+  void copiesAreRemoved() throws Exception {
+    var dir = Files.createTempDirectory(tempDir, "load");
+    var instances = ContikiMoteType.loadInstances(dir, buildLibrary(), 3, new Section(DATA_START, DATA_SIZE), new Section(DATA_START + DATA_SIZE, BSS_SIZE), null);
+    /* The copies stay mapped without their files */
+    try (var files = Files.list(dir)) {
+      assertEquals(List.of(), files.filter(p -> p.toString().endsWith(".cooja")).toList());
+    }
+    var memory = instances[2].createInitialMemory();
+    synchronized (instances[2]) {
+      instances[2].setCoreMemory(memory);
+      instances[2].tick();
+      instances[2].getCoreMemory(memory);
+    }
+    assertFalse(Arrays.equals(memory.getMemorySegment(STATE_ADDR, STATE_WORDS * 8),
+            instances[2].createInitialMemory().getMemorySegment(STATE_ADDR, STATE_WORDS * 8)), "Copy not ticked");
+
+    /* Dropping the mote type unloads the copies with their class loaders */
+    var maps = Path.of("/proc/self/maps");
+    assumeTrue(Files.exists(maps), "No /proc/self/maps");
+    var copy = dir.resolve("1-lib.cooja").toString();
+    assertTrue(Files.readString(maps).contains(copy), "Copy not mapped");
+    instances = null;
+    for (int i = 0; i < 100 && Files.readString(maps).contains(copy); i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    assertFalse(Files.readString(maps).contains(copy), "Copy still mapped");
+  }
+
+  private record Result(List<byte[]> states, boolean overlapped) {}
+
+  /**
+   * Ticks the motes in rounds, like the parallel executor, with one worker
+   * per copy. Motes are pinned to copies round-robin and lock their copy
+   * around a tick, like ContikiMote.
+   */
+  private static Result run(int copies) throws Exception {
+    var dir = Files.createTempDirectory(tempDir, "run");
+    var instances = ContikiMoteType.loadInstances(dir, buildLibrary(), copies, new Section(DATA_START, DATA_SIZE), new Section(DATA_START + DATA_SIZE, BSS_SIZE), null);
+    if (copies > 1) {
+      assertFalse(Arrays.equals(instances[0].createInitialMemory().getMemorySegment(DATA_START, 8),
+              instances[1].createInitialMemory().getMemorySegment(DATA_START, 8)), "Copies share the library");
+    }
+    var memories = new ArrayList<SectionMoteMemory>();
+    for (int i = 0; i < MOTES; i++) {
+      var memory = instances[i % copies].createInitialMemory();
+      /* The mote id, as set by ContikiMoteID */
+      memory.setMemorySegment(STATE_ADDR, ByteBuffer.allocate(8).order(ByteOrder.nativeOrder()).putLong(i + 1).array());
+      memories.add(memory);
+    }
+    var ticking = new AtomicInteger();
+    var maxTicking = new AtomicInteger();
+    var executor = Executors.newFixedThreadPool(copies);
+    try {
+      for (int t = 0; t < TICKS; t++) {
+        var round = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < MOTES; i++) {
+          var instance = instances[i % copies];
+          var memory = memories.get(i);
+          round.add(() -> {
+            synchronized (instance) {
+              maxTicking.accumulateAndGet(ticking.incrementAndGet(), Math::max);
+              instance.setCoreMemory(memory);
+              instance.tick();
+              instance.getCoreMemory(memory);
+              ticking.decrementAndGet();
+            }
+            return null;
+          });
+        }
+        for (var future : executor.invokeAll(round)) {
+          future.get();
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+    var states = new ArrayList<byte[]>();
+    for (var memory : memories) {
+      states.add(memory.getMemorySegment(STATE_ADDR, STATE_WORDS * 8));
+    }
+    return new Result(states, maxTicking.get() > 1);
+  }
+
+  /** Builds the library for the next core communicator class. */
+  private static File buildLibrary() throws Exception {
+    var javaHome = Path.of(System.getProperty("java.home"));
+    var include = javaHome.resolve("include");
+    assumeTrue(Files.exists(include.resolve("jni.h")), "No JNI headers");
+    var dir = Files.createTempDirectory(tempDir, "lib");
+    var source = dir.resolve("lib.c");
+    Files.writeString(source, LIBRARY, UTF_8);
+    var lib = dir.resolve("lib.cooja").toFile();
+    var cmd = List.of("gcc", "-shared", "-fPIC", "-O1", "-I" + include, "-I" + include.resolve("linux"),
+            "-DCLASSNAME=" + ContikiMoteType.getAvailableClassName(), "-DSTATE_WORDS=" + STATE_WORDS,
+            "-o", lib.toString(), source.toString());
+    Process p;
+    try {
+      p = new ProcessBuilder(cmd).inheritIO().start();
+    } catch (IOException e) {
+      assumeTrue(false, "No C compiler: " + e.getMessage());
+      throw e;
+    }
+    assertEquals(0, p.waitFor());
+    return lib;
+  }
+
+  /** A section of the library, as parsed from a map file. */
+  private static class Section extends ContikiMoteType.SingleSectionParser {
+    private final long sectionStart;
+    private final int sectionSize;
+
+    Section(long sectionStart, int sectionSize) {
+      super(null);
+      this.sectionStart = sectionStart;
+      this.sectionSize = sectionSize;
+    }
+
+    @Override
+    protected void parseStartAddr() {
+      startAddr = sectionStart;
+    }
+
+    @Override
+    protected void parseSize() {
+      size = sectionSize;
+    }
+
+    @Override
+    Map<String, Symbol> parseSymbols(long offset) {
+      if (sectionStart != DATA_START) {
+        return Map.of();
+      }
+      return Map.of("referenceVar", new Symbol(Symbol.Type.VARIABLE, "referenceVar", DATA_START + offset, 8),
+              "state", new Symbol(Symbol.Type.VARIABLE, "state", STATE_ADDR + offset, STATE_WORDS * 8));
+    }
+  }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package se.sics.mspsim.util;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import se.sics.mspsim.config.MSP430f1611Config;
+import se.sics.mspsim.core.MSP430;
+import se.sics.mspsim.core.Memory.AccessMode;
+
+/**
+ * Drives the GDB remote serial protocol server over a socket, with a
+ * target that never runs the CPU and stops only when told to.
+ */
+class GDBStubsTest {
+    private static final int RAM = 0x1100;
+    private static final int FLASH = 0x4000;
+
+    @Test
+    void checksumAndEscapeRoundTrip() throws IOException {
+        try (var client = new Client(new FakeTarget())) {
+            assertEquals("T05thread:1;", client.request("?"));
+            /* All four characters that must be escaped */
+            byte[] data = { '#', '$', '}', '*', 0x00, (byte) 0xff };
+            var packet = new ByteArrayOutputStream();
+            packet.writeBytes("X1100,6:".getBytes(ISO_8859_1));
+            packet.writeBytes(data);
+            assertEquals("OK", client.request(packet.toByteArray()));
+
+            client.send("x1100,6");
+            byte[] frame = client.receiveFrame();
+            assertEquals("$b}\u0003}\u0004}]}\n\u0000\u00ff#",
+                    new String(frame, 0, frame.length - 2, ISO_8859_1));
+            byte[] reply = unescape(frame);
+            assertEquals('b', reply[0]);
+            assertEquals(Arrays.toString(data), Arrays.toString(Arrays.copyOfRange(reply, 1, reply.length)));
+
+            /* A corrupt checksum is rejected and the packet ignored */
+            client.write("$m1100,1#00");
+            assertEquals('-', client.read());
+            /* A NACK resends the last reply */
+            assertEquals("23247d", client.request("m1100,3"));
+            client.write("-");
+            assertEquals("23247d", new String(unescape(client.receiveFrame()), ISO_8859_1));
+        }
+    }
+
+    @Test
+    void readAndWriteMemory() throws IOException {
+        var target = new FakeTarget();
+        try (var client = new Client(target)) {
+            /* Memory is only accessed while attached and stopped */
+            assertEquals("E01", client.request("m1100,2"));
+            assertEquals("T05thread:1;", client.request("?"));
+
+            assertEquals("OK", client.request("M1100,4:0102a0ff"));
+            var mem = target.cpu.getMemory();
+            assertEquals(0x01, mem.get(RAM, AccessMode.BYTE));
+            assertEquals(0xff, mem.get(RAM + 3, AccessMode.BYTE));
+            assertEquals("0102a0ff", client.request("m1100,4"));
+            assertEquals("b\u0001\u0002\u00a0\u00ff", client.request("x1100,4"));
+
+            assertEquals("OK", client.request("X1102,2:Uf"));
+            assertEquals("01025566", client.request("m1100,4"));
+            assertEquals("OK", client.request("X1100,0:"));
+
+            /* Short and out of range writes change nothing */
+            assertEquals("E01", client.request("M1100,4:0102"));
+            assertEquals("E01", client.request("M" + Utils.hex(target.cpu.MAX_MEM - 1) + ",2:0000"));
+            assertEquals("E01", client.request("m" + Utils.hex(target.cpu.MAX_MEM) + ",1"));
+            assertEquals("E01", client.request("mzz,1"));
+            assertEquals("01025566", client.request("m1100,4"));
+        }
+    }
+
+    @Test
+    void insertAndRemoveBreakpoints() throws IOException {
+        var target = new FakeTarget();
+        var cpu = target.cpu;
+        try (var client = new Client(target)) {
+            assertEquals("E01", client.request("Z0,4000,2"));
+            assertEquals("T05thread:1;", client.request("?"));
+
+            assertEquals("OK", client.request("Z0,4000,2"));
+            assertTrue(cpu.hasWatchPoint(FLASH), "Breakpoint not inserted");
+            assertFalse(cpu.hasWatchPoint(FLASH + 1), "Breakpoint covers more than one address");
+            /* Inserting twice is the same breakpoint */
+            assertEquals("OK", client.request("Z0,4000,2"));
+            assertEquals("OK", client.request("z0,4000,2"));
+            assertFalse(cpu.hasWatchPoint(FLASH), "Breakpoint not removed");
+            assertEquals("OK", client.request("z0,4000,2"));
+
+            /* Watchpoints also cover word accesses from the preceding even address */
+            assertEquals("OK", client.request("Z2,1103,2"));
+            assertTrue(cpu.hasWatchPoint(RAM + 2) && cpu.hasWatchPoint(RAM + 4), "Watchpoint not inserted");
+            assertEquals("", client.request("Z5,1100,2"));
+            assertEquals("OK", client.request("Z0,4010,2"));
+
+            /* Detaching removes all breakpoints */
+            assertEquals("OK", client.request("D"));
+            assertFalse(cpu.hasWatchPoint(FLASH + 0x10) || cpu.hasWatchPoint(RAM + 3), "Breakpoints not removed on detach");
+        }
+    }
+
+    @Test
+    void stopReplySequencing() throws IOException {
+        var target = new FakeTarget();
+        try (var client = new Client(target)) {
+            assertEquals("T05thread:1;", client.request("?"));
+            assertEquals("vCont;c;C;s;S;t", client.request("vCont?"));
+
+            /* No reply until the target stops */
+            client.send("vCont;c");
+            assertEquals("QC1", client.request("qC"));
+            assertEquals("E01", client.request("g"));
+            target.hit();
+            assertEquals("T05thread:1;", client.receive());
+            assertEquals("T05thread:1;", client.request("?"));
+
+            /* Interrupted while running, a stale stop is not reported */
+            client.send("c");
+            assertEquals("QC1", client.request("qC"));
+            Runnable stale = target.running;
+            client.write(new byte[] { 0x03 });
+            assertEquals("T02thread:1;", client.receive());
+            stale.run();
+            assertEquals("QC1", client.request("qC"));
+
+            /* A single step stops at once */
+            assertEquals("T05thread:1;", client.request("vCont;s:1"));
+            /* ? while running waits for the stop */
+            client.send("vCont;c:-1");
+            client.send("?");
+            target.hit();
+            assertEquals("T05thread:1;", client.receive());
+            assertEquals(4, target.resumes);
+        }
+    }
+
+    @Test
+    void failingTaskKeepsServing() throws IOException {
+        try (var client = new Client(new FakeTarget())) {
+            client.stubs.addTarget(2, new FakeTarget() {
+                @Override
+                public MSP430 getCPU() {
+                    throw new IllegalStateException("no CPU");
+                }
+            });
+            assertEquals("T05thread:1;", client.request("?"));
+            assertEquals("QC1", client.request("qC"));
+        }
+    }
+
+    private static byte[] unescape(byte[] frame) {
+        var out = new ByteArrayOutputStream();
+        for (int i = 1; i < frame.length - 3; i++) {
+            out.write(frame[i] == '}' ? frame[++i] ^ 0x20 : frame[i]);
+        }
+        return out.toByteArray();
+    }
+
+    /** Stops at once, and runs until hit() when resumed. */
+    private static class FakeTarget implements GDBStubs.Target {
+        final MSP430 cpu = new MSP430(new MSP430f1611Config());
+        volatile Runnable running;
+        volatile int resumes;
+
+        void hit() {
+            Runnable stopped = running;
+            running = null;
+            stopped.run();
+        }
+
+        @Override
+        public MSP430 getCPU() {
+            return cpu;
+        }
+
+        @Override
+        public String getName() {
+            return "fake";
+        }
+
+        @Override
+        public void stop(Runnable stopped) {
+            running = null;
+            stopped.run();
+        }
+
+        @Override
+        public void resume(boolean step, Runnable stopped) {
+            resumes++;
+            if (step) {
+                stopped.run();
+            } else {
+                running = stopped;
+            }
+        }
+    }
+
+    /** GDB side of a connection, with acks enabled. */
+    private static final class Client implements AutoCloseable {
+        final GDBStubs stubs;
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        Client(GDBStubs.Target target) throws IOException {
+            stubs = new GDBStubs(0);
+            stubs.addTarget(1, target);
+            socket = new Socket(InetAddress.getLoopbackAddress(), stubs.getPort());
+            socket.setSoTimeout(5000);
+            in = socket.getInputStream();
+            out = socket.getOutputStream();
+        }
+
+        String request(String payload) throws IOException {
+            return request(payload.getBytes(ISO_8859_1));
+        }
+
+        String request(byte[] payload) throws IOException {
+            send(payload);
+            return receive();
+        }
+
+        void send(String payload) throws IOException {
+            send(payload.getBytes(ISO_8859_1));
+        }
+
+        void send(byte[] payload) throws IOException {
+            var frame = new ByteArrayOutputStream();
+            int sum = 0;
+            frame.write('$');
+            for (byte b : payload) {
+                if (b == '$' || b == '#' || b == '}' || b == '*') {
+                    frame.write('}');
+                    sum += '}';
+                    b ^= 0x20;
+                }
+                frame.write(b);
+                sum += b & 0xff;
+            }
+            frame.writeBytes(String.format("#%02x", sum & 0xff).getBytes(ISO_8859_1));
+            write(frame.toByteArray());
+            assertEquals('+', read());
+        }
+
+        String receive() throws IOException {
+            return new String(unescape(receiveFrame()), ISO_8859_1);
+        }
+
+        /** Reads and acks a packet, and checks its checksum. */
+        byte[] receiveFrame() throws IOException {
+            int b = read();
+            assertEquals('$', b);
+            var frame = new ByteArrayOutputStream();
+            frame.write(b);
+            int sum = 0;
+            while ((b = read()) != '#') {
+                frame.write(b);
+                sum += b;
+            }
+            frame.write(b);
+            int hi = read();
+            int lo = read();
+            frame.write(hi);
+            frame.write(lo);
+            assertEquals(sum & 0xff, Character.digit(hi, 16) << 4 | Character.digit(lo, 16));
+            write("+");
+            return frame.toByteArray();
+        }
+
+        int read() throws IOException {
+            int b = in.read();
+            assertTrue(b >= 0, "Connection closed");
+            return b;
+        }
+
+        void write(String data) throws IOException {
+            write(data.getBytes(ISO_8859_1));
+        }
+
+        void write(byte[] data) throws IOException {
+            out.write(data);
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+            stubs.close();
+        }
+    }
+}